@@ -0,0 +1,510 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.builder;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.builder.xml.XMLMapperEntityResolver;
+import org.apache.ibatis.parsing.XNode;
+import org.apache.ibatis.parsing.XPathParser;
+import org.apache.ibatis.session.Configuration;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.mybatis.builder.XMLBuilders.newXMLConfigBuilder;
+import static io.microsphere.mybatis.builder.XMLBuilders.newXMLMapperBuilder;
+import static io.microsphere.mybatis.util.MyBatisUtils.getConfiguration;
+import static io.microsphere.util.ClassLoaderUtils.getDefaultClassLoader;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * The snapshot of MyBatis configuration and its mapper XML resources, which is created at the build time, e.g. via
+ * the Maven plugin, then restores the {@link Configuration} at runtime without the XML parsing and DTD validation.
+ * <p>
+ * The XML documents are validated and encoded into the compact binary format with the checksums of their resources,
+ * the snapshot is stale if any resource was changed, and then the {@link Configuration} will be loaded from the XML
+ * resources as usual.
+ * <p>
+ * The snapshot is a standalone, parse-only cache, which is not used by the bootstrap of Spring or Spring Boot :
+ * <ul>
+ *     <li>Only the XML parsing and DTD validation are skipped, the {@link XMLConfigBuilder} and
+ *     {@link XMLMapperBuilder} still build the {@link Configuration} from the restored documents, including the XPath
+ *     evaluations, the type resolutions and the dynamic SQL nodes</li>
+ *     <li>{@link #isStale(ClassLoader)} reads and checksums every resource of the snapshot, thus
+ *     {@link #loadConfiguration(String, String, String, Properties)} reads the resources once more than the XML
+ *     loading</li>
+ * </ul>
+ * It's worth to use when the XML parsing dominates the startup, e.g. the large mapper documents with the deep
+ * {@code <include>} trees, which should be measured before adoption.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   // At build time
+ *   ConfigurationSnapshot snapshot = ConfigurationSnapshot.create("META-INF/mybatis/config.xml", classLoader);
+ *   snapshot.writeTo(outputStream);
+ *
+ *   // At runtime
+ *   Configuration configuration = ConfigurationSnapshot.loadConfiguration(DEFAULT_SNAPSHOT_RESOURCE,
+ *           "META-INF/mybatis/config.xml", "production", properties);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see XMLConfigBuilder
+ * @see XMLMapperBuilder
+ * @see Configuration
+ * @since 1.0.0
+ */
+public class ConfigurationSnapshot {
+
+    private static final Logger logger = getLogger(ConfigurationSnapshot.class);
+
+    /**
+     * The default resource of snapshot in the class path
+     */
+    public static final String DEFAULT_SNAPSHOT_RESOURCE = "META-INF/mybatis/configuration.snapshot";
+
+    /**
+     * The magic number of snapshot : "MYBS"
+     */
+    private static final int MAGIC = 0x4D594253;
+
+    private static final int VERSION = 1;
+
+    private static final byte ELEMENT_NODE = 1;
+
+    private static final byte TEXT_NODE = 2;
+
+    private static final byte CDATA_NODE = 3;
+
+    /**
+     * The entries of snapshot, the first one is the configuration, the others are mappers
+     */
+    private final List<Entry> entries;
+
+    private ConfigurationSnapshot(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Create a {@link ConfigurationSnapshot} from the configuration resource and the mapper resources declared by
+     * {@code <mapper resource="..."/>}
+     *
+     * @param configResource the resource of MyBatis configuration
+     * @param classLoader    the {@link ClassLoader} to load the resources
+     * @return non-null
+     * @throws IOException      if the resources can't be read
+     * @throws BuilderException if the resources are invalid
+     */
+    public static ConfigurationSnapshot create(String configResource, ClassLoader classLoader) throws IOException, BuilderException {
+        List<Entry> entries = new ArrayList<>();
+        Element configuration = addEntry(entries, configResource, "/configuration", classLoader);
+        for (String mapperResource : getMapperResources(configuration)) {
+            addEntry(entries, mapperResource, "/mapper", classLoader);
+        }
+        return new ConfigurationSnapshot(entries);
+    }
+
+    /**
+     * Read a {@link ConfigurationSnapshot} from the {@link InputStream}, which will not be closed.
+     *
+     * @param inputStream {@link InputStream}
+     * @return non-null
+     * @throws IOException if the snapshot is invalid or can't be read
+     */
+    public static ConfigurationSnapshot readFrom(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("The input is not a snapshot of MyBatis configuration");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("The version of snapshot is not supported : " + version);
+        }
+        int size = in.readInt();
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String resource = readString(in);
+            long checksum = in.readLong();
+            entries.add(new Entry(resource, checksum, readNode(in)));
+        }
+        return new ConfigurationSnapshot(entries);
+    }
+
+    /**
+     * Load the {@link Configuration} from the snapshot if it's present and up to date, or from the XML resources.
+     * The resources are always read to check whether the snapshot is {@link #isStale(ClassLoader) stale}.
+     *
+     * @param snapshotResource the resource of snapshot in the class path
+     * @param configResource   the resource of MyBatis configuration
+     * @param environment      the id of environment, or <code>null</code> indicates the default
+     * @param properties       the {@link Properties}, or <code>null</code>
+     * @return non-null
+     * @throws IOException if the XML resources can't be read
+     */
+    public static Configuration loadConfiguration(String snapshotResource, String configResource,
+                                                  @Nullable String environment, @Nullable Properties properties) throws IOException {
+        ClassLoader classLoader = getDefaultClassLoader();
+        URL snapshotURL = classLoader.getResource(snapshotResource);
+        if (snapshotURL != null) {
+            try (InputStream inputStream = snapshotURL.openStream()) {
+                ConfigurationSnapshot snapshot = readFrom(inputStream);
+                if (!configResource.equals(snapshot.getConfigResource())) {
+                    logger.warn("The snapshot['{}'] was not created from the configuration resource['{}']",
+                            snapshotResource, configResource);
+                } else if (snapshot.isStale(classLoader)) {
+                    logger.info("The snapshot['{}'] is stale, the configuration will be loaded from the XML resources",
+                            snapshotResource);
+                } else {
+                    return snapshot.toConfiguration(environment, properties);
+                }
+            } catch (IOException | BuilderException e) {
+                logger.warn("The snapshot['{}'] can't be loaded, the configuration will be loaded from the XML resources",
+                        snapshotResource, e);
+            }
+        }
+        return getConfiguration(configResource, environment, properties);
+    }
+
+    /**
+     * Write the snapshot into the {@link OutputStream}, which will be flushed but not closed.
+     *
+     * @param outputStream {@link OutputStream}
+     * @throws IOException if I/O error occurs
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+            writeString(out, entry.resource);
+            out.writeLong(entry.checksum);
+            writeNode(out, entry.node);
+        }
+        out.flush();
+    }
+
+    /**
+     * Get the resource of MyBatis configuration
+     *
+     * @return non-null
+     */
+    public String getConfigResource() {
+        return entries.get(0).resource;
+    }
+
+    /**
+     * Get the resources in the snapshot, including the configuration and mappers
+     *
+     * @return the unmodifiable list of resources
+     */
+    public List<String> getResources() {
+        List<String> resources = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            resources.add(entry.resource);
+        }
+        return unmodifiableList(resources);
+    }
+
+    /**
+     * Is the snapshot stale or not, if any resource is absent or was changed, every resource is read and checksummed.
+     *
+     * @param classLoader the {@link ClassLoader} to load the resources
+     * @return <code>true</code> if stale
+     * @throws IOException if the resources can't be read
+     */
+    public boolean isStale(ClassLoader classLoader) throws IOException {
+        for (Entry entry : entries) {
+            URL url = classLoader.getResource(entry.resource);
+            if (url == null) {
+                logger.trace("The resource['{}'] of snapshot is absent", entry.resource);
+                return true;
+            }
+            if (checksum(readBytes(url)) != entry.checksum) {
+                logger.trace("The resource['{}'] of snapshot was changed", entry.resource);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Restore the {@link Configuration} from the snapshot
+     *
+     * @param environment the id of environment, or <code>null</code> indicates the default
+     * @param properties  the {@link Properties}, or <code>null</code>
+     * @return non-null
+     * @throws BuilderException if the {@link Configuration} can't be built
+     */
+    public Configuration toConfiguration(@Nullable String environment, @Nullable Properties properties) throws BuilderException {
+        int size = entries.size();
+        Set<String> mapperResources = new HashSet<>(size);
+        for (int i = 1; i < size; i++) {
+            mapperResources.add(entries.get(i).resource);
+        }
+
+        Document configDocument = toDocument(entries.get(0).node);
+        // The mappers in the snapshot are excluded from the configuration, they will be built from the snapshot
+        removeMapperElements(configDocument.getDocumentElement(), mapperResources);
+        Configuration configuration = newXMLConfigBuilder(new XPathParser(configDocument, false, properties),
+                environment, properties).parse();
+
+        for (int i = 1; i < size; i++) {
+            Entry entry = entries.get(i);
+            XPathParser parser = new XPathParser(toDocument(entry.node), false, configuration.getVariables());
+            newXMLMapperBuilder(parser, configuration, entry.resource).parse();
+        }
+        return configuration;
+    }
+
+    private static Element addEntry(List<Entry> entries, String resource, String expression, ClassLoader classLoader)
+            throws IOException {
+        URL url = classLoader.getResource(resource);
+        if (url == null) {
+            throw new IOException("The resource can't be found : " + resource);
+        }
+        byte[] bytes = readBytes(url);
+        XPathParser parser = new XPathParser(new ByteArrayInputStream(bytes), true, null, new XMLMapperEntityResolver());
+        XNode root = parser.evalNode(expression);
+        if (root == null) {
+            throw new BuilderException("The element '" + expression + "' can't be found in the resource : " + resource);
+        }
+        Element element = (Element) root.getNode();
+        entries.add(new Entry(resource, checksum(bytes), toSnapshotNode(element)));
+        return element;
+    }
+
+    private static List<String> getMapperResources(Element configuration) {
+        List<String> mapperResources = new ArrayList<>();
+        for (Element mapper : getMapperElements(configuration)) {
+            String resource = mapper.getAttribute("resource");
+            // The resource with placeholders can't be resolved at build time
+            if (!resource.isEmpty() && !resource.contains("${")) {
+                mapperResources.add(resource);
+            }
+        }
+        return mapperResources;
+    }
+
+    private static void removeMapperElements(Element configuration, Set<String> mapperResources) {
+        for (Element mapper : getMapperElements(configuration)) {
+            if (mapperResources.contains(mapper.getAttribute("resource"))) {
+                mapper.getParentNode().removeChild(mapper);
+            }
+        }
+    }
+
+    private static List<Element> getMapperElements(Element configuration) {
+        List<Element> mapperElements = new ArrayList<>();
+        for (Element mappers : getChildElements(configuration, "mappers")) {
+            mapperElements.addAll(getChildElements(mappers, "mapper"));
+        }
+        return mapperElements;
+    }
+
+    private static List<Element> getChildElements(Element element, String name) {
+        List<Element> childElements = new ArrayList<>();
+        NodeList childNodes = element.getChildNodes();
+        for (int i = 0; i < childNodes.getLength(); i++) {
+            Node childNode = childNodes.item(i);
+            if (childNode instanceof Element childElement && name.equals(childElement.getNodeName())) {
+                childElements.add(childElement);
+            }
+        }
+        return childElements;
+    }
+
+    private static SnapshotNode toSnapshotNode(Node node) {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                SnapshotNode element = new SnapshotNode(ELEMENT_NODE, node.getNodeName());
+                NamedNodeMap attributes = node.getAttributes();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    Node attribute = attributes.item(i);
+                    element.attributes.add(attribute.getNodeName());
+                    element.attributes.add(attribute.getNodeValue());
+                }
+                NodeList childNodes = node.getChildNodes();
+                for (int i = 0; i < childNodes.getLength(); i++) {
+                    SnapshotNode child = toSnapshotNode(childNodes.item(i));
+                    if (child != null) {
+                        element.children.add(child);
+                    }
+                }
+                return element;
+            case Node.TEXT_NODE:
+                return new SnapshotNode(TEXT_NODE, node.getNodeValue());
+            case Node.CDATA_SECTION_NODE:
+                return new SnapshotNode(CDATA_NODE, node.getNodeValue());
+            default:
+                // The comments and processing instructions are ignored
+                return null;
+        }
+    }
+
+    private static Document toDocument(SnapshotNode root) throws BuilderException {
+        Document document;
+        try {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new BuilderException("The document can't be created", e);
+        }
+        document.appendChild(toNode(document, root));
+        return document;
+    }
+
+    private static Node toNode(Document document, SnapshotNode snapshotNode) {
+        switch (snapshotNode.type) {
+            case TEXT_NODE:
+                return document.createTextNode(snapshotNode.value);
+            case CDATA_NODE:
+                return document.createCDATASection(snapshotNode.value);
+            default:
+                Element element = document.createElement(snapshotNode.value);
+                List<String> attributes = snapshotNode.attributes;
+                for (int i = 0; i < attributes.size(); i += 2) {
+                    element.setAttribute(attributes.get(i), attributes.get(i + 1));
+                }
+                for (SnapshotNode child : snapshotNode.children) {
+                    element.appendChild(toNode(document, child));
+                }
+                return element;
+        }
+    }
+
+    private static void writeNode(DataOutputStream out, SnapshotNode node) throws IOException {
+        out.writeByte(node.type);
+        writeString(out, node.value);
+        if (node.type == ELEMENT_NODE) {
+            List<String> attributes = node.attributes;
+            out.writeInt(attributes.size());
+            for (String attribute : attributes) {
+                writeString(out, attribute);
+            }
+            out.writeInt(node.children.size());
+            for (SnapshotNode child : node.children) {
+                writeNode(out, child);
+            }
+        }
+    }
+
+    private static SnapshotNode readNode(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type != ELEMENT_NODE && type != TEXT_NODE && type != CDATA_NODE) {
+            throw new IOException("The type of node is invalid : " + type);
+        }
+        SnapshotNode node = new SnapshotNode(type, readString(in));
+        if (type == ELEMENT_NODE) {
+            int attributesSize = in.readInt();
+            for (int i = 0; i < attributesSize; i++) {
+                node.attributes.add(readString(in));
+            }
+            int childrenSize = in.readInt();
+            for (int i = 0; i < childrenSize; i++) {
+                node.children.add(readNode(in));
+            }
+        }
+        return node;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static byte[] readBytes(URL url) throws IOException {
+        try (InputStream inputStream = url.openStream()) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes);
+        return crc32.getValue();
+    }
+
+    private static class Entry {
+
+        private final String resource;
+
+        private final long checksum;
+
+        private final SnapshotNode node;
+
+        private Entry(String resource, long checksum, SnapshotNode node) {
+            this.resource = resource;
+            this.checksum = checksum;
+            this.node = node;
+        }
+    }
+
+    private static class SnapshotNode {
+
+        private final byte type;
+
+        /**
+         * The name of element or the text
+         */
+        private final String value;
+
+        /**
+         * The names and values of attributes in turn
+         */
+        private final List<String> attributes = new ArrayList<>(0);
+
+        private final List<SnapshotNode> children = new ArrayList<>(0);
+
+        private SnapshotNode(byte type, String value) {
+            this.type = type;
+            this.value = value;
+        }
+    }
+}
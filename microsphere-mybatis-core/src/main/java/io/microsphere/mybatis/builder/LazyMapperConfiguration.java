@@ -0,0 +1,483 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.builder;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMap;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.util.Assert.assertNotNull;
+import static io.microsphere.util.StringUtils.isBlank;
+import static java.util.Collections.unmodifiableSet;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * The {@link Configuration} initializing the mapper XML resources lazily, the resources are only indexed by their
+ * namespaces when they are added, the {@link MappedStatement MappedStatements}, {@link ResultMap ResultMaps},
+ * {@link ParameterMap ParameterMaps}, {@link Cache Caches} and dynamic SQL nodes of a namespace are built on the first
+ * lookup of any element in that namespace, e.g. the first invocation of a mapper method, thus the startup time and
+ * heap scale with the namespaces actually used.
+ * <p>
+ * The namespace is initialized once under the write lock, and the elements are looked up under the read lock, because
+ * the maps of {@link Configuration} are not safe to be read while another namespace is being built into them, thus
+ * the elements of a namespace are published as a whole. The lookups of all elements return the snapshots. If the
+ * initialization fails, the namespace stays pending and its subsequent
+ * initializations throw the {@link BuilderException} caused by the failure. The elements referenced from other namespaces, e.g.
+ * {@code <association select="...">}, {@code <resultMap extends="...">} or {@code <cache-ref>}, trigger the
+ * initialization of their namespaces as well. The SQL fragments included from other namespaces by
+ * {@code <include refid="...">} can't be tracked, their namespaces should be {@link #initialize(String) initialized}
+ * in advance. The lookups of all elements, e.g. {@link #getMappedStatements()}, initialize all namespaces.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   LazyMapperConfiguration configuration = new LazyMapperConfiguration(environment);
+ *   // Index the namespace only
+ *   configuration.addMapperResource("META-INF/mybatis/UserMapper.xml");
+ *   SqlSessionFactory sqlSessionFactory = new DefaultSqlSessionFactory(configuration);
+ *   try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+ *       // "UserMapper.xml" is built on the first invocation
+ *       User user = sqlSession.getMapper(UserMapper.class).getUserById(1);
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see Configuration
+ * @see XMLMapperBuilder
+ * @since 1.0.0
+ */
+public class LazyMapperConfiguration extends Configuration {
+
+    private static final Logger logger = getLogger(LazyMapperConfiguration.class);
+
+    private static final String NAMESPACE_RESOURCE_PREFIX = "namespace:";
+
+    /**
+     * The pending mapper XML resources keyed by their namespaces
+     */
+    private final ConcurrentMap<String, URL> pendingResources = new ConcurrentHashMap<>();
+
+    private final ReentrantReadWriteLock initializationLock = new ReentrantReadWriteLock();
+
+    /**
+     * The namespaces being initialized, which is guarded by the write lock of {@link #initializationLock}
+     */
+    private final Set<String> initializingNamespaces = new HashSet<>();
+
+    /**
+     * The failures of the namespaces that could not be initialized, they are kept pending, because their elements may
+     * have been partially added and can't be built again.
+     */
+    private final ConcurrentMap<String, RuntimeException> failures = new ConcurrentHashMap<>();
+
+    public LazyMapperConfiguration() {
+        super();
+    }
+
+    public LazyMapperConfiguration(Environment environment) {
+        super(environment);
+    }
+
+    /**
+     * Add the mapper XML resource in the class path, which is only indexed by its namespace.
+     *
+     * @param resource the mapper XML resource in the class path
+     * @return the namespace of the resource
+     * @throws BuilderException if the resource can't be found, or its namespace is absent or duplicated
+     */
+    public String addMapperResource(String resource) throws BuilderException {
+        URL resourceURL;
+        try {
+            resourceURL = Resources.getResourceURL(resource);
+        } catch (IOException e) {
+            throw new BuilderException("The mapper resource can't be found : " + resource, e);
+        }
+        return addMapperResource(resourceURL);
+    }
+
+    /**
+     * Add the mapper XML resource, which is only indexed by its namespace.
+     *
+     * @param resourceURL the {@link URL} of mapper XML resource
+     * @return the namespace of the resource
+     * @throws BuilderException if the resource can't be read, or its namespace is absent or duplicated
+     */
+    public String addMapperResource(URL resourceURL) throws BuilderException {
+        assertNotNull(resourceURL, () -> "The 'resourceURL' argument must not be null");
+        String namespace = readNamespace(resourceURL);
+        if (isBlank(namespace)) {
+            throw new BuilderException("The namespace of mapper resource must not be empty : " + resourceURL);
+        }
+        if (super.isResourceLoaded(NAMESPACE_RESOURCE_PREFIX + namespace)
+                || pendingResources.putIfAbsent(namespace, resourceURL) != null) {
+            throw new BuilderException("The namespace '" + namespace + "' of mapper resource is duplicated : " + resourceURL);
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace("The mapper resource[{}] was indexed by the namespace : '{}'", resourceURL, namespace);
+        }
+        return namespace;
+    }
+
+    /**
+     * Get the namespaces which have not been initialized yet.
+     *
+     * @return non-null read-only {@link Set}
+     */
+    public Set<String> getPendingNamespaces() {
+        return unmodifiableSet(pendingResources.keySet());
+    }
+
+    /**
+     * Is the specified namespace initialized or not
+     *
+     * @param namespace the namespace
+     * @return <code>true</code> if the namespace is not pending
+     */
+    public boolean isInitialized(String namespace) {
+        return !pendingResources.containsKey(namespace);
+    }
+
+    /**
+     * Initialize the specified namespace if it's pending, the method blocks until the namespace has been built if it's
+     * being initialized by another thread.
+     *
+     * @param namespace the namespace
+     * @throws BuilderException if the mapper resource can't be built, or it failed to be built before
+     */
+    public void initialize(String namespace) throws BuilderException {
+        if (!pendingResources.containsKey(namespace)) {
+            return;
+        }
+        Lock lock = initializationLock.writeLock();
+        lock.lock();
+        try {
+            URL resourceURL = pendingResources.get(namespace);
+            // The namespace was initialized by another thread or it's being initialized by the current thread
+            if (resourceURL == null || initializingNamespaces.contains(namespace)) {
+                return;
+            }
+            RuntimeException failure = failures.get(namespace);
+            if (failure != null) {
+                throw new BuilderException("The namespace '" + namespace + "' failed to be initialized from the " +
+                        "mapper resource : " + resourceURL, failure);
+            }
+            initializingNamespaces.add(namespace);
+            try {
+                build(namespace, resourceURL);
+                pendingResources.remove(namespace);
+            } catch (RuntimeException e) {
+                failures.put(namespace, e);
+                throw e;
+            } finally {
+                initializingNamespaces.remove(namespace);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Initialize all pending namespaces
+     *
+     * @throws BuilderException if any mapper resource can't be built
+     */
+    public void initializeAll() throws BuilderException {
+        for (String namespace : new ArrayList<>(pendingResources.keySet())) {
+            initialize(namespace);
+        }
+    }
+
+    @Override
+    public boolean isResourceLoaded(String resource) {
+        // Prevent the mapper interfaces from loading their XML resources eagerly
+        return super.isResourceLoaded(resource) || (resource.startsWith(NAMESPACE_RESOURCE_PREFIX)
+                && pendingResources.containsKey(resource.substring(NAMESPACE_RESOURCE_PREFIX.length())));
+    }
+
+    @Override
+    public <T> T getMapper(Class<T> type, SqlSession sqlSession) {
+        // Bind the mapper interface of the pending namespace without initializing it
+        if (pendingResources.containsKey(type.getName())) {
+            write(() -> {
+                if (!hasMapper(type)) {
+                    addMapper(type);
+                }
+            });
+        }
+        return super.getMapper(type, sqlSession);
+    }
+
+    @Override
+    public boolean hasStatement(String statementName, boolean validateIncompleteStatements) {
+        initializeById(statementName);
+        if (validateIncompleteStatements) {
+            buildIncompleteElements();
+        }
+        return read(() -> super.hasStatement(statementName, false));
+    }
+
+    @Override
+    public MappedStatement getMappedStatement(String id, boolean validateIncompleteStatements) {
+        initializeById(id);
+        if (validateIncompleteStatements) {
+            buildIncompleteElements();
+        }
+        return read(() -> super.getMappedStatement(id, false));
+    }
+
+    @Override
+    public Collection<String> getMappedStatementNames() {
+        initializeAll();
+        buildIncompleteElements();
+        return read(() -> new ArrayList<>(super.getMappedStatementNames()));
+    }
+
+    @Override
+    public Collection<MappedStatement> getMappedStatements() {
+        initializeAll();
+        buildIncompleteElements();
+        return read(() -> new ArrayList<>(super.getMappedStatements()));
+    }
+
+    @Override
+    public boolean hasResultMap(String id) {
+        initializeById(id);
+        return read(() -> super.hasResultMap(id));
+    }
+
+    @Override
+    public ResultMap getResultMap(String id) {
+        initializeById(id);
+        return read(() -> super.getResultMap(id));
+    }
+
+    @Override
+    public Collection<String> getResultMapNames() {
+        initializeAll();
+        return read(() -> new ArrayList<>(super.getResultMapNames()));
+    }
+
+    @Override
+    public Collection<ResultMap> getResultMaps() {
+        initializeAll();
+        return read(() -> new ArrayList<>(super.getResultMaps()));
+    }
+
+    @Override
+    public boolean hasParameterMap(String id) {
+        initializeById(id);
+        return read(() -> super.hasParameterMap(id));
+    }
+
+    @Override
+    public ParameterMap getParameterMap(String id) {
+        initializeById(id);
+        return read(() -> super.getParameterMap(id));
+    }
+
+    @Override
+    public Collection<String> getParameterMapNames() {
+        initializeAll();
+        return read(() -> new ArrayList<>(super.getParameterMapNames()));
+    }
+
+    @Override
+    public Collection<ParameterMap> getParameterMaps() {
+        initializeAll();
+        return read(() -> new ArrayList<>(super.getParameterMaps()));
+    }
+
+    @Override
+    public Cache getCache(String id) {
+        // The id of Cache is its namespace
+        initialize(id);
+        return read(() -> super.getCache(id));
+    }
+
+    @Override
+    public boolean hasCache(String id) {
+        initialize(id);
+        return read(() -> super.hasCache(id));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        initializeAll();
+        return read(() -> new ArrayList<>(super.getCacheNames()));
+    }
+
+    @Override
+    public Collection<Cache> getCaches() {
+        initializeAll();
+        return read(() -> new ArrayList<>(super.getCaches()));
+    }
+
+    @Override
+    public boolean hasKeyGenerator(String id) {
+        initializeById(id);
+        return read(() -> super.hasKeyGenerator(id));
+    }
+
+    @Override
+    public KeyGenerator getKeyGenerator(String id) {
+        initializeById(id);
+        return read(() -> super.getKeyGenerator(id));
+    }
+
+    @Override
+    public Collection<String> getKeyGeneratorNames() {
+        initializeAll();
+        return read(() -> new ArrayList<>(super.getKeyGeneratorNames()));
+    }
+
+    @Override
+    public Collection<KeyGenerator> getKeyGenerators() {
+        initializeAll();
+        return read(() -> new ArrayList<>(super.getKeyGenerators()));
+    }
+
+    /**
+     * Initialize the namespace of the specified element id, the short id initializes all namespaces because of the
+     * ambiguity.
+     *
+     * @param id the element id, e.g. "{namespace}.{statementId}"
+     */
+    void initializeById(@Nullable String id) {
+        if (id == null || pendingResources.isEmpty()) {
+            return;
+        }
+        int index = id.lastIndexOf('.');
+        if (index < 0) {
+            initializeAll();
+            return;
+        }
+        // The nested id may contain the dots, e.g. "{namespace}.mapper_resultMap[...]_association[...]"
+        while (index > 0) {
+            String namespace = id.substring(0, index);
+            if (pendingResources.containsKey(namespace)) {
+                initialize(namespace);
+                return;
+            }
+            index = id.lastIndexOf('.', index - 1);
+        }
+    }
+
+    /**
+     * Build the incomplete elements referencing the elements built later, which puts them into the maps, thus it's
+     * performed under the write lock rather than the read lock of the lookup.
+     */
+    void buildIncompleteElements() {
+        if (hasIncompleteElements()) {
+            write(this::buildAllStatements);
+        }
+    }
+
+    boolean hasIncompleteElements() {
+        return !getIncompleteStatements().isEmpty() || !getIncompleteResultMaps().isEmpty()
+                || !getIncompleteCacheRefs().isEmpty() || !getIncompleteMethods().isEmpty();
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        Lock lock = initializationLock.readLock();
+        lock.lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(Runnable writer) {
+        Lock lock = initializationLock.writeLock();
+        lock.lock();
+        try {
+            writer.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void build(String namespace, URL resourceURL) throws BuilderException {
+        long startTime = System.nanoTime();
+        String resource = resourceURL.toString();
+        try (InputStream inputStream = resourceURL.openStream()) {
+            XMLMapperBuilder builder = new XMLMapperBuilder(inputStream, this, resource, getSqlFragments());
+            builder.parse();
+        } catch (IOException e) {
+            throw new BuilderException("The mapper resource can't be read : " + resource, e);
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace("The namespace '{}' was initialized from the mapper resource[{}] in {} ns", namespace,
+                    resource, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Read the namespace from the root element of the mapper XML resource without parsing the whole document.
+     *
+     * @param resourceURL the {@link URL} of mapper XML resource
+     * @return the namespace, or <code>null</code> if absent
+     * @throws BuilderException if the resource can't be read
+     */
+    @Nullable
+    static String readNamespace(URL resourceURL) throws BuilderException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try (InputStream inputStream = resourceURL.openStream()) {
+            XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == START_ELEMENT) {
+                        return reader.getAttributeValue(null, "namespace");
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new BuilderException("The mapper resource can't be read : " + resourceURL, e);
+        }
+        return null;
+    }
+}
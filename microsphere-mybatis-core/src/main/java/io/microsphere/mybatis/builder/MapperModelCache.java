@@ -0,0 +1,459 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.builder;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.annotations.CacheNamespace;
+import org.apache.ibatis.annotations.Property;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.apache.ibatis.builder.annotation.MapperAnnotationBuilder;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.builder.xml.XMLMapperEntityResolver;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMap;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.parsing.PropertyParser;
+import org.apache.ibatis.parsing.XNode;
+import org.apache.ibatis.parsing.XPathParser;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.TypeAliasRegistry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.util.Assert.assertNotNull;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * The cache of the parsed mapper model, the mapper XML resources are parsed only once into the first
+ * {@link Configuration} loading them, which becomes the model, then the other {@link Configuration Configurations}
+ * loading the same resources share the immutable parts of the model :
+ * <ul>
+ *     <li>{@link ResultMap ResultMaps}</li>
+ *     <li>{@link ParameterMap ParameterMaps}</li>
+ *     <li>{@link SqlSource SqlSources}</li>
+ *     <li>{@link KeyGenerator KeyGenerators}</li>
+ * </ul>
+ * The {@link MappedStatement MappedStatements} are rebuilt around the shared parts for each {@link Configuration},
+ * thus the plugins and {@link org.apache.ibatis.mapping.Environment} are still applied per {@link Configuration}.
+ * The second level {@link Cache Caches} hold the data, they are built per {@link Configuration} from the definitions
+ * of {@code <cache>} elements or {@link CacheNamespace @CacheNamespace} annotations.
+ * <p>
+ * The {@link SqlSource SqlSources} resolve the type handlers, type aliases, variables and database id from the model,
+ * so the {@link Configuration Configurations} sharing the model should have the same settings except the plugins and
+ * {@link org.apache.ibatis.mapping.Environment}, e.g. the tenants or shards of the same application.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   MapperModelCache mapperModelCache = new MapperModelCache();
+ *   // parse "UserMapper.xml" into configuration1
+ *   mapperModelCache.load(configuration1, "META-INF/mybatis/UserMapper.xml");
+ *   // share the model of configuration1 without parsing
+ *   mapperModelCache.load(configuration2, "META-INF/mybatis/UserMapper.xml");
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see XMLMapperBuilder
+ * @see ParallelMapperXMLParser
+ * @see Configuration
+ * @since 1.0.0
+ */
+public class MapperModelCache {
+
+    private static final Logger logger = getLogger(MapperModelCache.class);
+
+    private final ConcurrentMap<List<String>, MapperModel> models = new ConcurrentHashMap<>();
+
+    @Nullable
+    private final ParallelMapperXMLParser parser;
+
+    /**
+     * Construct a {@link MapperModelCache} parsing the resources sequentially
+     */
+    public MapperModelCache() {
+        this(null);
+    }
+
+    /**
+     * Construct a {@link MapperModelCache}
+     *
+     * @param parser the {@link ParallelMapperXMLParser} to parse the resources in parallel, or <code>null</code>
+     *               indicates the resources are parsed sequentially
+     */
+    public MapperModelCache(@Nullable ParallelMapperXMLParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Load the mapper XML resources in the class path into the specified {@link Configuration}
+     *
+     * @param configuration the {@link Configuration}
+     * @param resources     the mapper XML resources in the class path
+     * @throws BuilderException if the resources can't be found or parsed
+     */
+    public void load(Configuration configuration, String... resources) throws BuilderException {
+        int length = resources.length;
+        URL[] mapperURLs = new URL[length];
+        for (int i = 0; i < length; i++) {
+            String resource = resources[i];
+            try {
+                mapperURLs[i] = Resources.getResourceURL(resource);
+            } catch (IOException e) {
+                throw new BuilderException("The mapper resource can't be found : " + resource, e);
+            }
+        }
+        load(configuration, mapperURLs);
+    }
+
+    /**
+     * Load the mapper XML resources into the specified {@link Configuration}, the resources are parsed if they are
+     * loaded at the first time, or the parsed model is shared.
+     *
+     * @param configuration the {@link Configuration}
+     * @param mapperURLs    the {@link URL URLs} of mapper XML resources
+     * @throws BuilderException if the resources can't be parsed
+     */
+    public void load(Configuration configuration, URL... mapperURLs) throws BuilderException {
+        assertNotNull(configuration, () -> "The 'configuration' argument must not be null");
+        List<String> resources = new ArrayList<>(mapperURLs.length);
+        for (URL mapperURL : mapperURLs) {
+            resources.add(mapperURL.toString());
+        }
+        MapperModel model = models.computeIfAbsent(unmodifiableList(resources), key -> parse(configuration, key, mapperURLs));
+        if (model.configuration != configuration) {
+            share(model, configuration);
+        }
+    }
+
+    /**
+     * Get the count of the cached models
+     *
+     * @return the count of the cached models
+     */
+    public int size() {
+        return models.size();
+    }
+
+    /**
+     * Clear the cached models
+     */
+    public void clear() {
+        models.clear();
+    }
+
+    private MapperModel parse(Configuration configuration, List<String> resources, URL[] mapperURLs) {
+        MapperModel model = new MapperModel(configuration, resources, mapperURLs);
+        Set<String> statementIds = new LinkedHashSet<>(configuration.getMappedStatementNames());
+        Set<String> resultMapIds = new LinkedHashSet<>(configuration.getResultMapNames());
+        Set<String> parameterMapIds = new LinkedHashSet<>(configuration.getParameterMapNames());
+        Set<String> keyGeneratorIds = new LinkedHashSet<>(configuration.getKeyGeneratorNames());
+        Set<Class<?>> mapperTypes = new LinkedHashSet<>(configuration.getMapperRegistry().getMappers());
+
+        long startTime = System.nanoTime();
+        if (parser == null) {
+            for (int i = 0; i < mapperURLs.length; i++) {
+                String resource = resources.get(i);
+                try (InputStream inputStream = mapperURLs[i].openStream()) {
+                    XMLMapperBuilder builder = new XMLMapperBuilder(inputStream, configuration, resource, configuration.getSqlFragments());
+                    builder.parse();
+                } catch (IOException e) {
+                    throw new BuilderException("Failed to parse the mapper resource : " + resource, e);
+                }
+            }
+        } else {
+            parser.parse(configuration, mapperURLs);
+        }
+
+        addNewIds(configuration.getMappedStatementNames(), statementIds, model.statementIds);
+        addNewIds(configuration.getResultMapNames(), resultMapIds, model.resultMapIds);
+        addNewIds(configuration.getParameterMapNames(), parameterMapIds, model.parameterMapIds);
+        addNewIds(configuration.getKeyGeneratorNames(), keyGeneratorIds, model.keyGeneratorIds);
+        for (Class<?> mapperType : configuration.getMapperRegistry().getMappers()) {
+            if (!mapperTypes.contains(mapperType)) {
+                model.mapperTypes.add(mapperType);
+            }
+        }
+        logger.trace("The mapper resources{} were parsed in {} ns : {} statement(s), {} result map(s)", resources,
+                System.nanoTime() - startTime, model.statementIds.size(), model.resultMapIds.size());
+        return model;
+    }
+
+    private void share(MapperModel model, Configuration target) {
+        Configuration source = model.configuration;
+        for (String resource : model.resources) {
+            target.addLoadedResource(resource);
+        }
+        for (String id : model.resultMapIds) {
+            if (!target.hasResultMap(id)) {
+                target.addResultMap(source.getResultMap(id));
+            }
+        }
+        for (String id : model.parameterMapIds) {
+            if (!target.hasParameterMap(id)) {
+                target.addParameterMap(source.getParameterMap(id));
+            }
+        }
+        for (String id : model.keyGeneratorIds) {
+            if (!target.hasKeyGenerator(id)) {
+                target.addKeyGenerator(id, source.getKeyGenerator(id));
+            }
+        }
+        for (String id : model.statementIds) {
+            if (target.hasStatement(id, false)) {
+                continue;
+            }
+            MappedStatement ms = source.getMappedStatement(id, false);
+            target.addMappedStatement(rebuild(ms, target, getCache(model, ms.getCache(), target)));
+        }
+        for (Class<?> mapperType : model.mapperTypes) {
+            // Mark the XML and annotations of mapper as loaded, thus the MapperAnnotationBuilder won't parse them
+            target.addLoadedResource(mapperType.toString());
+            target.addLoadedResource("namespace:" + mapperType.getName());
+            if (!target.hasMapper(mapperType)) {
+                target.addMapper(mapperType);
+            }
+        }
+        logger.trace("The mapper model of resources{} was shared : {} statement(s), {} result map(s)", model.resources,
+                model.statementIds.size(), model.resultMapIds.size());
+    }
+
+    @Nullable
+    private Cache getCache(MapperModel model, @Nullable Cache cache, Configuration target) {
+        if (cache == null) {
+            return null;
+        }
+        String id = cache.getId();
+        if (target.hasCache(id)) {
+            return target.getCache(id);
+        }
+        CacheDefinition cacheDefinition = model.getCacheDefinitions().get(id);
+        if (cacheDefinition == null) {
+            throw new BuilderException("The definition of cache['" + id + "'] can't be found in the mapper resources"
+                    + model.resources);
+        }
+        Cache newCache = cacheDefinition.build();
+        target.addCache(newCache);
+        return newCache;
+    }
+
+    static MappedStatement rebuild(MappedStatement ms, Configuration configuration, @Nullable Cache cache) {
+        return new MappedStatement.Builder(configuration, ms.getId(), ms.getSqlSource(), ms.getSqlCommandType())
+                .resource(ms.getResource())
+                .fetchSize(ms.getFetchSize())
+                .timeout(ms.getTimeout())
+                .statementType(ms.getStatementType())
+                .resultSetType(ms.getResultSetType())
+                .parameterMap(ms.getParameterMap())
+                .resultMaps(ms.getResultMaps())
+                .cache(cache)
+                .flushCacheRequired(ms.isFlushCacheRequired())
+                .useCache(ms.isUseCache())
+                .resultOrdered(ms.isResultOrdered())
+                .keyGenerator(ms.getKeyGenerator())
+                .keyProperty(join(ms.getKeyProperties()))
+                .keyColumn(join(ms.getKeyColumns()))
+                .databaseId(ms.getDatabaseId())
+                .lang(ms.getLang())
+                .resultSets(join(ms.getResultSets()))
+                .dirtySelect(ms.isDirtySelect())
+                .build();
+    }
+
+    private static String join(String[] values) {
+        return values == null ? null : String.join(",", values);
+    }
+
+    private static void addNewIds(Collection<String> ids, Set<String> existedIds, List<String> newIds) {
+        for (String id : ids) {
+            // The full ids are qualified by the namespace, the others are the short names
+            if (id.indexOf('.') > -1 && !existedIds.contains(id)) {
+                newIds.add(id);
+            }
+        }
+    }
+
+    private static class MapperModel {
+
+        private final Configuration configuration;
+
+        private final List<String> resources;
+
+        private final URL[] mapperURLs;
+
+        private final List<String> statementIds = new ArrayList<>();
+
+        private final List<String> resultMapIds = new ArrayList<>();
+
+        private final List<String> parameterMapIds = new ArrayList<>();
+
+        private final List<String> keyGeneratorIds = new ArrayList<>();
+
+        private final List<Class<?>> mapperTypes = new ArrayList<>();
+
+        private volatile Map<String, CacheDefinition> cacheDefinitions;
+
+        private MapperModel(Configuration configuration, List<String> resources, URL[] mapperURLs) {
+            this.configuration = configuration;
+            this.resources = resources;
+            this.mapperURLs = mapperURLs;
+        }
+
+        /**
+         * Get the {@link CacheDefinition CacheDefinitions} by the cache ids, they are resolved at the first sharing
+         *
+         * @return non-null
+         */
+        private Map<String, CacheDefinition> getCacheDefinitions() {
+            Map<String, CacheDefinition> cacheDefinitions = this.cacheDefinitions;
+            if (cacheDefinitions == null) {
+                synchronized (this) {
+                    cacheDefinitions = this.cacheDefinitions;
+                    if (cacheDefinitions == null) {
+                        cacheDefinitions = resolveCacheDefinitions();
+                        this.cacheDefinitions = cacheDefinitions;
+                    }
+                }
+            }
+            return cacheDefinitions;
+        }
+
+        private Map<String, CacheDefinition> resolveCacheDefinitions() {
+            Configuration configuration = this.configuration;
+            Map<String, CacheDefinition> cacheDefinitions = new HashMap<>();
+            for (int i = 0; i < mapperURLs.length; i++) {
+                String resource = resources.get(i);
+                try (InputStream inputStream = mapperURLs[i].openStream()) {
+                    XPathParser parser = new XPathParser(inputStream, true, configuration.getVariables(),
+                            new XMLMapperEntityResolver());
+                    XNode mapper = parser.evalNode("/mapper");
+                    XNode cache = mapper.evalNode("cache");
+                    if (cache != null) {
+                        String namespace = mapper.getStringAttribute("namespace");
+                        cacheDefinitions.put(namespace, CacheDefinition.of(namespace, cache, configuration));
+                    }
+                } catch (IOException e) {
+                    throw new BuilderException("Failed to read the cache of mapper resource : " + resource, e);
+                }
+            }
+            for (Class<?> mapperType : mapperTypes) {
+                CacheNamespace cacheNamespace = mapperType.getAnnotation(CacheNamespace.class);
+                if (cacheNamespace != null) {
+                    String namespace = mapperType.getName();
+                    cacheDefinitions.put(namespace, CacheDefinition.of(namespace, cacheNamespace, configuration));
+                }
+            }
+            logger.trace("The cache definitions of mapper resources{} were resolved : {}", resources,
+                    cacheDefinitions.keySet());
+            return cacheDefinitions;
+        }
+    }
+
+    /**
+     * The definition of the second level {@link Cache} as {@link MapperBuilderAssistant#useNewCache} uses
+     */
+    private static class CacheDefinition {
+
+        private final String id;
+
+        private final Class<? extends Cache> implementation;
+
+        private final Class<? extends Cache> eviction;
+
+        @Nullable
+        private final Long flushInterval;
+
+        @Nullable
+        private final Integer size;
+
+        private final boolean readWrite;
+
+        private final boolean blocking;
+
+        private final Properties properties;
+
+        private CacheDefinition(String id, Class<? extends Cache> implementation, Class<? extends Cache> eviction,
+                                @Nullable Long flushInterval, @Nullable Integer size, boolean readWrite,
+                                boolean blocking, Properties properties) {
+            this.id = id;
+            this.implementation = implementation;
+            this.eviction = eviction;
+            this.flushInterval = flushInterval;
+            this.size = size;
+            this.readWrite = readWrite;
+            this.blocking = blocking;
+            this.properties = properties;
+        }
+
+        private Cache build() {
+            return new CacheBuilder(id)
+                    .implementation(implementation)
+                    .addDecorator(eviction)
+                    .clearInterval(flushInterval)
+                    .size(size)
+                    .readWrite(readWrite)
+                    .blocking(blocking)
+                    .properties(properties)
+                    .build();
+        }
+
+        /**
+         * Resolve the {@link CacheDefinition} from the {@code <cache>} element as {@link XMLMapperBuilder} does
+         */
+        private static CacheDefinition of(String id, XNode cache, Configuration configuration) {
+            TypeAliasRegistry typeAliasRegistry = configuration.getTypeAliasRegistry();
+            Class<? extends Cache> implementation = typeAliasRegistry.resolveAlias(cache.getStringAttribute("type", "PERPETUAL"));
+            Class<? extends Cache> eviction = typeAliasRegistry.resolveAlias(cache.getStringAttribute("eviction", "LRU"));
+            return new CacheDefinition(id, implementation, eviction, cache.getLongAttribute("flushInterval"),
+                    cache.getIntAttribute("size"), !cache.getBooleanAttribute("readOnly", false),
+                    cache.getBooleanAttribute("blocking", false), cache.getChildrenAsProperties());
+        }
+
+        /**
+         * Resolve the {@link CacheDefinition} from the {@link CacheNamespace @CacheNamespace} as
+         * {@link MapperAnnotationBuilder} does
+         */
+        private static CacheDefinition of(String id, CacheNamespace cacheNamespace, Configuration configuration) {
+            Properties properties = new Properties();
+            for (Property property : cacheNamespace.properties()) {
+                properties.setProperty(property.name(), PropertyParser.parse(property.value(), configuration.getVariables()));
+            }
+            return new CacheDefinition(id, cacheNamespace.implementation(), cacheNamespace.eviction(),
+                    cacheNamespace.flushInterval() == 0 ? null : cacheNamespace.flushInterval(),
+                    cacheNamespace.size() == 0 ? null : cacheNamespace.size(), cacheNamespace.readWrite(),
+                    cacheNamespace.blocking(), properties);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.builder;
+
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.builder.xml.XMLMapperEntityResolver;
+import org.apache.ibatis.parsing.XPathParser;
+import org.apache.ibatis.session.Configuration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.mybatis.builder.XMLBuilders.isXMLMapperBuilderAvailable;
+import static io.microsphere.mybatis.builder.XMLBuilders.newXMLMapperBuilder;
+import static io.microsphere.util.Assert.assertNotNull;
+import static java.lang.System.nanoTime;
+import static java.util.Collections.unmodifiableList;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * The parser of mapper XML resources, the XML documents are parsed in parallel, and then they are built into the
+ * {@link Configuration} one by one in the order of the resources, thus the result is as same as the sequential
+ * parsing, including the cross-file references of {@code resultMap}, {@code cache-ref} and {@code include}.
+ * <p>
+ * The {@link Timing timings} of resources are reported after parsing.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   ParallelMapperXMLParser parser = new ParallelMapperXMLParser();
+ *   List<ParallelMapperXMLParser.Timing> timings = parser.parse(configuration, userMapperURL, childMapperURL);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see XMLMapperBuilder
+ * @see XPathParser
+ * @since 1.0.0
+ */
+public class ParallelMapperXMLParser {
+
+    private static final Logger logger = getLogger(ParallelMapperXMLParser.class);
+
+    private final ExecutorService executorService;
+
+    /**
+     * Construct a {@link ParallelMapperXMLParser} parsing in the {@link ForkJoinPool#commonPool() common pool}
+     */
+    public ParallelMapperXMLParser() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construct a {@link ParallelMapperXMLParser}
+     *
+     * @param executorService the {@link ExecutorService} to parse the XML documents
+     */
+    public ParallelMapperXMLParser(ExecutorService executorService) {
+        assertNotNull(executorService, () -> "The 'executorService' argument must not be null");
+        this.executorService = executorService;
+    }
+
+    /**
+     * Parse the mapper XML resources into the specified {@link Configuration}
+     *
+     * @param configuration the {@link Configuration}
+     * @param mapperURLs    the {@link URL URLs} of mapper XML resources
+     * @return the unmodifiable {@link Timing timings} in the order of resources
+     * @throws BuilderException if the resources can't be parsed
+     */
+    public List<Timing> parse(Configuration configuration, URL... mapperURLs) throws BuilderException {
+        assertNotNull(configuration, () -> "The 'configuration' argument must not be null");
+        int length = mapperURLs.length;
+        List<Timing> timings = new ArrayList<>(length);
+        if (!isXMLMapperBuilderAvailable()) {
+            for (URL mapperURL : mapperURLs) {
+                timings.add(parseSequentially(configuration, mapperURL));
+            }
+        } else {
+            Properties variables = configuration.getVariables();
+            List<Future<XPathParser>> futures = new ArrayList<>(length);
+            for (URL mapperURL : mapperURLs) {
+                Timing timing = new Timing(mapperURL.toString());
+                timings.add(timing);
+                futures.add(executorService.submit(() -> parseDocument(mapperURL, variables, timing)));
+            }
+            for (int i = 0; i < length; i++) {
+                Timing timing = timings.get(i);
+                XPathParser parser = getParser(futures.get(i), timing.resource);
+                long startTime = nanoTime();
+                newXMLMapperBuilder(parser, configuration, timing.resource).parse();
+                timing.buildingTime = nanoTime() - startTime;
+            }
+        }
+        report(timings);
+        return unmodifiableList(timings);
+    }
+
+    private Timing parseSequentially(Configuration configuration, URL mapperURL) {
+        Timing timing = new Timing(mapperURL.toString());
+        long startTime = nanoTime();
+        try (InputStream inputStream = mapperURL.openStream()) {
+            new XMLMapperBuilder(inputStream, configuration, timing.resource, configuration.getSqlFragments()).parse();
+        } catch (IOException e) {
+            throw new BuilderException("Failed to parse the mapper resource : " + timing.resource, e);
+        }
+        timing.buildingTime = nanoTime() - startTime;
+        return timing;
+    }
+
+    private XPathParser parseDocument(URL mapperURL, Properties variables, Timing timing) throws IOException {
+        long startTime = nanoTime();
+        try (InputStream inputStream = mapperURL.openStream()) {
+            XPathParser parser = new XPathParser(inputStream, true, variables, new XMLMapperEntityResolver());
+            timing.parsingTime = nanoTime() - startTime;
+            return parser;
+        }
+    }
+
+    private XPathParser getParser(Future<XPathParser> future, String resource) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuilderException("The parsing of mapper resource was interrupted : " + resource, e);
+        } catch (ExecutionException e) {
+            throw new BuilderException("Failed to parse the mapper resource : " + resource, e.getCause());
+        }
+    }
+
+    private void report(List<Timing> timings) {
+        if (logger.isInfoEnabled()) {
+            long parsingTime = 0;
+            long buildingTime = 0;
+            StringBuilder report = new StringBuilder();
+            for (Timing timing : timings) {
+                parsingTime += timing.parsingTime;
+                buildingTime += timing.buildingTime;
+                report.append(System.lineSeparator()).append(timing);
+            }
+            logger.info("{} mapper resource(s) were parsed in {} ms and built in {} ms : {}", timings.size(),
+                    NANOSECONDS.toMillis(parsingTime), NANOSECONDS.toMillis(buildingTime), report);
+        }
+    }
+
+    /**
+     * The timing of a mapper resource
+     */
+    public static class Timing {
+
+        private final String resource;
+
+        private volatile long parsingTime;
+
+        private volatile long buildingTime;
+
+        Timing(String resource) {
+            this.resource = resource;
+        }
+
+        /**
+         * Get the mapper resource
+         *
+         * @return non-null
+         */
+        public String getResource() {
+            return resource;
+        }
+
+        /**
+         * Get the time of parsing the XML document in parallel, it's zero if the parsing is sequential
+         *
+         * @return the nanoseconds
+         */
+        public long getParsingTime() {
+            return parsingTime;
+        }
+
+        /**
+         * Get the time of building the document into the {@link Configuration}
+         *
+         * @return the nanoseconds
+         */
+        public long getBuildingTime() {
+            return buildingTime;
+        }
+
+        @Override
+        public String toString() {
+            return "Timing{" +
+                    "resource='" + resource + '\'' +
+                    ", parsingTime=" + parsingTime +
+                    ", buildingTime=" + buildingTime +
+                    '}';
+        }
+    }
+}
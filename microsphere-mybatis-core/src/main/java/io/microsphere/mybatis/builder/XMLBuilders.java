@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.builder;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.parsing.XPathParser;
+import org.apache.ibatis.session.Configuration;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.Properties;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+
+/**
+ * The utilities class for the MyBatis XML builders, which builds {@link XMLConfigBuilder} and {@link XMLMapperBuilder}
+ * from the parsed {@link XPathParser} via their private constructors.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see XMLConfigBuilder
+ * @see XMLMapperBuilder
+ * @since 1.0.0
+ */
+abstract class XMLBuilders {
+
+    private static final Logger logger = getLogger(XMLBuilders.class);
+
+    /**
+     * {@code XMLMapperBuilder(XPathParser, Configuration, String, Map)}
+     */
+    @Nullable
+    private static final Constructor<XMLMapperBuilder> XML_MAPPER_BUILDER_CONSTRUCTOR = findConstructor(XMLMapperBuilder.class,
+            XPathParser.class, Configuration.class, String.class, Map.class);
+
+    /**
+     * {@code XMLConfigBuilder(Class, XPathParser, String, Properties)} since MyBatis 3.5.13
+     */
+    @Nullable
+    private static final Constructor<XMLConfigBuilder> XML_CONFIG_BUILDER_CONSTRUCTOR = findConstructor(XMLConfigBuilder.class,
+            Class.class, XPathParser.class, String.class, Properties.class);
+
+    /**
+     * Is the {@link XMLMapperBuilder} able to be built from {@link XPathParser} or not
+     *
+     * @return <code>true</code> if available
+     */
+    static boolean isXMLMapperBuilderAvailable() {
+        return XML_MAPPER_BUILDER_CONSTRUCTOR != null;
+    }
+
+    /**
+     * Is the {@link XMLConfigBuilder} able to be built from {@link XPathParser} or not
+     *
+     * @return <code>true</code> if available
+     */
+    static boolean isXMLConfigBuilderAvailable() {
+        return XML_CONFIG_BUILDER_CONSTRUCTOR != null;
+    }
+
+    /**
+     * Create a {@link XMLMapperBuilder} from the parsed {@link XPathParser}
+     *
+     * @param parser        the parsed {@link XPathParser}
+     * @param configuration {@link Configuration}
+     * @param resource      the mapper resource
+     * @return non-null
+     * @throws BuilderException if failed
+     */
+    static XMLMapperBuilder newXMLMapperBuilder(XPathParser parser, Configuration configuration, String resource) throws BuilderException {
+        return newInstance(XML_MAPPER_BUILDER_CONSTRUCTOR, resource, parser, configuration, resource, configuration.getSqlFragments());
+    }
+
+    /**
+     * Create a {@link XMLConfigBuilder} from the parsed {@link XPathParser}
+     *
+     * @param parser      the parsed {@link XPathParser}
+     * @param environment the id of environment, or <code>null</code> indicates the default
+     * @param properties  the {@link Properties}, or <code>null</code>
+     * @return non-null
+     * @throws BuilderException if failed
+     */
+    static XMLConfigBuilder newXMLConfigBuilder(XPathParser parser, @Nullable String environment, @Nullable Properties properties)
+            throws BuilderException {
+        return newInstance(XML_CONFIG_BUILDER_CONSTRUCTOR, "configuration", Configuration.class, parser, environment, properties);
+    }
+
+    private static <T> T newInstance(@Nullable Constructor<T> constructor, String resource, Object... args) {
+        if (constructor == null) {
+            throw new BuilderException("The builder can't be created from the parsed document : " + resource);
+        }
+        try {
+            return constructor.newInstance(args);
+        } catch (InvocationTargetException e) {
+            throw new BuilderException("Failed to build the resource : " + resource, e.getTargetException());
+        } catch (ReflectiveOperationException e) {
+            throw new BuilderException("Failed to build the resource : " + resource, e);
+        }
+    }
+
+    @Nullable
+    private static <T> Constructor<T> findConstructor(Class<T> type, Class<?>... parameterTypes) {
+        try {
+            Constructor<T> constructor = type.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("The constructor of {} can't be accessed, caused by : {}", type.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private XMLBuilders() {
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.datasource;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.text.FormatUtils.format;
+
+/**
+ * The abstract {@link ConnectionPoolAdapter} for the pool class resolved by its name, the pool is sampled
+ * reflectively, thus the pool library is not required at compile time. The {@link DataSource} wrapping the pool(e.g.
+ * the Spring proxies) is {@link DataSource#unwrap(Class) unwrapped}.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   public class MyConnectionPoolAdapter extends AbstractConnectionPoolAdapter {
+ *
+ *       public MyConnectionPoolAdapter() {
+ *           super("com.acme.MyPooledDataSource");
+ *       }
+ *
+ *       protected ConnectionPoolStats getStats(Object pool) throws SQLException {
+ *           return new ConnectionPoolStats(invoke(pool, "getActive"), invoke(pool, "getIdle"),
+ *                   invoke(pool, "getWaiting"), invoke(pool, "getMaxSize"));
+ *       }
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ConnectionPoolAdapter
+ * @since 1.0.0
+ */
+public abstract class AbstractConnectionPoolAdapter implements ConnectionPoolAdapter {
+
+    private static final Logger logger = getLogger(AbstractConnectionPoolAdapter.class);
+
+    private final String poolClassName;
+
+    /**
+     * @param poolClassName the name of the pool class implementing {@link DataSource}
+     */
+    protected AbstractConnectionPoolAdapter(String poolClassName) {
+        this.poolClassName = poolClassName;
+    }
+
+    @Override
+    public boolean supports(DataSource dataSource) {
+        return unwrap(dataSource) != null;
+    }
+
+    @Override
+    public ConnectionPoolStats getStats(DataSource dataSource) throws SQLException {
+        Object pool = unwrap(dataSource);
+        return pool == null ? null : getStats(pool);
+    }
+
+    /**
+     * Get the current {@link ConnectionPoolStats statistics} of the pool
+     *
+     * @param pool the instance of the pool class
+     * @return <code>null</code> if the pool is not available
+     * @throws SQLException if the statistics can't be sampled
+     */
+    @Nullable
+    protected abstract ConnectionPoolStats getStats(Object pool) throws SQLException;
+
+    /**
+     * Get the name of the pool class
+     *
+     * @return non-null
+     */
+    public String getPoolClassName() {
+        return this.poolClassName;
+    }
+
+    @Nullable
+    Object unwrap(DataSource dataSource) {
+        Class<?> type = dataSource.getClass();
+        while (type != null) {
+            if (this.poolClassName.equals(type.getName())) {
+                return dataSource;
+            }
+            type = type.getSuperclass();
+        }
+        try {
+            Class<?> poolClass = Class.forName(this.poolClassName, false, dataSource.getClass().getClassLoader());
+            if (dataSource.isWrapperFor(poolClass)) {
+                return dataSource.unwrap(poolClass);
+            }
+        } catch (ClassNotFoundException | LinkageError e) {
+            // The pool library is absent
+        } catch (SQLException e) {
+            logger.trace("The DataSource[{}] can't be unwrapped to '{}'", dataSource, this.poolClassName, e);
+        }
+        return null;
+    }
+
+    /**
+     * Invoke the public no-argument method returning the number
+     *
+     * @param target     the target object
+     * @param methodName the name of method
+     * @return the int value of the result, or <code>-1</code> if the result is <code>null</code>
+     * @throws SQLException if the method can't be invoked
+     */
+    protected static int invoke(Object target, String methodName) throws SQLException {
+        Object value = invokeMethod(target, methodName);
+        return value instanceof Number number ? number.intValue() : -1;
+    }
+
+    /**
+     * Invoke the public no-argument method
+     *
+     * @param target     the target object
+     * @param methodName the name of method
+     * @return the result
+     * @throws SQLException if the method can't be invoked
+     */
+    @Nullable
+    protected static Object invokeMethod(Object target, String methodName) throws SQLException {
+        try {
+            return target.getClass().getMethod(methodName).invoke(target);
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException(format("The method['{}'] of {} can't be invoked", methodName, target), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{poolClassName='" + this.poolClassName + "'}";
+    }
+}
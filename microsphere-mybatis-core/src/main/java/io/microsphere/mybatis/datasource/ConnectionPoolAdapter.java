@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.datasource;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.lang.Prioritized;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * The adapter SPI of the connection pool, which samples the {@link ConnectionPoolStats statistics} of the pooled
+ * {@link DataSource}. The implementations are loaded from "META-INF/services" files and sorted by
+ * {@link Prioritized priority}, the first one {@link #supports(DataSource) supporting} the {@link DataSource} wins.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   public class MyConnectionPoolAdapter implements ConnectionPoolAdapter {
+ *
+ *       public boolean supports(DataSource dataSource) {
+ *           return dataSource instanceof MyPooledDataSource;
+ *       }
+ *
+ *       public ConnectionPoolStats getStats(DataSource dataSource) {
+ *           MyPooledDataSource pool = (MyPooledDataSource) dataSource;
+ *           return new ConnectionPoolStats(pool.getActive(), pool.getIdle(), pool.getWaiting(), pool.getMaxSize());
+ *       }
+ *   }
+ *
+ *   // META-INF/services/io.microsphere.mybatis.datasource.ConnectionPoolAdapter :
+ *   // com.acme.MyConnectionPoolAdapter
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ConnectionPoolStats
+ * @see HikariConnectionPoolAdapter
+ * @see DruidConnectionPoolAdapter
+ * @since 1.0.0
+ */
+public interface ConnectionPoolAdapter extends Prioritized {
+
+    /**
+     * Supports the {@link DataSource} or not
+     *
+     * @param dataSource {@link DataSource}
+     * @return <code>true</code> if supports
+     */
+    boolean supports(DataSource dataSource);
+
+    /**
+     * Get the current {@link ConnectionPoolStats statistics} of the pooled {@link DataSource}
+     *
+     * @param dataSource the {@link #supports(DataSource) supported} {@link DataSource}
+     * @return <code>null</code> if the pool is not available, e.g. not started yet
+     * @throws SQLException if the statistics can't be sampled
+     */
+    @Nullable
+    ConnectionPoolStats getStats(DataSource dataSource) throws SQLException;
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.datasource;
+
+/**
+ * The statistics of the connection pool at a point in time
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   ConnectionPoolStats stats = adapter.getStats(dataSource);
+ *   if (stats.getWaiting() > 0) {
+ *       // the pool is saturated
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ConnectionPoolAdapter
+ * @since 1.0.0
+ */
+public class ConnectionPoolStats {
+
+    private final int active;
+
+    private final int idle;
+
+    private final int waiting;
+
+    private final int maxSize;
+
+    /**
+     * @param active  the count of the active(borrowed) connections
+     * @param idle    the count of the idle connections
+     * @param waiting the count of the threads waiting for a connection
+     * @param maxSize the max size of the pool, or negative if unknown
+     */
+    public ConnectionPoolStats(int active, int idle, int waiting, int maxSize) {
+        this.active = active;
+        this.idle = idle;
+        this.waiting = waiting;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the count of the active(borrowed) connections
+     *
+     * @return non-negative
+     */
+    public int getActive() {
+        return this.active;
+    }
+
+    /**
+     * Get the count of the idle connections
+     *
+     * @return non-negative
+     */
+    public int getIdle() {
+        return this.idle;
+    }
+
+    /**
+     * Get the count of the threads waiting for a connection
+     *
+     * @return non-negative
+     */
+    public int getWaiting() {
+        return this.waiting;
+    }
+
+    /**
+     * Get the max size of the pool
+     *
+     * @return negative if unknown
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolStats{" +
+                "active=" + this.active +
+                ", idle=" + this.idle +
+                ", waiting=" + this.waiting +
+                ", maxSize=" + this.maxSize +
+                '}';
+    }
+}
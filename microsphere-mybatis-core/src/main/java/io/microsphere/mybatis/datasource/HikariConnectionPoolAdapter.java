@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.datasource;
+
+import java.sql.SQLException;
+
+/**
+ * The {@link ConnectionPoolAdapter} for HikariCP, the statistics are sampled from the "HikariPoolMXBean", which is
+ * absent before the pool is started.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   ConnectionPoolAdapter adapter = new HikariConnectionPoolAdapter();
+ *   if (adapter.supports(dataSource)) {
+ *       ConnectionPoolStats stats = adapter.getStats(dataSource);
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ConnectionPoolAdapter
+ * @since 1.0.0
+ */
+public class HikariConnectionPoolAdapter extends AbstractConnectionPoolAdapter {
+
+    /**
+     * The class name of HikariCP DataSource
+     */
+    public static final String HIKARI_DATA_SOURCE_CLASS_NAME = "com.zaxxer.hikari.HikariDataSource";
+
+    public HikariConnectionPoolAdapter() {
+        super(HIKARI_DATA_SOURCE_CLASS_NAME);
+    }
+
+    @Override
+    protected ConnectionPoolStats getStats(Object pool) throws SQLException {
+        Object poolMXBean = invokeMethod(pool, "getHikariPoolMXBean");
+        if (poolMXBean == null) {
+            return null;
+        }
+        return new ConnectionPoolStats(invoke(poolMXBean, "getActiveConnections"),
+                invoke(poolMXBean, "getIdleConnections"),
+                invoke(poolMXBean, "getThreadsAwaitingConnection"),
+                invoke(pool, "getMaximumPoolSize"));
+    }
+}
@@ -0,0 +1,493 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.text.FormatUtils.format;
+import static io.microsphere.util.Assert.assertTrue;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+import static java.lang.System.nanoTime;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * {@link ExecutorFilter} limits the concurrent queries and updates per {@link DataSource} adaptively, which learns the
+ * latency of the database under load and sheds the excess executions before the queues build up in the connection
+ * pool or the database.
+ * <p>
+ * The {@link Limiter limit} of a {@link DataSource} is adjusted by the gradient of the latencies, which is inspired by
+ * the "Gradient2" limit of Netflix concurrency-limits : the long-term latency is the exponential moving average of
+ * the samples, if the latency of the sample is more than {@link #getTolerance() the tolerance} of the long-term one,
+ * the limit decreases in proportion, otherwise it increases by the square root of the limit. The limit decreases by
+ * {@link #getBackoffRatio() the backoff ratio} multiplicatively if the execution timed out, and it is not increased
+ * if the executions in flight are less than the half of the limit. The executions above the limit are rejected by
+ * {@link StatementRejectedException} immediately.
+ * <p>
+ * The {@link DataSource} of an execution is the one of the {@link Environment} by default, the subclass may
+ * {@link #resolveDataSource(MappedStatement, ExecutorFilterChain) resolve} the routed one.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   AdaptiveConcurrencyExecutorFilter filter = new AdaptiveConcurrencyExecutorFilter()
+ *       .setInitialLimit(20)
+ *       .setMaxLimit(100);
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[]{filter}));
+ *
+ *   Limiter limiter = filter.getLimiter(dataSource);
+ *   gauge("db.limit", limiter::getLimit);
+ *   gauge("db.in-flight", limiter::getInFlight);
+ *   counter("db.rejected", limiter::getRejectedCount);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see Limiter
+ * @see StatementRejectedException
+ * @see ExecutorFilter
+ * @since 1.0.0
+ */
+public class AdaptiveConcurrencyExecutorFilter implements ExecutorFilter {
+
+    private static final Logger logger = getLogger(AdaptiveConcurrencyExecutorFilter.class);
+
+    /**
+     * The default initial limit of a {@link DataSource}
+     */
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+    /**
+     * The default min limit of a {@link DataSource}
+     */
+    public static final int DEFAULT_MIN_LIMIT = 1;
+
+    /**
+     * The default max limit of a {@link DataSource}
+     */
+    public static final int DEFAULT_MAX_LIMIT = 200;
+
+    /**
+     * The default tolerance of the latency of a sample to the long-term one
+     */
+    public static final double DEFAULT_TOLERANCE = 1.5;
+
+    /**
+     * The default ratio of the limit decreasing when the execution timed out
+     */
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+    /**
+     * The default smoothing factor of the new limit
+     */
+    public static final double DEFAULT_SMOOTHING = 0.2;
+
+    /**
+     * The default count of the samples in the window of the long-term latency
+     */
+    public static final int DEFAULT_LONG_WINDOW = 600;
+
+    private final Map<DataSource, Limiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link Limiter} whose permit is held by the current thread
+     */
+    private final ThreadLocal<Limiter> currentLimiter = new ThreadLocal<>();
+
+    private volatile int initialLimit = DEFAULT_INITIAL_LIMIT;
+
+    private volatile int minLimit = DEFAULT_MIN_LIMIT;
+
+    private volatile int maxLimit = DEFAULT_MAX_LIMIT;
+
+    private volatile double tolerance = DEFAULT_TOLERANCE;
+
+    private volatile double backoffRatio = DEFAULT_BACKOFF_RATIO;
+
+    private volatile double smoothing = DEFAULT_SMOOTHING;
+
+    private volatile int longWindow = DEFAULT_LONG_WINDOW;
+
+    @Override
+    public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.update(ms, parameter));
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql));
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.query(ms, parameter, rowBounds, resultHandler));
+    }
+
+    <R> R execute(MappedStatement ms, ExecutorFilterChain chain, Execution<R> execution) throws SQLException {
+        Limiter previous = this.currentLimiter.get();
+        DataSource dataSource = previous == null ? resolveDataSource(ms, chain) : null;
+        if (dataSource == null) {
+            // The nested execution shares the permit of the outer one
+            return execution.execute(chain);
+        }
+        Limiter limiter = getOrCreateLimiter(dataSource);
+        int inFlight = limiter.acquire(ms.getId());
+        this.currentLimiter.set(limiter);
+        long startTime = nanoTime();
+        boolean didDrop = false;
+        try {
+            R result = execution.execute(chain);
+            limiter.onSample(nanoTime() - startTime, inFlight, false);
+            return result;
+        } catch (SQLTimeoutException | SQLTransientConnectionException e) {
+            didDrop = true;
+            throw e;
+        } finally {
+            if (didDrop) {
+                limiter.onSample(nanoTime() - startTime, inFlight, true);
+            }
+            this.currentLimiter.remove();
+            limiter.release();
+        }
+    }
+
+    /**
+     * Resolve the target {@link DataSource} of {@link MappedStatement}
+     *
+     * @param ms    {@link MappedStatement}
+     * @param chain {@link ExecutorFilterChain}
+     * @return <code>null</code> if the execution should not be limited
+     */
+    @Nullable
+    protected DataSource resolveDataSource(MappedStatement ms, ExecutorFilterChain chain) {
+        Environment environment = ms.getConfiguration().getEnvironment();
+        return environment == null ? null : environment.getDataSource();
+    }
+
+    Limiter getOrCreateLimiter(DataSource dataSource) {
+        return this.limiters.computeIfAbsent(dataSource, Limiter::new);
+    }
+
+    /**
+     * Get the {@link Limiter} of {@link DataSource}
+     *
+     * @param dataSource {@link DataSource}
+     * @return <code>null</code> if no execution on the {@link DataSource}
+     */
+    @Nullable
+    public Limiter getLimiter(DataSource dataSource) {
+        return this.limiters.get(dataSource);
+    }
+
+    /**
+     * Get all {@link Limiter limiters} keyed by {@link DataSource}
+     *
+     * @return non-null read-only {@link Map}
+     */
+    public Map<DataSource, Limiter> getLimiters() {
+        return unmodifiableMap(this.limiters);
+    }
+
+    /**
+     * Set the initial limit of the {@link DataSource} executed at the first time
+     *
+     * @param initialLimit the initial limit
+     * @return {@link AdaptiveConcurrencyExecutorFilter}
+     */
+    public AdaptiveConcurrencyExecutorFilter setInitialLimit(int initialLimit) {
+        assertTrue(initialLimit > 0, () -> "The 'initialLimit' must be positive!");
+        this.initialLimit = initialLimit;
+        return this;
+    }
+
+    /**
+     * Set the min limit of a {@link DataSource}
+     *
+     * @param minLimit the min limit
+     * @return {@link AdaptiveConcurrencyExecutorFilter}
+     */
+    public AdaptiveConcurrencyExecutorFilter setMinLimit(int minLimit) {
+        assertTrue(minLimit > 0, () -> "The 'minLimit' must be positive!");
+        this.minLimit = minLimit;
+        return this;
+    }
+
+    /**
+     * Set the max limit of a {@link DataSource}
+     *
+     * @param maxLimit the max limit
+     * @return {@link AdaptiveConcurrencyExecutorFilter}
+     */
+    public AdaptiveConcurrencyExecutorFilter setMaxLimit(int maxLimit) {
+        assertTrue(maxLimit > 0, () -> "The 'maxLimit' must be positive!");
+        this.maxLimit = maxLimit;
+        return this;
+    }
+
+    /**
+     * Set the tolerance of the latency of a sample to the long-term one, the limit decreases if the sample's latency
+     * exceeds it
+     *
+     * @param tolerance the tolerance that must be not less than 1
+     * @return {@link AdaptiveConcurrencyExecutorFilter}
+     */
+    public AdaptiveConcurrencyExecutorFilter setTolerance(double tolerance) {
+        assertTrue(tolerance >= 1, () -> "The 'tolerance' must not be less than 1!");
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Set the ratio of the limit decreasing when the execution timed out
+     *
+     * @param backoffRatio the ratio in the range of [0.5, 1)
+     * @return {@link AdaptiveConcurrencyExecutorFilter}
+     */
+    public AdaptiveConcurrencyExecutorFilter setBackoffRatio(double backoffRatio) {
+        assertTrue(backoffRatio >= 0.5 && backoffRatio < 1, () -> "The 'backoffRatio' must be in the range of [0.5, 1)!");
+        this.backoffRatio = backoffRatio;
+        return this;
+    }
+
+    /**
+     * Set the smoothing factor of the new limit
+     *
+     * @param smoothing the factor in the range of (0, 1]
+     * @return {@link AdaptiveConcurrencyExecutorFilter}
+     */
+    public AdaptiveConcurrencyExecutorFilter setSmoothing(double smoothing) {
+        assertTrue(smoothing > 0 && smoothing <= 1, () -> "The 'smoothing' must be in the range of (0, 1]!");
+        this.smoothing = smoothing;
+        return this;
+    }
+
+    /**
+     * Set the count of the samples in the window of the long-term latency
+     *
+     * @param longWindow the count of the samples
+     * @return {@link AdaptiveConcurrencyExecutorFilter}
+     */
+    public AdaptiveConcurrencyExecutorFilter setLongWindow(int longWindow) {
+        assertTrue(longWindow > 0, () -> "The 'longWindow' must be positive!");
+        this.longWindow = longWindow;
+        return this;
+    }
+
+    public int getInitialLimit() {
+        return this.initialLimit;
+    }
+
+    public int getMinLimit() {
+        return this.minLimit;
+    }
+
+    public int getMaxLimit() {
+        return this.maxLimit;
+    }
+
+    public double getTolerance() {
+        return this.tolerance;
+    }
+
+    public double getBackoffRatio() {
+        return this.backoffRatio;
+    }
+
+    public double getSmoothing() {
+        return this.smoothing;
+    }
+
+    public int getLongWindow() {
+        return this.longWindow;
+    }
+
+    /**
+     * The adaptive limiter of the concurrent executions on a {@link DataSource}
+     */
+    public class Limiter {
+
+        private final DataSource dataSource;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final LongAdder rejectedCount = new LongAdder();
+
+        private volatile double limit;
+
+        /**
+         * The exponential moving average of the latencies in nanoseconds
+         */
+        private volatile double longRtt;
+
+        /**
+         * The latency of the last sample in nanoseconds
+         */
+        private volatile long shortRtt;
+
+        Limiter(DataSource dataSource) {
+            this.dataSource = dataSource;
+            this.limit = initialLimit;
+        }
+
+        /**
+         * Acquire the permit
+         *
+         * @param statementId the id of the executing statement
+         * @return the count of the executions in flight including the current one
+         * @throws StatementRejectedException if the executions in flight reach the limit
+         */
+        int acquire(String statementId) throws StatementRejectedException {
+            int inFlight = this.inFlight.incrementAndGet();
+            if (inFlight > getLimit()) {
+                this.inFlight.decrementAndGet();
+                this.rejectedCount.increment();
+                String message = format("The execution of the statement['{}'] is rejected by the adaptive concurrency limiter : {}",
+                        statementId, this);
+                logger.trace(message);
+                throw new StatementRejectedException(message, statementId);
+            }
+            return inFlight;
+        }
+
+        void release() {
+            this.inFlight.decrementAndGet();
+        }
+
+        /**
+         * Adjust the limit by the sample
+         *
+         * @param rtt      the latency of the sample in nanoseconds
+         * @param inFlight the executions in flight when the sample started
+         * @param didDrop  the sample timed out or not
+         */
+        synchronized void onSample(long rtt, int inFlight, boolean didDrop) {
+            double limit = this.limit;
+            double newLimit;
+            if (didDrop) {
+                newLimit = limit * backoffRatio;
+            } else {
+                rtt = max(rtt, 1);
+                double longRtt = this.longRtt;
+                longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) / longWindow;
+                if (longRtt / rtt > 2) {
+                    // The latency recovered, the long-term one decays faster
+                    longRtt *= 0.95;
+                }
+                this.longRtt = longRtt;
+                this.shortRtt = rtt;
+                if (inFlight * 2 < limit) {
+                    // The executions are not limited by the limit, it should not grow
+                    return;
+                }
+                double gradient = max(0.5, min(1.0, tolerance * longRtt / rtt));
+                newLimit = limit * gradient + sqrt(limit);
+                newLimit = limit * (1 - smoothing) + newLimit * smoothing;
+            }
+            newLimit = max(minLimit, min(maxLimit, newLimit));
+            if ((int) newLimit != (int) limit) {
+                logger.trace("The limit of the DataSource[{}] is changed : {} -> {}", this.dataSource, (int) limit,
+                        (int) newLimit);
+            }
+            this.limit = newLimit;
+        }
+
+        /**
+         * Get the {@link DataSource}
+         *
+         * @return non-null
+         */
+        public DataSource getDataSource() {
+            return this.dataSource;
+        }
+
+        /**
+         * Get the current limit of the concurrent executions
+         *
+         * @return positive
+         */
+        public int getLimit() {
+            return (int) this.limit;
+        }
+
+        /**
+         * Get the count of the executions in flight
+         *
+         * @return non-negative
+         */
+        public int getInFlight() {
+            return this.inFlight.get();
+        }
+
+        /**
+         * Get the count of the rejected executions
+         *
+         * @return non-negative
+         */
+        public long getRejectedCount() {
+            return this.rejectedCount.sum();
+        }
+
+        /**
+         * Get the long-term latency in nanoseconds
+         *
+         * @return <code>0</code> if no sample
+         */
+        public long getLongRtt() {
+            return (long) this.longRtt;
+        }
+
+        /**
+         * Get the latency of the last sample in nanoseconds
+         *
+         * @return <code>0</code> if no sample
+         */
+        public long getShortRtt() {
+            return this.shortRtt;
+        }
+
+        @Override
+        public String toString() {
+            return "Limiter{" +
+                    "dataSource=" + dataSource +
+                    ", limit=" + getLimit() +
+                    ", inFlight=" + getInFlight() +
+                    ", rejectedCount=" + getRejectedCount() +
+                    ", longRtt=" + getLongRtt() +
+                    ", shortRtt=" + getShortRtt() +
+                    '}';
+        }
+    }
+}
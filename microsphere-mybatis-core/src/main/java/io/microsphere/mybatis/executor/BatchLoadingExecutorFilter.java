@@ -0,0 +1,399 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.util.Assert.assertTrue;
+import static io.microsphere.util.StringUtils.isBlank;
+import static org.apache.ibatis.executor.Executor.NO_RESULT_HANDLER;
+import static org.apache.ibatis.reflection.ParamNameResolver.wrapToMapIfCollection;
+import static org.apache.ibatis.session.RowBounds.DEFAULT;
+
+/**
+ * {@link ExecutorFilter} batches the nested selects of the associations/collections into one {@code IN (...)} query
+ * in the DataLoader style, which eliminates the "N+1 selects" problem of lazy loading.
+ * <p>
+ * When the parent rows are mapped, MyBatis calls
+ * {@link Executor#createCacheKey(MappedStatement, Object, RowBounds, BoundSql)} for every nested select, those
+ * parameters are collected as the pending keys of the current session. The first time one of them is really loaded,
+ * all pending keys are resolved by the registered batch statement at once, the results are grouped by the key property
+ * and distributed to the subsequent loads(including {@link Executor#deferLoad(MappedStatement, MetaObject, String, CacheKey, Class) deferred loads})
+ * of the same session without any round-trip.
+ * <p>
+ * The batch statement must accept a {@link List} of the keys, e.g :
+ * <pre>{@code
+ *   <select id="selectByIds" resultMap="FatherMap">
+ *       SELECT id, name FROM father WHERE id IN
+ *       <foreach collection="list" item="id" open="(" separator="," close=")">#{id}</foreach>
+ *   </select>
+ * }</pre>
+ * <p>
+ * Note : The batching takes effect on the lazy loading({@link Configuration#isLazyLoadingEnabled()} or
+ * {@code fetchType="lazy"}), because the eager nested selects are executed row by row, and it requires the nested
+ * selects to flow through the {@link InterceptingExecutor} ({@link Configuration#isCacheEnabled()} is {@code true} as
+ * default).
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   BatchLoadingExecutorFilter filter = new BatchLoadingExecutorFilter()
+ *       .register("com.acme.FatherMapper.selectById", "com.acme.FatherMapper.selectByIds", "id");
+ *   InterceptingExecutorInterceptor interceptor =
+ *       new InterceptingExecutorInterceptor(new ExecutorFilter[]{filter});
+ *   configuration.addInterceptor(interceptor);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ExecutorFilter
+ * @see Executor#createCacheKey(MappedStatement, Object, RowBounds, BoundSql)
+ * @see Executor#deferLoad(MappedStatement, MetaObject, String, CacheKey, Class)
+ * @since 1.0.0
+ */
+public class BatchLoadingExecutorFilter implements ExecutorFilter {
+
+    private static final Logger logger = getLogger(BatchLoadingExecutorFilter.class);
+
+    /**
+     * The default max size of keys in one batch
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+    /**
+     * The {@link BatchLoad} definitions keyed by the id of nested {@link MappedStatement}
+     */
+    private final Map<String, BatchLoad> batchLoads = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link LoadingContext} keyed by the {@link Transaction} of session
+     */
+    private final Map<Transaction, LoadingContext> loadingContexts = new ConcurrentHashMap<>();
+
+    private final LongAdder batchCount = new LongAdder();
+
+    private final LongAdder batchedLoadCount = new LongAdder();
+
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    /**
+     * Register the batch statement for the nested select
+     *
+     * @param statementId      the id of nested select {@link MappedStatement}, e.g : "FatherMapper.selectById"
+     * @param batchStatementId the id of batch {@link MappedStatement} accepting a {@link List} of keys,
+     *                         e.g : "FatherMapper.selectByIds"
+     * @param keyProperty      the property of the batch result that matches the key, e.g : "id"
+     * @return {@link BatchLoadingExecutorFilter}
+     */
+    public BatchLoadingExecutorFilter register(String statementId, String batchStatementId, String keyProperty) {
+        assertTrue(!isBlank(statementId), () -> "The 'statementId' must not be blank!");
+        assertTrue(!isBlank(batchStatementId), () -> "The 'batchStatementId' must not be blank!");
+        assertTrue(!isBlank(keyProperty), () -> "The 'keyProperty' must not be blank!");
+        this.batchLoads.put(statementId, new BatchLoad(batchStatementId, keyProperty));
+        return this;
+    }
+
+    /**
+     * Set the max size of keys in one batch, the pending keys exceeding it will be split into multiple batches.
+     *
+     * @param maxBatchSize the max size of keys in one batch
+     * @return {@link BatchLoadingExecutorFilter}
+     */
+    public BatchLoadingExecutorFilter setMaxBatchSize(int maxBatchSize) {
+        assertTrue(maxBatchSize > 0, () -> "The 'maxBatchSize' must be positive!");
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    @Override
+    public CacheKey createCacheKey(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql,
+                                   ExecutorFilterChain chain) {
+        if (isBatchable(ms, parameter)) {
+            LoadingContext context = getLoadingContext(chain, true);
+            if (context != null) {
+                context.addPendingKey(ms.getId(), parameter);
+            }
+        }
+        return chain.createCacheKey(ms, parameter, rowBounds, boundSql);
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        List<E> result = load(ms, parameter, rowBounds, resultHandler, chain);
+        return result == null ? chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql) : result;
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        List<E> result = load(ms, parameter, rowBounds, resultHandler, chain);
+        return result == null ? chain.query(ms, parameter, rowBounds, resultHandler) : result;
+    }
+
+    @Override
+    public void deferLoad(MappedStatement ms, MetaObject resultObject, String property, CacheKey key, Class<?> targetType,
+                          ExecutorFilterChain chain) {
+        // The deferred load only reads the local cache, so the batch results of the session are not required
+        chain.deferLoad(ms, resultObject, property, key, targetType);
+    }
+
+    @Override
+    public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+        reset(chain);
+        return chain.update(ms, parameter);
+    }
+
+    @Override
+    public void commit(boolean required, ExecutorFilterChain chain) throws SQLException {
+        reset(chain);
+        chain.commit(required);
+    }
+
+    @Override
+    public void rollback(boolean required, ExecutorFilterChain chain) throws SQLException {
+        reset(chain);
+        chain.rollback(required);
+    }
+
+    @Override
+    public void close(boolean forceRollback, ExecutorFilterChain chain) {
+        Transaction transaction = getTransaction(chain);
+        if (transaction != null) {
+            this.loadingContexts.remove(transaction);
+        }
+        chain.close(forceRollback);
+    }
+
+    /**
+     * Get the count of the executed batches
+     *
+     * @return non-negative
+     */
+    public long getBatchCount() {
+        return this.batchCount.sum();
+    }
+
+    /**
+     * Get the count of the loads resolved by the batches
+     *
+     * @return non-negative
+     */
+    public long getBatchedLoadCount() {
+        return this.batchedLoadCount.sum();
+    }
+
+    /**
+     * Get the max size of keys in one batch
+     *
+     * @return positive integer
+     */
+    public int getMaxBatchSize() {
+        return this.maxBatchSize;
+    }
+
+    <E> List<E> load(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                     ExecutorFilterChain chain) throws SQLException {
+        if (resultHandler != NO_RESULT_HANDLER || !DEFAULT.equals(rowBounds) || !isBatchable(ms, parameter)) {
+            return null;
+        }
+        LoadingContext context = getLoadingContext(chain, false);
+        if (context == null) {
+            return null;
+        }
+        String statementId = ms.getId();
+        List<Object> loaded = context.getLoaded(statementId, parameter);
+        if (loaded == null) {
+            Set<Object> pendingKeys = context.removePendingKeys(statementId);
+            pendingKeys.add(parameter);
+            if (pendingKeys.size() < 2) {
+                // No other key could be batched, the single key is loaded normally
+                return null;
+            }
+            batchLoad(ms, pendingKeys, context, chain);
+            loaded = context.getLoaded(statementId, parameter);
+        }
+        this.batchedLoadCount.increment();
+        return loaded == null ? new ArrayList<>() : (List<E>) new ArrayList<>(loaded);
+    }
+
+    void batchLoad(MappedStatement ms, Collection<Object> keys, LoadingContext context, ExecutorFilterChain chain)
+            throws SQLException {
+        String statementId = ms.getId();
+        BatchLoad batchLoad = this.batchLoads.get(statementId);
+        Configuration configuration = ms.getConfiguration();
+        MappedStatement batchMs = configuration.getMappedStatement(batchLoad.batchStatementId);
+        Executor executor = chain.getExecutor();
+        int maxBatchSize = this.maxBatchSize;
+
+        List<Object> batchKeys = new ArrayList<>(Math.min(keys.size(), maxBatchSize));
+        for (Object key : keys) {
+            batchKeys.add(key);
+            if (batchKeys.size() == maxBatchSize) {
+                executeBatch(executor, configuration, batchMs, batchLoad, batchKeys, statementId, context);
+                batchKeys = new ArrayList<>(maxBatchSize);
+            }
+        }
+        if (!batchKeys.isEmpty()) {
+            executeBatch(executor, configuration, batchMs, batchLoad, batchKeys, statementId, context);
+        }
+    }
+
+    private void executeBatch(Executor executor, Configuration configuration, MappedStatement batchMs,
+                              BatchLoad batchLoad, List<Object> keys, String statementId, LoadingContext context)
+            throws SQLException {
+        List<Object> results = executor.query(batchMs, wrapToMapIfCollection(keys, null), DEFAULT, NO_RESULT_HANDLER);
+        this.batchCount.increment();
+        logger.trace("The batch statement['{}'] loaded {} result(s) for the keys : {}", batchMs.getId(),
+                results.size(), keys);
+        // all keys are loaded, even if no result was matched
+        for (Object key : keys) {
+            context.putLoaded(statementId, key, new ArrayList<>());
+        }
+        for (Object result : results) {
+            MetaObject metaObject = configuration.newMetaObject(result);
+            Object key = metaObject.getValue(batchLoad.keyProperty);
+            List<Object> loaded = context.getLoaded(statementId, key);
+            if (loaded != null) {
+                loaded.add(result);
+            }
+        }
+    }
+
+    private boolean isBatchable(MappedStatement ms, Object parameter) {
+        return parameter != null && !(parameter instanceof Map) && ms != null && this.batchLoads.containsKey(ms.getId());
+    }
+
+    private void reset(ExecutorFilterChain chain) {
+        LoadingContext context = getLoadingContext(chain, false);
+        if (context != null) {
+            context.clear();
+        }
+    }
+
+    private LoadingContext getLoadingContext(ExecutorFilterChain chain, boolean create) {
+        Transaction transaction = getTransaction(chain);
+        if (transaction == null) {
+            return null;
+        }
+        return create ? this.loadingContexts.computeIfAbsent(transaction, t -> new LoadingContext()) :
+                this.loadingContexts.get(transaction);
+    }
+
+    private Transaction getTransaction(ExecutorFilterChain chain) {
+        Executor executor = chain.getExecutor();
+        return executor.isClosed() ? null : executor.getTransaction();
+    }
+
+    /**
+     * Normalize the key, so that the integral keys of the different types(e.g : Integer and Long) are equal.
+     *
+     * @param key the key of parameter or batch result
+     * @return the normalized key
+     */
+    static Object normalizeKey(Object key) {
+        if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte) {
+            return ((Number) key).longValue();
+        }
+        if (key instanceof BigInteger bigInteger && bigInteger.bitLength() < 64) {
+            return bigInteger.longValue();
+        }
+        if (key instanceof BigDecimal bigDecimal) {
+            BigDecimal stripped = bigDecimal.stripTrailingZeros();
+            if (stripped.scale() <= 0 && stripped.precision() - stripped.scale() < 19) {
+                return stripped.longValue();
+            }
+            return stripped;
+        }
+        return key;
+    }
+
+    /**
+     * The definition of batch load
+     */
+    static class BatchLoad {
+
+        final String batchStatementId;
+
+        final String keyProperty;
+
+        BatchLoad(String batchStatementId, String keyProperty) {
+            this.batchStatementId = batchStatementId;
+            this.keyProperty = keyProperty;
+        }
+    }
+
+    /**
+     * The loading context of a session
+     */
+    static class LoadingContext {
+
+        private final Map<String, Set<Object>> pendingKeys = new ConcurrentHashMap<>();
+
+        private final Map<String, Map<Object, List<Object>>> loaded = new ConcurrentHashMap<>();
+
+        void addPendingKey(String statementId, Object key) {
+            Map<Object, List<Object>> loaded = this.loaded.get(statementId);
+            if (loaded != null && loaded.containsKey(normalizeKey(key))) {
+                return;
+            }
+            this.pendingKeys.computeIfAbsent(statementId, id -> new LinkedHashSet<>()).add(key);
+        }
+
+        Set<Object> removePendingKeys(String statementId) {
+            Set<Object> keys = this.pendingKeys.remove(statementId);
+            return keys == null ? new LinkedHashSet<>() : keys;
+        }
+
+        List<Object> getLoaded(String statementId, Object key) {
+            Map<Object, List<Object>> loaded = this.loaded.get(statementId);
+            if (loaded == null || key == null) {
+                return null;
+            }
+            return loaded.get(normalizeKey(key));
+        }
+
+        void putLoaded(String statementId, Object key, List<Object> results) {
+            this.loaded.computeIfAbsent(statementId, id -> new ConcurrentHashMap<>()).put(normalizeKey(key), results);
+        }
+
+        void clear() {
+            this.pendingKeys.clear();
+            this.loaded.clear();
+        }
+    }
+}
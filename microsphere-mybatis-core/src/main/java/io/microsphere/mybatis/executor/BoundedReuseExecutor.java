@@ -0,0 +1,356 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BaseExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ReuseExecutor;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.executor.statement.StatementUtil;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.util.Assert.assertNotNull;
+import static io.microsphere.util.Assert.assertTrue;
+import static java.util.Collections.emptyList;
+
+/**
+ * The {@link Executor} reuses the {@link PreparedStatement PreparedStatements} by their SQL within a session like
+ * {@link ReuseExecutor}, but the cached statements are bounded by the {@link #getCacheSize() cache size}, the least
+ * recently used statement is closed and evicted once the cache is full, so that the long sessions do not leak the
+ * cursors of database.
+ * <p>
+ * The query timeout of the reused statement is reset as it's prepared, and then the {@link Deadline} and the
+ * {@link StatementTracker} of the current thread are applied, because the plugins of {@link StatementHandler#prepare}
+ * are not invoked on the cache hits, e.g. {@link io.microsphere.mybatis.plugin.StatementTrackingInterceptor}.
+ * <p>
+ * The statements of the cursor queries are not cached, they are closed on the completion of the {@link Cursor cursors}
+ * like {@link SimpleExecutor}. The statements evicted during the nested executions (e.g. the nested selects of the
+ * associations) are closed after the outermost execution, because the outer statements may be still reading their
+ * results. All cached statements are closed when the statements are flushed, e.g. the session is
+ * committed, rolled back or closed.
+ * <p>
+ * The hit, miss and eviction counts of the cache are recorded into {@link Statistics}, which may be shared by the
+ * executors of many sessions.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   BoundedReuseExecutor.Statistics statistics = new BoundedReuseExecutor.Statistics();
+ *   Executor executor = new BoundedReuseExecutor(configuration, transaction, 64, statistics);
+ *   try {
+ *       List<User> users = executor.query(ms, parameter, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+ *   } finally {
+ *       executor.close(false);
+ *   }
+ *   double hitRate = statistics.getHitRate();
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ReuseExecutor
+ * @see BaseExecutor
+ * @see io.microsphere.mybatis.session.BoundedReuseSqlSessionFactory
+ * @since 1.0.0
+ */
+public class BoundedReuseExecutor extends BaseExecutor {
+
+    private static final Logger logger = getLogger(BoundedReuseExecutor.class);
+
+    /**
+     * The default size of the statement cache
+     */
+    public static final int DEFAULT_CACHE_SIZE = 64;
+
+    private final int cacheSize;
+
+    private final Statistics statistics;
+
+    private final Map<String, Statement> statements;
+
+    private final List<Statement> evictedStatements = new ArrayList<>();
+
+    private int depth;
+
+    public BoundedReuseExecutor(Configuration configuration, Transaction transaction) {
+        this(configuration, transaction, DEFAULT_CACHE_SIZE);
+    }
+
+    public BoundedReuseExecutor(Configuration configuration, Transaction transaction, int cacheSize) {
+        this(configuration, transaction, cacheSize, new Statistics());
+    }
+
+    public BoundedReuseExecutor(Configuration configuration, Transaction transaction, int cacheSize,
+                                Statistics statistics) {
+        super(configuration, transaction);
+        assertTrue(cacheSize > 0, () -> "The 'cacheSize' must be positive!");
+        assertNotNull(statistics, () -> "The 'statistics' must not be null!");
+        this.cacheSize = cacheSize;
+        this.statistics = statistics;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Statement> eldest) {
+                if (size() > BoundedReuseExecutor.this.cacheSize) {
+                    evict(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public int doUpdate(MappedStatement ms, Object parameter) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, RowBounds.DEFAULT, null, null);
+        depth++;
+        try {
+            Statement statement = prepareStatement(handler, ms);
+            return handler.update(statement);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    public <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                               BoundSql boundSql) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
+        depth++;
+        try {
+            Statement statement = prepareStatement(handler, ms);
+            return handler.query(statement, resultHandler);
+        } finally {
+            exit();
+        }
+    }
+
+    @Override
+    protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                          BoundSql boundSql) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
+        Connection connection = getConnection(ms.getStatementLog());
+        Statement statement = handler.prepare(connection, transaction.getTimeout());
+        handler.parameterize(statement);
+        Cursor<E> cursor = handler.queryCursor(statement);
+        statement.closeOnCompletion();
+        return cursor;
+    }
+
+    @Override
+    public List<BatchResult> doFlushStatements(boolean isRollback) {
+        for (Statement statement : this.statements.values()) {
+            closeStatement(statement);
+        }
+        this.statements.clear();
+        closeEvictedStatements();
+        return emptyList();
+    }
+
+    /**
+     * Get the size of the statement cache
+     *
+     * @return positive
+     */
+    public int getCacheSize() {
+        return this.cacheSize;
+    }
+
+    /**
+     * Get the SQL of the cached statements from the least recently used to the most recently used
+     *
+     * @return non-null
+     */
+    public List<String> getCachedSqls() {
+        return new ArrayList<>(this.statements.keySet());
+    }
+
+    /**
+     * Get the {@link Statistics} of the statement cache
+     *
+     * @return non-null
+     */
+    public Statistics getStatistics() {
+        return this.statistics;
+    }
+
+    private Statement prepareStatement(StatementHandler handler, MappedStatement ms) throws SQLException {
+        String sql = handler.getBoundSql().getSql();
+        Statement statement = getCachedStatement(sql);
+        if (statement == null) {
+            this.statistics.missCount.increment();
+            Connection connection = getConnection(ms.getStatementLog());
+            statement = handler.prepare(connection, transaction.getTimeout());
+            this.statements.put(sql, statement);
+        } else {
+            this.statistics.hitCount.increment();
+            reuseStatement(statement, ms);
+        }
+        handler.parameterize(statement);
+        return statement;
+    }
+
+    /**
+     * Reuse the cached {@link Statement} as it's prepared : the query timeout, which may be reduced by the
+     * {@link Deadline} of the previous execution, is reset like
+     * {@link org.apache.ibatis.executor.statement.BaseStatementHandler}, and then the {@link Deadline} and the
+     * {@link StatementTracker} of the current thread are applied.
+     *
+     * @param statement the cached {@link Statement}
+     * @param ms        {@link MappedStatement}
+     * @throws SQLException if the {@link Deadline} expired
+     */
+    private void reuseStatement(Statement statement, MappedStatement ms) throws SQLException {
+        Integer queryTimeout = ms.getTimeout();
+        if (queryTimeout == null) {
+            queryTimeout = ms.getConfiguration().getDefaultStatementTimeout();
+        }
+        statement.setQueryTimeout(queryTimeout == null ? 0 : queryTimeout);
+        StatementUtil.applyTransactionTimeout(statement, queryTimeout, transaction.getTimeout());
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            deadline.apply(statement);
+        }
+        StatementTracker tracker = StatementTracker.current();
+        if (tracker != null) {
+            tracker.track(statement);
+        }
+    }
+
+    private Statement getCachedStatement(String sql) {
+        Statement statement = this.statements.get(sql);
+        if (statement == null) {
+            return null;
+        }
+        try {
+            if (!statement.isClosed() && !statement.getConnection().isClosed()) {
+                return statement;
+            }
+        } catch (SQLException e) {
+            logger.trace("The cached statement of SQL['{}'] is unavailable", sql, e);
+        }
+        this.statements.remove(sql);
+        closeStatement(statement);
+        return null;
+    }
+
+    private void evict(String sql, Statement statement) {
+        this.statistics.evictionCount.increment();
+        logger.trace("The least recently used statement of SQL['{}'] is evicted", sql);
+        if (depth > 1) {
+            // The statement may be used by the outer executions
+            this.evictedStatements.add(statement);
+        } else {
+            closeStatement(statement);
+        }
+    }
+
+    private void exit() {
+        if (--depth == 0) {
+            closeEvictedStatements();
+        }
+    }
+
+    private void closeEvictedStatements() {
+        if (this.evictedStatements.isEmpty()) {
+            return;
+        }
+        for (Statement statement : this.evictedStatements) {
+            closeStatement(statement);
+        }
+        this.evictedStatements.clear();
+    }
+
+    /**
+     * The statistics of the statement cache
+     */
+    public static class Statistics {
+
+        private final LongAdder hitCount = new LongAdder();
+
+        private final LongAdder missCount = new LongAdder();
+
+        private final LongAdder evictionCount = new LongAdder();
+
+        /**
+         * Get the count of the statements reused from the cache
+         *
+         * @return non-negative
+         */
+        public long getHitCount() {
+            return this.hitCount.sum();
+        }
+
+        /**
+         * Get the count of the statements prepared because they were not cached
+         *
+         * @return non-negative
+         */
+        public long getMissCount() {
+            return this.missCount.sum();
+        }
+
+        /**
+         * Get the count of the least recently used statements evicted from the cache
+         *
+         * @return non-negative
+         */
+        public long getEvictionCount() {
+            return this.evictionCount.sum();
+        }
+
+        /**
+         * Get the ratio of the hits to the requests of the cache
+         *
+         * @return in the range of [0, 1], or <code>0</code> if the cache was never requested
+         */
+        public double getHitRate() {
+            long hitCount = getHitCount();
+            long requestCount = hitCount + getMissCount();
+            return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Statistics{" +
+                    "hitCount=" + getHitCount() +
+                    ", missCount=" + getMissCount() +
+                    ", evictionCount=" + getEvictionCount() +
+                    '}';
+        }
+    }
+}
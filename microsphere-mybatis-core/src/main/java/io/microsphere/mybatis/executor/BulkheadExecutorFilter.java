@@ -0,0 +1,387 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.text.FormatUtils.format;
+import static io.microsphere.util.Assert.assertTrue;
+import static io.microsphere.util.StringUtils.isNotBlank;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * {@link ExecutorFilter} isolates the executions of {@link MappedStatement MappedStatements} by the bulkheads, which
+ * limit the concurrent executions per statement id or namespace, thus a runaway statement can't exhaust the
+ * connection pool and starve the others.
+ * <p>
+ * The bulkhead of an execution is resolved by the id of {@link MappedStatement} first, and then by its namespace,
+ * the executions without any bulkhead are not limited. An execution acquires the permit of its bulkhead without
+ * blocking if available, otherwise it waits in the queue for {@link Bulkhead#getMaxWait() the max wait time} if the
+ * queue is not full, or it's rejected by {@link StatementRejectedException}. The nested executions of the same
+ * bulkhead in a thread(e.g. the nested selects) reuse the permit of the outer one.
+ * <p>
+ * The permit of {@link #queryCursor(MappedStatement, Object, RowBounds, ExecutorFilterChain) the cursor query} is
+ * held until the {@link Cursor} is closed, by the caller or along with the {@link org.apache.ibatis.session.SqlSession},
+ * because the rows are fetched on the connection during the iteration.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   BulkheadExecutorFilter filter = new BulkheadExecutorFilter()
+ *       // at most 2 reports are running, 10 ones are waiting for 500 ms at most
+ *       .addBulkhead("com.acme.mapper.ReportMapper", 2, 10, 500)
+ *       // reject immediately if 20 orders are being inserted
+ *       .addBulkhead("com.acme.mapper.OrderMapper.insert", 20);
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[]{filter}));
+ *
+ *   Bulkhead bulkhead = filter.getBulkhead("com.acme.mapper.ReportMapper");
+ *   gauge("report.in-flight", bulkhead::getInFlight);
+ *   gauge("report.queued", bulkhead::getQueued);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see Bulkhead
+ * @see StatementRejectedException
+ * @see ExecutorFilter
+ * @since 1.0.0
+ */
+public class BulkheadExecutorFilter implements ExecutorFilter {
+
+    private static final Logger logger = getLogger(BulkheadExecutorFilter.class);
+
+    /**
+     * The {@link Bulkhead bulkheads} keyed by the statement id or namespace
+     */
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link Bulkhead} whose permit is held by the current thread
+     */
+    private final ThreadLocal<Bulkhead> currentBulkhead = new ThreadLocal<>();
+
+    @Override
+    public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+        Bulkhead previous = this.currentBulkhead.get();
+        Bulkhead bulkhead = enter(ms, previous);
+        try {
+            return chain.update(ms, parameter);
+        } finally {
+            exit(bulkhead, previous);
+        }
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        Bulkhead previous = this.currentBulkhead.get();
+        Bulkhead bulkhead = enter(ms, previous);
+        try {
+            return chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        } finally {
+            exit(bulkhead, previous);
+        }
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        Bulkhead previous = this.currentBulkhead.get();
+        Bulkhead bulkhead = enter(ms, previous);
+        try {
+            return chain.query(ms, parameter, rowBounds, resultHandler);
+        } finally {
+            exit(bulkhead, previous);
+        }
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                     ExecutorFilterChain chain) throws SQLException {
+        Bulkhead previous = this.currentBulkhead.get();
+        Bulkhead bulkhead = enter(ms, previous);
+        if (bulkhead == null) {
+            return chain.queryCursor(ms, parameter, rowBounds);
+        }
+        Cursor<E> cursor;
+        try {
+            cursor = chain.queryCursor(ms, parameter, rowBounds);
+        } catch (Throwable e) {
+            exit(bulkhead, previous);
+            throw e;
+        }
+        restore(previous);
+        return new ClosingCallbackCursor<>(cursor, bulkhead::release);
+    }
+
+    /**
+     * Add the {@link Bulkhead} rejecting the executions immediately if it's saturated
+     *
+     * @param key            the statement id or namespace
+     * @param maxConcurrency the max concurrent executions
+     * @return {@link BulkheadExecutorFilter}
+     */
+    public BulkheadExecutorFilter addBulkhead(String key, int maxConcurrency) {
+        return addBulkhead(key, maxConcurrency, 0, 0);
+    }
+
+    /**
+     * Add the {@link Bulkhead}
+     *
+     * @param key            the statement id or namespace
+     * @param maxConcurrency the max concurrent executions
+     * @param maxQueued      the max executions waiting for the permits, <code>0</code> indicates no waiting
+     * @param maxWait        the max time in milliseconds to wait for the permit
+     * @return {@link BulkheadExecutorFilter}
+     */
+    public BulkheadExecutorFilter addBulkhead(String key, int maxConcurrency, int maxQueued, long maxWait) {
+        assertTrue(isNotBlank(key), () -> "The 'key' must not be blank!");
+        Bulkhead bulkhead = new Bulkhead(key, maxConcurrency, maxQueued, maxWait);
+        Bulkhead previous = this.bulkheads.put(key, bulkhead);
+        if (previous != null) {
+            logger.warn("The bulkhead['{}'] was replaced : {} -> {}", key, previous, bulkhead);
+        }
+        return this;
+    }
+
+    /**
+     * Get the {@link Bulkhead} by the statement id or namespace
+     *
+     * @param key the statement id or namespace
+     * @return <code>null</code> if not found
+     */
+    @Nullable
+    public Bulkhead getBulkhead(String key) {
+        return this.bulkheads.get(key);
+    }
+
+    /**
+     * Get all {@link Bulkhead bulkheads} keyed by the statement id or namespace
+     *
+     * @return non-null read-only {@link Map}
+     */
+    public Map<String, Bulkhead> getBulkheads() {
+        return unmodifiableMap(this.bulkheads);
+    }
+
+    /**
+     * Resolve the {@link Bulkhead} of {@link MappedStatement} by its id, and then by its namespace
+     *
+     * @param ms {@link MappedStatement}
+     * @return <code>null</code> if not found
+     */
+    @Nullable
+    Bulkhead resolveBulkhead(MappedStatement ms) {
+        Map<String, Bulkhead> bulkheads = this.bulkheads;
+        if (bulkheads.isEmpty()) {
+            return null;
+        }
+        String statementId = ms.getId();
+        Bulkhead bulkhead = bulkheads.get(statementId);
+        if (bulkhead == null) {
+            int index = statementId.lastIndexOf('.');
+            if (index > 0) {
+                bulkhead = bulkheads.get(statementId.substring(0, index));
+            }
+        }
+        return bulkhead;
+    }
+
+    /**
+     * Acquire the permit of the {@link Bulkhead} of {@link MappedStatement}
+     *
+     * @param ms       {@link MappedStatement}
+     * @param previous the {@link Bulkhead} whose permit is held by the current thread
+     * @return the {@link Bulkhead} whose permit was acquired, or <code>null</code> if not acquired
+     * @throws StatementRejectedException if the {@link Bulkhead} is saturated
+     */
+    @Nullable
+    Bulkhead enter(MappedStatement ms, @Nullable Bulkhead previous) throws StatementRejectedException {
+        Bulkhead bulkhead = resolveBulkhead(ms);
+        if (bulkhead == null || bulkhead == previous) {
+            return null;
+        }
+        bulkhead.acquire(ms.getId());
+        this.currentBulkhead.set(bulkhead);
+        return bulkhead;
+    }
+
+    void exit(@Nullable Bulkhead bulkhead, @Nullable Bulkhead previous) {
+        if (bulkhead != null) {
+            restore(previous);
+            bulkhead.release();
+        }
+    }
+
+    private void restore(@Nullable Bulkhead previous) {
+        if (previous == null) {
+            this.currentBulkhead.remove();
+        } else {
+            this.currentBulkhead.set(previous);
+        }
+    }
+
+    /**
+     * The bulkhead limits the concurrent executions of the statements sharing the same key
+     */
+    public static class Bulkhead {
+
+        private final String key;
+
+        private final int maxConcurrency;
+
+        private final int maxQueued;
+
+        private final long maxWait;
+
+        /**
+         * The non-fair {@link Semaphore} acquires the permit by CAS without locking if available
+         */
+        private final Semaphore permits;
+
+        private final AtomicInteger queued = new AtomicInteger();
+
+        private final LongAdder rejectedCount = new LongAdder();
+
+        Bulkhead(String key, int maxConcurrency, int maxQueued, long maxWait) {
+            assertTrue(maxConcurrency > 0, () -> "The 'maxConcurrency' must be positive!");
+            assertTrue(maxQueued >= 0, () -> "The 'maxQueued' must not be negative!");
+            assertTrue(maxWait >= 0, () -> "The 'maxWait' must not be negative!");
+            this.key = key;
+            this.maxConcurrency = maxConcurrency;
+            this.maxQueued = maxQueued;
+            this.maxWait = maxWait;
+            this.permits = new Semaphore(maxConcurrency);
+        }
+
+        void acquire(String statementId) throws StatementRejectedException {
+            if (this.permits.tryAcquire()) {
+                return;
+            }
+            if (this.maxQueued < 1 || this.maxWait < 1) {
+                throw reject(statementId, "saturated", null);
+            }
+            if (this.queued.incrementAndGet() > this.maxQueued) {
+                this.queued.decrementAndGet();
+                throw reject(statementId, "queue is full", null);
+            }
+            try {
+                if (!this.permits.tryAcquire(this.maxWait, MILLISECONDS)) {
+                    throw reject(statementId, "wait timeout", null);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject(statementId, "interrupted", e);
+            } finally {
+                this.queued.decrementAndGet();
+            }
+        }
+
+        void release() {
+            this.permits.release();
+        }
+
+        private StatementRejectedException reject(String statementId, String reason, Throwable cause) {
+            this.rejectedCount.increment();
+            String message = format("The execution of the statement['{}'] is rejected by the bulkhead['{}'] : {} - {}",
+                    statementId, this.key, reason, this);
+            logger.trace(message);
+            return new StatementRejectedException(message, statementId, cause);
+        }
+
+        /**
+         * Get the statement id or namespace
+         *
+         * @return non-null
+         */
+        public String getKey() {
+            return this.key;
+        }
+
+        public int getMaxConcurrency() {
+            return this.maxConcurrency;
+        }
+
+        public int getMaxQueued() {
+            return this.maxQueued;
+        }
+
+        /**
+         * Get the max time in milliseconds to wait for the permit
+         *
+         * @return non-negative
+         */
+        public long getMaxWait() {
+            return this.maxWait;
+        }
+
+        /**
+         * Get the count of the executions in flight
+         *
+         * @return non-negative
+         */
+        public int getInFlight() {
+            return this.maxConcurrency - this.permits.availablePermits();
+        }
+
+        /**
+         * Get the count of the executions waiting for the permits
+         *
+         * @return non-negative
+         */
+        public int getQueued() {
+            return this.queued.get();
+        }
+
+        /**
+         * Get the count of the rejected executions
+         *
+         * @return non-negative
+         */
+        public long getRejectedCount() {
+            return this.rejectedCount.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "Bulkhead{" +
+                    "key='" + key + '\'' +
+                    ", maxConcurrency=" + maxConcurrency +
+                    ", maxQueued=" + maxQueued +
+                    ", maxWait=" + maxWait +
+                    ", inFlight=" + getInFlight() +
+                    ", queued=" + getQueued() +
+                    ", rejectedCount=" + getRejectedCount() +
+                    '}';
+        }
+    }
+}
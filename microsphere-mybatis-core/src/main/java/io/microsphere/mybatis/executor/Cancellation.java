@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nonnull;
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.util.Assert.assertNotNull;
+
+/**
+ * The cancellation of a request, which is bound to the current thread until it's {@link #close() closed}, and it can
+ * be {@link #cancel() cancelled} by any other thread, e.g. the thread cancelling the {@link CompletableFuture} of the
+ * request. The cancellations can be nested, the inner one is cancelled if the outer one is.
+ * <p>
+ * The in-flight statements in the cancellation are cancelled by {@link CancellationExecutorFilter} once it's
+ * cancelled.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   CompletableFuture<Report> future = new CompletableFuture<>();
+ *   executorService.execute(() -> {
+ *       try (Cancellation cancellation = Cancellation.open(future)) {
+ *           future.complete(reportMapper.selectMonthlyReport(month));
+ *       }
+ *   });
+ *   // cancel the in-flight statements
+ *   future.cancel(true);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see CancellationExecutorFilter
+ * @since 1.0.0
+ */
+public class Cancellation implements AutoCloseable {
+
+    private static final Logger logger = getLogger(Cancellation.class);
+
+    private static final ThreadLocal<Cancellation> currentCancellation = new ThreadLocal<>();
+
+    @Nullable
+    private final Cancellation previous;
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean cancelled;
+
+    private volatile boolean closed;
+
+    Cancellation(@Nullable Cancellation previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Open a {@link Cancellation} and bind it to the current thread
+     *
+     * @return non-null
+     */
+    @Nonnull
+    public static Cancellation open() {
+        Cancellation cancellation = new Cancellation(currentCancellation.get());
+        currentCancellation.set(cancellation);
+        return cancellation;
+    }
+
+    /**
+     * Open a {@link Cancellation} cancelled once the {@link CompletableFuture} is cancelled, and bind it to the
+     * current thread
+     *
+     * @param future {@link CompletableFuture}
+     * @return non-null
+     */
+    @Nonnull
+    public static Cancellation open(CompletableFuture<?> future) {
+        assertNotNull(future, () -> "The 'future' must not be null!");
+        Cancellation cancellation = open();
+        future.whenComplete((result, failure) -> {
+            if (future.isCancelled()) {
+                cancellation.cancel();
+            }
+        });
+        return cancellation;
+    }
+
+    /**
+     * Get the {@link Cancellation} bound to the current thread
+     *
+     * @return <code>null</code> if absent
+     */
+    @Nullable
+    public static Cancellation current() {
+        return currentCancellation.get();
+    }
+
+    /**
+     * Cancel and notify the listeners
+     */
+    public void cancel() {
+        if (this.cancelled || this.closed) {
+            return;
+        }
+        this.cancelled = true;
+        for (Runnable listener : this.listeners) {
+            try {
+                listener.run();
+            } catch (Throwable e) {
+                logger.warn("The listener[{}] of Cancellation failed", listener, e);
+            }
+        }
+    }
+
+    /**
+     * The cancellation or any outer one was cancelled or not
+     *
+     * @return <code>true</code> if cancelled
+     */
+    public boolean isCancelled() {
+        return this.cancelled || (this.previous != null && this.previous.isCancelled());
+    }
+
+    /**
+     * The cancellation was closed or not
+     *
+     * @return <code>true</code> if closed
+     */
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Add the listener notified once it's cancelled
+     *
+     * @param listener the listener
+     */
+    void addListener(Runnable listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Remove the listener
+     *
+     * @param listener the listener
+     */
+    void removeListener(Runnable listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Close the cancellation and restore the previous cancellation to the current thread
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.listeners.clear();
+        if (currentCancellation.get() == this) {
+            if (this.previous == null) {
+                currentCancellation.remove();
+            } else {
+                currentCancellation.set(this.previous);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Cancellation{" +
+                "cancelled=" + this.cancelled +
+                ", closed=" + this.closed +
+                '}';
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import io.microsphere.mybatis.plugin.StatementTrackingInterceptor;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.util.Assert.assertNotNull;
+import static io.microsphere.util.Assert.assertTrue;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * {@link ExecutorFilter} cancels the in-flight JDBC {@link Statement Statements} once the caller has gone : the
+ * calling thread was interrupted (including the cancelled virtual threads), or the {@link Cancellation} of the current
+ * thread was cancelled, e.g. the {@link CompletableFuture} of the request was cancelled.
+ * <p>
+ * The blocking JDBC calls are not responsive to the interruptions, thus the in-flight executions are polled every
+ * {@link #getPollInterval() poll interval} by a scheduler thread which issues {@link Statement#cancel()} to the
+ * statements of the interrupted threads, while the cancelled {@link Cancellation Cancellations} cancel the statements
+ * immediately. The cancelled executions fail with {@link StatementCancelledException}, so that their connections are
+ * released as soon as possible, and the executions of the interrupted or cancelled callers fail fast without borrowing
+ * the connections.
+ * <p>
+ * The statements are cancelled by {@link StatementTracker}, thus {@link StatementTrackingInterceptor} must be added
+ * into the MyBatis {@link org.apache.ibatis.session.Configuration}.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   CancellationExecutorFilter filter = new CancellationExecutorFilter();
+ *   configuration.addInterceptor(new StatementTrackingInterceptor());
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[]{filter}));
+ *
+ *   // the statements are cancelled once the thread is interrupted
+ *   Future<?> future = executorService.submit(() -> reportMapper.selectMonthlyReport(month));
+ *   future.cancel(true);
+ *
+ *   long cancelledCount = filter.getCancelledCount();
+ *   long savedMillis = filter.getSavedTime(MILLISECONDS);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see Cancellation
+ * @see StatementCancelledException
+ * @see StatementTracker
+ * @see StatementTrackingInterceptor
+ * @see ExecutorFilter
+ * @since 1.0.0
+ */
+public class CancellationExecutorFilter implements ExecutorFilter, AutoCloseable {
+
+    private static final Logger logger = getLogger(CancellationExecutorFilter.class);
+
+    /**
+     * The default interval in milliseconds to poll the interrupted threads
+     */
+    public static final long DEFAULT_POLL_INTERVAL = 50;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final boolean shutdownScheduler;
+
+    private final long pollInterval;
+
+    private final ScheduledFuture<?> pollFuture;
+
+    private final Set<InFlight> inFlights = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, LatencyWindow> latencyWindows = new ConcurrentHashMap<>();
+
+    private final LongAdder cancelledCount = new LongAdder();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private final LongAdder savedTime = new LongAdder();
+
+    public CancellationExecutorFilter() {
+        this(DEFAULT_POLL_INTERVAL);
+    }
+
+    public CancellationExecutorFilter(long pollInterval) {
+        this(newScheduler(), pollInterval, true);
+    }
+
+    public CancellationExecutorFilter(ScheduledExecutorService scheduler) {
+        this(scheduler, DEFAULT_POLL_INTERVAL);
+    }
+
+    public CancellationExecutorFilter(ScheduledExecutorService scheduler, long pollInterval) {
+        this(scheduler, pollInterval, false);
+    }
+
+    CancellationExecutorFilter(ScheduledExecutorService scheduler, long pollInterval, boolean shutdownScheduler) {
+        assertNotNull(scheduler, () -> "The 'scheduler' must not be null!");
+        assertTrue(pollInterval > 0, () -> "The 'pollInterval' must be positive!");
+        this.scheduler = scheduler;
+        this.shutdownScheduler = shutdownScheduler;
+        this.pollInterval = pollInterval;
+        this.pollFuture = scheduler.scheduleWithFixedDelay(this::poll, pollInterval, pollInterval, MILLISECONDS);
+    }
+
+    @Override
+    public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.update(ms, parameter));
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql));
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.query(ms, parameter, rowBounds, resultHandler));
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                     ExecutorFilterChain chain) throws SQLException {
+        InFlight inFlight = begin(ms);
+        Cursor<E> cursor;
+        try {
+            cursor = chain.queryCursor(ms, parameter, rowBounds);
+        } catch (SQLException e) {
+            end(inFlight);
+            throw translate(e, inFlight);
+        } catch (Throwable e) {
+            end(inFlight);
+            throw e;
+        }
+        // The rows are fetched during the iteration, thus the execution is in flight until the cursor is closed, and
+        // its latency is not recorded, which depends on the iteration
+        inFlight.tracker.unbind();
+        return new ClosingCallbackCursor<>(cursor, () -> end(inFlight));
+    }
+
+    <R> R execute(MappedStatement ms, ExecutorFilterChain chain, Execution<R> execution) throws SQLException {
+        InFlight inFlight = begin(ms);
+        try {
+            R result = execution.execute(chain);
+            if (!inFlight.isCancelled()) {
+                getLatencyWindow(inFlight.statementId).record(nanoTime() - inFlight.startNanos);
+            }
+            return result;
+        } catch (SQLException e) {
+            throw translate(e, inFlight);
+        } finally {
+            end(inFlight);
+        }
+    }
+
+    InFlight begin(MappedStatement ms) throws StatementCancelledException {
+        String statementId = ms.getId();
+        Cancellation cancellation = Cancellation.current();
+        if (isCancelled(Thread.currentThread(), cancellation)) {
+            this.rejectedCount.increment();
+            logger.trace("The statement['{}'] is not executed, because the caller was interrupted or cancelled",
+                    statementId);
+            throw new StatementCancelledException("The execution of statement['" + statementId +
+                    "'] was cancelled, because the caller was interrupted or cancelled", statementId);
+        }
+        InFlight inFlight = new InFlight(statementId, StatementTracker.open(), cancellation);
+        this.inFlights.add(inFlight);
+        if (cancellation != null) {
+            cancellation.addListener(inFlight);
+        }
+        return inFlight;
+    }
+
+    void end(InFlight inFlight) {
+        Cancellation cancellation = inFlight.cancellation;
+        if (cancellation != null) {
+            cancellation.removeListener(inFlight);
+        }
+        this.inFlights.remove(inFlight);
+        inFlight.tracker.close();
+        if (inFlight.isCancelled()) {
+            recordCancelled(inFlight);
+        }
+    }
+
+    SQLException translate(SQLException failure, InFlight inFlight) {
+        if (inFlight.isCancelled()) {
+            String statementId = inFlight.statementId;
+            return new StatementCancelledException("The execution of statement['" + statementId +
+                    "'] was cancelled, because the caller was interrupted or cancelled", statementId, failure);
+        }
+        return failure;
+    }
+
+    void poll() {
+        for (InFlight inFlight : this.inFlights) {
+            if (isCancelled(inFlight.tracker.getThread(), inFlight.cancellation)) {
+                inFlight.run();
+            }
+        }
+    }
+
+    void recordCancelled(InFlight inFlight) {
+        this.cancelledCount.increment();
+        LatencyWindow latencyWindow = this.latencyWindows.get(inFlight.statementId);
+        long median = latencyWindow == null ? -1 : latencyWindow.percentile(0.5);
+        long elapsed = inFlight.cancelledNanos - inFlight.startNanos;
+        if (median > elapsed) {
+            this.savedTime.add(median - elapsed);
+        }
+    }
+
+    LatencyWindow getLatencyWindow(String statementId) {
+        return this.latencyWindows.computeIfAbsent(statementId, id -> new LatencyWindow());
+    }
+
+    /**
+     * Get the interval in milliseconds to poll the interrupted threads
+     *
+     * @return positive
+     */
+    public long getPollInterval() {
+        return this.pollInterval;
+    }
+
+    /**
+     * Get the count of the in-flight executions
+     *
+     * @return non-negative
+     */
+    public int getInFlight() {
+        return this.inFlights.size();
+    }
+
+    /**
+     * Get the count of the executions cancelled during the executions
+     *
+     * @return non-negative
+     */
+    public long getCancelledCount() {
+        return this.cancelledCount.sum();
+    }
+
+    /**
+     * Get the count of the executions failed fast because the callers were interrupted or cancelled
+     *
+     * @return non-negative
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.sum();
+    }
+
+    /**
+     * Get the estimated database time saved by the cancellations, which is the sum of the median latencies of the
+     * statements minus their elapsed time when they were cancelled
+     *
+     * @param unit {@link TimeUnit}
+     * @return non-negative
+     */
+    public long getSavedTime(TimeUnit unit) {
+        return unit.convert(this.savedTime.sum(), NANOSECONDS);
+    }
+
+    @Override
+    public void close() {
+        this.pollFuture.cancel(false);
+        if (this.shutdownScheduler) {
+            this.scheduler.shutdownNow();
+        }
+    }
+
+    static boolean isCancelled(Thread thread, @Nullable Cancellation cancellation) {
+        return thread.isInterrupted() || (cancellation != null && cancellation.isCancelled());
+    }
+
+    static ScheduledExecutorService newScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "mybatis-cancellation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * The in-flight execution of the statement, which cancels the tracked statements when it runs
+     */
+    static class InFlight implements Runnable {
+
+        private final String statementId;
+
+        private final StatementTracker tracker;
+
+        @Nullable
+        private final Cancellation cancellation;
+
+        private final long startNanos = nanoTime();
+
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        private volatile long cancelledNanos;
+
+        InFlight(String statementId, StatementTracker tracker, @Nullable Cancellation cancellation) {
+            this.statementId = statementId;
+            this.tracker = tracker;
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public void run() {
+            if (this.tracker.isClosed() || !this.cancelled.compareAndSet(false, true)) {
+                return;
+            }
+            this.cancelledNanos = nanoTime();
+            if (this.tracker.cancel()) {
+                logger.trace("The statement['{}'] was cancelled, because the caller was interrupted or cancelled",
+                        this.statementId);
+            }
+        }
+
+        boolean isCancelled() {
+            return this.cancelled.get();
+        }
+    }
+}
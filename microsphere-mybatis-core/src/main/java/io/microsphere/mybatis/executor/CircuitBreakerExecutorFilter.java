@@ -0,0 +1,741 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.mybatis.executor.CircuitBreakerExecutorFilter.State.CLOSED;
+import static io.microsphere.mybatis.executor.CircuitBreakerExecutorFilter.State.HALF_OPEN;
+import static io.microsphere.mybatis.executor.CircuitBreakerExecutorFilter.State.OPEN;
+import static io.microsphere.mybatis.executor.Executors.getDataSource;
+import static io.microsphere.text.FormatUtils.format;
+import static io.microsphere.util.Assert.assertTrue;
+import static io.microsphere.util.StringUtils.isNotBlank;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static java.util.Collections.addAll;
+import static java.util.Collections.unmodifiableList;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * {@link ExecutorFilter} protects the queries and updates by the {@link CircuitBreaker circuit breakers} per target
+ * {@link DataSource} and {@link MappedStatement statement}, which fail fast instead of waiting for the JDBC timeout
+ * when the database degrades.
+ * <p>
+ * A {@link CircuitBreaker} records the outcomes of the recent executions in a count-based sliding window, it
+ * {@link State#OPEN opens} if the rate of the failures or slow calls reaches the threshold once the window has
+ * {@link #getMinimumCalls() enough calls}. The open circuit rejects the executions by
+ * {@link StatementRejectedException}, or falls back to {@link #addFallbackStatement(String, String) the alternative
+ * statement} or {@link #addFallbackCache(String, int) the last successful result} of the same query. After
+ * {@link #getOpenDuration() the open
+ * duration}, it {@link State#HALF_OPEN half-opens} to permit the probe calls, and it closes if all probes succeed,
+ * or opens again if any fails.
+ * <p>
+ * The failures are classified by the SQLState of {@link SQLException}, the classes of the SQLState caused by the
+ * requests rather than the database, e.g. the constraint violations("23"), are
+ * {@link #setIgnoredSQLStateClasses(String...) ignored} and do not trip the circuit. The {@link DataSource} of an
+ * execution is the one of the {@link Environment} by default, the subclass may
+ * {@link #resolveDataSource(MappedStatement, ExecutorFilterChain) resolve} the routed one.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   CircuitBreakerExecutorFilter filter = new CircuitBreakerExecutorFilter()
+ *       .setFailureRateThreshold(0.5)
+ *       .setSlowCallDuration(2000)
+ *       .addFallbackCache("com.acme.mapper.ProductMapper.selectByCategory", 1000)
+ *       .addFallbackStatement("com.acme.mapper.ProductMapper.selectById",
+ *                             "com.acme.mapper.ProductSnapshotMapper.selectById");
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[]{filter}));
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see CircuitBreaker
+ * @see StatementRejectedException
+ * @see ExecutorFilter
+ * @since 1.0.0
+ */
+public class CircuitBreakerExecutorFilter implements ExecutorFilter {
+
+    private static final Logger logger = getLogger(CircuitBreakerExecutorFilter.class);
+
+    /**
+     * The default count of the calls in the sliding window
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 100;
+
+    /**
+     * The default min count of the calls in the sliding window before the rates are calculated
+     */
+    public static final int DEFAULT_MINIMUM_CALLS = 20;
+
+    /**
+     * The default threshold of the failure rate
+     */
+    public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+
+    /**
+     * The default threshold of the slow call rate
+     */
+    public static final double DEFAULT_SLOW_CALL_RATE_THRESHOLD = 1.0;
+
+    /**
+     * The default duration in milliseconds of the slow call
+     */
+    public static final long DEFAULT_SLOW_CALL_DURATION = 10_000;
+
+    /**
+     * The default duration in milliseconds of the open circuit
+     */
+    public static final long DEFAULT_OPEN_DURATION = 30_000;
+
+    /**
+     * The default count of the probe calls of the half-open circuit
+     */
+    public static final int DEFAULT_HALF_OPEN_PROBES = 3;
+
+    /**
+     * The default classes of the SQLState ignored : data exception("22"), integrity constraint violation("23"),
+     * syntax error or access rule violation("42") and with check option violation("44")
+     */
+    public static final String[] DEFAULT_IGNORED_SQL_STATE_CLASSES = {"22", "23", "42", "44"};
+
+    private static final int FAILURE = 1;
+
+    private static final int SLOW = 2;
+
+    private final Map<DataSource, Map<String, CircuitBreaker>> circuitBreakers = new ConcurrentHashMap<>();
+
+    /**
+     * The ids of the fallback statements keyed by the ids of the protected statements
+     */
+    private final Map<String, String> fallbackStatementIds = new ConcurrentHashMap<>();
+
+    /**
+     * The {@link Cache caches} of the last successful results keyed by the ids of the protected statements
+     */
+    private final Map<String, Cache> fallbackCaches = new ConcurrentHashMap<>();
+
+    private volatile Set<String> ignoredSQLStateClasses = ofSet(DEFAULT_IGNORED_SQL_STATE_CLASSES);
+
+    private volatile int windowSize = DEFAULT_WINDOW_SIZE;
+
+    private volatile int minimumCalls = DEFAULT_MINIMUM_CALLS;
+
+    private volatile double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+
+    private volatile double slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+
+    private volatile long slowCallDuration = DEFAULT_SLOW_CALL_DURATION;
+
+    private volatile long openDuration = DEFAULT_OPEN_DURATION;
+
+    private volatile int halfOpenProbes = DEFAULT_HALF_OPEN_PROBES;
+
+    @Override
+    public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.update(ms, parameter), breaker -> {
+            throw breaker.reject(ms.getId());
+        });
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        Cache fallbackCache = getFallbackCache(ms, resultHandler);
+        return execute(ms, chain, c -> {
+            List<E> result = c.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+            cacheResult(fallbackCache, cacheKey, result);
+            return result;
+        }, breaker -> fallback(ms, parameter, rowBounds, resultHandler, cacheKey, chain, fallbackCache, breaker));
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        Cache fallbackCache = getFallbackCache(ms, resultHandler);
+        CacheKey cacheKey = fallbackCache == null ? null : createCacheKey(ms, parameter, rowBounds, chain);
+        return execute(ms, chain, c -> {
+            List<E> result = c.query(ms, parameter, rowBounds, resultHandler);
+            cacheResult(fallbackCache, cacheKey, result);
+            return result;
+        }, breaker -> fallback(ms, parameter, rowBounds, resultHandler, cacheKey, chain, fallbackCache, breaker));
+    }
+
+    <R> R execute(MappedStatement ms, ExecutorFilterChain chain, Execution<R> execution, Fallback<R> fallback)
+            throws SQLException {
+        DataSource dataSource = resolveDataSource(ms, chain);
+        if (dataSource == null) {
+            return execution.execute(chain);
+        }
+        CircuitBreaker breaker = getOrCreateCircuitBreaker(dataSource, ms.getId());
+        State state = breaker.tryAcquire();
+        if (state == null) {
+            breaker.rejectedCount.increment();
+            return fallback.execute(breaker);
+        }
+        long startTime = nanoTime();
+        try {
+            R result = execution.execute(chain);
+            breaker.onResult(state, nanoTime() - startTime, false, false);
+            return result;
+        } catch (Throwable e) {
+            boolean failure = isFailure(e);
+            breaker.onResult(state, nanoTime() - startTime, failure, !failure);
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <E> List<E> fallback(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                         @Nullable CacheKey cacheKey, ExecutorFilterChain chain, @Nullable Cache fallbackCache,
+                         CircuitBreaker breaker) throws SQLException {
+        String statementId = ms.getId();
+        String fallbackStatementId = this.fallbackStatementIds.get(statementId);
+        if (fallbackStatementId != null) {
+            MappedStatement fallbackStatement = ms.getConfiguration().getMappedStatement(fallbackStatementId);
+            logger.trace("The statement['{}'] falls back to the statement['{}'] : {}", statementId,
+                    fallbackStatementId, breaker);
+            return chain.query(fallbackStatement, parameter, rowBounds, resultHandler);
+        }
+        if (fallbackCache != null) {
+            Object cachedResult = fallbackCache.getObject(cacheKey);
+            if (cachedResult != null) {
+                logger.trace("The statement['{}'] falls back to the last successful result : {}", statementId, breaker);
+                return (List<E>) cachedResult;
+            }
+        }
+        throw breaker.reject(statementId);
+    }
+
+    <E> void cacheResult(@Nullable Cache fallbackCache, CacheKey cacheKey, List<E> result) {
+        if (fallbackCache != null) {
+            // The caller owns the result that may be mutated, thus the fallbacks share the unmodifiable copy
+            fallbackCache.putObject(cacheKey, unmodifiableList(new ArrayList<>(result)));
+        }
+    }
+
+    @Nullable
+    Cache getFallbackCache(MappedStatement ms, @Nullable ResultHandler resultHandler) {
+        // The results handled by ResultHandler are not returned
+        return resultHandler == null ? this.fallbackCaches.get(ms.getId()) : null;
+    }
+
+    CacheKey createCacheKey(MappedStatement ms, Object parameter, RowBounds rowBounds, ExecutorFilterChain chain) {
+        BoundSql boundSql = ms.getBoundSql(parameter);
+        return chain.getExecutor().createCacheKey(ms, parameter, rowBounds, boundSql);
+    }
+
+    /**
+     * Resolve the target {@link DataSource} of {@link MappedStatement}
+     *
+     * @param ms    {@link MappedStatement}
+     * @param chain {@link ExecutorFilterChain}
+     * @return <code>null</code> if the execution should not be protected
+     */
+    @Nullable
+    protected DataSource resolveDataSource(MappedStatement ms, ExecutorFilterChain chain) {
+        // The session may be opened on the DataSource other than the Environment's one
+        DataSource dataSource = getDataSource(chain.getExecutor());
+        if (dataSource == null) {
+            Environment environment = ms.getConfiguration().getEnvironment();
+            dataSource = environment == null ? null : environment.getDataSource();
+        }
+        return dataSource;
+    }
+
+    /**
+     * Is the failure of the execution recorded into the {@link CircuitBreaker} or not
+     *
+     * @param failure the failure of the execution
+     * @return <code>false</code> if the failure was rejected by {@link StatementRejectedException} or its SQLState is
+     * ignored
+     */
+    protected boolean isFailure(Throwable failure) {
+        Throwable cause = failure;
+        while (cause != null) {
+            if (cause instanceof StatementRejectedException) {
+                return false;
+            }
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (sqlState != null && sqlState.length() > 1) {
+                    return !this.ignoredSQLStateClasses.contains(sqlState.substring(0, 2));
+                }
+            }
+            cause = cause.getCause();
+        }
+        return true;
+    }
+
+    CircuitBreaker getOrCreateCircuitBreaker(DataSource dataSource, String statementId) {
+        return this.circuitBreakers.computeIfAbsent(dataSource, d -> new ConcurrentHashMap<>())
+                .computeIfAbsent(statementId, id -> new CircuitBreaker(dataSource, id));
+    }
+
+    /**
+     * Get the {@link CircuitBreaker} of the statement on {@link DataSource}
+     *
+     * @param dataSource  {@link DataSource}
+     * @param statementId the id of {@link MappedStatement}
+     * @return <code>null</code> if the statement was not executed on {@link DataSource}
+     */
+    @Nullable
+    public CircuitBreaker getCircuitBreaker(DataSource dataSource, String statementId) {
+        Map<String, CircuitBreaker> circuitBreakers = this.circuitBreakers.get(dataSource);
+        return circuitBreakers == null ? null : circuitBreakers.get(statementId);
+    }
+
+    /**
+     * Add the fallback statement of the protected statement, which is executed with the same parameter if the
+     * circuit is open
+     *
+     * @param statementId         the id of the protected {@link MappedStatement}
+     * @param fallbackStatementId the id of the fallback {@link MappedStatement}
+     * @return {@link CircuitBreakerExecutorFilter}
+     */
+    public CircuitBreakerExecutorFilter addFallbackStatement(String statementId, String fallbackStatementId) {
+        assertTrue(isNotBlank(statementId), () -> "The 'statementId' must not be blank!");
+        assertTrue(isNotBlank(fallbackStatementId), () -> "The 'fallbackStatementId' must not be blank!");
+        this.fallbackStatementIds.put(statementId, fallbackStatementId);
+        return this;
+    }
+
+    /**
+     * Add the cache of the last successful results of the protected statement, whose unmodifiable copies are returned
+     * for the same queries if the circuit is open
+     *
+     * @param statementId the id of the protected {@link MappedStatement}
+     * @param maxSize     the max size of the cached results
+     * @return {@link CircuitBreakerExecutorFilter}
+     */
+    public CircuitBreakerExecutorFilter addFallbackCache(String statementId, int maxSize) {
+        assertTrue(isNotBlank(statementId), () -> "The 'statementId' must not be blank!");
+        assertTrue(maxSize > 0, () -> "The 'maxSize' must be positive!");
+        LruCache lruCache = new LruCache(new PerpetualCache(statementId));
+        lruCache.setSize(maxSize);
+        this.fallbackCaches.put(statementId, new SynchronizedCache(lruCache));
+        return this;
+    }
+
+    /**
+     * Set the classes(the first two characters) of the SQLState ignored
+     *
+     * @param ignoredSQLStateClasses the classes of the SQLState
+     * @return {@link CircuitBreakerExecutorFilter}
+     * @see #DEFAULT_IGNORED_SQL_STATE_CLASSES
+     */
+    public CircuitBreakerExecutorFilter setIgnoredSQLStateClasses(String... ignoredSQLStateClasses) {
+        this.ignoredSQLStateClasses = ofSet(ignoredSQLStateClasses);
+        return this;
+    }
+
+    /**
+     * Set the count of the calls in the sliding window, it's applied to the new {@link CircuitBreaker circuit
+     * breakers}
+     *
+     * @param windowSize the count of the calls
+     * @return {@link CircuitBreakerExecutorFilter}
+     */
+    public CircuitBreakerExecutorFilter setWindowSize(int windowSize) {
+        assertTrue(windowSize > 0, () -> "The 'windowSize' must be positive!");
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    /**
+     * Set the min count of the calls in the sliding window before the rates are calculated
+     *
+     * @param minimumCalls the min count of the calls
+     * @return {@link CircuitBreakerExecutorFilter}
+     */
+    public CircuitBreakerExecutorFilter setMinimumCalls(int minimumCalls) {
+        assertTrue(minimumCalls > 0, () -> "The 'minimumCalls' must be positive!");
+        this.minimumCalls = minimumCalls;
+        return this;
+    }
+
+    /**
+     * Set the threshold of the failure rate to open the circuit
+     *
+     * @param failureRateThreshold the threshold in the range of (0, 1]
+     * @return {@link CircuitBreakerExecutorFilter}
+     */
+    public CircuitBreakerExecutorFilter setFailureRateThreshold(double failureRateThreshold) {
+        assertTrue(failureRateThreshold > 0 && failureRateThreshold <= 1,
+                () -> "The 'failureRateThreshold' must be in the range of (0, 1]!");
+        this.failureRateThreshold = failureRateThreshold;
+        return this;
+    }
+
+    /**
+     * Set the threshold of the slow call rate to open the circuit
+     *
+     * @param slowCallRateThreshold the threshold in the range of (0, 1]
+     * @return {@link CircuitBreakerExecutorFilter}
+     */
+    public CircuitBreakerExecutorFilter setSlowCallRateThreshold(double slowCallRateThreshold) {
+        assertTrue(slowCallRateThreshold > 0 && slowCallRateThreshold <= 1,
+                () -> "The 'slowCallRateThreshold' must be in the range of (0, 1]!");
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        return this;
+    }
+
+    /**
+     * Set the duration of the slow call
+     *
+     * @param slowCallDuration the duration in milliseconds
+     * @return {@link CircuitBreakerExecutorFilter}
+     */
+    public CircuitBreakerExecutorFilter setSlowCallDuration(long slowCallDuration) {
+        assertTrue(slowCallDuration > 0, () -> "The 'slowCallDuration' must be positive!");
+        this.slowCallDuration = slowCallDuration;
+        return this;
+    }
+
+    /**
+     * Set the duration of the open circuit before it half-opens
+     *
+     * @param openDuration the duration in milliseconds
+     * @return {@link CircuitBreakerExecutorFilter}
+     */
+    public CircuitBreakerExecutorFilter setOpenDuration(long openDuration) {
+        assertTrue(openDuration >= 0, () -> "The 'openDuration' must not be negative!");
+        this.openDuration = openDuration;
+        return this;
+    }
+
+    /**
+     * Set the count of the probe calls of the half-open circuit
+     *
+     * @param halfOpenProbes the count of the probe calls
+     * @return {@link CircuitBreakerExecutorFilter}
+     */
+    public CircuitBreakerExecutorFilter setHalfOpenProbes(int halfOpenProbes) {
+        assertTrue(halfOpenProbes > 0, () -> "The 'halfOpenProbes' must be positive!");
+        this.halfOpenProbes = halfOpenProbes;
+        return this;
+    }
+
+    public Set<String> getIgnoredSQLStateClasses() {
+        return this.ignoredSQLStateClasses;
+    }
+
+    public int getWindowSize() {
+        return this.windowSize;
+    }
+
+    public int getMinimumCalls() {
+        return this.minimumCalls;
+    }
+
+    public double getFailureRateThreshold() {
+        return this.failureRateThreshold;
+    }
+
+    public double getSlowCallRateThreshold() {
+        return this.slowCallRateThreshold;
+    }
+
+    public long getSlowCallDuration() {
+        return this.slowCallDuration;
+    }
+
+    public long getOpenDuration() {
+        return this.openDuration;
+    }
+
+    public int getHalfOpenProbes() {
+        return this.halfOpenProbes;
+    }
+
+    private static Set<String> ofSet(String... values) {
+        Set<String> set = ConcurrentHashMap.newKeySet();
+        addAll(set, values);
+        return set;
+    }
+
+    /**
+     * The state of {@link CircuitBreaker}
+     */
+    public enum State {
+
+        /**
+         * The executions are permitted and recorded
+         */
+        CLOSED,
+
+        /**
+         * The executions are rejected or fall back
+         */
+        OPEN,
+
+        /**
+         * The limited probe executions are permitted
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * The fallback of the execution if the circuit is not permitted
+     *
+     * @param <R> the type of result
+     */
+    @FunctionalInterface
+    interface Fallback<R> {
+
+        R execute(CircuitBreaker breaker) throws SQLException;
+    }
+
+    /**
+     * The circuit breaker of a statement on a {@link DataSource}
+     */
+    public class CircuitBreaker {
+
+        private final DataSource dataSource;
+
+        private final String statementId;
+
+        /**
+         * The outcomes of the calls in the sliding window, the bits of {@link #FAILURE} and {@link #SLOW}
+         */
+        private final int[] outcomes;
+
+        private final LongAdder rejectedCount = new LongAdder();
+
+        private volatile State state = CLOSED;
+
+        private int index;
+
+        private int calls;
+
+        private int failures;
+
+        private int slowCalls;
+
+        private long openUntil;
+
+        private int permittedProbes;
+
+        private int succeededProbes;
+
+        CircuitBreaker(DataSource dataSource, String statementId) {
+            this.dataSource = dataSource;
+            this.statementId = statementId;
+            this.outcomes = new int[windowSize];
+        }
+
+        /**
+         * Try to acquire the permission of the execution
+         *
+         * @return the {@link State} when the permission was acquired, or <code>null</code> if not permitted
+         */
+        @Nullable
+        State tryAcquire() {
+            if (this.state == CLOSED) {
+                return CLOSED;
+            }
+            synchronized (this) {
+                if (this.state == OPEN) {
+                    if (currentTimeMillis() < this.openUntil) {
+                        return null;
+                    }
+                    transitionTo(HALF_OPEN);
+                }
+                if (this.state == HALF_OPEN) {
+                    if (this.permittedProbes >= halfOpenProbes) {
+                        return null;
+                    }
+                    this.permittedProbes++;
+                }
+                return this.state;
+            }
+        }
+
+        /**
+         * Record the result of the execution
+         *
+         * @param state    the {@link State} when the permission was acquired
+         * @param duration the duration in nanoseconds
+         * @param failure  the execution failed or not
+         * @param ignored  the execution failed with the ignored failure or not
+         */
+        synchronized void onResult(State state, long duration, boolean failure, boolean ignored) {
+            if (state != this.state) {
+                // The state was changed during the execution
+                return;
+            }
+            boolean slow = NANOSECONDS.toMillis(duration) >= slowCallDuration;
+            if (state == HALF_OPEN) {
+                if (ignored) {
+                    this.permittedProbes--;
+                } else if (failure || slow) {
+                    transitionTo(OPEN);
+                } else if (++this.succeededProbes >= halfOpenProbes) {
+                    transitionTo(CLOSED);
+                }
+                return;
+            }
+            if (ignored) {
+                return;
+            }
+            record((failure ? FAILURE : 0) | (slow ? SLOW : 0));
+            if (this.calls >= minimumCalls && (getFailureRate() >= failureRateThreshold
+                    || getSlowCallRate() >= slowCallRateThreshold)) {
+                transitionTo(OPEN);
+            }
+        }
+
+        private void record(int outcome) {
+            int[] outcomes = this.outcomes;
+            int index = this.index;
+            if (this.calls == outcomes.length) {
+                int evicted = outcomes[index];
+                this.failures -= evicted & FAILURE;
+                this.slowCalls -= (evicted & SLOW) >> 1;
+            } else {
+                this.calls++;
+            }
+            outcomes[index] = outcome;
+            this.failures += outcome & FAILURE;
+            this.slowCalls += (outcome & SLOW) >> 1;
+            this.index = (index + 1) % outcomes.length;
+        }
+
+        private void transitionTo(State state) {
+            State previous = this.state;
+            if (state == OPEN) {
+                this.openUntil = currentTimeMillis() + openDuration;
+                logger.warn("The circuit of the statement['{}'] on the DataSource[{}] is open for {} ms : {}",
+                        this.statementId, this.dataSource, openDuration, this);
+            } else if (state == CLOSED) {
+                this.index = 0;
+                this.calls = 0;
+                this.failures = 0;
+                this.slowCalls = 0;
+                logger.info("The circuit of the statement['{}'] on the DataSource[{}] is closed", this.statementId,
+                        this.dataSource);
+            }
+            this.permittedProbes = 0;
+            this.succeededProbes = 0;
+            this.state = state;
+            logger.trace("The state of the circuit breaker is changed : {} -> {}", previous, state);
+        }
+
+        StatementRejectedException reject(String statementId) {
+            String message = format("The execution of the statement['{}'] is rejected by the circuit breaker : {}",
+                    statementId, this);
+            logger.trace(message);
+            return new StatementRejectedException(message, statementId);
+        }
+
+        /**
+         * Get the {@link DataSource}
+         *
+         * @return non-null
+         */
+        public DataSource getDataSource() {
+            return this.dataSource;
+        }
+
+        /**
+         * Get the id of {@link MappedStatement}
+         *
+         * @return non-null
+         */
+        public String getStatementId() {
+            return this.statementId;
+        }
+
+        /**
+         * Get the current {@link State}
+         *
+         * @return non-null
+         */
+        public State getState() {
+            return this.state;
+        }
+
+        /**
+         * Get the count of the calls in the sliding window
+         *
+         * @return non-negative
+         */
+        public synchronized int getCalls() {
+            return this.calls;
+        }
+
+        /**
+         * Get the rate of the failures in the sliding window
+         *
+         * @return the rate in the range of [0, 1]
+         */
+        public synchronized double getFailureRate() {
+            return this.calls == 0 ? 0 : (double) this.failures / this.calls;
+        }
+
+        /**
+         * Get the rate of the slow calls in the sliding window
+         *
+         * @return the rate in the range of [0, 1]
+         */
+        public synchronized double getSlowCallRate() {
+            return this.calls == 0 ? 0 : (double) this.slowCalls / this.calls;
+        }
+
+        /**
+         * Get the count of the executions rejected or fell back
+         *
+         * @return non-negative
+         */
+        public long getRejectedCount() {
+            return this.rejectedCount.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "CircuitBreaker{" +
+                    "statementId='" + statementId + '\'' +
+                    ", state=" + state +
+                    ", calls=" + calls +
+                    ", failures=" + failures +
+                    ", slowCalls=" + slowCalls +
+                    ", rejectedCount=" + getRejectedCount() +
+                    '}';
+        }
+    }
+}
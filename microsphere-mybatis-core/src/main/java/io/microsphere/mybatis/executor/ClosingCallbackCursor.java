@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import org.apache.ibatis.cursor.Cursor;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The {@link Cursor} delegate running the callback once it's closed, thus the resources of the execution, e.g. the
+ * permits, are held by the {@link ExecutorFilter} until the {@link Cursor} is closed by the caller or the
+ * {@link org.apache.ibatis.session.SqlSession}.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   semaphore.acquire();
+ *   Cursor<E> cursor = chain.queryCursor(ms, parameter, rowBounds);
+ *   return new ClosingCallbackCursor<>(cursor, semaphore::release);
+ * }</pre>
+ *
+ * @param <T> the type of the fetched items
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see Cursor
+ * @since 1.0.0
+ */
+class ClosingCallbackCursor<T> implements Cursor<T> {
+
+    private final Cursor<T> delegate;
+
+    private final Runnable callback;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    ClosingCallbackCursor(Cursor<T> delegate, Runnable callback) {
+        this.delegate = delegate;
+        this.callback = callback;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.delegate.isOpen();
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return this.delegate.isConsumed();
+    }
+
+    @Override
+    public int getCurrentIndex() {
+        return this.delegate.getCurrentIndex();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this.delegate.iterator();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.delegate.close();
+        } finally {
+            if (this.closed.compareAndSet(false, true)) {
+                this.callback.run();
+            }
+        }
+    }
+}
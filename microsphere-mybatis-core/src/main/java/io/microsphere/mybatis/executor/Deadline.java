@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nonnull;
+import io.microsphere.annotation.Nullable;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import static io.microsphere.util.Assert.assertNotNull;
+import static io.microsphere.util.Assert.assertTrue;
+import static java.lang.Math.min;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The deadline of a request, which is bound to the current thread until it's {@link #close() closed}. The deadlines
+ * can be nested, the inner deadline never exceeds the outer one.
+ * <p>
+ * The executions of the statements in the deadline are limited by the remaining time : the JDBC
+ * {@link Statement#setQueryTimeout(int) query timeout} is reduced to it by
+ * {@link io.microsphere.mybatis.plugin.StatementTrackingInterceptor}, and the executions fail fast if the deadline
+ * expired, or the in-flight statements are cancelled when the deadline hits by {@link DeadlineExecutorFilter}.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   try (Deadline deadline = Deadline.open(800, MILLISECONDS)) {
+ *       User user = userMapper.getUserById(1);
+ *       // the rest of 800 ms
+ *       List<Order> orders = orderMapper.selectByUserId(user.getId());
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see DeadlineExecutorFilter
+ * @see io.microsphere.mybatis.plugin.StatementTrackingInterceptor
+ * @since 1.0.0
+ */
+public class Deadline implements AutoCloseable {
+
+    private static final ThreadLocal<Deadline> currentDeadline = new ThreadLocal<>();
+
+    @Nullable
+    private final Deadline previous;
+
+    /**
+     * The deadline in {@link System#nanoTime() nanoseconds}
+     */
+    private final long deadlineNanos;
+
+    private volatile boolean closed;
+
+    Deadline(@Nullable Deadline previous, long deadlineNanos) {
+        this.previous = previous;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Open a {@link Deadline} after the timeout and bind it to the current thread
+     *
+     * @param timeout the timeout
+     * @param unit    the {@link TimeUnit} of timeout
+     * @return non-null
+     */
+    @Nonnull
+    public static Deadline open(long timeout, TimeUnit unit) {
+        assertTrue(timeout >= 0, () -> "The 'timeout' must not be negative!");
+        assertNotNull(unit, () -> "The 'unit' must not be null!");
+        Deadline previous = currentDeadline.get();
+        long deadlineNanos = nanoTime() + unit.toNanos(timeout);
+        if (previous != null && previous.deadlineNanos - deadlineNanos < 0) {
+            deadlineNanos = previous.deadlineNanos;
+        }
+        Deadline deadline = new Deadline(previous, deadlineNanos);
+        currentDeadline.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * Get the {@link Deadline} bound to the current thread
+     *
+     * @return <code>null</code> if absent
+     */
+    @Nullable
+    public static Deadline current() {
+        return currentDeadline.get();
+    }
+
+    /**
+     * Get the remaining time before the deadline
+     *
+     * @param unit the {@link TimeUnit} of the remaining time
+     * @return negative or zero if expired
+     */
+    public long getRemaining(TimeUnit unit) {
+        return unit.convert(this.deadlineNanos - nanoTime(), NANOSECONDS);
+    }
+
+    /**
+     * The deadline expired or not
+     *
+     * @return <code>true</code> if expired
+     */
+    public boolean isExpired() {
+        return this.deadlineNanos - nanoTime() <= 0;
+    }
+
+    /**
+     * Reduce the query timeout of {@link Statement} to the remaining seconds(rounded up) before the deadline
+     *
+     * @param statement {@link Statement}
+     * @throws SQLTimeoutException if the deadline expired
+     * @throws SQLException        if failed to set the query timeout
+     */
+    public void apply(Statement statement) throws SQLException {
+        long remaining = this.deadlineNanos - nanoTime();
+        if (remaining <= 0) {
+            throw expired();
+        }
+        int remainingSeconds = (int) min(Integer.MAX_VALUE, (remaining + SECONDS.toNanos(1) - 1) / SECONDS.toNanos(1));
+        int queryTimeout = statement.getQueryTimeout();
+        if (queryTimeout == 0 || queryTimeout > remainingSeconds) {
+            statement.setQueryTimeout(remainingSeconds);
+        }
+    }
+
+    /**
+     * Create the {@link SQLTimeoutException} for the expired deadline
+     *
+     * @return non-null
+     */
+    @Nonnull
+    public SQLTimeoutException expired() {
+        return new SQLTimeoutException("The deadline expired " + NANOSECONDS.toMillis(nanoTime() - this.deadlineNanos)
+                + " ms ago");
+    }
+
+    /**
+     * The deadline was closed or not
+     *
+     * @return <code>true</code> if closed
+     */
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Close the deadline and restore the previous deadline to the current thread
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (currentDeadline.get() == this) {
+            if (this.previous == null) {
+                currentDeadline.remove();
+            } else {
+                currentDeadline.set(this.previous);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline{" +
+                "remaining=" + getRemaining(MILLISECONDS) + " ms" +
+                ", closed=" + this.closed +
+                '}';
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.logging.Logger;
+import io.microsphere.mybatis.plugin.StatementTrackingInterceptor;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.util.Assert.assertNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * {@link ExecutorFilter} propagates the {@link Deadline} of the current thread to the executions of the statements :
+ * the execution fails fast with {@link SQLTimeoutException} if the deadline expired, otherwise the in-flight
+ * statements are cancelled when the deadline hits.
+ * <p>
+ * The statements are cancelled by {@link StatementTracker}, thus {@link StatementTrackingInterceptor} must be added
+ * into the MyBatis {@link org.apache.ibatis.session.Configuration}, which also reduces the JDBC query timeout of the
+ * statements to the remaining time of the deadline.
+ * <p>
+ * The statement of {@link #queryCursor(MappedStatement, Object, RowBounds, ExecutorFilterChain) the cursor query} is
+ * tracked until the {@link Cursor} is closed, by the caller or along with the {@link org.apache.ibatis.session.SqlSession},
+ * because the rows are fetched on the connection during the iteration, thus the cursor is cancelled if the deadline hits
+ * before it's closed.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   configuration.addInterceptor(new StatementTrackingInterceptor());
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[]{new DeadlineExecutorFilter()}));
+ *
+ *   try (Deadline deadline = Deadline.open(800, MILLISECONDS)) {
+ *       userMapper.getUserById(1);
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see Deadline
+ * @see StatementTracker
+ * @see StatementTrackingInterceptor
+ * @see ExecutorFilter
+ * @since 1.0.0
+ */
+public class DeadlineExecutorFilter implements ExecutorFilter, AutoCloseable {
+
+    private static final Logger logger = getLogger(DeadlineExecutorFilter.class);
+
+    private final ScheduledExecutorService scheduler;
+
+    private final boolean shutdownScheduler;
+
+    private final LongAdder expiredCount = new LongAdder();
+
+    private final LongAdder timedOutCount = new LongAdder();
+
+    public DeadlineExecutorFilter() {
+        this(newScheduler(), true);
+    }
+
+    public DeadlineExecutorFilter(ScheduledExecutorService scheduler) {
+        this(scheduler, false);
+    }
+
+    DeadlineExecutorFilter(ScheduledExecutorService scheduler, boolean shutdownScheduler) {
+        assertNotNull(scheduler, () -> "The 'scheduler' must not be null!");
+        this.scheduler = scheduler;
+        this.shutdownScheduler = shutdownScheduler;
+    }
+
+    @Override
+    public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.update(ms, parameter));
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql));
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.query(ms, parameter, rowBounds, resultHandler));
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                     ExecutorFilterChain chain) throws SQLException {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return chain.queryCursor(ms, parameter, rowBounds);
+        }
+        long remaining = getRemaining(ms, deadline);
+        StatementTracker tracker = StatementTracker.open();
+        ScheduledFuture<?> future = this.scheduler.schedule(() -> cancel(ms, tracker), remaining, NANOSECONDS);
+        Runnable release = () -> {
+            future.cancel(false);
+            tracker.close();
+        };
+        Cursor<E> cursor;
+        try {
+            cursor = chain.queryCursor(ms, parameter, rowBounds);
+        } catch (SQLException e) {
+            release.run();
+            throw translate(e, deadline, tracker);
+        } catch (Throwable e) {
+            release.run();
+            throw e;
+        }
+        // The rows are fetched during the iteration, thus the statement is tracked until the cursor is closed
+        tracker.unbind();
+        return new ClosingCallbackCursor<>(cursor, release);
+    }
+
+    <R> R execute(MappedStatement ms, ExecutorFilterChain chain, Execution<R> execution) throws SQLException {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return execution.execute(chain);
+        }
+        long remaining = getRemaining(ms, deadline);
+        StatementTracker tracker = StatementTracker.open();
+        ScheduledFuture<?> future = this.scheduler.schedule(() -> cancel(ms, tracker), remaining, NANOSECONDS);
+        try {
+            return execution.execute(chain);
+        } catch (SQLException e) {
+            throw translate(e, deadline, tracker);
+        } finally {
+            future.cancel(false);
+            tracker.close();
+        }
+    }
+
+    long getRemaining(MappedStatement ms, Deadline deadline) throws SQLTimeoutException {
+        long remaining = deadline.getRemaining(NANOSECONDS);
+        if (remaining <= 0) {
+            this.expiredCount.increment();
+            logger.trace("The statement['{}'] is not executed, because the deadline expired : {}", ms.getId(),
+                    deadline);
+            throw deadline.expired();
+        }
+        return remaining;
+    }
+
+    SQLException translate(SQLException failure, Deadline deadline, StatementTracker tracker) {
+        if (tracker.isCancelled()) {
+            this.timedOutCount.increment();
+            SQLTimeoutException timeout = deadline.expired();
+            timeout.initCause(failure);
+            return timeout;
+        }
+        return failure;
+    }
+
+    void cancel(MappedStatement ms, StatementTracker tracker) {
+        if (tracker.isClosed()) {
+            return;
+        }
+        if (tracker.cancel()) {
+            logger.trace("The statement['{}'] was cancelled, because the deadline hit", ms.getId());
+        }
+    }
+
+    /**
+     * Get the count of the executions failed fast because the deadline expired
+     *
+     * @return non-negative
+     */
+    public long getExpiredCount() {
+        return this.expiredCount.sum();
+    }
+
+    /**
+     * Get the count of the executions failed because the deadline hit during the executions
+     *
+     * @return non-negative
+     */
+    public long getTimedOutCount() {
+        return this.timedOutCount.sum();
+    }
+
+    @Override
+    public void close() {
+        if (this.shutdownScheduler) {
+            this.scheduler.shutdownNow();
+        }
+    }
+
+    static ScheduledExecutorService newScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "mybatis-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import java.sql.SQLException;
+
+/**
+ * The execution of the statement on the {@link ExecutorFilterChain}, which is wrapped by the {@link ExecutorFilter
+ * ExecutorFilters} to be limited, timed or retried, the chain is passed to the execution, thus it could be proceeded
+ * on a forked chain, e.g. the retry on a fresh {@link org.apache.ibatis.executor.Executor}.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+ *       return execute(ms, chain, c -> c.update(ms, parameter));
+ *   }
+ *
+ *   <R> R execute(MappedStatement ms, ExecutorFilterChain chain, Execution<R> execution) throws SQLException {
+ *       semaphore.acquire();
+ *       try {
+ *           return execution.execute(chain);
+ *       } finally {
+ *           semaphore.release();
+ *       }
+ *   }
+ * }</pre>
+ *
+ * @param <R> the type of result
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ExecutorFilter
+ * @see ExecutorFilterChain
+ * @since 1.0.0
+ */
+@FunctionalInterface
+interface Execution<R> {
+
+    /**
+     * Execute the statement on the specified {@link ExecutorFilterChain}
+     *
+     * @param chain {@link ExecutorFilterChain}
+     * @return the result of execution
+     * @throws SQLException if the execution fails
+     */
+    R execute(ExecutorFilterChain chain) throws SQLException;
+}
@@ -91,6 +91,14 @@ public class ExecutorFilterChain {
         this.position = 0;
     }
 
+    private ExecutorFilterChain(ExecutorFilterChain chain, Executor executor) {
+        this.executor = executor;
+        this.properties = chain.properties;
+        this.filters = chain.filters;
+        this.size = chain.size;
+        this.position = chain.position;
+    }
+
     /**
      * Execute {@link Executor#update(MappedStatement, Object)} through the filter chain.
      *
@@ -320,6 +328,45 @@ public class ExecutorFilterChain {
         return result;
     }
 
+    /**
+     * Fork a new {@link ExecutorFilterChain} from the current position, which invokes the rest
+     * {@link ExecutorFilter filters} and the {@link Executor} again, e.g. to retry the execution.
+     * <p>
+     * The chain must be forked before it proceeds, because the position moves forward during the execution.
+     *
+     * <h3>Example Usage</h3>
+     * <pre>{@code
+     *   public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+     *       ExecutorFilterChain retryChain = chain.fork();
+     *       try {
+     *           return chain.update(ms, parameter);
+     *       } catch (SQLTransientException e) {
+     *           return retryChain.update(ms, parameter);
+     *       }
+     *   }
+     * }</pre>
+     *
+     * @return non-null
+     */
+    @Nonnull
+    public ExecutorFilterChain fork() {
+        return fork(this.executor);
+    }
+
+    /**
+     * Fork a new {@link ExecutorFilterChain} from the current position on the specified {@link Executor}, which
+     * invokes the rest {@link ExecutorFilter filters} and the specified {@link Executor}.
+     *
+     * @param executor the target {@link Executor}
+     * @return non-null
+     * @see #fork()
+     */
+    @Nonnull
+    public ExecutorFilterChain fork(Executor executor) {
+        assertNotNull(executor, () -> "The 'executor' must not be null!");
+        return new ExecutorFilterChain(this, executor);
+    }
+
     /**
      * Get the {@link Executor}
      *
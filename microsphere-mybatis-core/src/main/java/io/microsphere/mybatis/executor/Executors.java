@@ -17,12 +17,27 @@
 
 package io.microsphere.mybatis.executor;
 
+import io.microsphere.annotation.Nullable;
 import io.microsphere.logging.Logger;
 import org.apache.ibatis.executor.CachingExecutor;
 import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 
 import static io.microsphere.logging.LoggerFactory.getLogger;
 import static io.microsphere.reflect.FieldUtils.getFieldValue;
+import static java.lang.reflect.Modifier.isStatic;
 
 /**
  * The utilities class for {@link Executor}
@@ -46,6 +61,38 @@ public abstract class Executors {
 
     private static final Logger logger = getLogger(Executors.class);
 
+    /**
+     * The class name of mybatis-spring "SpringManagedTransaction"
+     */
+    static final String SPRING_MANAGED_TRANSACTION_CLASS_NAME = "org.mybatis.spring.transaction.SpringManagedTransaction";
+
+    /**
+     * The class name of Spring "TransactionSynchronizationManager"
+     */
+    static final String TRANSACTION_SYNCHRONIZATION_MANAGER_CLASS_NAME = "org.springframework.transaction.support.TransactionSynchronizationManager";
+
+    /**
+     * The accessible instance fields of {@link Transaction} classes keyed by their names, the fields are read rather
+     * than the properties, because the getter {@link Transaction#getConnection()} opens the {@link Connection}.
+     */
+    private static final ClassValue<Map<String, Field>> transactionFields = new ClassValue<>() {
+        @Override
+        protected Map<String, Field> computeValue(Class<?> type) {
+            Map<String, Field> fields = new HashMap<>();
+            for (Class<?> t = type; t != null && t != Object.class; t = t.getSuperclass()) {
+                for (Field field : t.getDeclaredFields()) {
+                    if (!isStatic(field.getModifiers()) && !fields.containsKey(field.getName()) && field.trySetAccessible()) {
+                        fields.put(field.getName(), field);
+                    }
+                }
+            }
+            return fields;
+        }
+    };
+
+    @Nullable
+    private static volatile Method isActualTransactionActiveMethod;
+
     /**
      * Get the delegate {@link Executor} from the specified {@link CachingExecutor}.
      *
@@ -66,6 +113,140 @@ public abstract class Executors {
         return delegate;
     }
 
+    /**
+     * Create a new {@link SimpleExecutor} on the specified {@link DataSource} without any plugin, whose
+     * {@link JdbcTransaction transaction} is auto-commit. It's useful to execute the statements out of the current
+     * session, e.g, on the read replicas.
+     *
+     * <h3>Example Usage</h3>
+     * <pre>{@code
+     *   Executor executor = Executors.newSimpleExecutor(configuration, replicaDataSource);
+     *   try {
+     *       List<User> users = executor.query(ms, parameter, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+     *   } finally {
+     *       executor.close(false);
+     *   }
+     * }</pre>
+     *
+     * @param configuration {@link Configuration}
+     * @param dataSource    {@link DataSource}
+     * @return the new {@link SimpleExecutor} that must be closed after use
+     */
+    public static Executor newSimpleExecutor(Configuration configuration, DataSource dataSource) {
+        return newSimpleExecutor(configuration, dataSource, true);
+    }
+
+    /**
+     * Create a new {@link SimpleExecutor} on the specified {@link DataSource} without any plugin.
+     *
+     * @param configuration {@link Configuration}
+     * @param dataSource    {@link DataSource}
+     * @param autoCommit    the {@link JdbcTransaction transaction} is auto-commit or not
+     * @return the new {@link SimpleExecutor} that must be closed after use
+     * @see #newSimpleExecutor(Configuration, DataSource)
+     */
+    public static Executor newSimpleExecutor(Configuration configuration, DataSource dataSource, boolean autoCommit) {
+        JdbcTransaction transaction = new JdbcTransaction(dataSource, null, autoCommit);
+        Executor executor = new SimpleExecutor(configuration, transaction);
+        logger.trace("A new SimpleExecutor(autoCommit : {}) was created on the DataSource : {}", autoCommit, dataSource);
+        return executor;
+    }
+
+    /**
+     * Get the {@link DataSource} of the {@link Transaction} of the specified {@link Executor}, which may be different
+     * from the {@link Environment#getDataSource() DataSource of Environment}, e.g. the session opened on the
+     * additional {@link DataSource} by {@link io.microsphere.mybatis.session.SharedConfigurationSqlSessionFactory}.
+     *
+     * <h3>Example Usage</h3>
+     * <pre>{@code
+     *   Executor executor = Executors.newSimpleExecutor(configuration, replicaDataSource);
+     *   DataSource dataSource = Executors.getDataSource(executor);
+     *   // dataSource == replicaDataSource
+     * }</pre>
+     *
+     * @param executor the {@link Executor}
+     * @return <code>null</code> if the {@link Executor} was closed or its {@link Transaction} was not created on a
+     * {@link DataSource}, e.g. opened with a {@link java.sql.Connection}
+     */
+    @Nullable
+    public static DataSource getDataSource(Executor executor) {
+        if (executor.isClosed()) {
+            return null;
+        }
+        Transaction transaction = executor.getTransaction();
+        if (transaction == null) {
+            return null;
+        }
+        // JdbcTransaction, ManagedTransaction and SpringManagedTransaction hold the DataSource in the same field
+        return getField(transaction, "dataSource") instanceof DataSource dataSource ? dataSource : null;
+    }
+
+    /**
+     * Determine the auto-commit mode of the {@link Transaction} of the specified {@link Executor} without opening
+     * its {@link Connection} :
+     * <ul>
+     *     <li>The mode of the opened {@link Connection}</li>
+     *     <li>The desired mode of {@link JdbcTransaction} whose {@link Connection} is not opened</li>
+     *     <li>The mybatis-spring "SpringManagedTransaction" joins the {@link Connection} of the active Spring
+     *     transaction, which is not auto-commit</li>
+     *     <li>Otherwise, auto-commit, as the {@link Connection} opened later is auto-commit by default</li>
+     * </ul>
+     *
+     * <h3>Example Usage</h3>
+     * <pre>{@code
+     *   if (Executors.isAutoCommit(chain.getExecutor())) {
+     *       // route the read to the replica
+     *   }
+     * }</pre>
+     *
+     * @param executor the {@link Executor}
+     * @return <code>true</code> if auto-commit
+     * @throws SQLException if the mode of the opened {@link Connection} can't be determined
+     */
+    public static boolean isAutoCommit(Executor executor) throws SQLException {
+        Transaction transaction = executor.getTransaction();
+        if (getField(transaction, "connection") instanceof Connection connection) {
+            return connection.getAutoCommit();
+        }
+        if (transaction instanceof JdbcTransaction) {
+            return Boolean.TRUE.equals(getField(transaction, "autoCommit"));
+        }
+        if (SPRING_MANAGED_TRANSACTION_CLASS_NAME.equals(transaction.getClass().getName())) {
+            return !isActualTransactionActive(transaction);
+        }
+        return true;
+    }
+
+    static boolean isActualTransactionActive(Transaction transaction) {
+        Method method = isActualTransactionActiveMethod;
+        try {
+            if (method == null) {
+                Class<?> type = Class.forName(TRANSACTION_SYNCHRONIZATION_MANAGER_CLASS_NAME, true,
+                        transaction.getClass().getClassLoader());
+                method = type.getMethod("isActualTransactionActive");
+                isActualTransactionActiveMethod = method;
+            }
+            return Boolean.TRUE.equals(method.invoke(null));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.trace("The Spring transaction can't be determined : {}", e.getMessage());
+            return false;
+        }
+    }
+
+    @Nullable
+    static Object getField(Transaction transaction, String name) {
+        Field field = transactionFields.get(transaction.getClass()).get(name);
+        if (field == null) {
+            return null;
+        }
+        try {
+            return field.get(transaction);
+        } catch (IllegalAccessException e) {
+            logger.trace("The field['{}'] of {} can't be read : {}", name, transaction, e.getMessage());
+            return null;
+        }
+    }
+
     private Executors() {
     }
 }
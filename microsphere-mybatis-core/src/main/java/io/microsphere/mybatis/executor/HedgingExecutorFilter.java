@@ -0,0 +1,483 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.logging.Logger;
+import io.microsphere.mybatis.plugin.StatementTrackingInterceptor;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.collection.ListUtils.ofList;
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.mybatis.executor.Executors.isAutoCommit;
+import static io.microsphere.mybatis.executor.Executors.newSimpleExecutor;
+import static io.microsphere.util.Assert.assertNotEmpty;
+import static io.microsphere.util.Assert.assertNotNull;
+import static io.microsphere.util.Assert.assertTrue;
+import static java.lang.Math.min;
+import static java.lang.System.nanoTime;
+import static java.util.Collections.addAll;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.apache.ibatis.executor.Executor.NO_RESULT_HANDLER;
+import static org.apache.ibatis.mapping.SqlCommandType.SELECT;
+
+/**
+ * {@link ExecutorFilter} issues the hedged read requests to the read replica {@link DataSource DataSources}.
+ * <p>
+ * The query is executed on the primary (the session) as usual, if it has not returned within the
+ * {@link #setPercentile(double) percentile}(p95 as default) of the latencies of its {@link MappedStatement}, the same
+ * query will be issued to a read replica, the one finishes first wins and the loser will be cancelled via
+ * {@link java.sql.Statement#cancel()}. The hedged requests are throttled by {@link #setMaxHedgeRatio(double) the ratio}
+ * of the queries, so that they can't double the load of databases.
+ * <p>
+ * Only the {@link org.apache.ibatis.mapping.SqlCommandType#SELECT select statements} without {@link ResultHandler}
+ * running in the auto-commit connections are hedged, and the {@link StatementTrackingInterceptor} must be added into
+ * the MyBatis {@link org.apache.ibatis.session.Configuration} to cancel the losers.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   HedgingExecutorFilter filter = new HedgingExecutorFilter(replicaDataSource1, replicaDataSource2)
+ *       .setPercentile(0.95)
+ *       .setMaxHedgeRatio(0.05)
+ *       .addStatementIds("com.acme.UserMapper.getUserById");
+ *   configuration.addInterceptor(new StatementTrackingInterceptor());
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[]{filter}));
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ExecutorFilter
+ * @see StatementTracker
+ * @see StatementTrackingInterceptor
+ * @see LatencyWindow
+ * @since 1.0.0
+ */
+public class HedgingExecutorFilter implements ExecutorFilter, AutoCloseable {
+
+    private static final Logger logger = getLogger(HedgingExecutorFilter.class);
+
+    /**
+     * The default percentile of the latencies as the delay of hedged request
+     */
+    public static final double DEFAULT_PERCENTILE = 0.95;
+
+    /**
+     * The default min samples of the latencies before hedging
+     */
+    public static final int DEFAULT_MIN_SAMPLES = 20;
+
+    /**
+     * The default max ratio of the hedged requests to the queries
+     */
+    public static final double DEFAULT_MAX_HEDGE_RATIO = 0.1;
+
+    /**
+     * The default max burst of the hedged requests
+     */
+    public static final int DEFAULT_MAX_HEDGE_BURST = 10;
+
+    /**
+     * The scale of hedge credits
+     */
+    static final long CREDIT_SCALE = 1000;
+
+    private static final int RUNNING = 0;
+
+    private static final int PRIMARY_WON = 1;
+
+    private static final int HEDGE_WON = 2;
+
+    private final List<DataSource> replicas;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final boolean shutdownScheduler;
+
+    private final AtomicInteger replicaIndex = new AtomicInteger();
+
+    private final Map<String, LatencyWindow> latencyWindows = new ConcurrentHashMap<>();
+
+    private final Set<String> statementIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The primary query is executing in the current thread or not, which avoids hedging the nested queries
+     */
+    private final ThreadLocal<Boolean> executingPrimary = new ThreadLocal<>();
+
+    private final AtomicLong hedgeCredits = new AtomicLong();
+
+    private final LongAdder hedgeCount = new LongAdder();
+
+    private final LongAdder hedgeWinCount = new LongAdder();
+
+    private final LongAdder throttledCount = new LongAdder();
+
+    private volatile double percentile = DEFAULT_PERCENTILE;
+
+    private volatile int minSamples = DEFAULT_MIN_SAMPLES;
+
+    private volatile double maxHedgeRatio = DEFAULT_MAX_HEDGE_RATIO;
+
+    private volatile int maxHedgeBurst = DEFAULT_MAX_HEDGE_BURST;
+
+    public HedgingExecutorFilter(DataSource... replicas) {
+        this(ofList(replicas), newScheduler(replicas.length), true);
+    }
+
+    public HedgingExecutorFilter(List<DataSource> replicas, ScheduledExecutorService scheduler) {
+        this(replicas, scheduler, false);
+    }
+
+    HedgingExecutorFilter(List<DataSource> replicas, ScheduledExecutorService scheduler, boolean shutdownScheduler) {
+        assertNotEmpty(replicas, () -> "The 'replicas' must not be empty!");
+        assertTrue(replicas.stream().allMatch(Objects::nonNull), () -> "Any element of 'replicas' must not be null!");
+        assertNotNull(scheduler, () -> "The 'scheduler' must not be null!");
+        this.replicas = replicas;
+        this.scheduler = scheduler;
+        this.shutdownScheduler = shutdownScheduler;
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        return query(ms, parameter, rowBounds, resultHandler, chain,
+                () -> chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql));
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        return query(ms, parameter, rowBounds, resultHandler, chain,
+                () -> chain.query(ms, parameter, rowBounds, resultHandler));
+    }
+
+    <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                      ExecutorFilterChain chain, Query<E> primary) throws SQLException {
+        if (this.executingPrimary.get() != null || !isHedgeable(ms, resultHandler, chain)) {
+            return primary.execute();
+        }
+
+        depositHedgeCredit();
+
+        LatencyWindow latencyWindow = getLatencyWindow(ms.getId());
+        long hedgeDelay = getHedgeDelay(latencyWindow);
+        StatementTracker primaryTracker = StatementTracker.open();
+        Hedge<E> hedge = new Hedge<>(ms, parameter, rowBounds, primaryTracker);
+        ScheduledFuture<?> future = hedgeDelay < 0 ? null : this.scheduler.schedule(hedge, hedgeDelay, NANOSECONDS);
+        this.executingPrimary.set(Boolean.TRUE);
+        long startTime = nanoTime();
+        try {
+            List<E> result = primary.execute();
+            latencyWindow.record(nanoTime() - startTime);
+            hedge.completePrimary();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            if (hedge.isHedgeWon()) {
+                logger.trace("The hedged request of the statement['{}'] won, the primary was cancelled : {}",
+                        ms.getId(), e.getMessage());
+                this.hedgeWinCount.increment();
+                return hedge.result;
+            }
+            hedge.completePrimary();
+            throw e;
+        } finally {
+            if (future != null) {
+                future.cancel(false);
+            }
+            this.executingPrimary.remove();
+            primaryTracker.close();
+        }
+    }
+
+    /**
+     * Add the ids of {@link MappedStatement} to be hedged, all select statements will be hedged if none is added.
+     *
+     * @param statementIds the ids of {@link MappedStatement}
+     * @return {@link HedgingExecutorFilter}
+     */
+    public HedgingExecutorFilter addStatementIds(String... statementIds) {
+        addAll(this.statementIds, statementIds);
+        return this;
+    }
+
+    /**
+     * Set the percentile of the latencies as the delay of hedged request
+     *
+     * @param percentile the percentile in the range of (0, 1]
+     * @return {@link HedgingExecutorFilter}
+     */
+    public HedgingExecutorFilter setPercentile(double percentile) {
+        assertTrue(percentile > 0 && percentile <= 1, () -> "The 'percentile' must be in the range of (0, 1]!");
+        this.percentile = percentile;
+        return this;
+    }
+
+    /**
+     * Set the min samples of the latencies before hedging
+     *
+     * @param minSamples the min samples
+     * @return {@link HedgingExecutorFilter}
+     */
+    public HedgingExecutorFilter setMinSamples(int minSamples) {
+        assertTrue(minSamples > 0, () -> "The 'minSamples' must be positive!");
+        this.minSamples = minSamples;
+        return this;
+    }
+
+    /**
+     * Set the max ratio of the hedged requests to the queries
+     *
+     * @param maxHedgeRatio the max ratio in the range of (0, 1]
+     * @return {@link HedgingExecutorFilter}
+     */
+    public HedgingExecutorFilter setMaxHedgeRatio(double maxHedgeRatio) {
+        assertTrue(maxHedgeRatio > 0 && maxHedgeRatio <= 1, () -> "The 'maxHedgeRatio' must be in the range of (0, 1]!");
+        this.maxHedgeRatio = maxHedgeRatio;
+        return this;
+    }
+
+    /**
+     * Set the max burst of the hedged requests
+     *
+     * @param maxHedgeBurst the max burst
+     * @return {@link HedgingExecutorFilter}
+     */
+    public HedgingExecutorFilter setMaxHedgeBurst(int maxHedgeBurst) {
+        assertTrue(maxHedgeBurst > 0, () -> "The 'maxHedgeBurst' must be positive!");
+        this.maxHedgeBurst = maxHedgeBurst;
+        return this;
+    }
+
+    /**
+     * Get the delay of the hedged request for the specified statement
+     *
+     * @param statementId the id of {@link MappedStatement}
+     * @return the delay in nanoseconds, or <code>-1</code> if the samples of latencies are not enough
+     */
+    public long getHedgeDelay(String statementId) {
+        LatencyWindow latencyWindow = this.latencyWindows.get(statementId);
+        return latencyWindow == null ? -1 : getHedgeDelay(latencyWindow);
+    }
+
+    /**
+     * Get the count of the issued hedged requests
+     *
+     * @return non-negative
+     */
+    public long getHedgeCount() {
+        return this.hedgeCount.sum();
+    }
+
+    /**
+     * Get the count of the hedged requests finished before the primaries
+     *
+     * @return non-negative
+     */
+    public long getHedgeWinCount() {
+        return this.hedgeWinCount.sum();
+    }
+
+    /**
+     * Get the count of the hedged requests throttled by the max ratio
+     *
+     * @return non-negative
+     */
+    public long getThrottledCount() {
+        return this.throttledCount.sum();
+    }
+
+    public double getPercentile() {
+        return this.percentile;
+    }
+
+    public int getMinSamples() {
+        return this.minSamples;
+    }
+
+    public double getMaxHedgeRatio() {
+        return this.maxHedgeRatio;
+    }
+
+    public int getMaxHedgeBurst() {
+        return this.maxHedgeBurst;
+    }
+
+    @Override
+    public void close() {
+        if (this.shutdownScheduler) {
+            this.scheduler.shutdownNow();
+        }
+    }
+
+    boolean isHedgeable(MappedStatement ms, ResultHandler resultHandler, ExecutorFilterChain chain) throws SQLException {
+        if (ms.getSqlCommandType() != SELECT || resultHandler != NO_RESULT_HANDLER) {
+            return false;
+        }
+        Set<String> statementIds = this.statementIds;
+        if (!statementIds.isEmpty() && !statementIds.contains(ms.getId())) {
+            return false;
+        }
+        Executor executor = chain.getExecutor();
+        // Cancelling the statement may abort the transaction, thus only the auto-commit session is hedged,
+        // the mode is determined without opening the connection
+        return !executor.isClosed() && isAutoCommit(executor);
+    }
+
+    long getHedgeDelay(LatencyWindow latencyWindow) {
+        return latencyWindow.getCount() < this.minSamples ? -1 : latencyWindow.percentile(this.percentile);
+    }
+
+    LatencyWindow getLatencyWindow(String statementId) {
+        return this.latencyWindows.computeIfAbsent(statementId, id -> new LatencyWindow());
+    }
+
+    void depositHedgeCredit() {
+        long credit = (long) (this.maxHedgeRatio * CREDIT_SCALE);
+        long maxCredits = this.maxHedgeBurst * CREDIT_SCALE;
+        this.hedgeCredits.updateAndGet(credits -> min(credits + credit, maxCredits));
+    }
+
+    boolean tryAcquireHedgeCredit() {
+        long credits;
+        do {
+            credits = this.hedgeCredits.get();
+            if (credits < CREDIT_SCALE) {
+                return false;
+            }
+        } while (!this.hedgeCredits.compareAndSet(credits, credits - CREDIT_SCALE));
+        return true;
+    }
+
+    DataSource selectReplica() {
+        List<DataSource> replicas = this.replicas;
+        int index = this.replicaIndex.getAndIncrement() & Integer.MAX_VALUE;
+        return replicas.get(index % replicas.size());
+    }
+
+    static ScheduledExecutorService newScheduler(int replicas) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(Math.max(replicas, 1) * 2, runnable -> {
+            Thread thread = new Thread(runnable, "mybatis-hedging-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * The query
+     *
+     * @param <E> the type of elements
+     */
+    interface Query<E> {
+
+        List<E> execute() throws SQLException;
+    }
+
+    /**
+     * The hedged request
+     *
+     * @param <E> the type of elements
+     */
+    class Hedge<E> implements Runnable {
+
+        private final MappedStatement ms;
+
+        private final Object parameter;
+
+        private final RowBounds rowBounds;
+
+        private final StatementTracker primaryTracker;
+
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+        private volatile StatementTracker hedgeTracker;
+
+        private volatile List<E> result;
+
+        Hedge(MappedStatement ms, Object parameter, RowBounds rowBounds, StatementTracker primaryTracker) {
+            this.ms = ms;
+            this.parameter = parameter;
+            this.rowBounds = rowBounds;
+            this.primaryTracker = primaryTracker;
+        }
+
+        @Override
+        public void run() {
+            if (this.state.get() != RUNNING) {
+                return;
+            }
+            if (!tryAcquireHedgeCredit()) {
+                throttledCount.increment();
+                logger.trace("The hedged request of the statement['{}'] was throttled", ms.getId());
+                return;
+            }
+            hedgeCount.increment();
+            DataSource replica = selectReplica();
+            Executor executor = newSimpleExecutor(ms.getConfiguration(), replica);
+            StatementTracker tracker = StatementTracker.open();
+            this.hedgeTracker = tracker;
+            try {
+                if (this.state.get() != RUNNING) {
+                    return;
+                }
+                logger.trace("The hedged request of the statement['{}'] is issued to the replica : {}", ms.getId(), replica);
+                List<E> result = executor.query(ms, parameter, rowBounds, NO_RESULT_HANDLER);
+                this.result = result;
+                if (this.state.compareAndSet(RUNNING, HEDGE_WON)) {
+                    this.primaryTracker.cancel();
+                }
+            } catch (Throwable e) {
+                logger.trace("The hedged request of the statement['{}'] failed : {}", ms.getId(), e.getMessage());
+            } finally {
+                tracker.close();
+                executor.close(false);
+            }
+        }
+
+        void completePrimary() {
+            if (this.state.compareAndSet(RUNNING, PRIMARY_WON)) {
+                StatementTracker tracker = this.hedgeTracker;
+                if (tracker != null) {
+                    tracker.cancel();
+                }
+            }
+        }
+
+        boolean isHedgeWon() {
+            return this.state.get() == HEDGE_WON;
+        }
+    }
+}
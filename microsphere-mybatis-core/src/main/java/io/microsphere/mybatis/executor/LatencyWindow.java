@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static io.microsphere.util.Assert.assertTrue;
+
+/**
+ * The sliding window of the latest latencies, which evaluates the percentiles of them.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   LatencyWindow window = new LatencyWindow(100);
+ *   long start = System.nanoTime();
+ *   executor.query(ms, parameter, rowBounds, resultHandler);
+ *   window.record(System.nanoTime() - start);
+ *   long p95 = window.percentile(0.95);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see HedgingExecutorFilter
+ * @since 1.0.0
+ */
+public class LatencyWindow {
+
+    /**
+     * The default size of window
+     */
+    public static final int DEFAULT_SIZE = 128;
+
+    private final long[] samples;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private int index;
+
+    private int count;
+
+    public LatencyWindow() {
+        this(DEFAULT_SIZE);
+    }
+
+    public LatencyWindow(int size) {
+        assertTrue(size > 0, () -> "The 'size' must be positive!");
+        this.samples = new long[size];
+    }
+
+    /**
+     * Record the latency
+     *
+     * @param latency the latency, e.g, nanoseconds
+     */
+    public void record(long latency) {
+        lock.lock();
+        try {
+            samples[index] = latency;
+            index = (index + 1) % samples.length;
+            if (count < samples.length) {
+                count++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evaluate the percentile of the latencies in the window
+     *
+     * @param percentile the percentile in the range of (0, 1], e.g, 0.95
+     * @return the latency of the percentile, or <code>-1</code> if no latency was recorded
+     */
+    public long percentile(double percentile) {
+        assertTrue(percentile > 0 && percentile <= 1, () -> "The 'percentile' must be in the range of (0, 1]!");
+        long[] values = snapshot();
+        int length = values.length;
+        if (length == 0) {
+            return -1;
+        }
+        Arrays.sort(values);
+        int position = (int) Math.ceil(percentile * length) - 1;
+        return values[Math.max(position, 0)];
+    }
+
+    /**
+     * Get the count of latencies in the window
+     *
+     * @return non-negative
+     */
+    public int getCount() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the size of window
+     *
+     * @return positive integer
+     */
+    public int getSize() {
+        return samples.length;
+    }
+
+    long[] snapshot() {
+        lock.lock();
+        try {
+            return Arrays.copyOf(samples, count);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
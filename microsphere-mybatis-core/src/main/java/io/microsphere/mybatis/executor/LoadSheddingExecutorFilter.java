@@ -0,0 +1,399 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import io.microsphere.mybatis.datasource.ConnectionPoolAdapter;
+import io.microsphere.mybatis.datasource.ConnectionPoolStats;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.lang.Prioritized.NORMAL_PRIORITY;
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.text.FormatUtils.format;
+import static io.microsphere.util.Assert.assertNotNull;
+import static io.microsphere.util.Assert.assertTrue;
+import static io.microsphere.util.ServiceLoaderUtils.loadServicesList;
+import static java.lang.System.nanoTime;
+import static java.util.Collections.unmodifiableList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * {@link ExecutorFilter} sheds the low-priority executions of {@link MappedStatement MappedStatements} when the
+ * connection pool is saturated, thus the capacity is preserved for the critical mappers.
+ * <p>
+ * The {@link ConnectionPoolStats statistics} of the pool are sampled by the {@link ConnectionPoolAdapter} supporting
+ * the {@link DataSource} at most once per {@link #getSampleInterval() the sample interval}, the pools without any
+ * adapter are never shed. The priority of a statement is resolved by {@link StatementPriorityResolver}, the smaller
+ * value is the higher priority as same as {@link io.microsphere.lang.Prioritized}.
+ * <p>
+ * An execution is shed by {@link StatementRejectedException} if the threads waiting for the connections exceed
+ * {@link #setWaitingThreshold(int, int) the waiting threshold} of the nearest priority not higher than the one of the
+ * statement, the statements with higher priorities than all thresholds are never shed. By default, the statements
+ * with lower priorities than the normal priority are shed once any thread is waiting. The nested executions(e.g. the
+ * nested selects) of an admitted execution are never shed.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   LoadSheddingExecutorFilter filter = new LoadSheddingExecutorFilter()
+ *       .setPriority("com.acme.mapper.ReportMapper", 100)
+ *       // the normal statements are shed if more than 20 threads are waiting
+ *       .setWaitingThreshold(Prioritized.NORMAL_PRIORITY, 20);
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[]{filter}));
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ConnectionPoolAdapter
+ * @see StatementPriorityResolver
+ * @see StatementRejectedException
+ * @see ExecutorFilter
+ * @since 1.0.0
+ */
+public class LoadSheddingExecutorFilter implements ExecutorFilter {
+
+    private static final Logger logger = getLogger(LoadSheddingExecutorFilter.class);
+
+    /**
+     * The default priority of the statements shed first : {@link io.microsphere.lang.Prioritized#NORMAL_PRIORITY} + 1
+     */
+    public static final int DEFAULT_SHEDDING_PRIORITY = NORMAL_PRIORITY + 1;
+
+    /**
+     * The default threshold of the waiting threads for {@link #DEFAULT_SHEDDING_PRIORITY} : 0
+     */
+    public static final int DEFAULT_WAITING_THRESHOLD = 0;
+
+    /**
+     * The default interval of sampling the pool in milliseconds : 100
+     */
+    public static final long DEFAULT_SAMPLE_INTERVAL = 100;
+
+    private final List<ConnectionPoolAdapter> adapters;
+
+    /**
+     * The {@link PoolSampler samplers} keyed by {@link DataSource}
+     */
+    private final Map<DataSource, PoolSampler> samplers = new ConcurrentHashMap<>();
+
+    private final StatementPriorityResolver priorityResolver = new StatementPriorityResolver();
+
+    /**
+     * The thresholds of the waiting threads keyed by the priority
+     */
+    private volatile NavigableMap<Integer, Integer> waitingThresholds = new TreeMap<>();
+
+    /**
+     * The current thread is executing an admitted statement or not
+     */
+    private final ThreadLocal<Boolean> admitted = new ThreadLocal<>();
+
+    private final LongAdder shedCount = new LongAdder();
+
+    private volatile long sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+
+    public LoadSheddingExecutorFilter() {
+        this(loadServicesList(ConnectionPoolAdapter.class));
+    }
+
+    public LoadSheddingExecutorFilter(List<ConnectionPoolAdapter> adapters) {
+        assertNotNull(adapters, () -> "The 'adapters' must not be null!");
+        this.adapters = unmodifiableList(new ArrayList<>(adapters));
+        this.waitingThresholds.put(DEFAULT_SHEDDING_PRIORITY, DEFAULT_WAITING_THRESHOLD);
+    }
+
+    @Override
+    public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+        Boolean previous = admit(ms, chain);
+        try {
+            return chain.update(ms, parameter);
+        } finally {
+            restore(previous);
+        }
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        Boolean previous = admit(ms, chain);
+        try {
+            return chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        } finally {
+            restore(previous);
+        }
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        Boolean previous = admit(ms, chain);
+        try {
+            return chain.query(ms, parameter, rowBounds, resultHandler);
+        } finally {
+            restore(previous);
+        }
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                     ExecutorFilterChain chain) throws SQLException {
+        Boolean previous = admit(ms, chain);
+        try {
+            return chain.queryCursor(ms, parameter, rowBounds);
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Set the priority of the statement id or namespace
+     *
+     * @param key      the statement id or namespace
+     * @param priority the priority, the smaller value is the higher priority
+     * @return this
+     */
+    public LoadSheddingExecutorFilter setPriority(String key, int priority) {
+        this.priorityResolver.setPriority(key, priority);
+        return this;
+    }
+
+    /**
+     * Get the {@link StatementPriorityResolver}
+     *
+     * @return non-null
+     */
+    public StatementPriorityResolver getPriorityResolver() {
+        return this.priorityResolver;
+    }
+
+    /**
+     * Set the threshold of the waiting threads for the statements whose priorities are equal to or lower than the
+     * specified priority until the next lower priority with its own threshold
+     *
+     * @param priority         the priority
+     * @param waitingThreshold the max waiting threads before shedding
+     * @return this
+     */
+    public synchronized LoadSheddingExecutorFilter setWaitingThreshold(int priority, int waitingThreshold) {
+        assertTrue(waitingThreshold >= 0, () -> "The 'waitingThreshold' must not be negative!");
+        NavigableMap<Integer, Integer> waitingThresholds = new TreeMap<>(this.waitingThresholds);
+        waitingThresholds.put(priority, waitingThreshold);
+        this.waitingThresholds = waitingThresholds;
+        return this;
+    }
+
+    /**
+     * Remove the threshold of the waiting threads for the priority
+     *
+     * @param priority the priority
+     * @return this
+     */
+    public synchronized LoadSheddingExecutorFilter removeWaitingThreshold(int priority) {
+        NavigableMap<Integer, Integer> waitingThresholds = new TreeMap<>(this.waitingThresholds);
+        waitingThresholds.remove(priority);
+        this.waitingThresholds = waitingThresholds;
+        return this;
+    }
+
+    /**
+     * Get the threshold of the waiting threads for the statement priority
+     *
+     * @param priority the priority of statement
+     * @return <code>-1</code> if the statements of the priority are never shed
+     */
+    public int getWaitingThreshold(int priority) {
+        Map.Entry<Integer, Integer> entry = this.waitingThresholds.floorEntry(priority);
+        return entry == null ? -1 : entry.getValue();
+    }
+
+    /**
+     * Set the interval of sampling the pool in milliseconds
+     *
+     * @param sampleInterval the interval in milliseconds, <code>0</code> indicates sampling every execution
+     * @return this
+     */
+    public LoadSheddingExecutorFilter setSampleInterval(long sampleInterval) {
+        assertTrue(sampleInterval >= 0, () -> "The 'sampleInterval' must not be negative!");
+        this.sampleInterval = sampleInterval;
+        return this;
+    }
+
+    /**
+     * Get the interval of sampling the pool in milliseconds
+     *
+     * @return non-negative
+     */
+    public long getSampleInterval() {
+        return this.sampleInterval;
+    }
+
+    /**
+     * Get the {@link ConnectionPoolAdapter adapters}
+     *
+     * @return non-null read-only list
+     */
+    public List<ConnectionPoolAdapter> getAdapters() {
+        return this.adapters;
+    }
+
+    /**
+     * Get the last sampled {@link ConnectionPoolStats statistics} of {@link DataSource}
+     *
+     * @param dataSource {@link DataSource}
+     * @return <code>null</code> if the pool was not sampled or not supported
+     */
+    @Nullable
+    public ConnectionPoolStats getStats(DataSource dataSource) {
+        PoolSampler sampler = this.samplers.get(dataSource);
+        return sampler == null ? null : sampler.stats;
+    }
+
+    /**
+     * Get the count of the shed executions
+     *
+     * @return non-negative
+     */
+    public long getShedCount() {
+        return this.shedCount.sum();
+    }
+
+    @Nullable
+    Boolean admit(MappedStatement ms, ExecutorFilterChain chain) throws SQLException {
+        Boolean previous = this.admitted.get();
+        if (previous == null) {
+            shedIfSaturated(ms, chain);
+            this.admitted.set(Boolean.TRUE);
+        }
+        return previous;
+    }
+
+    void restore(@Nullable Boolean previous) {
+        if (previous == null) {
+            this.admitted.remove();
+        }
+    }
+
+    void shedIfSaturated(MappedStatement ms, ExecutorFilterChain chain) throws SQLException {
+        int priority = resolvePriority(ms);
+        int waitingThreshold = getWaitingThreshold(priority);
+        if (waitingThreshold < 0) {
+            return;
+        }
+        DataSource dataSource = resolveDataSource(ms, chain);
+        if (dataSource == null) {
+            return;
+        }
+        ConnectionPoolStats stats = this.samplers.computeIfAbsent(dataSource, this::createSampler).sample(this.sampleInterval);
+        if (stats != null && stats.getWaiting() > waitingThreshold) {
+            this.shedCount.increment();
+            throw new StatementRejectedException(format("The statement['{}'] with the priority[{}] was shed, because the connection pool is saturated : {}",
+                    ms.getId(), priority, stats), ms.getId());
+        }
+    }
+
+    /**
+     * Resolve the priority of {@link MappedStatement}
+     *
+     * @param ms {@link MappedStatement}
+     * @return the priority, the smaller value is the higher priority
+     */
+    protected int resolvePriority(MappedStatement ms) {
+        return this.priorityResolver.resolve(ms);
+    }
+
+    /**
+     * Resolve the target {@link DataSource} of {@link MappedStatement}
+     *
+     * @param ms    {@link MappedStatement}
+     * @param chain {@link ExecutorFilterChain}
+     * @return <code>null</code> if the execution should not be shed
+     */
+    @Nullable
+    protected DataSource resolveDataSource(MappedStatement ms, ExecutorFilterChain chain) {
+        Environment environment = ms.getConfiguration().getEnvironment();
+        return environment == null ? null : environment.getDataSource();
+    }
+
+    PoolSampler createSampler(DataSource dataSource) {
+        for (ConnectionPoolAdapter adapter : this.adapters) {
+            if (adapter.supports(dataSource)) {
+                return new PoolSampler(dataSource, adapter);
+            }
+        }
+        logger.trace("No ConnectionPoolAdapter supports the DataSource[{}], it will never be shed", dataSource);
+        return new PoolSampler(dataSource, null);
+    }
+
+    /**
+     * The sampler of the pool caching the last {@link ConnectionPoolStats statistics}
+     */
+    static class PoolSampler {
+
+        private final DataSource dataSource;
+
+        @Nullable
+        private final ConnectionPoolAdapter adapter;
+
+        private volatile ConnectionPoolStats stats;
+
+        private volatile long sampledNanos;
+
+        private volatile boolean sampled;
+
+        PoolSampler(DataSource dataSource, @Nullable ConnectionPoolAdapter adapter) {
+            this.dataSource = dataSource;
+            this.adapter = adapter;
+        }
+
+        @Nullable
+        ConnectionPoolStats sample(long sampleInterval) {
+            ConnectionPoolAdapter adapter = this.adapter;
+            if (adapter == null) {
+                return null;
+            }
+            long now = nanoTime();
+            ConnectionPoolStats stats = this.stats;
+            if (!this.sampled || now - this.sampledNanos >= MILLISECONDS.toNanos(sampleInterval)) {
+                try {
+                    stats = adapter.getStats(this.dataSource);
+                } catch (SQLException e) {
+                    logger.warn("The ConnectionPoolAdapter[{}] failed to sample the DataSource[{}]", adapter, this.dataSource, e);
+                    stats = null;
+                }
+                this.stats = stats;
+                this.sampledNanos = now;
+                this.sampled = true;
+            }
+            return stats;
+        }
+    }
+}
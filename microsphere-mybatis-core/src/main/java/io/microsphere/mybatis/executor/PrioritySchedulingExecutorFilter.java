@@ -0,0 +1,548 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.text.FormatUtils.format;
+import static io.microsphere.util.Assert.assertTrue;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.System.nanoTime;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * {@link ExecutorFilter} schedules the executions of {@link MappedStatement MappedStatements} by their priorities :
+ * at most {@link #getMaxConcurrency() the max concurrency}(e.g. the max size of the connection pool) executions are
+ * running, the others are queued and dispatched in the priority order rather than the FIFO-ish order of the
+ * connection pool, thus the critical statements(e.g. OLTP) run before the analytics ones when the connections are
+ * scarce.
+ * <p>
+ * The priority of a statement is resolved by {@link StatementPriorityResolver}, the smaller value is the higher
+ * priority as same as {@link io.microsphere.lang.Prioritized}. The queued executions are aged to prevent starvation :
+ * an execution waiting for {@link #getAgingInterval() the aging interval} is promoted by one priority, thus the order
+ * of two executions is determined by their enqueued times plus their priorities multiplied by the aging interval.
+ * <p>
+ * An execution waiting longer than {@link #getMaxWait() the max wait time}, or the remaining time of the current
+ * {@link Deadline}, is rejected by {@link StatementRejectedException}. The nested executions(e.g. the nested selects)
+ * reuse the slot of the outer one, and the slot of
+ * {@link #queryCursor(MappedStatement, Object, RowBounds, ExecutorFilterChain) the cursor query} is released once the
+ * {@link Cursor} is opened. The queue wait times are recorded into the {@link WaitStatistics} per priority.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   PrioritySchedulingExecutorFilter filter = new PrioritySchedulingExecutorFilter(20)
+ *       .setPriority("com.acme.mapper.ReportMapper", 100)
+ *       .setAgingInterval(10);
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[]{filter}));
+ *
+ *   WaitStatistics statistics = filter.getWaitStatistics(100);
+ *   long p99 = statistics.getPercentile(0.99);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see StatementPriorityResolver
+ * @see StatementPriority
+ * @see WaitStatistics
+ * @see ExecutorFilter
+ * @since 1.0.0
+ */
+public class PrioritySchedulingExecutorFilter implements ExecutorFilter {
+
+    private static final Logger logger = getLogger(PrioritySchedulingExecutorFilter.class);
+
+    /**
+     * The default aging interval in milliseconds promoting a queued execution by one priority : 10
+     */
+    public static final long DEFAULT_AGING_INTERVAL = 10;
+
+    /**
+     * The default max wait time in milliseconds : 30000
+     */
+    public static final long DEFAULT_MAX_WAIT = 30_000;
+
+    /**
+     * The bound of the priority offset in nanoseconds, which keeps the rank from overflow
+     */
+    private static final long MAX_PRIORITY_OFFSET = 1L << 60;
+
+    private final int maxConcurrency;
+
+    private final StatementPriorityResolver priorityResolver = new StatementPriorityResolver();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The queued {@link Ticket tickets}, guarded by {@link #lock}
+     */
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>();
+
+    /**
+     * The count of running executions, guarded by {@link #lock}
+     */
+    private int inFlight;
+
+    /**
+     * The sequence of the tickets, guarded by {@link #lock}
+     */
+    private long sequence;
+
+    /**
+     * The current thread holds a slot or not
+     */
+    private final ThreadLocal<Boolean> holding = new ThreadLocal<>();
+
+    /**
+     * The {@link WaitStatistics} keyed by the priority
+     */
+    private final Map<Integer, WaitStatistics> waitStatistics = new ConcurrentHashMap<>();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private volatile long agingInterval = DEFAULT_AGING_INTERVAL;
+
+    private volatile long maxWait = DEFAULT_MAX_WAIT;
+
+    public PrioritySchedulingExecutorFilter(int maxConcurrency) {
+        assertTrue(maxConcurrency > 0, () -> "The 'maxConcurrency' must be positive!");
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.update(ms, parameter));
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql));
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.query(ms, parameter, rowBounds, resultHandler));
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                     ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, chain, c -> c.queryCursor(ms, parameter, rowBounds));
+    }
+
+    <R> R execute(MappedStatement ms, ExecutorFilterChain chain, Execution<R> execution) throws SQLException {
+        if (this.holding.get() != null) {
+            return execution.execute(chain);
+        }
+        acquire(ms);
+        this.holding.set(Boolean.TRUE);
+        try {
+            return execution.execute(chain);
+        } finally {
+            this.holding.remove();
+            release();
+        }
+    }
+
+    /**
+     * Acquire a slot for the execution of {@link MappedStatement}
+     *
+     * @param ms {@link MappedStatement}
+     * @throws StatementRejectedException if the slot can't be acquired in time
+     */
+    void acquire(MappedStatement ms) throws StatementRejectedException {
+        int priority = this.priorityResolver.resolve(ms);
+        long start = nanoTime();
+        Ticket ticket;
+        this.lock.lock();
+        try {
+            if (this.inFlight < this.maxConcurrency && this.queue.isEmpty()) {
+                this.inFlight++;
+                record(priority, 0);
+                return;
+            }
+            ticket = new Ticket(priority, rank(priority, start), this.sequence++, Thread.currentThread());
+            this.queue.offer(ticket);
+        } finally {
+            this.lock.unlock();
+        }
+        logger.trace("The statement['{}'] with the priority[{}] was queued", ms.getId(), priority);
+        await(ms, ticket, start);
+        record(priority, nanoTime() - start);
+    }
+
+    private void await(MappedStatement ms, Ticket ticket, long start) throws StatementRejectedException {
+        long maxWaitNanos = MILLISECONDS.toNanos(this.maxWait);
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            maxWaitNanos = max(0, min(maxWaitNanos, deadline.getRemaining(NANOSECONDS)));
+        }
+        long waitDeadline = start + maxWaitNanos;
+        boolean interrupted = false;
+        while (!ticket.granted) {
+            long remaining = waitDeadline - nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                interrupted = true;
+                break;
+            }
+        }
+        boolean granted = ticket.granted;
+        if (!granted) {
+            this.lock.lock();
+            try {
+                // The ticket may be granted before it's removed
+                granted = ticket.granted || !this.queue.remove(ticket);
+            } finally {
+                this.lock.unlock();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (granted) {
+            return;
+        }
+        this.rejectedCount.increment();
+        String reason = interrupted ? "the thread was interrupted" : "the wait timed out";
+        throw new StatementRejectedException(format("The statement['{}'] with the priority[{}] was rejected, because {} after {} ms in the queue",
+                ms.getId(), ticket.priority, reason, NANOSECONDS.toMillis(nanoTime() - start)), ms.getId());
+    }
+
+    /**
+     * Release the slot, which is transferred to the first queued execution if present
+     */
+    void release() {
+        Ticket next;
+        this.lock.lock();
+        try {
+            next = this.queue.poll();
+            if (next == null) {
+                this.inFlight--;
+            } else {
+                next.granted = true;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        if (next != null) {
+            LockSupport.unpark(next.thread);
+        }
+    }
+
+    long rank(int priority, long enqueuedNanos) {
+        long agingNanos = MILLISECONDS.toNanos(this.agingInterval);
+        long offset;
+        if (priority == 0) {
+            offset = 0;
+        } else if (Math.abs((long) priority) > MAX_PRIORITY_OFFSET / agingNanos) {
+            offset = priority > 0 ? MAX_PRIORITY_OFFSET : -MAX_PRIORITY_OFFSET;
+        } else {
+            offset = priority * agingNanos;
+        }
+        return enqueuedNanos + offset;
+    }
+
+    private void record(int priority, long waitNanos) {
+        this.waitStatistics.computeIfAbsent(priority, WaitStatistics::new).record(waitNanos);
+    }
+
+    /**
+     * Set the priority of the statement id or namespace
+     *
+     * @param key      the statement id or namespace
+     * @param priority the priority, the smaller value is the higher priority
+     * @return this
+     */
+    public PrioritySchedulingExecutorFilter setPriority(String key, int priority) {
+        this.priorityResolver.setPriority(key, priority);
+        return this;
+    }
+
+    /**
+     * Get the {@link StatementPriorityResolver}
+     *
+     * @return non-null
+     */
+    public StatementPriorityResolver getPriorityResolver() {
+        return this.priorityResolver;
+    }
+
+    /**
+     * Set the aging interval in milliseconds promoting a queued execution by one priority
+     *
+     * @param agingInterval the aging interval in milliseconds
+     * @return this
+     */
+    public PrioritySchedulingExecutorFilter setAgingInterval(long agingInterval) {
+        assertTrue(agingInterval > 0, () -> "The 'agingInterval' must be positive!");
+        this.agingInterval = agingInterval;
+        return this;
+    }
+
+    /**
+     * Get the aging interval in milliseconds promoting a queued execution by one priority
+     *
+     * @return positive
+     */
+    public long getAgingInterval() {
+        return this.agingInterval;
+    }
+
+    /**
+     * Set the max wait time in milliseconds in the queue
+     *
+     * @param maxWait the max wait time in milliseconds
+     * @return this
+     */
+    public PrioritySchedulingExecutorFilter setMaxWait(long maxWait) {
+        assertTrue(maxWait >= 0, () -> "The 'maxWait' must not be negative!");
+        this.maxWait = maxWait;
+        return this;
+    }
+
+    /**
+     * Get the max wait time in milliseconds in the queue
+     *
+     * @return non-negative
+     */
+    public long getMaxWait() {
+        return this.maxWait;
+    }
+
+    /**
+     * Get the max concurrency of the executions
+     *
+     * @return positive
+     */
+    public int getMaxConcurrency() {
+        return this.maxConcurrency;
+    }
+
+    /**
+     * Get the count of the running executions
+     *
+     * @return non-negative
+     */
+    public int getInFlight() {
+        this.lock.lock();
+        try {
+            return this.inFlight;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Get the count of the queued executions
+     *
+     * @return non-negative
+     */
+    public int getQueued() {
+        this.lock.lock();
+        try {
+            return this.queue.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Get the count of the rejected executions
+     *
+     * @return non-negative
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.sum();
+    }
+
+    /**
+     * Get the {@link WaitStatistics} of the priority
+     *
+     * @param priority the priority
+     * @return <code>null</code> if no execution of the priority was scheduled
+     */
+    @Nullable
+    public WaitStatistics getWaitStatistics(int priority) {
+        return this.waitStatistics.get(priority);
+    }
+
+    /**
+     * Get all {@link WaitStatistics} sorted by the priority
+     *
+     * @return non-null read-only map
+     */
+    public Map<Integer, WaitStatistics> getWaitStatistics() {
+        return unmodifiableMap(new TreeMap<>(this.waitStatistics));
+    }
+
+    /**
+     * The queued execution
+     */
+    static class Ticket implements Comparable<Ticket> {
+
+        private final int priority;
+
+        /**
+         * The enqueued time in nanoseconds plus the priority offset
+         */
+        private final long rank;
+
+        private final long sequence;
+
+        private final Thread thread;
+
+        private volatile boolean granted;
+
+        Ticket(int priority, long rank, long sequence, Thread thread) {
+            this.priority = priority;
+            this.rank = rank;
+            this.sequence = sequence;
+            this.thread = thread;
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            int result = Long.compare(this.rank - other.rank, 0);
+            return result == 0 ? Long.compare(this.sequence, other.sequence) : result;
+        }
+    }
+
+    /**
+     * The statistics of the queue wait times of a priority
+     */
+    public static class WaitStatistics {
+
+        private final int priority;
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder queuedCount = new LongAdder();
+
+        private final LongAdder totalWait = new LongAdder();
+
+        private final AtomicLong maxWait = new AtomicLong();
+
+        private final LatencyWindow window = new LatencyWindow();
+
+        WaitStatistics(int priority) {
+            this.priority = priority;
+        }
+
+        void record(long waitNanos) {
+            this.count.increment();
+            if (waitNanos > 0) {
+                this.queuedCount.increment();
+                this.totalWait.add(waitNanos);
+                this.maxWait.accumulateAndGet(waitNanos, Math::max);
+            }
+            this.window.record(waitNanos);
+        }
+
+        /**
+         * Get the priority
+         *
+         * @return the priority
+         */
+        public int getPriority() {
+            return this.priority;
+        }
+
+        /**
+         * Get the count of the scheduled executions
+         *
+         * @return non-negative
+         */
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        /**
+         * Get the count of the executions waited in the queue
+         *
+         * @return non-negative
+         */
+        public long getQueuedCount() {
+            return this.queuedCount.sum();
+        }
+
+        /**
+         * Get the total wait time in nanoseconds
+         *
+         * @return non-negative
+         */
+        public long getTotalWait() {
+            return this.totalWait.sum();
+        }
+
+        /**
+         * Get the max wait time in nanoseconds
+         *
+         * @return non-negative
+         */
+        public long getMaxWait() {
+            return this.maxWait.get();
+        }
+
+        /**
+         * Get the percentile of the latest wait times in nanoseconds
+         *
+         * @param percentile the percentile, e.g. 0.99
+         * @return non-negative
+         * @see LatencyWindow#percentile(double)
+         */
+        public long getPercentile(double percentile) {
+            return this.window.percentile(percentile);
+        }
+
+        @Override
+        public String toString() {
+            return "WaitStatistics{" +
+                    "priority=" + this.priority +
+                    ", count=" + getCount() +
+                    ", queuedCount=" + getQueuedCount() +
+                    ", totalWait=" + getTotalWait() +
+                    ", maxWait=" + getMaxWait() +
+                    '}';
+        }
+    }
+}
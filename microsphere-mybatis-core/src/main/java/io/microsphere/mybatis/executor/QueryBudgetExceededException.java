@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nonnull;
+
+import java.sql.SQLException;
+
+/**
+ * {@link SQLException} thrown if the query budget of {@link QueryScope} is exceeded or the "N+1 selects" is detected
+ * by {@link QueryBudgetExecutorFilter}
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   try (QueryScope scope = QueryScope.open("listChildren", 2)) {
+ *       childMapper.selectAll().forEach(Child::getFather);
+ *   } catch (PersistenceException e) {
+ *       if (e.getCause() instanceof QueryBudgetExceededException) {
+ *           QueryScope scope = ((QueryBudgetExceededException) e.getCause()).getScope();
+ *           // report the scope
+ *       }
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see QueryBudgetExecutorFilter
+ * @see QueryScope
+ * @since 1.0.0
+ */
+public class QueryBudgetExceededException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient QueryScope scope;
+
+    public QueryBudgetExceededException(String reason, QueryScope scope) {
+        super(reason);
+        this.scope = scope;
+    }
+
+    /**
+     * Get the {@link QueryScope} which the budget was exceeded
+     *
+     * @return non-null
+     */
+    @Nonnull
+    public QueryScope getScope() {
+        return this.scope;
+    }
+}
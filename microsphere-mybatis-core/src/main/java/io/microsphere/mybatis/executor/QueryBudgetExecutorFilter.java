@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import io.microsphere.mybatis.executor.QueryScope.StatementStatistics;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.mybatis.executor.QueryScope.UNLIMITED;
+import static io.microsphere.text.FormatUtils.format;
+import static io.microsphere.util.Assert.assertTrue;
+
+/**
+ * {@link ExecutorFilter} detects the "N+1 selects" and enforces the query budget per logical unit of work.
+ * <p>
+ * The unit of work is the {@link QueryScope} bound to the current thread if present, or the session(identified by
+ * its {@link Transaction}) otherwise. Every execution of {@link MappedStatement} is recorded into the unit of work,
+ * if a statement executes with different parameters more than {@link #getNPlusOneThreshold() the threshold}, it will
+ * be reported as "N+1 selects", and it fails fast with {@link QueryBudgetExceededException} if
+ * {@link #setFailOnNPlusOne(boolean)} is enabled. If the count of queries exceeds the budget of the unit of work,
+ * {@link QueryBudgetExceededException} will be thrown before the query is executed.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   QueryBudgetExecutorFilter filter = new QueryBudgetExecutorFilter()
+ *       .setNPlusOneThreshold(5)
+ *       .setMaxQueriesPerSession(100);
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[]{filter}));
+ *
+ *   try (QueryScope scope = QueryScope.open("listChildren", 10)) {
+ *       childMapper.selectAll().forEach(Child::getFather);
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see QueryScope
+ * @see QueryBudgetExceededException
+ * @see ExecutorFilter
+ * @since 1.0.0
+ */
+public class QueryBudgetExecutorFilter implements ExecutorFilter {
+
+    private static final Logger logger = getLogger(QueryBudgetExecutorFilter.class);
+
+    /**
+     * The default threshold of the distinct parameters of a statement in a unit of work
+     */
+    public static final int DEFAULT_N_PLUS_ONE_THRESHOLD = 10;
+
+    /**
+     * The executing statement of the current thread, which avoids recording the same execution repeatedly when
+     * the {@link Executor executors} are nested
+     */
+    private final ThreadLocal<StatementExecution> currentExecution = new ThreadLocal<>();
+
+    /**
+     * The {@link QueryScope} of the sessions keyed by the {@link Transaction}
+     */
+    private final Map<Transaction, QueryScope> sessionScopes = new ConcurrentHashMap<>();
+
+    private volatile int nPlusOneThreshold = DEFAULT_N_PLUS_ONE_THRESHOLD;
+
+    private volatile int maxQueriesPerSession = UNLIMITED;
+
+    private volatile boolean failOnNPlusOne = false;
+
+    @Override
+    public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+        StatementExecution previous = enter(ms, parameter, RowBounds.DEFAULT, null, null, chain);
+        try {
+            return chain.update(ms, parameter);
+        } finally {
+            exit(previous);
+        }
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        StatementExecution previous = enter(ms, parameter, rowBounds, cacheKey, boundSql, chain);
+        try {
+            return chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        } finally {
+            exit(previous);
+        }
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        StatementExecution previous = enter(ms, parameter, rowBounds, null, null, chain);
+        try {
+            return chain.query(ms, parameter, rowBounds, resultHandler);
+        } finally {
+            exit(previous);
+        }
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                     ExecutorFilterChain chain) throws SQLException {
+        StatementExecution previous = enter(ms, parameter, rowBounds, null, null, chain);
+        try {
+            return chain.queryCursor(ms, parameter, rowBounds);
+        } finally {
+            exit(previous);
+        }
+    }
+
+    @Override
+    public void close(boolean forceRollback, ExecutorFilterChain chain) {
+        Executor executor = chain.getExecutor();
+        if (!executor.isClosed()) {
+            QueryScope scope = this.sessionScopes.remove(executor.getTransaction());
+            if (scope != null) {
+                scope.close();
+                logger.trace("The session scope is closed : {}", scope);
+            }
+        }
+        chain.close(forceRollback);
+    }
+
+    /**
+     * Get the {@link QueryScope} of the current unit of work
+     *
+     * @param executor {@link Executor}
+     * @return <code>null</code> if the {@link Executor} was closed and no {@link QueryScope} is bound
+     */
+    @Nullable
+    public QueryScope getScope(Executor executor) {
+        QueryScope scope = QueryScope.current();
+        if (scope == null && !executor.isClosed()) {
+            scope = this.sessionScopes.computeIfAbsent(executor.getTransaction(),
+                    t -> new QueryScope("session@" + Integer.toHexString(System.identityHashCode(t)),
+                            this.maxQueriesPerSession, null, false));
+        }
+        return scope;
+    }
+
+    /**
+     * Set the threshold of the distinct parameters of a statement in a unit of work, the statement executing above it
+     * will be reported as "N+1 selects"
+     *
+     * @param nPlusOneThreshold the threshold of the distinct parameters
+     * @return {@link QueryBudgetExecutorFilter}
+     */
+    public QueryBudgetExecutorFilter setNPlusOneThreshold(int nPlusOneThreshold) {
+        assertTrue(nPlusOneThreshold > 0, () -> "The 'nPlusOneThreshold' must be positive!");
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        return this;
+    }
+
+    /**
+     * Set the max queries of a session if no {@link QueryScope} is bound
+     *
+     * @param maxQueriesPerSession the max queries, {@link QueryScope#UNLIMITED} indicates no limit
+     * @return {@link QueryBudgetExecutorFilter}
+     */
+    public QueryBudgetExecutorFilter setMaxQueriesPerSession(int maxQueriesPerSession) {
+        this.maxQueriesPerSession = maxQueriesPerSession;
+        return this;
+    }
+
+    /**
+     * Set whether to fail fast if the "N+1 selects" is detected
+     *
+     * @param failOnNPlusOne <code>true</code> to throw {@link QueryBudgetExceededException}
+     * @return {@link QueryBudgetExecutorFilter}
+     */
+    public QueryBudgetExecutorFilter setFailOnNPlusOne(boolean failOnNPlusOne) {
+        this.failOnNPlusOne = failOnNPlusOne;
+        return this;
+    }
+
+    public int getNPlusOneThreshold() {
+        return this.nPlusOneThreshold;
+    }
+
+    public int getMaxQueriesPerSession() {
+        return this.maxQueriesPerSession;
+    }
+
+    public boolean isFailOnNPlusOne() {
+        return this.failOnNPlusOne;
+    }
+
+    StatementExecution enter(MappedStatement ms, Object parameter, RowBounds rowBounds, @Nullable CacheKey cacheKey,
+                             @Nullable BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        StatementExecution previous = this.currentExecution.get();
+        if (previous != null && previous.matches(ms, parameter)) {
+            // The same execution was recorded by the outer Executor
+            return previous;
+        }
+        QueryScope scope = getScope(chain.getExecutor());
+        if (scope != null) {
+            StatementStatistics statistics = scope.record(ms, parameterKey(ms, parameter, rowBounds, cacheKey, boundSql, chain));
+            check(scope, statistics);
+        }
+        this.currentExecution.set(new StatementExecution(ms, parameter));
+        return previous;
+    }
+
+    /**
+     * Normalize the parameter into the {@link CacheKey} for all executions, which identifies the parameter by the
+     * values of the SQL parameters rather than the equality of the parameter object
+     *
+     * @return the {@link CacheKey} of the query if present, or the new one
+     */
+    Object parameterKey(MappedStatement ms, Object parameter, RowBounds rowBounds, @Nullable CacheKey cacheKey,
+                        @Nullable BoundSql boundSql, ExecutorFilterChain chain) {
+        if (cacheKey != null) {
+            return cacheKey;
+        }
+        Executor executor = chain.getExecutor();
+        if (executor.isClosed()) {
+            return parameter;
+        }
+        return executor.createCacheKey(ms, parameter, rowBounds, boundSql == null ? ms.getBoundSql(parameter) : boundSql);
+    }
+
+    void exit(StatementExecution previous) {
+        if (previous == null) {
+            this.currentExecution.remove();
+        } else {
+            this.currentExecution.set(previous);
+        }
+    }
+
+    private void check(QueryScope scope, StatementStatistics statistics) throws QueryBudgetExceededException {
+        if (scope.isBudgetExceeded()) {
+            throw new QueryBudgetExceededException(format("The query budget[max : {}] of the scope['{}'] is exceeded : {}",
+                    scope.getMaxQueries(), scope.getName(), scope), scope);
+        }
+        int threshold = this.nPlusOneThreshold;
+        if (statistics.getDistinctParameters() > threshold) {
+            boolean failOnNPlusOne = this.failOnNPlusOne;
+            if (failOnNPlusOne || statistics.markReported()) {
+                String message = format("The N+1 selects is detected in the scope['{}'] : the statement['{}'] executed {} times with {} different parameters(threshold : {})",
+                        scope.getName(), statistics.getStatementId(), statistics.getExecutions(),
+                        statistics.getDistinctParameters(), threshold);
+                if (failOnNPlusOne) {
+                    throw new QueryBudgetExceededException(message, scope);
+                }
+                logger.warn(message);
+            }
+        }
+    }
+
+    /**
+     * The execution of {@link MappedStatement}
+     */
+    static class StatementExecution {
+
+        private final MappedStatement ms;
+
+        private final Object parameter;
+
+        StatementExecution(MappedStatement ms, Object parameter) {
+            this.ms = ms;
+            this.parameter = parameter;
+        }
+
+        boolean matches(MappedStatement ms, Object parameter) {
+            return this.ms == ms && this.parameter == parameter;
+        }
+    }
+}
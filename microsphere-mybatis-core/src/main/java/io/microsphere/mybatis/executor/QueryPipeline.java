@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.util.Assert.assertNotNull;
+import static io.microsphere.util.Assert.assertTrue;
+import static java.util.Collections.unmodifiableList;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static org.apache.ibatis.executor.Executor.NO_RESULT_HANDLER;
+import static org.apache.ibatis.reflection.ParamNameResolver.wrapToMapIfCollection;
+import static org.apache.ibatis.session.ExecutorType.SIMPLE;
+import static org.apache.ibatis.session.RowBounds.DEFAULT;
+
+/**
+ * The pipeline collects the independent select {@link MappedStatement statements} and executes them together,
+ * returning all results at once.
+ * <p>
+ * If the {@link ExecutorService} is present, the statements are executed concurrently, each of them runs on its own
+ * {@link Executor} (and its own pooled connection in the auto-commit mode), otherwise they are executed sequentially on
+ * the single {@link Executor}. In both cases, the {@link Executor Executors} are created by
+ * {@link Configuration#newExecutor(Transaction, org.apache.ibatis.session.ExecutorType)}, so that every statement
+ * still flows through the plugins, e.g. the {@link ExecutorFilter#query} hooks of
+ * {@link io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor}.
+ * <p>
+ * The statements are executed on the new {@link Transaction Transactions} created by the
+ * {@link org.apache.ibatis.transaction.TransactionFactory} of {@link Environment}, hence the uncommitted changes of
+ * the current {@link org.apache.ibatis.session.SqlSession} are invisible to them, except that the
+ * "SpringManagedTransaction" of mybatis-spring joins the connection of the Spring transaction bound to the current
+ * thread, thus the statements executed sequentially see the uncommitted changes of the Spring transaction, but the
+ * ones executed concurrently on the other threads don't.
+ * <p>
+ * If any statement executed concurrently fails, the pipeline fails with its failure, the statements not started are
+ * skipped, and the running ones are cancelled by {@link StatementTracker} if
+ * {@link io.microsphere.mybatis.plugin.StatementTrackingInterceptor} is added into the {@link Configuration}, or they
+ * run to the completion.
+ * <p>
+ * The instances are not thread-safe and could be executed once.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   List<List<Object>> results = new QueryPipeline(configuration, executorService)
+ *           .add("io.acme.UserMapper.getUserById", 1)
+ *           .add("io.acme.OrderMapper.selectByUserId", 1)
+ *           .execute();
+ *   List<User> users = (List) results.get(0);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see Executor
+ * @see ExecutorFilter
+ * @since 1.0.0
+ */
+public class QueryPipeline {
+
+    private static final Logger logger = getLogger(QueryPipeline.class);
+
+    private final Configuration configuration;
+
+    @Nullable
+    private final ExecutorService executorService;
+
+    private final List<Query> queries = new ArrayList<>();
+
+    private boolean executed;
+
+    /**
+     * Construct a {@link QueryPipeline} executing the statements sequentially
+     *
+     * @param configuration {@link Configuration}
+     */
+    public QueryPipeline(Configuration configuration) {
+        this(configuration, null);
+    }
+
+    /**
+     * Construct a {@link QueryPipeline}
+     *
+     * @param configuration   {@link Configuration}
+     * @param executorService the {@link ExecutorService} executing the statements concurrently, if <code>null</code>,
+     *                        the statements will be executed sequentially
+     */
+    public QueryPipeline(Configuration configuration, @Nullable ExecutorService executorService) {
+        assertNotNull(configuration, () -> "The 'configuration' argument must not be null");
+        assertNotNull(configuration.getEnvironment(), () -> "The Environment of Configuration must not be null");
+        this.configuration = configuration;
+        this.executorService = executorService;
+    }
+
+    /**
+     * Add the select statement
+     *
+     * @param statementId the id of {@link MappedStatement}
+     * @param parameter   the parameter of {@link MappedStatement}
+     * @return {@link QueryPipeline}
+     */
+    public QueryPipeline add(String statementId, @Nullable Object parameter) {
+        return add(statementId, parameter, DEFAULT);
+    }
+
+    /**
+     * Add the select statement
+     *
+     * @param statementId the id of {@link MappedStatement}
+     * @param parameter   the parameter of {@link MappedStatement}
+     * @param rowBounds   {@link RowBounds}
+     * @return {@link QueryPipeline}
+     */
+    public QueryPipeline add(String statementId, @Nullable Object parameter, RowBounds rowBounds) {
+        return add(configuration.getMappedStatement(statementId), parameter, rowBounds);
+    }
+
+    /**
+     * Add the select statement
+     *
+     * @param ms        {@link MappedStatement}
+     * @param parameter the parameter of {@link MappedStatement}
+     * @param rowBounds {@link RowBounds}
+     * @return {@link QueryPipeline}
+     */
+    public QueryPipeline add(MappedStatement ms, @Nullable Object parameter, RowBounds rowBounds) {
+        assertNotNull(ms, () -> "The 'ms' argument must not be null");
+        assertNotNull(rowBounds, () -> "The 'rowBounds' argument must not be null");
+        assertTrue(ms.getSqlCommandType() == SqlCommandType.SELECT,
+                () -> "The statement['" + ms.getId() + "'] is not a select!");
+        assertTrue(!executed, () -> "The QueryPipeline has been executed!");
+        this.queries.add(new Query(ms, wrapToMapIfCollection(parameter, null), rowBounds));
+        return this;
+    }
+
+    /**
+     * Get the count of added statements
+     *
+     * @return non-negative
+     */
+    public int size() {
+        return this.queries.size();
+    }
+
+    /**
+     * Execute all added statements
+     *
+     * @return the results in the order of the added statements
+     * @throws SQLException if any statement fails
+     */
+    public List<List<Object>> execute() throws SQLException {
+        assertTrue(!executed, () -> "The QueryPipeline has been executed!");
+        this.executed = true;
+        List<List<Object>> results = executorService == null || queries.size() < 2 ?
+                executeSequentially() : executeConcurrently();
+        return unmodifiableList(results);
+    }
+
+    private List<List<Object>> executeSequentially() throws SQLException {
+        List<List<Object>> results = new ArrayList<>(queries.size());
+        Executor executor = newExecutor();
+        try {
+            for (Query query : queries) {
+                results.add(query.execute(executor));
+            }
+        } finally {
+            executor.close(false);
+        }
+        return results;
+    }
+
+    private List<List<Object>> executeConcurrently() throws SQLException {
+        int size = queries.size();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<CompletableFuture<List<Object>>> futures = new ArrayList<>(size);
+        for (Query query : queries) {
+            futures.add(supplyAsync(() -> execute(query, failure), executorService));
+        }
+        List<List<Object>> results = new ArrayList<>(size);
+        try {
+            for (CompletableFuture<List<Object>> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(false));
+            cancel();
+            // The first failure rather than the cancellations caused by it
+            Throwable cause = failure.get() == null ? e.getCause() : failure.get();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new SQLException("The QueryPipeline failed", cause);
+        }
+        logger.trace("The QueryPipeline executed {} statements concurrently", size);
+        return results;
+    }
+
+    private List<Object> execute(Query query, AtomicReference<Throwable> failure) {
+        if (failure.get() != null) {
+            String statementId = query.ms.getId();
+            throw new CompletionException(new StatementCancelledException("The execution of statement['" +
+                    statementId + "'] was skipped, because the QueryPipeline failed", statementId));
+        }
+        Executor executor = newExecutor();
+        StatementTracker tracker = query.open();
+        try {
+            return query.execute(executor);
+        } catch (SQLException | RuntimeException e) {
+            // The pipeline fails fast, thus the other running statements are cancelled
+            if (failure.compareAndSet(null, e)) {
+                cancel();
+            }
+            throw new CompletionException(e);
+        } finally {
+            tracker.close();
+            executor.close(false);
+        }
+    }
+
+    private void cancel() {
+        for (Query query : queries) {
+            query.cancel();
+        }
+    }
+
+    private Executor newExecutor() {
+        Environment environment = configuration.getEnvironment();
+        Transaction transaction = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, true);
+        return configuration.newExecutor(transaction, SIMPLE);
+    }
+
+    private static class Query {
+
+        private final MappedStatement ms;
+
+        private final Object parameter;
+
+        private final RowBounds rowBounds;
+
+        private volatile boolean cancelled;
+
+        @Nullable
+        private volatile StatementTracker tracker;
+
+        private Query(MappedStatement ms, Object parameter, RowBounds rowBounds) {
+            this.ms = ms;
+            this.parameter = parameter;
+            this.rowBounds = rowBounds;
+        }
+
+        private StatementTracker open() {
+            StatementTracker tracker = StatementTracker.open();
+            this.tracker = tracker;
+            if (this.cancelled) {
+                // The statement tracked later will be cancelled immediately
+                tracker.cancel();
+            }
+            return tracker;
+        }
+
+        private void cancel() {
+            this.cancelled = true;
+            StatementTracker tracker = this.tracker;
+            if (tracker != null) {
+                tracker.cancel();
+            }
+        }
+
+        private List<Object> execute(Executor executor) throws SQLException {
+            return executor.query(ms, parameter, rowBounds, NO_RESULT_HANDLER);
+        }
+    }
+}
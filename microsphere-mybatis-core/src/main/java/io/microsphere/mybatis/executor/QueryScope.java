@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nonnull;
+import io.microsphere.annotation.Nullable;
+import org.apache.ibatis.mapping.MappedStatement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.microsphere.util.Assert.assertNotNull;
+import static java.util.Collections.unmodifiableCollection;
+
+/**
+ * The logical unit of work tracking the executions of {@link MappedStatement MappedStatements}, which is bound to
+ * the current thread until it's {@link #close() closed}. The scopes can be nested, the executions of the inner scope
+ * are also counted by the outer ones.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   try (QueryScope scope = QueryScope.open("listChildren", 10)) {
+ *       List<Child> children = childMapper.selectAll();
+ *       children.forEach(child -> child.getFather());
+ *       // the statement executed with more than 5 different parameters
+ *       List<QueryScope.StatementStatistics> suspects = scope.getNPlusOneStatements(5);
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see QueryBudgetExecutorFilter
+ * @see QueryScopeAssertions
+ * @since 1.0.0
+ */
+public class QueryScope implements AutoCloseable {
+
+    /**
+     * The max queries of the unlimited budget
+     */
+    public static final int UNLIMITED = -1;
+
+    private static final ThreadLocal<QueryScope> currentScope = new ThreadLocal<>();
+
+    private final String name;
+
+    private final int maxQueries;
+
+    @Nullable
+    private final QueryScope parent;
+
+    private final boolean bound;
+
+    private final AtomicInteger queryCount = new AtomicInteger();
+
+    private final Map<String, StatementStatistics> statementStatisticsMap = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    QueryScope(String name, int maxQueries, @Nullable QueryScope parent, boolean bound) {
+        assertNotNull(name, () -> "The 'name' must not be null!");
+        this.name = name;
+        this.maxQueries = maxQueries;
+        this.parent = parent;
+        this.bound = bound;
+    }
+
+    /**
+     * Open a {@link QueryScope} with unlimited budget and bind it to the current thread
+     *
+     * @param name the name of scope
+     * @return non-null
+     */
+    @Nonnull
+    public static QueryScope open(String name) {
+        return open(name, UNLIMITED);
+    }
+
+    /**
+     * Open a {@link QueryScope} and bind it to the current thread
+     *
+     * @param name       the name of scope
+     * @param maxQueries the max queries of budget, {@link #UNLIMITED} indicates no limit
+     * @return non-null
+     */
+    @Nonnull
+    public static QueryScope open(String name, int maxQueries) {
+        QueryScope scope = new QueryScope(name, maxQueries, currentScope.get(), true);
+        currentScope.set(scope);
+        return scope;
+    }
+
+    /**
+     * Get the {@link QueryScope} bound to the current thread
+     *
+     * @return <code>null</code> if absent
+     */
+    @Nullable
+    public static QueryScope current() {
+        return currentScope.get();
+    }
+
+    /**
+     * Record an execution of {@link MappedStatement}
+     *
+     * @param ms           {@link MappedStatement}
+     * @param parameterKey the key of the parameter to identify the distinct executions
+     * @return the {@link StatementStatistics} of {@link MappedStatement} in this scope
+     */
+    StatementStatistics record(MappedStatement ms, Object parameterKey) {
+        String statementId = ms.getId();
+        this.queryCount.incrementAndGet();
+        StatementStatistics statistics = this.statementStatisticsMap.computeIfAbsent(statementId, StatementStatistics::new);
+        statistics.record(parameterKey);
+        if (this.parent != null) {
+            this.parent.record(ms, parameterKey);
+        }
+        return statistics;
+    }
+
+    /**
+     * Get the name of scope
+     *
+     * @return non-null
+     */
+    @Nonnull
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Get the max queries of budget
+     *
+     * @return {@link #UNLIMITED} if no limit
+     */
+    public int getMaxQueries() {
+        return this.maxQueries;
+    }
+
+    /**
+     * Get the parent scope
+     *
+     * @return <code>null</code> if absent
+     */
+    @Nullable
+    public QueryScope getParent() {
+        return this.parent;
+    }
+
+    /**
+     * Get the count of all executed queries in this scope
+     *
+     * @return non-negative
+     */
+    public int getQueryCount() {
+        return this.queryCount.get();
+    }
+
+    /**
+     * The budget is exceeded or not
+     *
+     * @return <code>true</code> if the count of queries is greater than the max queries
+     */
+    public boolean isBudgetExceeded() {
+        return this.maxQueries > UNLIMITED && getQueryCount() > this.maxQueries;
+    }
+
+    /**
+     * Get the {@link StatementStatistics} of the specified {@link MappedStatement}
+     *
+     * @param statementId the id of {@link MappedStatement}
+     * @return <code>null</code> if the statement was not executed in this scope
+     */
+    @Nullable
+    public StatementStatistics getStatementStatistics(String statementId) {
+        return this.statementStatisticsMap.get(statementId);
+    }
+
+    /**
+     * Get all {@link StatementStatistics} of this scope
+     *
+     * @return non-null read-only {@link Collection}
+     */
+    @Nonnull
+    public Collection<StatementStatistics> getStatementStatistics() {
+        return unmodifiableCollection(this.statementStatisticsMap.values());
+    }
+
+    /**
+     * Get the {@link StatementStatistics} of the statements executed with different parameters more than the threshold,
+     * that are the candidates of the "N+1 selects" problem
+     *
+     * @param threshold the threshold of distinct parameters
+     * @return non-null
+     */
+    @Nonnull
+    public List<StatementStatistics> getNPlusOneStatements(int threshold) {
+        List<StatementStatistics> statementStatistics = new ArrayList<>();
+        for (StatementStatistics statistics : this.statementStatisticsMap.values()) {
+            if (statistics.getDistinctParameters() > threshold) {
+                statementStatistics.add(statistics);
+            }
+        }
+        return statementStatistics;
+    }
+
+    /**
+     * The scope is closed or not
+     *
+     * @return <code>true</code> if closed
+     */
+    public boolean isClosed() {
+        return this.closed.get();
+    }
+
+    /**
+     * Close the scope and restore the parent scope to the current thread if it's bound
+     */
+    @Override
+    public void close() {
+        if (this.closed.compareAndSet(false, true) && this.bound && currentScope.get() == this) {
+            if (this.parent == null) {
+                currentScope.remove();
+            } else {
+                currentScope.set(this.parent);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "QueryScope{" +
+                "name='" + this.name + '\'' +
+                ", maxQueries=" + this.maxQueries +
+                ", queryCount=" + getQueryCount() +
+                ", statementStatistics=" + this.statementStatisticsMap.values() +
+                ", closed=" + isClosed() +
+                '}';
+    }
+
+    /**
+     * The statistics of a {@link MappedStatement} executed in a {@link QueryScope}
+     */
+    public static class StatementStatistics {
+
+        private final String statementId;
+
+        private final AtomicInteger executions = new AtomicInteger();
+
+        private final Set<Object> parameterKeys = ConcurrentHashMap.newKeySet();
+
+        private final AtomicBoolean reported = new AtomicBoolean();
+
+        StatementStatistics(String statementId) {
+            this.statementId = statementId;
+        }
+
+        void record(Object parameterKey) {
+            this.executions.incrementAndGet();
+            this.parameterKeys.add(parameterKey == null ? this : parameterKey);
+        }
+
+        boolean markReported() {
+            return this.reported.compareAndSet(false, true);
+        }
+
+        /**
+         * Get the id of {@link MappedStatement}
+         *
+         * @return non-null
+         */
+        @Nonnull
+        public String getStatementId() {
+            return this.statementId;
+        }
+
+        /**
+         * Get the count of executions
+         *
+         * @return non-negative
+         */
+        public int getExecutions() {
+            return this.executions.get();
+        }
+
+        /**
+         * Get the count of executions with different parameters
+         *
+         * @return non-negative
+         */
+        public int getDistinctParameters() {
+            return this.parameterKeys.size();
+        }
+
+        @Override
+        public String toString() {
+            return "StatementStatistics{" +
+                    "statementId='" + this.statementId + '\'' +
+                    ", executions=" + getExecutions() +
+                    ", distinctParameters=" + getDistinctParameters() +
+                    '}';
+        }
+    }
+}
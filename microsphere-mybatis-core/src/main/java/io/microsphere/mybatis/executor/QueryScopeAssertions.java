@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.lang.function.ThrowableAction;
+import io.microsphere.mybatis.executor.QueryScope.StatementStatistics;
+
+import java.util.List;
+
+import static io.microsphere.text.FormatUtils.format;
+
+/**
+ * The assertions of {@link QueryScope} for the testing frameworks, e.g, JUnit, which throws {@link AssertionError}
+ * if the assertion fails.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   @Test
+ *   void testSelectAllChildren() throws Throwable {
+ *       doInMapper(ChildMapper.class, childMapper -> {
+ *           QueryScope scope = QueryScopeAssertions.assertMaxQueries(2, () ->
+ *               childMapper.selectAll().forEach(Child::getFather));
+ *           QueryScopeAssertions.assertNoNPlusOne(scope, 1);
+ *       });
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see QueryScope
+ * @see QueryBudgetExecutorFilter
+ * @since 1.0.0
+ */
+public abstract class QueryScopeAssertions {
+
+    /**
+     * Execute the action in a new {@link QueryScope} and assert the count of queries is not greater than the max
+     *
+     * @param maxQueries the max queries
+     * @param action     the action
+     * @return the closed {@link QueryScope}
+     * @throws Throwable if the action fails
+     */
+    public static QueryScope assertMaxQueries(int maxQueries, ThrowableAction action) throws Throwable {
+        QueryScope scope = execute(action);
+        assertMaxQueries(scope, maxQueries);
+        return scope;
+    }
+
+    /**
+     * Execute the action in a new {@link QueryScope} and assert no "N+1 selects" is detected
+     *
+     * @param threshold the threshold of the distinct parameters of a statement
+     * @param action    the action
+     * @return the closed {@link QueryScope}
+     * @throws Throwable if the action fails
+     */
+    public static QueryScope assertNoNPlusOne(int threshold, ThrowableAction action) throws Throwable {
+        QueryScope scope = execute(action);
+        assertNoNPlusOne(scope, threshold);
+        return scope;
+    }
+
+    /**
+     * Assert the count of queries in the {@link QueryScope} equals the expected
+     *
+     * @param scope    {@link QueryScope}
+     * @param expected the expected count of queries
+     */
+    public static void assertQueryCount(QueryScope scope, int expected) {
+        int actual = scope.getQueryCount();
+        if (actual != expected) {
+            fail("The count of queries in the scope['{}'] is expected to be {}, but was {} : {}", scope.getName(),
+                    expected, actual, scope);
+        }
+    }
+
+    /**
+     * Assert the count of queries in the {@link QueryScope} is not greater than the max
+     *
+     * @param scope      {@link QueryScope}
+     * @param maxQueries the max queries
+     */
+    public static void assertMaxQueries(QueryScope scope, int maxQueries) {
+        int actual = scope.getQueryCount();
+        if (actual > maxQueries) {
+            fail("The count of queries in the scope['{}'] is expected to be at most {}, but was {} : {}",
+                    scope.getName(), maxQueries, actual, scope);
+        }
+    }
+
+    /**
+     * Assert the executions of the statement in the {@link QueryScope} is not greater than the max
+     *
+     * @param scope         {@link QueryScope}
+     * @param statementId   the id of {@link org.apache.ibatis.mapping.MappedStatement}
+     * @param maxExecutions the max executions
+     */
+    public static void assertMaxExecutions(QueryScope scope, String statementId, int maxExecutions) {
+        StatementStatistics statistics = scope.getStatementStatistics(statementId);
+        int actual = statistics == null ? 0 : statistics.getExecutions();
+        if (actual > maxExecutions) {
+            fail("The executions of the statement['{}'] in the scope['{}'] is expected to be at most {}, but was {}",
+                    statementId, scope.getName(), maxExecutions, actual);
+        }
+    }
+
+    /**
+     * Assert no "N+1 selects" is detected in the {@link QueryScope}
+     *
+     * @param scope     {@link QueryScope}
+     * @param threshold the threshold of the distinct parameters of a statement
+     */
+    public static void assertNoNPlusOne(QueryScope scope, int threshold) {
+        List<StatementStatistics> statementStatistics = scope.getNPlusOneStatements(threshold);
+        if (!statementStatistics.isEmpty()) {
+            fail("The N+1 selects is detected in the scope['{}'](threshold : {}) : {}", scope.getName(), threshold,
+                    statementStatistics);
+        }
+    }
+
+    static QueryScope execute(ThrowableAction action) throws Throwable {
+        StackTraceElement caller = new Throwable().getStackTrace()[2];
+        try (QueryScope scope = QueryScope.open(caller.getClassName() + "#" + caller.getMethodName())) {
+            action.execute();
+            return scope;
+        }
+    }
+
+    static void fail(String pattern, Object... args) {
+        throw new AssertionError(format(pattern, args));
+    }
+
+    private QueryScopeAssertions() {
+    }
+}
@@ -0,0 +1,671 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.mybatis.constants.PropertyConstants.MICROSPHERE_MYBATIS_PROPERTY_NAME_PREFIX;
+import static io.microsphere.text.FormatUtils.format;
+import static io.microsphere.util.Assert.assertNotNull;
+import static io.microsphere.util.Assert.assertTrue;
+import static io.microsphere.util.StringUtils.isNotBlank;
+import static java.lang.Double.parseDouble;
+import static java.lang.Integer.parseInt;
+import static java.lang.Long.parseLong;
+import static java.lang.Math.max;
+import static java.lang.System.nanoTime;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * {@link ExecutorFilter} limits the rate of the executions of {@link MappedStatement MappedStatements} by the token
+ * buckets keyed by the statement id(or namespace) and the tenant, thus a tenant flooding the shared database can't
+ * starve the others.
+ * <p>
+ * The rate of an execution is resolved by the id of {@link MappedStatement} first, and then by its namespace, the
+ * executions without any rate are not limited. Every tenant has its own {@link TokenBucket} of the rate, the tenant is
+ * resolved from {@link #setTenantProperty(String) the property of parameter} by default, the subclass may override
+ * {@link #resolveTenant(MappedStatement, Object)} to resolve it from the context, e.g. the security context.
+ * <p>
+ * If the bucket is exhausted, the execution is rejected by {@link StatementRejectedException} in
+ * {@link Mode#REJECT the rejecting mode}, or it waits for the next permit at most {@link #getMaxWait() the max wait
+ * time} in {@link Mode#BLOCK the blocking mode}.
+ * <p>
+ * The rates and the options can be reconfigured at runtime by {@link #configure(Properties)}, which take precedence
+ * over the ones set programmatically, the buckets of the unchanged rates keep their states.
+ * <p>
+ * The buckets grow with the tenants, the idle buckets, which are as same as the new ones, are evicted once the count of
+ * buckets reaches {@link #EVICTION_THRESHOLD the threshold}, which is doubled if the most buckets are in use, or
+ * {@link #evictIdleBuckets() evicted} explicitly, e.g. periodically.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   RateLimitingExecutorFilter filter = new RateLimitingExecutorFilter()
+ *       .setTenantProperty("tenantId")
+ *       .setMode(Mode.BLOCK)
+ *       .setMaxWait(200)
+ *       // 50 imports per second per tenant, bursts up to 100
+ *       .setRate("com.acme.mapper.ImportMapper", 50, 100);
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[]{filter}));
+ *
+ *   // or configured by the properties :
+ *   // microsphere.mybatis.rate-limit.mode = reject
+ *   // microsphere.mybatis.rate-limit.rates.com.acme.mapper.ImportMapper = 50,100
+ *   filter.configure(properties);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see TokenBucket
+ * @see StatementRejectedException
+ * @see ExecutorFilter
+ * @since 1.0.0
+ */
+public class RateLimitingExecutorFilter implements ExecutorFilter {
+
+    private static final Logger logger = getLogger(RateLimitingExecutorFilter.class);
+
+    /**
+     * The property name prefix of the rate limiting : "microsphere.mybatis.rate-limit."
+     */
+    public static final String PROPERTY_NAME_PREFIX = MICROSPHERE_MYBATIS_PROPERTY_NAME_PREFIX + ".rate-limit.";
+
+    /**
+     * The property name of {@link Mode} : "microsphere.mybatis.rate-limit.mode"
+     */
+    public static final String MODE_PROPERTY_NAME = PROPERTY_NAME_PREFIX + "mode";
+
+    /**
+     * The property name of the max wait time in milliseconds : "microsphere.mybatis.rate-limit.max-wait"
+     */
+    public static final String MAX_WAIT_PROPERTY_NAME = PROPERTY_NAME_PREFIX + "max-wait";
+
+    /**
+     * The property name of the tenant property of parameter : "microsphere.mybatis.rate-limit.tenant-property"
+     */
+    public static final String TENANT_PROPERTY_PROPERTY_NAME = PROPERTY_NAME_PREFIX + "tenant-property";
+
+    /**
+     * The property name prefix of the rates : "microsphere.mybatis.rate-limit.rates.", the suffix is the statement id
+     * or namespace, and the value is "{permits per second}[,{burst}]"
+     */
+    public static final String RATES_PROPERTY_NAME_PREFIX = PROPERTY_NAME_PREFIX + "rates.";
+
+    /**
+     * The default {@link Mode} : {@link Mode#REJECT}
+     */
+    public static final Mode DEFAULT_MODE = Mode.REJECT;
+
+    /**
+     * The default max wait time in milliseconds in {@link Mode#BLOCK the blocking mode} : 1000
+     */
+    public static final long DEFAULT_MAX_WAIT = 1000;
+
+    /**
+     * The min count of buckets triggering the eviction of the idle buckets : 1024
+     */
+    public static final int EVICTION_THRESHOLD = 1024;
+
+    /**
+     * The mode of an execution exceeding the rate
+     */
+    public enum Mode {
+
+        /**
+         * Wait for the next permit at most the max wait time
+         */
+        BLOCK,
+
+        /**
+         * Reject immediately
+         */
+        REJECT
+    }
+
+    /**
+     * The rates(permits per second and burst) keyed by the statement id or namespace, which are merged from
+     * {@link #programmaticRates} and {@link #configuredRates}
+     */
+    private volatile Map<String, double[]> rates = new HashMap<>();
+
+    /**
+     * The rates set by {@link #setRate(String, double, int)}
+     */
+    private volatile Map<String, double[]> programmaticRates = new HashMap<>();
+
+    /**
+     * The rates configured by {@link #configure(Properties)}
+     */
+    private volatile Map<String, double[]> configuredRates = new HashMap<>();
+
+    /**
+     * The {@link TokenBucket TokenBuckets} keyed by the rate key and the tenant
+     */
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * The count of buckets triggering the next eviction
+     */
+    private final AtomicInteger evictionThreshold = new AtomicInteger(EVICTION_THRESHOLD);
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    private final LongAdder delayedCount = new LongAdder();
+
+    private volatile Mode mode = DEFAULT_MODE;
+
+    private volatile long maxWait = DEFAULT_MAX_WAIT;
+
+    @Nullable
+    private volatile String tenantProperty;
+
+    @Nullable
+    private volatile Mode configuredMode;
+
+    @Nullable
+    private volatile Long configuredMaxWait;
+
+    @Nullable
+    private volatile String configuredTenantProperty;
+
+    @Override
+    public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+        acquire(ms, parameter);
+        return chain.update(ms, parameter);
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        acquire(ms, parameter);
+        return chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        acquire(ms, parameter);
+        return chain.query(ms, parameter, rowBounds, resultHandler);
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                     ExecutorFilterChain chain) throws SQLException {
+        acquire(ms, parameter);
+        return chain.queryCursor(ms, parameter, rowBounds);
+    }
+
+    /**
+     * Set the rate of the statement id or namespace, the burst is as same as the permits per second
+     *
+     * @param key              the statement id or namespace
+     * @param permitsPerSecond the permits per second
+     * @return this
+     */
+    public RateLimitingExecutorFilter setRate(String key, double permitsPerSecond) {
+        return setRate(key, permitsPerSecond, max(1, (int) permitsPerSecond));
+    }
+
+    /**
+     * Set the rate of the statement id or namespace
+     *
+     * @param key              the statement id or namespace
+     * @param permitsPerSecond the permits per second
+     * @param burst            the max permits acquired at once
+     * @return this
+     */
+    public RateLimitingExecutorFilter setRate(String key, double permitsPerSecond, int burst) {
+        assertTrue(isNotBlank(key), () -> "The 'key' must not be blank!");
+        assertTrue(permitsPerSecond > 0, () -> "The 'permitsPerSecond' must be positive!");
+        assertTrue(burst > 0, () -> "The 'burst' must be positive!");
+        synchronized (this.buckets) {
+            Map<String, double[]> rates = new HashMap<>(this.programmaticRates);
+            rates.put(key, new double[]{permitsPerSecond, burst});
+            this.programmaticRates = rates;
+            mergeRates();
+        }
+        return this;
+    }
+
+    /**
+     * Remove the rate of the statement id or namespace set by {@link #setRate(String, double, int)}, the rate
+     * configured by {@link #configure(Properties)} is kept
+     *
+     * @param key the statement id or namespace
+     * @return this
+     */
+    public RateLimitingExecutorFilter removeRate(String key) {
+        synchronized (this.buckets) {
+            Map<String, double[]> rates = new HashMap<>(this.programmaticRates);
+            rates.remove(key);
+            this.programmaticRates = rates;
+            mergeRates();
+        }
+        return this;
+    }
+
+    /**
+     * Get the rates(permits per second) keyed by the statement id or namespace
+     *
+     * @return non-null read-only map
+     */
+    public Map<String, Double> getRates() {
+        Map<String, Double> rates = new HashMap<>();
+        this.rates.forEach((key, rate) -> rates.put(key, rate[0]));
+        return unmodifiableMap(rates);
+    }
+
+    /**
+     * Reconfigure the options and replace all configured rates by the properties whose names start with
+     * {@link #PROPERTY_NAME_PREFIX}, which are merged over the options and the rates set programmatically, thus the
+     * absent ones fall back to the programmatic ones or the defaults.
+     *
+     * @param properties the properties
+     * @return this
+     * @see #MODE_PROPERTY_NAME
+     * @see #MAX_WAIT_PROPERTY_NAME
+     * @see #TENANT_PROPERTY_PROPERTY_NAME
+     * @see #RATES_PROPERTY_NAME_PREFIX
+     */
+    public RateLimitingExecutorFilter configure(Properties properties) {
+        assertNotNull(properties, () -> "The 'properties' must not be null!");
+        Map<String, double[]> rates = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(RATES_PROPERTY_NAME_PREFIX)) {
+                String key = name.substring(RATES_PROPERTY_NAME_PREFIX.length());
+                rates.put(key, parseRate(key, properties.getProperty(name)));
+            }
+        }
+        String mode = properties.getProperty(MODE_PROPERTY_NAME);
+        String maxWait = properties.getProperty(MAX_WAIT_PROPERTY_NAME);
+        Mode newMode = mode == null ? null : Mode.valueOf(mode.trim().toUpperCase());
+        Long newMaxWait = maxWait == null ? null : parseLong(maxWait.trim());
+        assertTrue(newMaxWait == null || newMaxWait >= 0,
+                () -> "The '" + MAX_WAIT_PROPERTY_NAME + "' must not be negative!");
+        synchronized (this.buckets) {
+            this.configuredMode = newMode;
+            this.configuredMaxWait = newMaxWait;
+            this.configuredTenantProperty = properties.getProperty(TENANT_PROPERTY_PROPERTY_NAME);
+            this.configuredRates = rates;
+            mergeRates();
+        }
+        logger.trace("The rates were reconfigured : {}", getRates());
+        return this;
+    }
+
+    /**
+     * Merge the configured rates over the programmatic ones, and remove the {@link TokenBucket TokenBuckets} whose
+     * rates were removed
+     */
+    private void mergeRates() {
+        Map<String, double[]> rates = new HashMap<>(this.programmaticRates);
+        rates.putAll(this.configuredRates);
+        this.rates = rates;
+        retainBuckets(rates);
+    }
+
+    private void retainBuckets(Map<String, double[]> rates) {
+        this.buckets.keySet().removeIf(bucketKey -> {
+            int index = bucketKey.indexOf('@');
+            return !rates.containsKey(index < 0 ? bucketKey : bucketKey.substring(0, index));
+        });
+    }
+
+    static double[] parseRate(String key, String value) {
+        assertTrue(isNotBlank(key), () -> "The key of rate must not be blank!");
+        String[] parts = value.split(",");
+        double permitsPerSecond = parseDouble(parts[0].trim());
+        int burst = parts.length > 1 ? parseInt(parts[1].trim()) : max(1, (int) permitsPerSecond);
+        assertTrue(permitsPerSecond > 0 && burst > 0, () -> format("The rate['{}'] of '{}' is invalid!", value, key));
+        return new double[]{permitsPerSecond, burst};
+    }
+
+    /**
+     * Set the {@link Mode} of an execution exceeding the rate
+     *
+     * @param mode {@link Mode}
+     * @return this
+     */
+    public RateLimitingExecutorFilter setMode(Mode mode) {
+        assertNotNull(mode, () -> "The 'mode' must not be null!");
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * Get the {@link Mode} of an execution exceeding the rate, the configured one takes precedence
+     *
+     * @return non-null
+     */
+    public Mode getMode() {
+        Mode configuredMode = this.configuredMode;
+        return configuredMode == null ? this.mode : configuredMode;
+    }
+
+    /**
+     * Set the max wait time in milliseconds in {@link Mode#BLOCK the blocking mode}
+     *
+     * @param maxWait the max wait time in milliseconds
+     * @return this
+     */
+    public RateLimitingExecutorFilter setMaxWait(long maxWait) {
+        assertTrue(maxWait >= 0, () -> "The 'maxWait' must not be negative!");
+        this.maxWait = maxWait;
+        return this;
+    }
+
+    /**
+     * Get the max wait time in milliseconds in {@link Mode#BLOCK the blocking mode}, the configured one takes
+     * precedence
+     *
+     * @return non-negative
+     */
+    public long getMaxWait() {
+        Long configuredMaxWait = this.configuredMaxWait;
+        return configuredMaxWait == null ? this.maxWait : configuredMaxWait;
+    }
+
+    /**
+     * Set the property of parameter resolving the tenant
+     *
+     * @param tenantProperty the property of parameter, or <code>null</code> if the tenant is not resolved from the
+     *                       parameter
+     * @return this
+     */
+    public RateLimitingExecutorFilter setTenantProperty(@Nullable String tenantProperty) {
+        this.tenantProperty = tenantProperty;
+        return this;
+    }
+
+    /**
+     * Get the property of parameter resolving the tenant, the configured one takes precedence
+     *
+     * @return <code>null</code> if absent
+     */
+    @Nullable
+    public String getTenantProperty() {
+        String configuredTenantProperty = this.configuredTenantProperty;
+        return configuredTenantProperty == null ? this.tenantProperty : configuredTenantProperty;
+    }
+
+    /**
+     * Get the {@link TokenBucket} of the rate key and the tenant
+     *
+     * @param key    the statement id or namespace
+     * @param tenant the tenant or <code>null</code>
+     * @return <code>null</code> if the bucket was not created
+     */
+    @Nullable
+    public TokenBucket getBucket(String key, @Nullable String tenant) {
+        return this.buckets.get(bucketKey(key, tenant));
+    }
+
+    /**
+     * Get the count of the {@link TokenBucket TokenBuckets}
+     *
+     * @return non-negative
+     */
+    public int getBucketCount() {
+        return this.buckets.size();
+    }
+
+    /**
+     * Evict the idle {@link TokenBucket TokenBuckets}, which are full and as same as the new ones. The execution
+     * reserving the permit from the bucket being evicted may be granted at most one more permit.
+     *
+     * @return the count of the evicted buckets
+     */
+    public int evictIdleBuckets() {
+        long now = nanoTime();
+        int size = this.buckets.size();
+        this.buckets.values().removeIf(bucket -> bucket.isIdle(now));
+        int remaining = this.buckets.size();
+        // The threshold is doubled if the most buckets are in use, or the eviction is triggered by every new bucket
+        this.evictionThreshold.set(max(EVICTION_THRESHOLD, remaining * 2));
+        int evicted = max(0, size - remaining);
+        logger.trace("{} idle buckets were evicted, {} buckets remain", evicted, remaining);
+        return evicted;
+    }
+
+    /**
+     * Get the count of the rejected executions
+     *
+     * @return non-negative
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.sum();
+    }
+
+    /**
+     * Get the count of the executions delayed in {@link Mode#BLOCK the blocking mode}
+     *
+     * @return non-negative
+     */
+    public long getDelayedCount() {
+        return this.delayedCount.sum();
+    }
+
+    void acquire(MappedStatement ms, Object parameter) throws SQLException {
+        Map<String, double[]> rates = this.rates;
+        if (rates.isEmpty()) {
+            return;
+        }
+        String id = ms.getId();
+        String key = id;
+        double[] rate = rates.get(key);
+        if (rate == null) {
+            int index = id.lastIndexOf('.');
+            key = index > 0 ? id.substring(0, index) : null;
+            rate = key == null ? null : rates.get(key);
+        }
+        if (rate == null) {
+            return;
+        }
+        String tenant = resolveTenant(ms, parameter);
+        TokenBucket bucket = resolveBucket(key, tenant, rate);
+        long maxWaitNanos = getMode() == Mode.BLOCK ? MILLISECONDS.toNanos(getMaxWait()) : 0;
+        long waitNanos = bucket.reserve(maxWaitNanos);
+        if (waitNanos < 0) {
+            this.rejectedCount.increment();
+            throw new StatementRejectedException(format("The executions of the statement['{}'] exceeded the rate[{}/s] of '{}' for the tenant['{}']",
+                    id, bucket.getPermitsPerSecond(), key, tenant), id);
+        }
+        if (waitNanos > 0) {
+            this.delayedCount.increment();
+            try {
+                NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StatementRejectedException(format("The thread was interrupted while waiting for the rate of '{}'", key),
+                        id, e);
+            }
+        }
+    }
+
+    TokenBucket resolveBucket(String key, @Nullable String tenant, double[] rate) {
+        double permitsPerSecond = rate[0];
+        int burst = (int) rate[1];
+        String bucketKey = bucketKey(key, tenant);
+        // The lock-free lookup on the hot path, the bucket is only locked to be created or replaced
+        TokenBucket bucket = this.buckets.get(bucketKey);
+        if (bucket != null && bucket.matches(permitsPerSecond, burst)) {
+            return bucket;
+        }
+        if (this.buckets.size() >= this.evictionThreshold.get()) {
+            // Evict before the creation, or the new bucket is idle as well
+            evictIdleBuckets();
+        }
+        return this.buckets.compute(bucketKey, (k, b) ->
+                b != null && b.matches(permitsPerSecond, burst) ? b : new TokenBucket(permitsPerSecond, burst));
+    }
+
+    /**
+     * Resolve the tenant of the execution, the subclass may override this method to resolve it from the context
+     *
+     * @param ms        {@link MappedStatement}
+     * @param parameter the parameter of {@link MappedStatement}
+     * @return <code>null</code> if the tenant can't be resolved, the executions share the bucket of the rate
+     */
+    @Nullable
+    protected String resolveTenant(MappedStatement ms, @Nullable Object parameter) {
+        String tenantProperty = getTenantProperty();
+        if (tenantProperty == null || parameter == null) {
+            return null;
+        }
+        Configuration configuration = ms.getConfiguration();
+        if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameter.getClass())) {
+            return null;
+        }
+        MetaObject metaObject = configuration.newMetaObject(parameter);
+        Object tenant = metaObject.hasGetter(tenantProperty) ? metaObject.getValue(tenantProperty) : null;
+        return tenant == null ? null : tenant.toString();
+    }
+
+    static String bucketKey(String key, @Nullable String tenant) {
+        return tenant == null ? key : key + '@' + tenant;
+    }
+
+    /**
+     * The lock-free token bucket, which is implemented by the Generic Cell Rate Algorithm : the theoretical arrival
+     * time of the next permit is advanced by the interval of the permits with CAS, the bucket is full if it's not later
+     * than now.
+     */
+    public static class TokenBucket {
+
+        private final double permitsPerSecond;
+
+        private final int burst;
+
+        /**
+         * The interval between the permits in nanoseconds
+         */
+        private final long intervalNanos;
+
+        /**
+         * The time in nanoseconds filling the full bucket
+         */
+        private final long capacityNanos;
+
+        /**
+         * The theoretical arrival time of the next permit in {@link System#nanoTime() nanoseconds}
+         */
+        private final AtomicLong theoreticalArrivalTime;
+
+        TokenBucket(double permitsPerSecond, int burst) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+            this.intervalNanos = max(1, (long) (SECONDS.toNanos(1) / permitsPerSecond));
+            this.capacityNanos = this.intervalNanos * burst;
+            this.theoreticalArrivalTime = new AtomicLong(nanoTime());
+        }
+
+        /**
+         * Reserve a permit
+         *
+         * @param maxWaitNanos the max wait time in nanoseconds
+         * @return the wait time in nanoseconds before the permit is available, or negative if it exceeds the max wait
+         * time and nothing is reserved
+         */
+        long reserve(long maxWaitNanos) {
+            for (; ; ) {
+                long now = nanoTime();
+                long theoreticalArrivalTime = this.theoreticalArrivalTime.get();
+                long start = theoreticalArrivalTime - now > 0 ? theoreticalArrivalTime : now;
+                long next = start + this.intervalNanos;
+                long waitNanos = next - now - this.capacityNanos;
+                if (waitNanos > maxWaitNanos) {
+                    return -1;
+                }
+                if (this.theoreticalArrivalTime.compareAndSet(theoreticalArrivalTime, next)) {
+                    return max(0, waitNanos);
+                }
+            }
+        }
+
+        /**
+         * Is the bucket idle or not, the idle bucket is full, which is as same as the new one
+         *
+         * @param now the current time in {@link System#nanoTime() nanoseconds}
+         * @return <code>true</code> if idle
+         */
+        boolean isIdle(long now) {
+            return this.theoreticalArrivalTime.get() - now <= 0;
+        }
+
+        /**
+         * Get the available permits now
+         *
+         * @return non-negative
+         */
+        public int getAvailablePermits() {
+            long backlog = max(0, this.theoreticalArrivalTime.get() - nanoTime());
+            return (int) max(0, (this.capacityNanos - backlog) / this.intervalNanos);
+        }
+
+        /**
+         * Get the permits per second
+         *
+         * @return positive
+         */
+        public double getPermitsPerSecond() {
+            return this.permitsPerSecond;
+        }
+
+        /**
+         * Get the max permits acquired at once
+         *
+         * @return positive
+         */
+        public int getBurst() {
+            return this.burst;
+        }
+
+        boolean matches(double permitsPerSecond, int burst) {
+            return this.permitsPerSecond == permitsPerSecond && this.burst == burst;
+        }
+
+        @Override
+        public String toString() {
+            return "TokenBucket{" +
+                    "permitsPerSecond=" + this.permitsPerSecond +
+                    ", burst=" + this.burst +
+                    ", availablePermits=" + getAvailablePermits() +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.collection.ListUtils.ofList;
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.mybatis.executor.Executors.isAutoCommit;
+import static io.microsphere.mybatis.executor.Executors.newSimpleExecutor;
+import static io.microsphere.util.Assert.assertNotEmpty;
+import static io.microsphere.util.Assert.assertNotNull;
+import static io.microsphere.util.Assert.assertTrue;
+import static java.util.Collections.addAll;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.ibatis.mapping.SqlCommandType.SELECT;
+
+/**
+ * {@link ExecutorFilter} splits the reads and writes, the {@link org.apache.ibatis.mapping.SqlCommandType#SELECT
+ * select statements} are routed to the read replica {@link DataSource DataSources}, while the updates, commits and
+ * rollbacks go to the primary (the session) as usual.
+ * <p>
+ * Only the reads outside the transactions, whose session connections are auto-commit, are routed to the replicas,
+ * the reads inside a transaction are executed on the primary. Once the session has written, the subsequent reads of the same session stick to the primary until the session is
+ * closed, so that the session always reads its own writes. The statements added by
+ * {@link #addPrimaryStatementIds(String...)}(e.g. "SELECT ... FOR UPDATE") are always executed on the primary.
+ * <p>
+ * The replica with the least in-flight queries is selected. If the {@link ReplicaLagProbe} is
+ * {@link #setReplicaLagProbe(ReplicaLagProbe, long) set}, the replicas lagging behind the max lag are removed from the
+ * selection until they catch up, the reads fall back to the primary if no replica is available.
+ * <p>
+ * The reads executed on the replicas bypass the local cache of the session, but not the second level cache.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   ReadWriteSplittingExecutorFilter filter = new ReadWriteSplittingExecutorFilter(replicaDataSource1, replicaDataSource2)
+ *       .setReplicaLagProbe(probe, 1000)
+ *       .addPrimaryStatementIds("com.acme.OrderMapper.lockById")
+ *       .startReplicaLagCheck(5000);
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[]{filter}));
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ExecutorFilter
+ * @see ReplicaLagProbe
+ * @since 1.0.0
+ */
+public class ReadWriteSplittingExecutorFilter implements ExecutorFilter, AutoCloseable {
+
+    private static final Logger logger = getLogger(ReadWriteSplittingExecutorFilter.class);
+
+    private final List<Replica> replicas;
+
+    private final AtomicInteger replicaIndex = new AtomicInteger();
+
+    private final Set<Transaction> primarySessions = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> primaryStatementIds = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder replicaReadCount = new LongAdder();
+
+    private final LongAdder primaryReadCount = new LongAdder();
+
+    @Nullable
+    private volatile ReplicaLagProbe replicaLagProbe;
+
+    private volatile long maxReplicaLag;
+
+    @Nullable
+    private volatile ScheduledExecutorService scheduler;
+
+    public ReadWriteSplittingExecutorFilter(DataSource... replicas) {
+        this(ofList(replicas));
+    }
+
+    public ReadWriteSplittingExecutorFilter(List<DataSource> replicas) {
+        assertNotEmpty(replicas, () -> "The 'replicas' must not be empty!");
+        assertTrue(replicas.stream().allMatch(Objects::nonNull), () -> "Any element of 'replicas' must not be null!");
+        List<Replica> replicaList = new ArrayList<>(replicas.size());
+        for (DataSource replica : replicas) {
+            replicaList.add(new Replica(replica));
+        }
+        this.replicas = replicaList;
+    }
+
+    @Override
+    public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+        Executor executor = chain.getExecutor();
+        if (!executor.isClosed()) {
+            this.primarySessions.add(executor.getTransaction());
+        }
+        return chain.update(ms, parameter);
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        if (!isRouting(chain)) {
+            return chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        }
+        Replica replica = selectReplica(ms, chain);
+        if (replica == null) {
+            this.primaryReadCount.increment();
+            return chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        }
+        replica.inFlight.incrementAndGet();
+        Executor executor = newSimpleExecutor(ms.getConfiguration(), replica.dataSource);
+        try {
+            this.replicaReadCount.increment();
+            return executor.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        } finally {
+            executor.close(false);
+            replica.inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        if (!isRouting(chain)) {
+            return chain.query(ms, parameter, rowBounds, resultHandler);
+        }
+        Replica replica = selectReplica(ms, chain);
+        if (replica == null) {
+            this.primaryReadCount.increment();
+            return chain.query(ms, parameter, rowBounds, resultHandler);
+        }
+        replica.inFlight.incrementAndGet();
+        Executor executor = newSimpleExecutor(ms.getConfiguration(), replica.dataSource);
+        try {
+            this.replicaReadCount.increment();
+            return executor.query(ms, parameter, rowBounds, resultHandler);
+        } finally {
+            executor.close(false);
+            replica.inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void close(boolean forceRollback, ExecutorFilterChain chain) {
+        Executor executor = chain.getExecutor();
+        if (!executor.isClosed()) {
+            this.primarySessions.remove(executor.getTransaction());
+        }
+        chain.close(forceRollback);
+    }
+
+    /**
+     * Add the ids of {@link MappedStatement} to be always executed on the primary
+     *
+     * @param statementIds the ids of {@link MappedStatement}
+     * @return {@link ReadWriteSplittingExecutorFilter}
+     */
+    public ReadWriteSplittingExecutorFilter addPrimaryStatementIds(String... statementIds) {
+        addAll(this.primaryStatementIds, statementIds);
+        return this;
+    }
+
+    /**
+     * Set the {@link ReplicaLagProbe} and the max lag of the replicas
+     *
+     * @param replicaLagProbe the {@link ReplicaLagProbe}
+     * @param maxReplicaLag   the max lag in milliseconds
+     * @return {@link ReadWriteSplittingExecutorFilter}
+     * @see #checkReplicas()
+     */
+    public ReadWriteSplittingExecutorFilter setReplicaLagProbe(ReplicaLagProbe replicaLagProbe, long maxReplicaLag) {
+        assertNotNull(replicaLagProbe, () -> "The 'replicaLagProbe' must not be null!");
+        assertTrue(maxReplicaLag >= 0, () -> "The 'maxReplicaLag' must not be negative!");
+        this.replicaLagProbe = replicaLagProbe;
+        this.maxReplicaLag = maxReplicaLag;
+        return this;
+    }
+
+    /**
+     * Start checking the lag of replicas periodically in the background
+     *
+     * @param interval the interval in milliseconds
+     * @return {@link ReadWriteSplittingExecutorFilter}
+     */
+    public ReadWriteSplittingExecutorFilter startReplicaLagCheck(long interval) {
+        assertTrue(interval > 0, () -> "The 'interval' must be positive!");
+        assertNotNull(this.replicaLagProbe, () -> "The ReplicaLagProbe must be set before checking!");
+        synchronized (this.replicas) {
+            assertTrue(this.scheduler == null, () -> "The check of replicas' lag has been started!");
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "mybatis-replica-lag-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::checkReplicas, 0, interval, MILLISECONDS);
+            this.scheduler = scheduler;
+        }
+        return this;
+    }
+
+    /**
+     * Check the lag of replicas by the {@link ReplicaLagProbe}, the lagging or failed replicas will be unavailable
+     * until the next check.
+     */
+    public void checkReplicas() {
+        ReplicaLagProbe replicaLagProbe = this.replicaLagProbe;
+        if (replicaLagProbe == null) {
+            return;
+        }
+        long maxReplicaLag = this.maxReplicaLag;
+        for (Replica replica : this.replicas) {
+            boolean available;
+            try {
+                long lag = replicaLagProbe.getLag(replica.dataSource);
+                available = lag >= 0 && lag <= maxReplicaLag;
+                if (!available) {
+                    logger.warn("The replica[{}] lags {} ms(max : {} ms), it will be unavailable", replica.dataSource,
+                            lag, maxReplicaLag);
+                }
+            } catch (Throwable e) {
+                available = false;
+                logger.warn("The replica[{}] can't be probed, it will be unavailable", replica.dataSource, e);
+            }
+            replica.available = available;
+        }
+    }
+
+    /**
+     * Get the count of available replicas
+     *
+     * @return non-negative
+     */
+    public int getAvailableReplicaCount() {
+        int count = 0;
+        for (Replica replica : this.replicas) {
+            if (replica.available) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the count of the reads executed on the replicas
+     *
+     * @return non-negative
+     */
+    public long getReplicaReadCount() {
+        return this.replicaReadCount.sum();
+    }
+
+    /**
+     * Get the count of the reads executed on the primary
+     *
+     * @return non-negative
+     */
+    public long getPrimaryReadCount() {
+        return this.primaryReadCount.sum();
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    boolean isRouting(ExecutorFilterChain chain) {
+        Executor executor = chain.getExecutor();
+        // The reads are routed by the innermost InterceptingExecutor, thus the second level cache is not bypassed
+        return !(executor instanceof CachingExecutor) && !executor.isClosed();
+    }
+
+    boolean isReplicaReadable(MappedStatement ms, ExecutorFilterChain chain) throws SQLException {
+        if (ms.getSqlCommandType() != SELECT || this.primaryStatementIds.contains(ms.getId())) {
+            return false;
+        }
+        Transaction transaction = chain.getExecutor().getTransaction();
+        if (this.primarySessions.contains(transaction)) {
+            return false;
+        }
+        // The reads inside a transaction must see its snapshot and writes, thus only the auto-commit reads are routed,
+        // the mode is determined without checking out the primary connection
+        return isAutoCommit(chain.getExecutor());
+    }
+
+    @Nullable
+    Replica selectReplica(MappedStatement ms, ExecutorFilterChain chain) throws SQLException {
+        if (!isReplicaReadable(ms, chain)) {
+            return null;
+        }
+        List<Replica> replicas = this.replicas;
+        int size = replicas.size();
+        int start = this.replicaIndex.getAndIncrement() & Integer.MAX_VALUE;
+        Replica selected = null;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.available && (selected == null || replica.inFlight.get() < selected.inFlight.get())) {
+                selected = replica;
+            }
+        }
+        return selected;
+    }
+
+    static class Replica {
+
+        final DataSource dataSource;
+
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        volatile boolean available = true;
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * The probe of the replication lag of the read replica {@link DataSource}
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   // MySQL
+ *   ReplicaLagProbe probe = replica -> {
+ *       try (Connection connection = replica.getConnection();
+ *            Statement statement = connection.createStatement();
+ *            ResultSet resultSet = statement.executeQuery("SHOW REPLICA STATUS")) {
+ *           return resultSet.next() ? resultSet.getLong("Seconds_Behind_Source") * 1000 : -1;
+ *       }
+ *   };
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ReadWriteSplittingExecutorFilter
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface ReplicaLagProbe {
+
+    /**
+     * Get the replication lag of the read replica
+     *
+     * @param replica the read replica {@link DataSource}
+     * @return the lag in milliseconds, or the negative value if the lag is unknown(e.g. the replication stopped)
+     * @throws SQLException if the replica can't be probed
+     */
+    long getLag(DataSource replica) throws SQLException;
+}
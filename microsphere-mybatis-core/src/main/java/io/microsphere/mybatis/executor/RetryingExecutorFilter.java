@@ -0,0 +1,613 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import io.microsphere.mybatis.executor.UnitOfWorkRollbackException.ExecutedStatement;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.mybatis.executor.Executors.getDataSource;
+import static io.microsphere.mybatis.executor.Executors.newSimpleExecutor;
+import static io.microsphere.text.FormatUtils.format;
+import static io.microsphere.util.Assert.assertTrue;
+import static java.lang.Math.min;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Collections.addAll;
+import static org.apache.ibatis.mapping.StatementType.CALLABLE;
+
+/**
+ * {@link ExecutorFilter} retries the idempotent executions failed with the transient SQLStates : the transaction
+ * rollback("40", e.g. the deadlock and the serialization failure) and the connection exception("08", e.g. the
+ * connection reset).
+ * <p>
+ * The queries except the stored procedure calls are idempotent, while the updates must be
+ * {@link #addIdempotentStatementIds(String...) marked} explicitly. The execution is retried by
+ * {@link ExecutorFilterChain#fork() the forked chain} with the jittered exponential backoff, or on a new
+ * {@link Executor} if the connection was broken, until {@link #getMaxAttempts() the max attempts}. The retries are
+ * limited by the budget per time window, which is {@link #setRetryBudget(double, int, long) the ratio} of the
+ * requests in the window, thus the retries can't amplify the load of the degraded database as a storm.
+ * <p>
+ * The statement is retried only if the connection is in auto-commit mode. Inside a transaction, the database
+ * rolls back the whole transaction of the deadlock victim, so the statement can't be retried alone. The failure of
+ * the statement or {@link Executor#commit(boolean) the commit} is surfaced by {@link UnitOfWorkRollbackException},
+ * whose {@link UnitOfWorkRollbackException#getStatements() recorded statements} enable to replay the whole unit of
+ * work.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   RetryingExecutorFilter filter = new RetryingExecutorFilter()
+ *       .setMaxAttempts(3)
+ *       .setBackoff(20, 500)
+ *       .setRetryBudget(0.1, 10, 1000)
+ *       .addIdempotentStatementIds("com.acme.mapper.OrderMapper.markShipped");
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[]{filter}));
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ExecutorFilterChain#fork()
+ * @see UnitOfWorkRollbackException
+ * @see ExecutorFilter
+ * @since 1.0.0
+ */
+public class RetryingExecutorFilter implements ExecutorFilter {
+
+    private static final Logger logger = getLogger(RetryingExecutorFilter.class);
+
+    /**
+     * The class of the SQLState : transaction rollback
+     */
+    public static final String TRANSACTION_ROLLBACK_SQL_STATE_CLASS = "40";
+
+    /**
+     * The class of the SQLState : connection exception
+     */
+    public static final String CONNECTION_EXCEPTION_SQL_STATE_CLASS = "08";
+
+    /**
+     * The default max attempts including the first execution
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /**
+     * The default initial backoff in milliseconds
+     */
+    public static final long DEFAULT_INITIAL_BACKOFF = 50;
+
+    /**
+     * The default max backoff in milliseconds
+     */
+    public static final long DEFAULT_MAX_BACKOFF = 1000;
+
+    /**
+     * The default ratio of the retries to the requests in a time window
+     */
+    public static final double DEFAULT_RETRY_RATIO = 0.1;
+
+    /**
+     * The default min retries in a time window
+     */
+    public static final int DEFAULT_MIN_RETRIES_PER_WINDOW = 10;
+
+    /**
+     * The default time window of the retry budget in milliseconds
+     */
+    public static final long DEFAULT_BUDGET_WINDOW = 1000;
+
+    /**
+     * The default max statements recorded in a unit of work
+     */
+    public static final int DEFAULT_MAX_RECORDED_STATEMENTS = 100;
+
+    private final Set<String> idempotentStatementIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The units of work keyed by the {@link Transaction}
+     */
+    private final Map<Transaction, UnitOfWork> unitsOfWork = new ConcurrentHashMap<>();
+
+    /**
+     * The current thread is executing with retries or not, the nested executions are not retried
+     */
+    private final ThreadLocal<Boolean> retrying = new ThreadLocal<>();
+
+    private final LongAdder retryCount = new LongAdder();
+
+    private final LongAdder recoveredCount = new LongAdder();
+
+    private final LongAdder exhaustedCount = new LongAdder();
+
+    private final LongAdder budgetExhaustedCount = new LongAdder();
+
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    private volatile long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+
+    private volatile long maxBackoff = DEFAULT_MAX_BACKOFF;
+
+    private volatile int maxRecordedStatements = DEFAULT_MAX_RECORDED_STATEMENTS;
+
+    private volatile RetryBudget retryBudget = new RetryBudget(DEFAULT_RETRY_RATIO, DEFAULT_MIN_RETRIES_PER_WINDOW,
+            DEFAULT_BUDGET_WINDOW);
+
+    @Override
+    public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, parameter, chain, this.idempotentStatementIds.contains(ms.getId()),
+                c -> c.update(ms, parameter));
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, parameter, chain, isIdempotentQuery(ms),
+                c -> c.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql));
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        return execute(ms, parameter, chain, isIdempotentQuery(ms),
+                c -> c.query(ms, parameter, rowBounds, resultHandler));
+    }
+
+    @Override
+    public void commit(boolean required, ExecutorFilterChain chain) throws SQLException {
+        Executor executor = chain.getExecutor();
+        try {
+            chain.commit(required);
+        } catch (SQLException e) {
+            throw classify(e) == FailureType.TRANSACTION_ROLLBACK ? rollback(e, executor) : e;
+        } finally {
+            clearUnitOfWork(executor);
+        }
+    }
+
+    @Override
+    public void rollback(boolean required, ExecutorFilterChain chain) throws SQLException {
+        try {
+            chain.rollback(required);
+        } finally {
+            clearUnitOfWork(chain.getExecutor());
+        }
+    }
+
+    @Override
+    public void close(boolean forceRollback, ExecutorFilterChain chain) {
+        clearUnitOfWork(chain.getExecutor());
+        chain.close(forceRollback);
+    }
+
+    <R> R execute(MappedStatement ms, Object parameter, ExecutorFilterChain chain, boolean idempotent,
+                  Execution<R> execution) throws SQLException {
+        Executor executor = chain.getExecutor();
+        // The connection may be broken after the failure, thus the auto-commit mode is determined before the execution
+        // without opening the connection, e.g. the query may be answered by the local cache
+        boolean autoCommit = isAutoCommit(executor);
+        if (!autoCommit) {
+            // Only the statements of the transaction are replayed by the unit of work
+            record(executor, ms, parameter);
+        }
+        if (!idempotent || this.retrying.get() != null) {
+            try {
+                return execution.execute(chain);
+            } catch (SQLException e) {
+                throw translate(e, autoCommit, executor);
+            }
+        }
+        RetryBudget retryBudget = this.retryBudget;
+        retryBudget.onRequest();
+        ExecutorFilterChain origin = chain.fork();
+        ExecutorFilterChain attemptChain = chain;
+        Executor attemptExecutor = null;
+        DataSource retryDataSource = null;
+        this.retrying.set(Boolean.TRUE);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                FailureType failureType;
+                try {
+                    R result = execution.execute(attemptChain);
+                    if (attempt > 1) {
+                        this.recoveredCount.increment();
+                    }
+                    return result;
+                } catch (SQLException e) {
+                    failureType = classify(e);
+                    if (failureType == null || !autoCommit) {
+                        throw translate(e, autoCommit, executor);
+                    }
+                    if (failureType == FailureType.CONNECTION) {
+                        retryDataSource = getRetryDataSource(ms, executor);
+                        if (retryDataSource == null) {
+                            throw e;
+                        }
+                    }
+                    if (attempt >= this.maxAttempts) {
+                        this.exhaustedCount.increment();
+                        throw e;
+                    }
+                    if (!retryBudget.tryRetry()) {
+                        this.budgetExhaustedCount.increment();
+                        logger.warn("The statement['{}'] is not retried, because the retry budget is exhausted : {}",
+                                ms.getId(), e.getMessage());
+                        throw e;
+                    }
+                    backoff(attempt, e);
+                    this.retryCount.increment();
+                    logger.trace("The statement['{}'] is retried[attempt : {}] after the failure : {}", ms.getId(),
+                            attempt + 1, e.getMessage());
+                } finally {
+                    if (attemptExecutor != null) {
+                        attemptExecutor.close(false);
+                        attemptExecutor = null;
+                    }
+                }
+                if (failureType == FailureType.CONNECTION) {
+                    // The connection of the session may be broken, the execution is retried on a new one
+                    attemptExecutor = newSimpleExecutor(ms.getConfiguration(), retryDataSource);
+                    attemptChain = origin.fork(attemptExecutor);
+                } else {
+                    attemptChain = origin.fork();
+                }
+            }
+        } finally {
+            this.retrying.remove();
+        }
+    }
+
+    boolean isIdempotentQuery(MappedStatement ms) {
+        return ms.getStatementType() != CALLABLE || this.idempotentStatementIds.contains(ms.getId());
+    }
+
+    /**
+     * Classify the failure
+     *
+     * @param failure the failure of the execution
+     * @return <code>null</code> if the failure is not transient
+     */
+    @Nullable
+    FailureType classify(Throwable failure) {
+        Throwable cause = failure;
+        while (cause != null) {
+            if (cause instanceof StatementRejectedException) {
+                // The rejection must not be retried, or it amplifies the load
+                return null;
+            }
+            if (cause instanceof SQLTransactionRollbackException) {
+                return FailureType.TRANSACTION_ROLLBACK;
+            }
+            if (cause instanceof SQLTransientConnectionException) {
+                return FailureType.CONNECTION;
+            }
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (sqlState != null) {
+                    if (sqlState.startsWith(TRANSACTION_ROLLBACK_SQL_STATE_CLASS)) {
+                        return FailureType.TRANSACTION_ROLLBACK;
+                    }
+                    if (sqlState.startsWith(CONNECTION_EXCEPTION_SQL_STATE_CLASS)) {
+                        return FailureType.CONNECTION;
+                    }
+                }
+            }
+            cause = cause.getCause();
+        }
+        return null;
+    }
+
+    boolean isAutoCommit(Executor executor) {
+        if (executor.isClosed()) {
+            return false;
+        }
+        try {
+            return Executors.isAutoCommit(executor);
+        } catch (SQLException | RuntimeException e) {
+            logger.trace("The auto-commit mode of the connection can't be determined : {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Get the {@link DataSource} to retry the execution on a new connection
+     *
+     * @param ms       {@link MappedStatement}
+     * @param executor the {@link Executor} of session
+     * @return <code>null</code> if the session is not on the {@link Environment#getDataSource() DataSource of
+     * Environment}, e.g. opened on the other {@link DataSource}, whose executions must not be retried on the primary
+     */
+    @Nullable
+    DataSource getRetryDataSource(MappedStatement ms, Executor executor) {
+        Environment environment = ms.getConfiguration().getEnvironment();
+        if (environment == null) {
+            return null;
+        }
+        DataSource dataSource = environment.getDataSource();
+        return dataSource == getDataSource(executor) ? dataSource : null;
+    }
+
+    SQLException translate(SQLException failure, boolean autoCommit, Executor executor) {
+        if (failure instanceof UnitOfWorkRollbackException
+                || classify(failure) != FailureType.TRANSACTION_ROLLBACK || autoCommit) {
+            return failure;
+        }
+        return rollback(failure, executor);
+    }
+
+    UnitOfWorkRollbackException rollback(SQLException failure, Executor executor) {
+        UnitOfWork unitOfWork = executor.isClosed() ? null : this.unitsOfWork.get(executor.getTransaction());
+        List<ExecutedStatement> statements = unitOfWork == null ? null : new ArrayList<>(unitOfWork.statements);
+        boolean truncated = unitOfWork != null && unitOfWork.truncated;
+        String message = format("The transaction was rolled back by the database[SQLState : {}], the unit of work({} statements{}) should be replayed : {}",
+                failure.getSQLState(), statements == null ? 0 : statements.size(), truncated ? ", truncated" : "",
+                failure.getMessage());
+        return new UnitOfWorkRollbackException(message, failure, statements, truncated);
+    }
+
+    void backoff(int attempt, SQLException failure) throws SQLException {
+        long maxBackoff = this.maxBackoff;
+        long backoff = this.initialBackoff;
+        for (int i = 1; i < attempt && backoff < maxBackoff; i++) {
+            backoff <<= 1;
+        }
+        // The full jitter
+        long delay = ThreadLocalRandom.current().nextLong(min(backoff, maxBackoff) + 1);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw failure;
+            }
+        }
+    }
+
+    void record(Executor executor, MappedStatement ms, Object parameter) {
+        int maxRecordedStatements = this.maxRecordedStatements;
+        if (maxRecordedStatements < 1 || executor.isClosed()) {
+            return;
+        }
+        UnitOfWork unitOfWork = this.unitsOfWork.computeIfAbsent(executor.getTransaction(), t -> new UnitOfWork());
+        if (unitOfWork.statements.size() < maxRecordedStatements) {
+            unitOfWork.statements.add(new ExecutedStatement(ms.getId(), parameter));
+        } else {
+            unitOfWork.truncated = true;
+        }
+    }
+
+    int getUnitOfWorkCount() {
+        return this.unitsOfWork.size();
+    }
+
+    void clearUnitOfWork(Executor executor) {
+        if (!executor.isClosed()) {
+            this.unitsOfWork.remove(executor.getTransaction());
+        }
+    }
+
+    /**
+     * Add the ids of the idempotent statements, which include the updates and the stored procedure calls
+     *
+     * @param statementIds the ids of {@link MappedStatement}
+     * @return {@link RetryingExecutorFilter}
+     */
+    public RetryingExecutorFilter addIdempotentStatementIds(String... statementIds) {
+        addAll(this.idempotentStatementIds, statementIds);
+        return this;
+    }
+
+    /**
+     * Set the max attempts including the first execution
+     *
+     * @param maxAttempts the max attempts
+     * @return {@link RetryingExecutorFilter}
+     */
+    public RetryingExecutorFilter setMaxAttempts(int maxAttempts) {
+        assertTrue(maxAttempts > 0, () -> "The 'maxAttempts' must be positive!");
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Set the exponential backoff, the delay before the n-th retry is random in the range of
+     * [0, min(maxBackoff, initialBackoff * 2^(n-1))]
+     *
+     * @param initialBackoff the initial backoff in milliseconds
+     * @param maxBackoff     the max backoff in milliseconds
+     * @return {@link RetryingExecutorFilter}
+     */
+    public RetryingExecutorFilter setBackoff(long initialBackoff, long maxBackoff) {
+        assertTrue(initialBackoff >= 0, () -> "The 'initialBackoff' must not be negative!");
+        assertTrue(maxBackoff >= initialBackoff, () -> "The 'maxBackoff' must not be less than 'initialBackoff'!");
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        return this;
+    }
+
+    /**
+     * Set the retry budget, the retries in a time window must not exceed
+     * <code>minRetriesPerWindow + ratio * requests</code>
+     *
+     * @param ratio               the ratio of the retries to the requests in the window
+     * @param minRetriesPerWindow the min retries in the window
+     * @param window              the time window in milliseconds
+     * @return {@link RetryingExecutorFilter}
+     */
+    public RetryingExecutorFilter setRetryBudget(double ratio, int minRetriesPerWindow, long window) {
+        this.retryBudget = new RetryBudget(ratio, minRetriesPerWindow, window);
+        return this;
+    }
+
+    /**
+     * Set the max statements recorded in a unit of work
+     *
+     * @param maxRecordedStatements the max statements, <code>0</code> indicates no statement is recorded
+     * @return {@link RetryingExecutorFilter}
+     */
+    public RetryingExecutorFilter setMaxRecordedStatements(int maxRecordedStatements) {
+        assertTrue(maxRecordedStatements >= 0, () -> "The 'maxRecordedStatements' must not be negative!");
+        this.maxRecordedStatements = maxRecordedStatements;
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    public long getInitialBackoff() {
+        return this.initialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return this.maxBackoff;
+    }
+
+    public int getMaxRecordedStatements() {
+        return this.maxRecordedStatements;
+    }
+
+    /**
+     * Get the count of the retries
+     *
+     * @return non-negative
+     */
+    public long getRetryCount() {
+        return this.retryCount.sum();
+    }
+
+    /**
+     * Get the count of the executions succeeded after the retries
+     *
+     * @return non-negative
+     */
+    public long getRecoveredCount() {
+        return this.recoveredCount.sum();
+    }
+
+    /**
+     * Get the count of the executions failed after the max attempts
+     *
+     * @return non-negative
+     */
+    public long getExhaustedCount() {
+        return this.exhaustedCount.sum();
+    }
+
+    /**
+     * Get the count of the executions not retried because the retry budget was exhausted
+     *
+     * @return non-negative
+     */
+    public long getBudgetExhaustedCount() {
+        return this.budgetExhaustedCount.sum();
+    }
+
+    /**
+     * The type of the transient failure
+     */
+    enum FailureType {
+
+        TRANSACTION_ROLLBACK,
+
+        CONNECTION
+    }
+
+    /**
+     * The statements executed in a unit of work, which is accessed by the thread of the session
+     */
+    static class UnitOfWork {
+
+        private final List<ExecutedStatement> statements = new ArrayList<>();
+
+        private boolean truncated;
+    }
+
+    /**
+     * The retry budget in the fixed time window
+     */
+    static class RetryBudget {
+
+        private final double ratio;
+
+        private final int minRetriesPerWindow;
+
+        private final long window;
+
+        private final AtomicLong windowStart = new AtomicLong(currentTimeMillis());
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private final AtomicInteger retries = new AtomicInteger();
+
+        RetryBudget(double ratio, int minRetriesPerWindow, long window) {
+            assertTrue(ratio >= 0, () -> "The 'ratio' must not be negative!");
+            assertTrue(minRetriesPerWindow >= 0, () -> "The 'minRetriesPerWindow' must not be negative!");
+            assertTrue(window > 0, () -> "The 'window' must be positive!");
+            this.ratio = ratio;
+            this.minRetriesPerWindow = minRetriesPerWindow;
+            this.window = window;
+        }
+
+        void onRequest() {
+            roll();
+            this.requests.incrementAndGet();
+        }
+
+        boolean tryRetry() {
+            roll();
+            int allowed = this.minRetriesPerWindow + (int) (this.ratio * this.requests.get());
+            for (; ; ) {
+                int retries = this.retries.get();
+                if (retries >= allowed) {
+                    return false;
+                }
+                if (this.retries.compareAndSet(retries, retries + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void roll() {
+            long now = currentTimeMillis();
+            long windowStart = this.windowStart.get();
+            if (now - windowStart >= this.window && this.windowStart.compareAndSet(windowStart, now)) {
+                this.requests.set(0);
+                this.retries.set(0);
+            }
+        }
+    }
+}
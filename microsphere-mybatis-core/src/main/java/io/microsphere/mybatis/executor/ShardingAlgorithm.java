@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import static java.lang.Math.floorMod;
+
+/**
+ * The algorithm to resolve the index of shard by the shard key
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   // Range sharding by the user id, 1 million users per shard
+ *   ShardingAlgorithm algorithm = (shardKey, shardCount) -> (int) (((Number) shardKey).longValue() / 1_000_000);
+ *   shardingExecutorFilter.setShardingAlgorithm(algorithm);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ShardingExecutorFilter
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface ShardingAlgorithm {
+
+    /**
+     * The modulo algorithm, the value of {@link Number} or the hash code of others modulo the count of shards.
+     */
+    ShardingAlgorithm MODULO = (shardKey, shardCount) -> shardKey instanceof Number number ?
+            (int) floorMod(number.longValue(), (long) shardCount) : floorMod(shardKey.hashCode(), shardCount);
+
+    /**
+     * Get the index of shard
+     *
+     * @param shardKey   the non-null shard key
+     * @param shardCount the count of shards
+     * @return the index of shard in the range of [0, shardCount)
+     */
+    int getShard(Object shardKey, int shardCount);
+}
@@ -0,0 +1,516 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.collection.ListUtils.ofList;
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.mybatis.executor.Executors.isAutoCommit;
+import static io.microsphere.mybatis.executor.Executors.newSimpleExecutor;
+import static io.microsphere.util.Assert.assertNotEmpty;
+import static io.microsphere.util.Assert.assertNotNull;
+import static io.microsphere.util.Assert.assertTrue;
+import static io.microsphere.util.StringUtils.isNotBlank;
+import static java.lang.Math.min;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static org.apache.ibatis.executor.Executor.NO_RESULT_HANDLER;
+import static org.apache.ibatis.session.RowBounds.NO_ROW_LIMIT;
+import static org.apache.ibatis.session.RowBounds.NO_ROW_OFFSET;
+
+/**
+ * {@link ExecutorFilter} routes the sharded {@link MappedStatement statements} to the shard {@link DataSource
+ * DataSources} by the shard key.
+ * <p>
+ * The shard key is extracted from the parameter by the property {@link #addShardKey(String, String) configured} per
+ * {@link MappedStatement} id(the simple parameter, e.g. {@link Integer}, is the shard key itself), then the
+ * {@link ShardingAlgorithm} resolves the shard. The statements without the shard key are executed on all shards:
+ * <ul>
+ *     <li>The queries are scatter-gathered(in parallel if the {@link ExecutorService} is present), the results are
+ *     merged by the {@link #setOrdering(String, Comparator) ordering} of statement and then bounded by the
+ *     {@link RowBounds}, each shard fetches at most {@code offset + limit} rows. The bounded {@link RowBounds}
+ *     requires the ordering of statement, or the rows of the page would be arbitrary.</li>
+ *     <li>The updates are broadcast, the count of updated rows is summed.</li>
+ * </ul>
+ * <p>
+ * Each session owns one {@link Executor} per shard on demand, whose auto-commit mode follows the session's
+ * connection, they are committed, rolled back and closed along with the session. The transactions of shards are
+ * independent(no two-phase commit). The statements that are not sharded are executed by the session as usual.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   ShardingExecutorFilter filter = new ShardingExecutorFilter(shardDataSources, executorService)
+ *       .addShardKey("com.acme.UserMapper.getUserById", "id")
+ *       .addShardKey("com.acme.UserMapper.selectByStatus", "id")
+ *       .setOrdering("com.acme.UserMapper.selectByStatus", Comparator.comparing(User::getId));
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[]{filter}));
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ExecutorFilter
+ * @see ShardingAlgorithm
+ * @since 1.0.0
+ */
+public class ShardingExecutorFilter implements ExecutorFilter {
+
+    private static final Logger logger = getLogger(ShardingExecutorFilter.class);
+
+    private final List<DataSource> shards;
+
+    @Nullable
+    private final ExecutorService executorService;
+
+    private final Map<String, String> shardKeyProperties = new ConcurrentHashMap<>();
+
+    private final Map<String, Comparator<Object>> orderings = new ConcurrentHashMap<>();
+
+    private final Map<Transaction, ShardSession> shardSessions = new ConcurrentHashMap<>();
+
+    private final LongAdder routedCount = new LongAdder();
+
+    private final LongAdder scatteredCount = new LongAdder();
+
+    private volatile ShardingAlgorithm shardingAlgorithm = ShardingAlgorithm.MODULO;
+
+    public ShardingExecutorFilter(DataSource... shards) {
+        this(ofList(shards), null);
+    }
+
+    public ShardingExecutorFilter(List<DataSource> shards, @Nullable ExecutorService executorService) {
+        assertNotEmpty(shards, () -> "The 'shards' must not be empty!");
+        assertTrue(shards.stream().allMatch(Objects::nonNull), () -> "Any element of 'shards' must not be null!");
+        this.shards = shards;
+        this.executorService = executorService;
+    }
+
+    @Override
+    public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+        if (!isSharded(ms, chain)) {
+            return chain.update(ms, parameter);
+        }
+        ShardSession shardSession = getShardSession(ms, chain);
+        int shard = getShard(ms, parameter);
+        if (shard > -1) {
+            this.routedCount.increment();
+            return shardSession.getExecutor(shard).update(ms, parameter);
+        }
+        this.scatteredCount.increment();
+        int count = 0;
+        for (int i = 0; i < this.shards.size(); i++) {
+            count += shardSession.getExecutor(i).update(ms, parameter);
+        }
+        return count;
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+        if (!isSharded(ms, chain)) {
+            return chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        }
+        ShardSession shardSession = getShardSession(ms, chain);
+        int shard = getShard(ms, parameter);
+        if (shard > -1) {
+            this.routedCount.increment();
+            return shardSession.getExecutor(shard).query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        }
+        return scatter(shardSession, ms, parameter, rowBounds, resultHandler);
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                             ExecutorFilterChain chain) throws SQLException {
+        if (!isSharded(ms, chain)) {
+            return chain.query(ms, parameter, rowBounds, resultHandler);
+        }
+        ShardSession shardSession = getShardSession(ms, chain);
+        int shard = getShard(ms, parameter);
+        if (shard > -1) {
+            this.routedCount.increment();
+            return shardSession.getExecutor(shard).query(ms, parameter, rowBounds, resultHandler);
+        }
+        return scatter(shardSession, ms, parameter, rowBounds, resultHandler);
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                     ExecutorFilterChain chain) throws SQLException {
+        if (!isSharded(ms, chain)) {
+            return chain.queryCursor(ms, parameter, rowBounds);
+        }
+        int shard = getShard(ms, parameter);
+        if (shard < 0) {
+            throw new SQLFeatureNotSupportedException("The cursor of statement['" + ms.getId() +
+                    "'] requires the shard key");
+        }
+        this.routedCount.increment();
+        return getShardSession(ms, chain).getExecutor(shard).queryCursor(ms, parameter, rowBounds);
+    }
+
+    @Override
+    public void commit(boolean required, ExecutorFilterChain chain) throws SQLException {
+        chain.commit(required);
+        ShardSession shardSession = findShardSession(chain);
+        if (shardSession != null) {
+            shardSession.commit(required);
+        }
+    }
+
+    @Override
+    public void rollback(boolean required, ExecutorFilterChain chain) throws SQLException {
+        try {
+            chain.rollback(required);
+        } finally {
+            ShardSession shardSession = findShardSession(chain);
+            if (shardSession != null) {
+                shardSession.rollback(required);
+            }
+        }
+    }
+
+    @Override
+    public void close(boolean forceRollback, ExecutorFilterChain chain) {
+        Executor executor = chain.getExecutor();
+        if (isRouting(executor)) {
+            ShardSession shardSession = this.shardSessions.remove(executor.getTransaction());
+            if (shardSession != null) {
+                shardSession.close(forceRollback);
+            }
+        }
+        chain.close(forceRollback);
+    }
+
+    /**
+     * Add the shard key of the {@link MappedStatement}, the statement will be sharded
+     *
+     * @param statementId the id of {@link MappedStatement}
+     * @param keyProperty the property of parameter as the shard key, it's ignored if the parameter is simple type
+     * @return {@link ShardingExecutorFilter}
+     */
+    public ShardingExecutorFilter addShardKey(String statementId, String keyProperty) {
+        assertTrue(isNotBlank(statementId), () -> "The 'statementId' must not be blank!");
+        assertTrue(isNotBlank(keyProperty), () -> "The 'keyProperty' must not be blank!");
+        this.shardKeyProperties.put(statementId, keyProperty);
+        return this;
+    }
+
+    /**
+     * Add the shard keys of the {@link MappedStatement MappedStatements}
+     *
+     * @param shardKeys the {@link Map} with the id of {@link MappedStatement} as the key and the property of parameter
+     *                  as the value
+     * @return {@link ShardingExecutorFilter}
+     * @see #addShardKey(String, String)
+     */
+    public ShardingExecutorFilter setShardKeys(Map<String, String> shardKeys) {
+        assertNotNull(shardKeys, () -> "The 'shardKeys' must not be null!");
+        shardKeys.forEach(this::addShardKey);
+        return this;
+    }
+
+    /**
+     * Set the ordering of the results of the sharded query to be merged
+     *
+     * @param statementId the id of {@link MappedStatement}
+     * @param comparator  the {@link Comparator} of the result objects
+     * @return {@link ShardingExecutorFilter}
+     */
+    @SuppressWarnings("unchecked")
+    public ShardingExecutorFilter setOrdering(String statementId, Comparator<?> comparator) {
+        assertTrue(isNotBlank(statementId), () -> "The 'statementId' must not be blank!");
+        assertNotNull(comparator, () -> "The 'comparator' must not be null!");
+        this.orderings.put(statementId, (Comparator<Object>) comparator);
+        return this;
+    }
+
+    /**
+     * Set the {@link ShardingAlgorithm}
+     *
+     * @param shardingAlgorithm {@link ShardingAlgorithm}
+     * @return {@link ShardingExecutorFilter}
+     */
+    public ShardingExecutorFilter setShardingAlgorithm(ShardingAlgorithm shardingAlgorithm) {
+        assertNotNull(shardingAlgorithm, () -> "The 'shardingAlgorithm' must not be null!");
+        this.shardingAlgorithm = shardingAlgorithm;
+        return this;
+    }
+
+    /**
+     * Get the count of shards
+     *
+     * @return positive
+     */
+    public int getShardCount() {
+        return this.shards.size();
+    }
+
+    /**
+     * Get the count of statements routed to a single shard
+     *
+     * @return non-negative
+     */
+    public long getRoutedCount() {
+        return this.routedCount.sum();
+    }
+
+    /**
+     * Get the count of statements executed on all shards
+     *
+     * @return non-negative
+     */
+    public long getScatteredCount() {
+        return this.scatteredCount.sum();
+    }
+
+    /**
+     * Get the index of shard for the specified statement and parameter
+     *
+     * @param ms        {@link MappedStatement}
+     * @param parameter the parameter of {@link MappedStatement}
+     * @return <code>-1</code> if the statement is not sharded or the shard key is absent
+     */
+    int getShard(MappedStatement ms, @Nullable Object parameter) {
+        String keyProperty = this.shardKeyProperties.get(ms.getId());
+        if (keyProperty == null || parameter == null) {
+            return -1;
+        }
+        Configuration configuration = ms.getConfiguration();
+        Object shardKey;
+        if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameter.getClass())) {
+            shardKey = parameter;
+        } else {
+            MetaObject metaObject = configuration.newMetaObject(parameter);
+            shardKey = metaObject.hasGetter(keyProperty) ? metaObject.getValue(keyProperty) : null;
+        }
+        if (shardKey == null) {
+            return -1;
+        }
+        int shardCount = getShardCount();
+        int shard = this.shardingAlgorithm.getShard(shardKey, shardCount);
+        assertTrue(shard > -1 && shard < shardCount, () -> "The shard[" + shard + "] of key[" + shardKey +
+                "] is out of range [0, " + shardCount + ")");
+        return shard;
+    }
+
+    boolean isSharded(MappedStatement ms, ExecutorFilterChain chain) {
+        return this.shardKeyProperties.containsKey(ms.getId()) && isRouting(chain.getExecutor());
+    }
+
+    /**
+     * The statements are routed by the innermost InterceptingExecutor, thus the second level cache is not bypassed.
+     */
+    boolean isRouting(Executor executor) {
+        return !(executor instanceof CachingExecutor) && !executor.isClosed();
+    }
+
+    @Nullable
+    ShardSession findShardSession(ExecutorFilterChain chain) {
+        Executor executor = chain.getExecutor();
+        return isRouting(executor) ? this.shardSessions.get(executor.getTransaction()) : null;
+    }
+
+    ShardSession getShardSession(MappedStatement ms, ExecutorFilterChain chain) throws SQLException {
+        Executor executor = chain.getExecutor();
+        Transaction transaction = executor.getTransaction();
+        ShardSession shardSession = this.shardSessions.get(transaction);
+        if (shardSession == null) {
+            // The connection of the session is not opened, the shard sessions take over its mode
+            boolean autoCommit = isAutoCommit(executor);
+            shardSession = new ShardSession(ms.getConfiguration(), autoCommit);
+            this.shardSessions.put(transaction, shardSession);
+        }
+        return shardSession;
+    }
+
+    <E> List<E> scatter(ShardSession shardSession, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                        ResultHandler resultHandler) throws SQLException {
+        int offset = rowBounds.getOffset();
+        int limit = rowBounds.getLimit();
+        boolean bounded = limit != NO_ROW_LIMIT;
+        Comparator<Object> ordering = this.orderings.get(ms.getId());
+        if (ordering == null && (bounded || offset != NO_ROW_OFFSET)) {
+            throw new SQLFeatureNotSupportedException("The scatter query of statement['" + ms.getId() +
+                    "'] with the bounded RowBounds requires the ordering");
+        }
+        this.scatteredCount.increment();
+        int shardCount = getShardCount();
+        // Push down the limit, each shard fetches at most (offset + limit) rows
+        RowBounds shardRowBounds = bounded ? new RowBounds(NO_ROW_OFFSET, (int) min((long) offset + limit, NO_ROW_LIMIT)) :
+                (offset == NO_ROW_OFFSET ? rowBounds : RowBounds.DEFAULT);
+
+        List<Executor> executors = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            executors.add(shardSession.getExecutor(i));
+        }
+
+        List<List<E>> results = new ArrayList<>(shardCount);
+        ExecutorService executorService = this.executorService;
+        if (executorService == null) {
+            for (Executor executor : executors) {
+                results.add(executor.query(ms, parameter, shardRowBounds, NO_RESULT_HANDLER));
+            }
+        } else {
+            List<CompletableFuture<List<E>>> futures = new ArrayList<>(shardCount);
+            for (Executor executor : executors) {
+                futures.add(supplyAsync(() -> {
+                    try {
+                        return executor.<E>query(ms, parameter, shardRowBounds, NO_RESULT_HANDLER);
+                    } catch (SQLException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executorService));
+            }
+            try {
+                for (CompletableFuture<List<E>> future : futures) {
+                    results.add(future.join());
+                }
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException sqlException) {
+                    throw sqlException;
+                } else if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new SQLException("The scatter query of statement['" + ms.getId() + "'] failed", cause);
+            }
+        }
+
+        List<E> merged = merge(results, ordering);
+        int size = merged.size();
+        int fromIndex = min(offset, size);
+        int toIndex = bounded ? (int) min((long) fromIndex + limit, size) : size;
+        List<E> bounds = fromIndex == 0 && toIndex == size ? merged : new ArrayList<>(merged.subList(fromIndex, toIndex));
+        logger.trace("The scatter query of statement['{}'] merged {} rows from {} shards, {} rows returned",
+                ms.getId(), size, shardCount, bounds.size());
+
+        if (resultHandler == NO_RESULT_HANDLER) {
+            return bounds;
+        }
+        DefaultResultContext<E> resultContext = new DefaultResultContext<>();
+        for (E result : bounds) {
+            resultContext.nextResultObject(result);
+            resultHandler.handleResult(resultContext);
+            if (resultContext.isStopped()) {
+                break;
+            }
+        }
+        return emptyList();
+    }
+
+    static <E> List<E> merge(List<List<E>> results, @Nullable Comparator<Object> comparator) {
+        int size = 0;
+        for (List<E> result : results) {
+            size += result.size();
+        }
+        List<E> merged = new ArrayList<>(size);
+        for (List<E> result : results) {
+            merged.addAll(result);
+        }
+        if (comparator != null) {
+            // The results of shards are the sorted runs, which are merged by the TimSort efficiently
+            merged.sort(comparator);
+        }
+        return merged;
+    }
+
+    /**
+     * The {@link Executor Executors} of shards owned by a session
+     */
+    class ShardSession {
+
+        private final Configuration configuration;
+
+        private final boolean autoCommit;
+
+        private final Executor[] executors;
+
+        ShardSession(Configuration configuration, boolean autoCommit) {
+            this.configuration = configuration;
+            this.autoCommit = autoCommit;
+            this.executors = new Executor[shards.size()];
+        }
+
+        Executor getExecutor(int shard) {
+            Executor executor = this.executors[shard];
+            if (executor == null) {
+                executor = newSimpleExecutor(this.configuration, shards.get(shard), this.autoCommit);
+                this.executors[shard] = executor;
+            }
+            return executor;
+        }
+
+        void commit(boolean required) throws SQLException {
+            for (Executor executor : this.executors) {
+                if (executor != null) {
+                    executor.commit(required);
+                }
+            }
+        }
+
+        void rollback(boolean required) throws SQLException {
+            SQLException failure = null;
+            for (Executor executor : this.executors) {
+                if (executor != null) {
+                    try {
+                        executor.rollback(required);
+                    } catch (SQLException e) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        void close(boolean forceRollback) {
+            for (Executor executor : this.executors) {
+                if (executor != null) {
+                    executor.close(forceRollback);
+                }
+            }
+        }
+    }
+}
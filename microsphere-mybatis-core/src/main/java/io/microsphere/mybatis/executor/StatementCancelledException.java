@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nonnull;
+import org.apache.ibatis.mapping.MappedStatement;
+
+import java.sql.SQLNonTransientException;
+
+/**
+ * {@link SQLNonTransientException} thrown if the execution of {@link MappedStatement} is cancelled by the caller, e.g.
+ * the calling thread was interrupted or the {@link Cancellation} was cancelled. The cancelled execution should not be
+ * retried.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   try {
+ *       reportMapper.selectMonthlyReport(month);
+ *   } catch (PersistenceException e) {
+ *       if (e.getCause() instanceof StatementCancelledException) {
+ *           // the caller has gone, nothing to do
+ *       }
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see CancellationExecutorFilter
+ * @see Cancellation
+ * @since 1.0.0
+ */
+public class StatementCancelledException extends SQLNonTransientException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The SQL state of the cancelled operation : "HY008"
+     */
+    public static final String SQL_STATE = "HY008";
+
+    private final String statementId;
+
+    public StatementCancelledException(String reason, String statementId) {
+        super(reason, SQL_STATE);
+        this.statementId = statementId;
+    }
+
+    public StatementCancelledException(String reason, String statementId, Throwable cause) {
+        super(reason, SQL_STATE, cause);
+        this.statementId = statementId;
+    }
+
+    /**
+     * Get the id of {@link MappedStatement} which the execution was cancelled
+     *
+     * @return non-null
+     */
+    @Nonnull
+    public String getStatementId() {
+        return this.statementId;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.lang.Prioritized;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * The priority of the statements declared by the mapper method or all methods of the mapper interface, the smaller
+ * value is the higher priority as same as {@link Prioritized}.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   @StatementPriority(100)
+ *   public interface ReportMapper {
+ *
+ *       List<Report> selectDailyReports();
+ *
+ *       @StatementPriority(Prioritized.NORMAL_PRIORITY)
+ *       Report selectReport(long id);
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see Prioritized
+ * @see StatementPriorityResolver
+ * @see LoadSheddingExecutorFilter
+ * @see PrioritySchedulingExecutorFilter
+ * @since 1.0.0
+ */
+@Retention(RUNTIME)
+@Target({TYPE, METHOD})
+@Documented
+public @interface StatementPriority {
+
+    /**
+     * The priority, the smaller value is the higher priority
+     *
+     * @return the priority
+     */
+    int value();
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.microsphere.lang.Prioritized.NORMAL_PRIORITY;
+import static io.microsphere.util.Assert.assertTrue;
+import static io.microsphere.util.StringUtils.isNotBlank;
+
+/**
+ * The resolver of the priorities of {@link MappedStatement MappedStatements}, the priority is resolved by
+ * {@link #setPriority(String, int) the configured priority} of the statement id or namespace first, then by
+ * {@link StatementPriority} on the mapper method or the mapper interface, otherwise it's
+ * {@link io.microsphere.lang.Prioritized#NORMAL_PRIORITY the normal priority}. The smaller value is the higher
+ * priority as same as {@link io.microsphere.lang.Prioritized}.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   StatementPriorityResolver resolver = new StatementPriorityResolver()
+ *       .setPriority("com.acme.mapper.ReportMapper", 100);
+ *   int priority = resolver.resolve(ms);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see StatementPriority
+ * @see LoadSheddingExecutorFilter
+ * @see PrioritySchedulingExecutorFilter
+ * @since 1.0.0
+ */
+public class StatementPriorityResolver {
+
+    /**
+     * The configured priorities keyed by the statement id or namespace
+     */
+    private final Map<String, Integer> priorities = new ConcurrentHashMap<>();
+
+    /**
+     * The priorities resolved by {@link StatementPriority} keyed by the statement id
+     */
+    private final Map<String, Integer> annotatedPriorities = new ConcurrentHashMap<>();
+
+    /**
+     * Set the priority of the statement id or namespace
+     *
+     * @param key      the statement id or namespace
+     * @param priority the priority, the smaller value is the higher priority
+     * @return this
+     */
+    public StatementPriorityResolver setPriority(String key, int priority) {
+        assertTrue(isNotBlank(key), () -> "The 'key' must not be blank!");
+        this.priorities.put(key, priority);
+        return this;
+    }
+
+    /**
+     * Resolve the priority of {@link MappedStatement}
+     *
+     * @param ms {@link MappedStatement}
+     * @return the priority, the smaller value is the higher priority
+     */
+    public int resolve(MappedStatement ms) {
+        String id = ms.getId();
+        Integer priority = this.priorities.get(id);
+        if (priority == null) {
+            String namespace = getNamespace(id);
+            priority = namespace == null ? null : this.priorities.get(namespace);
+        }
+        if (priority == null) {
+            priority = this.annotatedPriorities.computeIfAbsent(id, StatementPriorityResolver::resolveAnnotatedPriority);
+        }
+        return priority;
+    }
+
+    static int resolveAnnotatedPriority(String statementId) {
+        String namespace = getNamespace(statementId);
+        if (namespace == null) {
+            return NORMAL_PRIORITY;
+        }
+        Class<?> mapperClass;
+        try {
+            mapperClass = Resources.classForName(namespace);
+        } catch (ClassNotFoundException e) {
+            return NORMAL_PRIORITY;
+        }
+        String methodName = statementId.substring(namespace.length() + 1);
+        for (Method method : mapperClass.getMethods()) {
+            StatementPriority statementPriority = method.getAnnotation(StatementPriority.class);
+            if (statementPriority != null && method.getName().equals(methodName)) {
+                return statementPriority.value();
+            }
+        }
+        StatementPriority statementPriority = mapperClass.getAnnotation(StatementPriority.class);
+        return statementPriority == null ? NORMAL_PRIORITY : statementPriority.value();
+    }
+
+    @Nullable
+    static String getNamespace(String statementId) {
+        int index = statementId.lastIndexOf('.');
+        return index > 0 ? statementId.substring(0, index) : null;
+    }
+}
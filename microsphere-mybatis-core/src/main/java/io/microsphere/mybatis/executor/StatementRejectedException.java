@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nonnull;
+import org.apache.ibatis.mapping.MappedStatement;
+
+import java.sql.SQLTransientException;
+
+/**
+ * {@link SQLTransientException} thrown if the execution of {@link MappedStatement} is rejected before it reaches the
+ * database, e.g. the bulkhead of the statement is saturated. The rejected execution may succeed if it is retried
+ * later.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   try {
+ *       reportMapper.selectMonthlyReport(month);
+ *   } catch (PersistenceException e) {
+ *       if (e.getCause() instanceof StatementRejectedException) {
+ *           String statementId = ((StatementRejectedException) e.getCause()).getStatementId();
+ *           // degrade or retry later
+ *       }
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see BulkheadExecutorFilter
+ * @since 1.0.0
+ */
+public class StatementRejectedException extends SQLTransientException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String statementId;
+
+    public StatementRejectedException(String reason, String statementId) {
+        super(reason);
+        this.statementId = statementId;
+    }
+
+    public StatementRejectedException(String reason, String statementId, Throwable cause) {
+        super(reason, cause);
+        this.statementId = statementId;
+    }
+
+    /**
+     * Get the id of {@link MappedStatement} which the execution was rejected
+     *
+     * @return non-null
+     */
+    @Nonnull
+    public String getStatementId() {
+        return this.statementId;
+    }
+}
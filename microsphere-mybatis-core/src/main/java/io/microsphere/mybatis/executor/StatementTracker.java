@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nonnull;
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import io.microsphere.mybatis.plugin.StatementTrackingInterceptor;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * The tracker of the JDBC {@link Statement Statements} created by the current thread, which is bound to the current
+ * thread until it's {@link #close() closed}, and it can be {@link #cancel() cancelled} by any other thread.
+ * <p>
+ * The {@link Statement Statements} are tracked by {@link StatementTrackingInterceptor}, which must be added into the
+ * MyBatis {@link org.apache.ibatis.session.Configuration}.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   try (StatementTracker tracker = StatementTracker.open()) {
+ *       // cancel the statements in another thread if it takes too long
+ *       scheduler.schedule(tracker::cancel, 1, SECONDS);
+ *       userMapper.getUserById(1);
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see StatementTrackingInterceptor
+ * @see Statement#cancel()
+ * @since 1.0.0
+ */
+public class StatementTracker implements AutoCloseable {
+
+    private static final Logger logger = getLogger(StatementTracker.class);
+
+    private static final ThreadLocal<StatementTracker> currentTracker = new ThreadLocal<>();
+
+    @Nullable
+    private final StatementTracker previous;
+
+    private final Thread thread;
+
+    private final List<Statement> statements = new CopyOnWriteArrayList<>();
+
+    private volatile boolean cancelled;
+
+    private volatile boolean closed;
+
+    StatementTracker(@Nullable StatementTracker previous) {
+        this.previous = previous;
+        this.thread = Thread.currentThread();
+    }
+
+    /**
+     * Open a {@link StatementTracker} and bind it to the current thread
+     *
+     * @return non-null
+     */
+    @Nonnull
+    public static StatementTracker open() {
+        StatementTracker tracker = new StatementTracker(currentTracker.get());
+        currentTracker.set(tracker);
+        return tracker;
+    }
+
+    /**
+     * Get the {@link StatementTracker} bound to the current thread
+     *
+     * @return <code>null</code> if absent
+     */
+    @Nullable
+    public static StatementTracker current() {
+        return currentTracker.get();
+    }
+
+    /**
+     * Track the {@link Statement}, it will be cancelled immediately if the tracker was cancelled.
+     *
+     * @param statement {@link Statement}
+     */
+    public void track(Statement statement) {
+        if (this.closed) {
+            return;
+        }
+        this.statements.add(statement);
+        if (this.cancelled) {
+            cancel(statement);
+        }
+    }
+
+    /**
+     * Cancel the tracked {@link Statement Statements} that are not closed, and the statements tracked later will be
+     * cancelled immediately.
+     *
+     * @return <code>true</code> if any {@link Statement} was cancelled
+     */
+    public boolean cancel() {
+        this.cancelled = true;
+        boolean cancelled = false;
+        for (Statement statement : this.statements) {
+            cancelled |= cancel(statement);
+        }
+        return cancelled;
+    }
+
+    /**
+     * The tracker was cancelled or not
+     *
+     * @return <code>true</code> if cancelled
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * The tracker was closed or not
+     *
+     * @return <code>true</code> if closed
+     */
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Get the thread opened the tracker
+     *
+     * @return non-null
+     */
+    @Nonnull
+    public Thread getThread() {
+        return this.thread;
+    }
+
+    /**
+     * Get the tracked {@link Statement Statements}
+     *
+     * @return non-null read-only list
+     */
+    @Nonnull
+    public List<Statement> getStatements() {
+        return unmodifiableList(new ArrayList<>(this.statements));
+    }
+
+    /**
+     * Close the tracker and restore the previous tracker to the current thread if it's opened by current thread
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.statements.clear();
+        unbind();
+    }
+
+    /**
+     * Unbind the tracker from the current thread and restore the previous tracker if it's opened by current thread,
+     * the tracker keeps tracking until it's closed, e.g. the {@link Statement} of {@link org.apache.ibatis.cursor.Cursor}
+     * is fetched after the execution.
+     */
+    void unbind() {
+        if (Thread.currentThread() == this.thread && currentTracker.get() == this) {
+            if (this.previous == null) {
+                currentTracker.remove();
+            } else {
+                currentTracker.set(this.previous);
+            }
+        }
+    }
+
+    static boolean cancel(Statement statement) {
+        try {
+            if (!statement.isClosed()) {
+                statement.cancel();
+                logger.trace("The Statement[{}] was cancelled", statement);
+                return true;
+            }
+        } catch (SQLException e) {
+            logger.warn("Failed to cancel the Statement[{}]", statement, e);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementTracker{" +
+                "thread=" + this.thread +
+                ", statements=" + this.statements +
+                ", cancelled=" + this.cancelled +
+                ", closed=" + this.closed +
+                '}';
+    }
+}
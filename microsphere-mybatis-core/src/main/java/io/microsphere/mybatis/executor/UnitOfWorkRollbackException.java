@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nonnull;
+import io.microsphere.annotation.Nullable;
+import org.apache.ibatis.mapping.MappedStatement;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * {@link SQLTransactionRollbackException} thrown if the transaction was rolled back by the database, e.g. the
+ * victim of a deadlock or the serialization failure, which can't be retried by the statement, but the whole unit of
+ * work may be replayed in a new transaction with {@link #getStatements() the executed statements}.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   for (int attempt = 1; ; attempt++) {
+ *       try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+ *           transfer(sqlSession, from, to, amount);
+ *           sqlSession.commit();
+ *           break;
+ *       } catch (PersistenceException e) {
+ *           if (attempt < 3 && e.getCause() instanceof UnitOfWorkRollbackException) {
+ *               continue;
+ *           }
+ *           throw e;
+ *       }
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RetryingExecutorFilter
+ * @since 1.0.0
+ */
+public class UnitOfWorkRollbackException extends SQLTransactionRollbackException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<ExecutedStatement> statements;
+
+    private final boolean truncated;
+
+    public UnitOfWorkRollbackException(String reason, SQLException cause, @Nullable List<ExecutedStatement> statements,
+                                       boolean truncated) {
+        super(reason, cause.getSQLState(), cause.getErrorCode(), cause);
+        this.statements = statements == null ? emptyList() : unmodifiableList(statements);
+        this.truncated = truncated;
+    }
+
+    /**
+     * Get the statements executed in the rolled back unit of work in order
+     *
+     * @return non-null read-only {@link List}, it's empty if the statements were not recorded
+     */
+    @Nonnull
+    public List<ExecutedStatement> getStatements() {
+        return this.statements;
+    }
+
+    /**
+     * The recorded statements were truncated or not, if <code>true</code>, the unit of work can't be replayed by
+     * {@link #getStatements() the recorded statements}
+     *
+     * @return <code>true</code> if truncated
+     */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
+
+    /**
+     * The statement executed in the unit of work
+     */
+    public static class ExecutedStatement {
+
+        private final String statementId;
+
+        private final Object parameter;
+
+        public ExecutedStatement(String statementId, @Nullable Object parameter) {
+            this.statementId = statementId;
+            this.parameter = parameter;
+        }
+
+        /**
+         * Get the id of {@link MappedStatement}
+         *
+         * @return non-null
+         */
+        @Nonnull
+        public String getStatementId() {
+            return this.statementId;
+        }
+
+        /**
+         * Get the parameter of {@link MappedStatement}
+         *
+         * @return <code>null</code> if no parameter
+         */
+        @Nullable
+        public Object getParameter() {
+            return this.parameter;
+        }
+
+        @Override
+        public String toString() {
+            return "ExecutedStatement{" +
+                    "statementId='" + statementId + '\'' +
+                    ", parameter=" + parameter +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import io.microsphere.mybatis.plugin.InterceptorContext;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.lang.invoke.MethodHandle;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.util.Assert.assertNotNull;
+import static java.lang.Thread.currentThread;
+import static java.lang.invoke.MethodHandles.publicLookup;
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * The {@link ExecutorInterceptor} detects the carrier threads pinned by the virtual threads while the
+ * {@link MappedStatement statements} are executing, and reports the pinned intervals per statement.
+ * <p>
+ * The pinned intervals come from the JFR event {@value #PINNED_EVENT_NAME} that is streamed asynchronously, hence
+ * each event is attributed to the statement which the same virtual thread was executing when the pinning began.
+ * The events those can't be attributed to any statement are counted by {@link #getUnattributedCount()}.
+ * The detector is inactive if the current JVM does not support the virtual threads.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   VirtualThreadPinningInterceptor detector = new VirtualThreadPinningInterceptor(Duration.ofMillis(5));
+ *   configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[0], detector));
+ *
+ *   // later
+ *   VirtualThreadPinningInterceptor.PinnedStatistics statistics = detector.getPinnedStatistics("UserMapper.getUserById");
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ExecutorInterceptor
+ * @see RecordingStream
+ * @since 1.0.0
+ */
+public class VirtualThreadPinningInterceptor implements ExecutorInterceptor, AutoCloseable {
+
+    private static final Logger logger = getLogger(VirtualThreadPinningInterceptor.class);
+
+    /**
+     * The name of JFR event for the pinned virtual threads
+     */
+    public static final String PINNED_EVENT_NAME = "jdk.VirtualThreadPinned";
+
+    /**
+     * The default threshold of the pinned duration to be reported, same as the default of JDK
+     */
+    public static final Duration DEFAULT_THRESHOLD = Duration.ofMillis(20);
+
+    /**
+     * The size of recently finished executions for the attribution of the late events
+     */
+    static final int RECENT_EXECUTIONS_SIZE = 1024;
+
+    @Nullable
+    private static final MethodHandle IS_VIRTUAL_METHOD_HANDLE = findIsVirtualMethodHandle();
+
+    private final ConcurrentMap<Long, Execution> activeExecutions = new ConcurrentHashMap<>();
+
+    private final AtomicReferenceArray<Execution> recentExecutions = new AtomicReferenceArray<>(RECENT_EXECUTIONS_SIZE);
+
+    private final AtomicInteger recentExecutionsIndex = new AtomicInteger();
+
+    private final ConcurrentMap<String, PinnedStatistics> pinnedStatistics = new ConcurrentHashMap<>();
+
+    private final LongAdder unattributedCount = new LongAdder();
+
+    @Nullable
+    private final AutoCloseable recordingStream;
+
+    /**
+     * Construct a {@link VirtualThreadPinningInterceptor} with the {@link #DEFAULT_THRESHOLD default threshold}
+     */
+    public VirtualThreadPinningInterceptor() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Construct a {@link VirtualThreadPinningInterceptor}
+     *
+     * @param threshold the threshold of the pinned duration to be reported; must not be {@code null}
+     */
+    public VirtualThreadPinningInterceptor(Duration threshold) {
+        assertNotNull(threshold, () -> "The 'threshold' argument must not be null");
+        this.recordingStream = isVirtualThreadSupported() ? startRecordingStream(threshold) : null;
+    }
+
+    @Override
+    public void beforeUpdate(InterceptorContext<Executor> context, MappedStatement ms, Object parameter) {
+        begin(ms);
+    }
+
+    @Override
+    public void afterUpdate(InterceptorContext<Executor> context, MappedStatement ms, Object parameter,
+                            @Nullable Integer result, @Nullable SQLException failure) {
+        end();
+    }
+
+    @Override
+    public void beforeQuery(InterceptorContext<Executor> context, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                            ResultHandler resultHandler, @Nullable CacheKey cacheKey, @Nullable BoundSql boundSql) {
+        begin(ms);
+    }
+
+    @Override
+    public <E> void afterQuery(InterceptorContext<Executor> context, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                               ResultHandler resultHandler, @Nullable CacheKey cacheKey, @Nullable BoundSql boundSql,
+                               @Nullable List<E> result, @Nullable SQLException failure) {
+        end();
+    }
+
+    @Override
+    public void beforeQueryCursor(InterceptorContext<Executor> context, MappedStatement ms, Object parameter, RowBounds rowBounds) {
+        begin(ms);
+    }
+
+    @Override
+    public <E> void afterQueryCursor(InterceptorContext<Executor> context, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                     @Nullable Cursor<E> result, @Nullable SQLException failure) {
+        end();
+    }
+
+    /**
+     * Get the {@link PinnedStatistics} of the specified statement
+     *
+     * @param statementId the id of {@link MappedStatement}
+     * @return <code>null</code> if the statement has never pinned any carrier thread
+     */
+    @Nullable
+    public PinnedStatistics getPinnedStatistics(String statementId) {
+        return pinnedStatistics.get(statementId);
+    }
+
+    /**
+     * Get all {@link PinnedStatistics} keyed by the id of {@link MappedStatement}
+     *
+     * @return non-null read-only {@link Map}
+     */
+    public Map<String, PinnedStatistics> getPinnedStatistics() {
+        return unmodifiableMap(pinnedStatistics);
+    }
+
+    /**
+     * Get the count of pinned events those can't be attributed to any statement
+     *
+     * @return the count of unattributed pinned events
+     */
+    public long getUnattributedCount() {
+        return unattributedCount.sum();
+    }
+
+    /**
+     * Whether the pinned events are being recorded or not
+     *
+     * @return <code>true</code> if the JFR recording stream is active
+     */
+    public boolean isRecording() {
+        return recordingStream != null;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+
+    void begin(MappedStatement ms) {
+        Thread thread = currentThread();
+        if (!isTracked(thread)) {
+            return;
+        }
+        long threadId = thread.getId();
+        Execution execution = activeExecutions.get(threadId);
+        if (execution == null) {
+            activeExecutions.put(threadId, new Execution(threadId, ms.getId(), Instant.now()));
+        } else {
+            // nested execution, e.g. the InterceptingExecutor inside CachingExecutor
+            execution.depth++;
+        }
+    }
+
+    void end() {
+        Thread thread = currentThread();
+        if (!isTracked(thread)) {
+            return;
+        }
+        long threadId = thread.getId();
+        Execution execution = activeExecutions.get(threadId);
+        if (execution != null && --execution.depth == 0) {
+            activeExecutions.remove(threadId);
+            execution.endTime = Instant.now();
+            int index = recentExecutionsIndex.getAndIncrement() & (RECENT_EXECUTIONS_SIZE - 1);
+            recentExecutions.set(index, execution);
+        }
+    }
+
+    /**
+     * Record the pinned interval of the specified thread
+     *
+     * @param threadId  the id of pinned virtual thread
+     * @param startTime the start time of pinned interval
+     * @param duration  the duration of pinned interval
+     */
+    void recordPinned(long threadId, Instant startTime, Duration duration) {
+        Execution execution = findExecution(threadId, startTime);
+        if (execution == null) {
+            unattributedCount.increment();
+            logger.debug("The virtual thread[id : {}] pinned its carrier {} ms without any statement", threadId, duration.toMillis());
+            return;
+        }
+        String statementId = execution.statementId;
+        pinnedStatistics.computeIfAbsent(statementId, PinnedStatistics::new).record(duration);
+        logger.warn("The virtual thread[id : {}] pinned its carrier {} ms during the statement['{}']", threadId,
+                duration.toMillis(), statementId);
+    }
+
+    /**
+     * Whether the specified thread should be tracked or not
+     *
+     * @param thread {@link Thread}
+     * @return <code>true</code> if the thread is virtual
+     */
+    boolean isTracked(Thread thread) {
+        return isVirtual(thread);
+    }
+
+    @Nullable
+    private Execution findExecution(long threadId, Instant startTime) {
+        Execution execution = activeExecutions.get(threadId);
+        if (execution != null && execution.contains(startTime)) {
+            return execution;
+        }
+        for (int i = 0; i < RECENT_EXECUTIONS_SIZE; i++) {
+            execution = recentExecutions.get(i);
+            if (execution != null && execution.threadId == threadId && execution.contains(startTime)) {
+                return execution;
+            }
+        }
+        return null;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        RecordedThread thread = event.getThread();
+        if (thread != null) {
+            recordPinned(thread.getJavaThreadId(), event.getStartTime(), event.getDuration());
+        }
+    }
+
+    @Nullable
+    private AutoCloseable startRecordingStream(Duration threshold) {
+        try {
+            RecordingStream stream = new RecordingStream();
+            stream.enable(PINNED_EVENT_NAME).withThreshold(threshold).withStackTrace();
+            stream.onEvent(PINNED_EVENT_NAME, this::onPinned);
+            stream.setReuse(false);
+            stream.startAsync();
+            return stream;
+        } catch (Throwable e) {
+            logger.warn("The JFR event['{}'] can't be recorded, the pinning detection is disabled", PINNED_EVENT_NAME, e);
+            return null;
+        }
+    }
+
+    /**
+     * Whether the current JVM supports the virtual threads or not
+     *
+     * @return <code>true</code> if supported
+     */
+    public static boolean isVirtualThreadSupported() {
+        return IS_VIRTUAL_METHOD_HANDLE != null;
+    }
+
+    /**
+     * Whether the specified {@link Thread} is virtual or not
+     *
+     * @param thread {@link Thread}
+     * @return <code>false</code> if the current JVM does not support the virtual threads
+     */
+    public static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL_METHOD_HANDLE == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL_METHOD_HANDLE.invokeExact(thread);
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    @Nullable
+    private static MethodHandle findIsVirtualMethodHandle() {
+        try {
+            return publicLookup().findVirtual(Thread.class, "isVirtual", methodType(boolean.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static class Execution {
+
+        private final long threadId;
+
+        private final String statementId;
+
+        private final Instant startTime;
+
+        private volatile Instant endTime;
+
+        /**
+         * Only accessed by the executing thread
+         */
+        private int depth = 1;
+
+        private Execution(long threadId, String statementId, Instant startTime) {
+            this.threadId = threadId;
+            this.statementId = statementId;
+            this.startTime = startTime;
+        }
+
+        private boolean contains(Instant time) {
+            Instant endTime = this.endTime;
+            return !time.isBefore(startTime) && (endTime == null || !time.isAfter(endTime));
+        }
+    }
+
+    /**
+     * The statistics of the pinned intervals for a statement
+     */
+    public static class PinnedStatistics {
+
+        private final String statementId;
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        PinnedStatistics(String statementId) {
+            this.statementId = statementId;
+        }
+
+        void record(Duration duration) {
+            long nanos = duration.toNanos();
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * @return the id of {@link MappedStatement}
+         */
+        public String getStatementId() {
+            return statementId;
+        }
+
+        /**
+         * @return the count of pinned intervals
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return the total duration of pinned intervals
+         */
+        public Duration getTotalDuration() {
+            return Duration.ofNanos(totalNanos.sum());
+        }
+
+        /**
+         * @return the max duration of pinned intervals
+         */
+        public Duration getMaxDuration() {
+            return Duration.ofNanos(maxNanos.get());
+        }
+
+        @Override
+        public String toString() {
+            return "PinnedStatistics{statementId='" + statementId + "', count=" + getCount() + ", totalDuration=" +
+                    getTotalDuration() + ", maxDuration=" + getMaxDuration() + '}';
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.plugin;
+
+import io.microsphere.mybatis.executor.Deadline;
+import io.microsphere.mybatis.executor.StatementTracker;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * The {@link Interceptor} for {@link StatementHandler#prepare(Connection, Integer)} to track the prepared JDBC
+ * {@link Statement Statements} into the {@link StatementTracker} bound to the current thread, so that they can be
+ * cancelled by other threads. If a {@link Deadline} is bound to the current thread, the query timeout of the
+ * prepared {@link Statement} is reduced to the remaining time of the deadline.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   configuration.addInterceptor(new StatementTrackingInterceptor());
+ *
+ *   try (StatementTracker tracker = StatementTracker.open()) {
+ *       userMapper.getUserById(1);
+ *   }
+ *
+ *   try (Deadline deadline = Deadline.open(500, MILLISECONDS)) {
+ *       // the query timeout is 1 second at most
+ *       userMapper.getUserById(1);
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see StatementTracker
+ * @see Deadline
+ * @see StatementHandler#prepare(Connection, Integer)
+ * @since 1.0.0
+ */
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class})
+})
+public class StatementTrackingInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        if (result instanceof Statement statement) {
+            applyDeadline(statement);
+            StatementTracker tracker = StatementTracker.current();
+            if (tracker != null) {
+                tracker.track(statement);
+            }
+        }
+        return result;
+    }
+
+    void applyDeadline(Statement statement) throws SQLException {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return;
+        }
+        try {
+            deadline.apply(statement);
+        } catch (SQLException e) {
+            // The Statement is not returned to the StatementHandler, thus it must be closed here
+            statement.close();
+            throw e;
+        }
+    }
+}
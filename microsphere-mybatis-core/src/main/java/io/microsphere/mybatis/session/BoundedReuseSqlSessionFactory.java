@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.session;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.mybatis.executor.BoundedReuseExecutor;
+import io.microsphere.mybatis.executor.BoundedReuseExecutor.Statistics;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.Transaction;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static io.microsphere.util.Assert.assertNotNull;
+import static io.microsphere.util.Assert.assertTrue;
+import static org.apache.ibatis.exceptions.ExceptionFactory.wrapException;
+import static org.apache.ibatis.session.ExecutorType.BATCH;
+
+/**
+ * The {@link SqlSessionFactory} opens the {@link SqlSession sessions} on the {@link BoundedReuseExecutor} instead of
+ * the {@link Executor} of {@link ExecutorType#SIMPLE} or {@link ExecutorType#REUSE}, whose prepared statements are
+ * reused within the session and bounded by the statement cache size. The sessions of {@link ExecutorType#BATCH} are
+ * opened by the delegate {@link SqlSessionFactory}.
+ * <p>
+ * The {@link Configuration}, including the second level caches and plugins, and the {@link Environment} of the
+ * delegate {@link SqlSessionFactory} are used, and the executors of all sessions share the same
+ * {@link #getStatistics() statistics}. If the delegate is a {@link SharedConfigurationSqlSessionFactory}, the sessions
+ * are opened on {@link SharedConfigurationSqlSessionFactory#getEnvironment() its Environment} without the second level
+ * caches as it does.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   BoundedReuseSqlSessionFactory boundedReuseSqlSessionFactory = new BoundedReuseSqlSessionFactory(sqlSessionFactory, 64);
+ *   try (SqlSession sqlSession = boundedReuseSqlSessionFactory.openSession()) {
+ *       User user = sqlSession.getMapper(UserMapper.class).getUserById(1);
+ *   }
+ *   double hitRate = boundedReuseSqlSessionFactory.getStatistics().getHitRate();
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see BoundedReuseExecutor
+ * @see SqlSessionFactory
+ * @since 1.0.0
+ */
+public class BoundedReuseSqlSessionFactory implements SqlSessionFactory {
+
+    private final SqlSessionFactory delegate;
+
+    private final int statementCacheSize;
+
+    private final Statistics statistics = new Statistics();
+
+    /**
+     * Construct a {@link BoundedReuseSqlSessionFactory}
+     *
+     * @param delegate           the {@link SqlSessionFactory} to delegate to
+     * @param statementCacheSize the size of the statement cache per session
+     */
+    public BoundedReuseSqlSessionFactory(SqlSessionFactory delegate, int statementCacheSize) {
+        assertNotNull(delegate, () -> "The 'delegate' argument must not be null");
+        assertTrue(statementCacheSize > 0, () -> "The 'statementCacheSize' must be positive!");
+        this.delegate = delegate;
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    @Override
+    public SqlSession openSession() {
+        return openSession(getConfiguration().getDefaultExecutorType(), null, false);
+    }
+
+    @Override
+    public SqlSession openSession(boolean autoCommit) {
+        return openSession(getConfiguration().getDefaultExecutorType(), null, autoCommit);
+    }
+
+    @Override
+    public SqlSession openSession(Connection connection) {
+        return openSession(getConfiguration().getDefaultExecutorType(), connection);
+    }
+
+    @Override
+    public SqlSession openSession(TransactionIsolationLevel level) {
+        return openSession(getConfiguration().getDefaultExecutorType(), level, false);
+    }
+
+    @Override
+    public SqlSession openSession(ExecutorType execType) {
+        return openSession(execType, null, false);
+    }
+
+    @Override
+    public SqlSession openSession(ExecutorType execType, boolean autoCommit) {
+        return openSession(execType, null, autoCommit);
+    }
+
+    @Override
+    public SqlSession openSession(ExecutorType execType, TransactionIsolationLevel level) {
+        return openSession(execType, level, false);
+    }
+
+    @Override
+    public SqlSession openSession(ExecutorType execType, Connection connection) {
+        if (execType == BATCH) {
+            return delegate.openSession(execType, connection);
+        }
+        boolean autoCommit;
+        try {
+            autoCommit = connection.getAutoCommit();
+        } catch (SQLException e) {
+            // Failover to true, as most poor drivers or databases won't support transactions
+            autoCommit = true;
+        }
+        Transaction transaction = getEnvironment().getTransactionFactory().newTransaction(connection);
+        return openSession(transaction, autoCommit);
+    }
+
+    @Override
+    public Configuration getConfiguration() {
+        return delegate.getConfiguration();
+    }
+
+    /**
+     * Get the delegate {@link SqlSessionFactory}
+     *
+     * @return non-null
+     */
+    public SqlSessionFactory getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Get the size of the statement cache per session
+     *
+     * @return positive
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Get the {@link Statistics} of the statement caches of all sessions
+     *
+     * @return non-null
+     */
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    private Environment getEnvironment() {
+        return delegate instanceof SharedConfigurationSqlSessionFactory sharedConfigurationSqlSessionFactory ?
+                sharedConfigurationSqlSessionFactory.getEnvironment() : getConfiguration().getEnvironment();
+    }
+
+    private SqlSession openSession(ExecutorType execType, @Nullable TransactionIsolationLevel level, boolean autoCommit) {
+        if (execType == BATCH) {
+            return level == null ? delegate.openSession(execType, autoCommit) : delegate.openSession(execType, level);
+        }
+        Environment environment = getEnvironment();
+        Transaction transaction = environment.getTransactionFactory().newTransaction(environment.getDataSource(), level, autoCommit);
+        return openSession(transaction, autoCommit);
+    }
+
+    private SqlSession openSession(Transaction transaction, boolean autoCommit) {
+        try {
+            Configuration configuration = getConfiguration();
+            Executor executor = newExecutor(configuration, transaction);
+            return new DefaultSqlSession(configuration, executor, autoCommit);
+        } catch (Exception e) {
+            closeTransaction(transaction);
+            throw wrapException("Error opening session.  Cause: " + e, e);
+        }
+    }
+
+    /**
+     * Create the {@link BoundedReuseExecutor} like {@link Configuration#newExecutor(Transaction, ExecutorType)}
+     *
+     * @param configuration {@link Configuration}
+     * @param transaction   {@link Transaction}
+     * @return non-null
+     */
+    private Executor newExecutor(Configuration configuration, Transaction transaction) {
+        Executor executor = new BoundedReuseExecutor(configuration, transaction, statementCacheSize, statistics);
+        // The second level caches hold the data of the Environment of Configuration
+        if (configuration.isCacheEnabled() && !(delegate instanceof SharedConfigurationSqlSessionFactory)) {
+            executor = new CachingExecutor(executor);
+        }
+        for (Interceptor interceptor : configuration.getInterceptors()) {
+            executor = (Executor) interceptor.plugin(executor);
+        }
+        return executor;
+    }
+
+    private void closeTransaction(Transaction transaction) {
+        try {
+            transaction.close();
+        } catch (SQLException ignore) {
+            // Intentionally ignore. Prefer previous error.
+        }
+    }
+}
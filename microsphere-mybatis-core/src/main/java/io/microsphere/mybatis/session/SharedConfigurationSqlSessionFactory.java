@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.session;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ReuseExecutor;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.TransactionFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.util.Assert.assertNotNull;
+import static io.microsphere.util.Assert.assertTrue;
+import static org.apache.ibatis.exceptions.ExceptionFactory.wrapException;
+
+/**
+ * The {@link SqlSessionFactory} shares the {@link Configuration}(the parsed mapper model, plugins, type handlers and
+ * so on) with others, but opens the {@link SqlSession sessions} on its own {@link Environment}, so that the mapper
+ * files are parsed once for many {@link DataSource DataSources}, e.g. the shards or tenants.
+ * <p>
+ * The second level caches hold the data of the {@link DataSource} of {@link Configuration#getEnvironment() shared
+ * Environment}, thus they are bypassed by the sessions. The lazy loading is not supported, because the lazy loaders
+ * always execute on the {@link DataSource} of shared {@link Environment}.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   SqlSessionFactory tenant1SqlSessionFactory = new SharedConfigurationSqlSessionFactory(sqlSessionFactory,
+ *           "tenant1", tenant1DataSource);
+ *   try (SqlSession sqlSession = tenant1SqlSessionFactory.openSession()) {
+ *       User user = sqlSession.getMapper(UserMapper.class).getUserById(1);
+ *   }
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see SqlSessionFactory
+ * @see Configuration
+ * @see Environment
+ * @since 1.0.0
+ */
+public class SharedConfigurationSqlSessionFactory implements SqlSessionFactory {
+
+    private static final Logger logger = getLogger(SharedConfigurationSqlSessionFactory.class);
+
+    private final Configuration configuration;
+
+    private final Environment environment;
+
+    /**
+     * Construct a {@link SharedConfigurationSqlSessionFactory} sharing the {@link Configuration} of the specified
+     * {@link SqlSessionFactory}, whose {@link TransactionFactory} is reused.
+     *
+     * @param sqlSessionFactory the {@link SqlSessionFactory} to share
+     * @param environmentId     the id of {@link Environment}
+     * @param dataSource        the {@link DataSource}
+     */
+    public SharedConfigurationSqlSessionFactory(SqlSessionFactory sqlSessionFactory, String environmentId, DataSource dataSource) {
+        this(sqlSessionFactory.getConfiguration(), new Environment(environmentId,
+                sqlSessionFactory.getConfiguration().getEnvironment().getTransactionFactory(), dataSource));
+    }
+
+    /**
+     * Construct a {@link SharedConfigurationSqlSessionFactory}
+     *
+     * @param configuration the {@link Configuration} to share
+     * @param environment   the {@link Environment} of sessions
+     */
+    public SharedConfigurationSqlSessionFactory(Configuration configuration, Environment environment) {
+        assertNotNull(configuration, () -> "The 'configuration' argument must not be null");
+        assertNotNull(environment, () -> "The 'environment' argument must not be null");
+        assertTrue(!isLazyLoading(configuration), () -> "The lazy loading of 'configuration' is not supported, " +
+                "the lazy loaders execute on the DataSource of shared Environment[id : '" +
+                configuration.getEnvironment().getId() + "']");
+        this.configuration = configuration;
+        this.environment = environment;
+        if (!configuration.getCaches().isEmpty()) {
+            logger.debug("The second level caches{} are bypassed by the Environment[id : '{}']",
+                    configuration.getCacheNames(), environment.getId());
+        }
+    }
+
+    @Override
+    public SqlSession openSession() {
+        return openSession(configuration.getDefaultExecutorType(), null, false);
+    }
+
+    @Override
+    public SqlSession openSession(boolean autoCommit) {
+        return openSession(configuration.getDefaultExecutorType(), null, autoCommit);
+    }
+
+    @Override
+    public SqlSession openSession(Connection connection) {
+        return openSession(configuration.getDefaultExecutorType(), connection);
+    }
+
+    @Override
+    public SqlSession openSession(TransactionIsolationLevel level) {
+        return openSession(configuration.getDefaultExecutorType(), level, false);
+    }
+
+    @Override
+    public SqlSession openSession(ExecutorType execType) {
+        return openSession(execType, null, false);
+    }
+
+    @Override
+    public SqlSession openSession(ExecutorType execType, boolean autoCommit) {
+        return openSession(execType, null, autoCommit);
+    }
+
+    @Override
+    public SqlSession openSession(ExecutorType execType, TransactionIsolationLevel level) {
+        return openSession(execType, level, false);
+    }
+
+    @Override
+    public SqlSession openSession(ExecutorType execType, Connection connection) {
+        boolean autoCommit;
+        try {
+            autoCommit = connection.getAutoCommit();
+        } catch (SQLException e) {
+            // Failover to true, as most poor drivers or databases won't support transactions
+            autoCommit = true;
+        }
+        Transaction transaction = environment.getTransactionFactory().newTransaction(connection);
+        return openSession(execType, transaction, autoCommit);
+    }
+
+    @Override
+    public Configuration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Get the {@link Environment} of sessions
+     *
+     * @return non-null
+     */
+    public Environment getEnvironment() {
+        return environment;
+    }
+
+    private SqlSession openSession(ExecutorType execType, @Nullable TransactionIsolationLevel level, boolean autoCommit) {
+        Environment environment = this.environment;
+        Transaction transaction = environment.getTransactionFactory().newTransaction(environment.getDataSource(), level, autoCommit);
+        return openSession(execType, transaction, autoCommit);
+    }
+
+    private SqlSession openSession(ExecutorType execType, Transaction transaction, boolean autoCommit) {
+        try {
+            Executor executor = newExecutor(transaction, execType);
+            return new DefaultSqlSession(configuration, executor, autoCommit);
+        } catch (Exception e) {
+            closeTransaction(transaction);
+            throw wrapException("Error opening session.  Cause: " + e, e);
+        }
+    }
+
+    /**
+     * Create a new {@link Executor} as {@link Configuration#newExecutor(Transaction, ExecutorType)} does, but without
+     * the {@link CachingExecutor}, because the second level caches hold the data of shared {@link Environment}.
+     *
+     * @param transaction the {@link Transaction}
+     * @param execType    the {@link ExecutorType}
+     * @return non-null
+     */
+    private Executor newExecutor(Transaction transaction, @Nullable ExecutorType execType) {
+        Configuration configuration = this.configuration;
+        ExecutorType executorType = execType == null ? configuration.getDefaultExecutorType() : execType;
+        Executor executor = switch (executorType) {
+            case BATCH -> new BatchExecutor(configuration, transaction);
+            case REUSE -> new ReuseExecutor(configuration, transaction);
+            default -> new SimpleExecutor(configuration, transaction);
+        };
+        for (Interceptor interceptor : configuration.getInterceptors()) {
+            executor = (Executor) interceptor.plugin(executor);
+        }
+        return executor;
+    }
+
+    static boolean isLazyLoading(Configuration configuration) {
+        if (configuration.isLazyLoadingEnabled()) {
+            return true;
+        }
+        // The ambiguous short names of ResultMaps are mapped to the non-ResultMap values
+        for (Object value : configuration.getResultMaps()) {
+            if (value instanceof ResultMap resultMap) {
+                for (ResultMapping resultMapping : resultMap.getPropertyResultMappings()) {
+                    if (resultMapping.isLazy()) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void closeTransaction(Transaction transaction) {
+        try {
+            transaction.close();
+        } catch (SQLException ignore) {
+            // Intentionally ignore. Prefer previous error.
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.builder;
+
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.ChildMapper;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import io.microsphere.mybatis.test.mapper.UserMapper;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static io.microsphere.mybatis.builder.ConfigurationSnapshot.DEFAULT_SNAPSHOT_RESOURCE;
+import static io.microsphere.mybatis.builder.ConfigurationSnapshot.create;
+import static io.microsphere.mybatis.builder.ConfigurationSnapshot.loadConfiguration;
+import static io.microsphere.mybatis.builder.ConfigurationSnapshot.readFrom;
+import static io.microsphere.mybatis.test.AbstractMapperTest.assertChildMapper;
+import static io.microsphere.mybatis.test.AbstractMapperTest.assertFatherMapper;
+import static io.microsphere.mybatis.test.AbstractMapperTest.assertUserMapper;
+import static io.microsphere.mybatis.test.MyBatisTestUtils.DEFAULT_CONFIG_RESOURCE_NAME;
+import static io.microsphere.mybatis.test.MyBatisTestUtils.DEFAULT_ENVIRONMENT_ID;
+import static io.microsphere.mybatis.test.MyBatisTestUtils.EMPTY_CONFIG_RESOURCE_NAME;
+import static io.microsphere.mybatis.test.MyBatisTestUtils.loadDefaultProperties;
+import static io.microsphere.mybatis.util.MyBatisUtils.getConfiguration;
+import static io.microsphere.util.ArrayUtils.ofArray;
+import static io.microsphere.util.ClassLoaderUtils.getDefaultClassLoader;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link ConfigurationSnapshot} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ConfigurationSnapshot
+ * @since 1.0.0
+ */
+class ConfigurationSnapshotTest extends AbstractMyBatisTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCreate() throws Throwable {
+        ConfigurationSnapshot snapshot = create(DEFAULT_CONFIG_RESOURCE_NAME, getDefaultClassLoader());
+        assertEquals(DEFAULT_CONFIG_RESOURCE_NAME, snapshot.getConfigResource());
+        assertEquals(4, snapshot.getResources().size());
+        assertEquals(DEFAULT_CONFIG_RESOURCE_NAME, snapshot.getResources().get(0));
+        assertTrue(snapshot.getResources().contains("META-INF/mybatis/UserMapper.xml"));
+        assertTrue(snapshot.getResources().contains("META-INF/mybatis/ChildMapper.xml"));
+        assertTrue(snapshot.getResources().contains("META-INF/mybatis/FatherMapper.xml"));
+        assertFalse(snapshot.isStale(getDefaultClassLoader()));
+    }
+
+    @Test
+    void testCreateOnNotFoundResource() {
+        assertThrows(IOException.class, () -> create("not-found.xml", getDefaultClassLoader()));
+    }
+
+    @Test
+    void testWriteAndRead() throws Throwable {
+        ConfigurationSnapshot snapshot = readFrom(new ByteArrayInputStream(toBytes(create(DEFAULT_CONFIG_RESOURCE_NAME,
+                getDefaultClassLoader()))));
+        assertEquals(4, snapshot.getResources().size());
+        assertFalse(snapshot.isStale(getDefaultClassLoader()));
+
+        Configuration configuration = snapshot.toConfiguration(DEFAULT_ENVIRONMENT_ID, loadDefaultProperties());
+        assertConfiguration(configuration);
+        assertNotNull(configuration.getCache(UserMapper.class.getName()));
+        assertMappers(configuration);
+    }
+
+    @Test
+    void testReadOnInvalidInput() {
+        assertThrows(IOException.class, () -> readFrom(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8})));
+    }
+
+    @Test
+    void testIsStale() throws Throwable {
+        ConfigurationSnapshot snapshot = create(DEFAULT_CONFIG_RESOURCE_NAME, getDefaultClassLoader());
+        ClassLoader classLoader = new ClassLoader(getDefaultClassLoader()) {
+            @Override
+            public URL getResource(String name) {
+                if (DEFAULT_CONFIG_RESOURCE_NAME.equals(name)) {
+                    return super.getResource(EMPTY_CONFIG_RESOURCE_NAME);
+                }
+                return super.getResource(name);
+            }
+        };
+        assertTrue(snapshot.isStale(classLoader));
+
+        ClassLoader emptyClassLoader = new URLClassLoader(new URL[0], null);
+        assertTrue(snapshot.isStale(emptyClassLoader));
+    }
+
+    @Test
+    void testLoadConfiguration() throws Throwable {
+        File snapshotFile = tempDir.resolve(DEFAULT_SNAPSHOT_RESOURCE).toFile();
+        snapshotFile.getParentFile().mkdirs();
+        try (OutputStream outputStream = Files.newOutputStream(snapshotFile.toPath())) {
+            create(DEFAULT_CONFIG_RESOURCE_NAME, getDefaultClassLoader()).writeTo(outputStream);
+        }
+
+        Thread currentThread = Thread.currentThread();
+        ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+        try (URLClassLoader classLoader = new URLClassLoader(ofArray(tempDir.toUri().toURL()), contextClassLoader)) {
+            currentThread.setContextClassLoader(classLoader);
+            Configuration configuration = loadConfiguration(DEFAULT_SNAPSHOT_RESOURCE, DEFAULT_CONFIG_RESOURCE_NAME,
+                    DEFAULT_ENVIRONMENT_ID, loadDefaultProperties());
+            assertConfiguration(configuration);
+            assertMappers(configuration);
+
+            // The snapshot was not created from the configuration resource
+            configuration = loadConfiguration(DEFAULT_SNAPSHOT_RESOURCE, EMPTY_CONFIG_RESOURCE_NAME, null, null);
+            assertTrue(configuration.getMappedStatementNames().isEmpty());
+        } finally {
+            currentThread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    @Test
+    void testLoadConfigurationWithoutSnapshot() throws Throwable {
+        Configuration configuration = loadConfiguration("not-found.snapshot", DEFAULT_CONFIG_RESOURCE_NAME,
+                DEFAULT_ENVIRONMENT_ID, loadDefaultProperties());
+        assertConfiguration(configuration);
+    }
+
+    @Test
+    void testStartupTime() throws Throwable {
+        ClassLoader classLoader = getDefaultClassLoader();
+        Properties properties = loadDefaultProperties();
+        ConfigurationSnapshot snapshot = create(DEFAULT_CONFIG_RESOURCE_NAME, classLoader);
+        int times = 20;
+        long snapshotTime = 0;
+        long xmlTime = 0;
+        // The first round warms up
+        for (int round = 0; round < 2; round++) {
+            long startTime = System.nanoTime();
+            for (int i = 0; i < times; i++) {
+                assertFalse(snapshot.isStale(classLoader));
+                assertConfiguration(snapshot.toConfiguration(DEFAULT_ENVIRONMENT_ID, properties));
+            }
+            snapshotTime = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            for (int i = 0; i < times; i++) {
+                assertConfiguration(getConfiguration(DEFAULT_CONFIG_RESOURCE_NAME, DEFAULT_ENVIRONMENT_ID, properties));
+            }
+            xmlTime = System.nanoTime() - startTime;
+        }
+        // The timing depends on the machine and the mappers, thus it's reported rather than asserted
+        logger.info("The configuration was loaded in {} ns from the snapshot, and in {} ns from the XML resources on average",
+                snapshotTime / times, xmlTime / times);
+    }
+
+    private void assertMappers(Configuration configuration) {
+        configuration.setEnvironment(getEnvironment());
+        try (SqlSession sqlSession = new DefaultSqlSessionFactory(configuration).openSession()) {
+            assertUserMapper(sqlSession.getMapper(UserMapper.class));
+            assertChildMapper(sqlSession.getMapper(ChildMapper.class));
+            assertFatherMapper(sqlSession.getMapper(FatherMapper.class));
+        }
+    }
+
+    private byte[] toBytes(ConfigurationSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        snapshot.writeTo(outputStream);
+        return outputStream.toByteArray();
+    }
+}
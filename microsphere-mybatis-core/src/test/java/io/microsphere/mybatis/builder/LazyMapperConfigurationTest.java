@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.builder;
+
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.ChildMapper;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import io.microsphere.mybatis.test.mapper.UserMapper;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static io.microsphere.mybatis.builder.LazyMapperConfiguration.readNamespace;
+import static io.microsphere.mybatis.test.AbstractMapperTest.assertChildMapper;
+import static io.microsphere.mybatis.test.AbstractMapperTest.assertFatherMapper;
+import static io.microsphere.mybatis.test.AbstractMapperTest.assertUserMapper;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link LazyMapperConfiguration} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see LazyMapperConfiguration
+ * @since 1.0.0
+ */
+class LazyMapperConfigurationTest extends AbstractMyBatisTest {
+
+    private static final String USER_MAPPER_RESOURCE = "META-INF/mybatis/UserMapper.xml";
+
+    private static final String CHILD_MAPPER_RESOURCE = "META-INF/mybatis/ChildMapper.xml";
+
+    private static final String FATHER_MAPPER_RESOURCE = "META-INF/mybatis/FatherMapper.xml";
+
+    private static final String USER_NAMESPACE = UserMapper.class.getName();
+
+    private static final String CHILD_NAMESPACE = ChildMapper.class.getName();
+
+    private static final String FATHER_NAMESPACE = FatherMapper.class.getName();
+
+    private LazyMapperConfiguration configuration;
+
+    @BeforeEach
+    void setUp() {
+        this.configuration = new LazyMapperConfiguration(getEnvironment());
+        this.configuration.getTypeAliasRegistry().registerAliases("io.microsphere.mybatis.test.entity");
+        assertEquals(USER_NAMESPACE, this.configuration.addMapperResource(USER_MAPPER_RESOURCE));
+        assertEquals(CHILD_NAMESPACE, this.configuration.addMapperResource(CHILD_MAPPER_RESOURCE));
+        assertEquals(FATHER_NAMESPACE, this.configuration.addMapperResource(FATHER_MAPPER_RESOURCE));
+    }
+
+    @Test
+    void testAddMapperResource() {
+        assertEquals(3, configuration.getPendingNamespaces().size());
+        assertFalse(configuration.isInitialized(USER_NAMESPACE));
+        assertTrue(configuration.isResourceLoaded("namespace:" + USER_NAMESPACE));
+        assertThrows(BuilderException.class, () -> configuration.addMapperResource(USER_MAPPER_RESOURCE));
+        assertThrows(BuilderException.class, () -> configuration.addMapperResource("not-found.xml"));
+        assertThrows(IllegalArgumentException.class, () -> configuration.addMapperResource((URL) null));
+    }
+
+    @Test
+    void testInitializeOnFirstUse() throws Throwable {
+        try (SqlSession sqlSession = new DefaultSqlSessionFactory(configuration).openSession()) {
+            UserMapper userMapper = sqlSession.getMapper(UserMapper.class);
+            // Binding the mapper interface does not initialize the namespace
+            assertFalse(configuration.isInitialized(USER_NAMESPACE));
+
+            assertUserMapper(userMapper);
+            assertTrue(configuration.isInitialized(USER_NAMESPACE));
+            assertFalse(configuration.isInitialized(CHILD_NAMESPACE));
+            assertFalse(configuration.isInitialized(FATHER_NAMESPACE));
+
+            // The nested select of ChildMapper initializes FatherMapper
+            assertChildMapper(sqlSession.getMapper(ChildMapper.class));
+            assertTrue(configuration.isInitialized(CHILD_NAMESPACE));
+            assertTrue(configuration.isInitialized(FATHER_NAMESPACE));
+
+            assertFatherMapper(sqlSession.getMapper(FatherMapper.class));
+            assertTrue(configuration.getPendingNamespaces().isEmpty());
+        }
+    }
+
+    @Test
+    void testInitializeById() {
+        assertTrue(configuration.hasStatement(CHILD_NAMESPACE + ".selectAll"));
+        assertTrue(configuration.isInitialized(CHILD_NAMESPACE));
+        assertNotNull(configuration.getResultMap(FATHER_NAMESPACE + ".FatherMap"));
+        assertTrue(configuration.isInitialized(FATHER_NAMESPACE));
+        assertNotNull(configuration.getCache(USER_NAMESPACE));
+        assertTrue(configuration.isInitialized(USER_NAMESPACE));
+    }
+
+    @Test
+    void testInitializeAll() {
+        assertFalse(configuration.getMappedStatementNames().isEmpty());
+        assertTrue(configuration.getPendingNamespaces().isEmpty());
+        assertTrue(configuration.hasMapper(UserMapper.class));
+        assertTrue(configuration.hasMapper(ChildMapper.class));
+        assertTrue(configuration.hasMapper(FatherMapper.class));
+    }
+
+    @Test
+    void testInitializeConcurrently() throws Exception {
+        int threads = 4;
+        ExecutorService executorService = newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(executorService.submit(() -> {
+                    latch.await();
+                    return configuration.hasStatement(CHILD_NAMESPACE + ".selectAll");
+                }));
+            }
+            latch.countDown();
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        assertTrue(configuration.isInitialized(CHILD_NAMESPACE));
+    }
+
+    @Test
+    void testReadWhileInitializing() throws Exception {
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LazyMapperConfiguration configuration = new LazyMapperConfiguration(getEnvironment()) {
+            @Override
+            public void addMappedStatement(MappedStatement ms) {
+                super.addMappedStatement(ms);
+                if (ms.getId().startsWith(FATHER_NAMESPACE)) {
+                    building.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        configuration.getTypeAliasRegistry().registerAliases("io.microsphere.mybatis.test.entity");
+        configuration.addMapperResource(USER_MAPPER_RESOURCE);
+        configuration.addMapperResource(FATHER_MAPPER_RESOURCE);
+        String statementId = USER_NAMESPACE + ".getUserById";
+        MappedStatement ms = configuration.getMappedStatement(statementId);
+
+        ExecutorService executorService = newFixedThreadPool(2);
+        try {
+            Future<?> initialization = executorService.submit(() -> configuration.initialize(FATHER_NAMESPACE));
+            building.await();
+            // The built namespace is read after the namespace being built is published
+            Future<MappedStatement> lookup = executorService.submit(() -> configuration.getMappedStatement(statementId));
+            assertThrows(TimeoutException.class, () -> lookup.get(100, MILLISECONDS));
+            release.countDown();
+            assertSame(ms, lookup.get());
+            initialization.get();
+        } finally {
+            release.countDown();
+            executorService.shutdown();
+        }
+        assertTrue(configuration.isInitialized(FATHER_NAMESPACE));
+        assertTrue(configuration.hasStatement(FATHER_NAMESPACE + ".selectById"));
+    }
+
+    @Test
+    void testInitializeOnFailure() {
+        // The type aliases of entities are absent
+        LazyMapperConfiguration configuration = new LazyMapperConfiguration(getEnvironment());
+        configuration.addMapperResource(USER_MAPPER_RESOURCE);
+        BuilderException failure = assertThrows(BuilderException.class, () -> configuration.initialize(USER_NAMESPACE));
+        assertFalse(configuration.isInitialized(USER_NAMESPACE));
+
+        // The failure is rethrown
+        BuilderException e = assertThrows(BuilderException.class, () -> configuration.initialize(USER_NAMESPACE));
+        assertSame(failure, e.getCause());
+        assertThrows(BuilderException.class, () -> configuration.getMappedStatement(USER_NAMESPACE + ".getUserById"));
+        assertFalse(configuration.isInitialized(USER_NAMESPACE));
+    }
+
+    @Test
+    void testReadNamespace() throws Throwable {
+        assertEquals(USER_NAMESPACE, readNamespace(Resources.getResourceURL(USER_MAPPER_RESOURCE)));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.builder;
+
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.ChildMapper;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import io.microsphere.mybatis.test.mapper.UserMapper;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static io.microsphere.mybatis.test.AbstractMapperTest.assertChildMapper;
+import static io.microsphere.mybatis.test.AbstractMapperTest.assertFatherMapper;
+import static io.microsphere.mybatis.test.AbstractMapperTest.assertUserMapper;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link MapperModelCache} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see MapperModelCache
+ * @since 1.0.0
+ */
+class MapperModelCacheTest extends AbstractMyBatisTest {
+
+    private static final String[] MAPPER_RESOURCES = {
+            "META-INF/mybatis/UserMapper.xml",
+            "META-INF/mybatis/ChildMapper.xml",
+            "META-INF/mybatis/FatherMapper.xml"
+    };
+
+    private static final String SELECT_ALL_CHILDREN = "io.microsphere.mybatis.test.mapper.ChildMapper.selectAll";
+
+    private MapperModelCache mapperModelCache;
+
+    @BeforeEach
+    void setUp() {
+        this.mapperModelCache = new MapperModelCache();
+    }
+
+    @Test
+    void testLoad() throws Throwable {
+        Configuration model = newConfiguration();
+        Configuration configuration = newConfiguration();
+        mapperModelCache.load(model, MAPPER_RESOURCES);
+        mapperModelCache.load(configuration, MAPPER_RESOURCES);
+        assertEquals(1, mapperModelCache.size());
+
+        MappedStatement modelStatement = model.getMappedStatement(SELECT_ALL_CHILDREN);
+        MappedStatement statement = configuration.getMappedStatement(SELECT_ALL_CHILDREN);
+        assertNotSame(modelStatement, statement);
+        assertSame(configuration, statement.getConfiguration());
+        assertSame(modelStatement.getSqlSource(), statement.getSqlSource());
+        assertSame(modelStatement.getResultMaps(), statement.getResultMaps());
+        assertSame(model.getResultMap("io.microsphere.mybatis.test.mapper.ChildMapper.ChildMap"),
+                configuration.getResultMap("io.microsphere.mybatis.test.mapper.ChildMapper.ChildMap"));
+        // The caches are not shared
+        Cache modelCache = model.getCache(UserMapper.class.getName());
+        Cache cache = configuration.getCache(UserMapper.class.getName());
+        assertNotSame(modelCache, cache);
+        assertEquals(modelCache.getId(), cache.getId());
+        assertSame(cache, configuration.getMappedStatement("io.microsphere.mybatis.test.mapper.UserMapper.getUserById").getCache());
+        modelCache.putObject("key", "value");
+        assertNull(cache.getObject("key"));
+        assertEquals(model.getMappedStatementNames().size(), configuration.getMappedStatementNames().size());
+
+        assertTrue(configuration.hasMapper(UserMapper.class));
+        assertTrue(configuration.hasMapper(ChildMapper.class));
+        assertTrue(configuration.hasMapper(FatherMapper.class));
+        assertTrue(configuration.isResourceLoaded("namespace:" + UserMapper.class.getName()));
+
+        try (SqlSession sqlSession = new DefaultSqlSessionFactory(configuration).openSession()) {
+            assertUserMapper(sqlSession.getMapper(UserMapper.class));
+            assertChildMapper(sqlSession.getMapper(ChildMapper.class));
+            assertFatherMapper(sqlSession.getMapper(FatherMapper.class));
+        }
+    }
+
+    @Test
+    void testLoadOnSameConfiguration() {
+        Configuration configuration = newConfiguration();
+        mapperModelCache.load(configuration, MAPPER_RESOURCES);
+        mapperModelCache.load(configuration, MAPPER_RESOURCES);
+        assertEquals(1, mapperModelCache.size());
+        assertTrue(configuration.hasStatement(SELECT_ALL_CHILDREN));
+    }
+
+    @Test
+    void testLoadOnDifferentResources() {
+        Configuration configuration = newConfiguration();
+        mapperModelCache.load(configuration, MAPPER_RESOURCES[2]);
+        mapperModelCache.load(newConfiguration(), MAPPER_RESOURCES);
+        assertEquals(2, mapperModelCache.size());
+        assertFalse(configuration.hasStatement(SELECT_ALL_CHILDREN));
+    }
+
+    @Test
+    void testLoadOnNotFoundResource() {
+        assertThrows(BuilderException.class, () -> mapperModelCache.load(newConfiguration(), "not-found.xml"));
+        assertThrows(IllegalArgumentException.class, () -> mapperModelCache.load(null, MAPPER_RESOURCES));
+    }
+
+    @Test
+    void testClear() {
+        mapperModelCache.load(newConfiguration(), MAPPER_RESOURCES);
+        mapperModelCache.clear();
+        assertEquals(0, mapperModelCache.size());
+    }
+
+    private Configuration newConfiguration() {
+        Configuration configuration = new Configuration(getEnvironment());
+        configuration.getTypeAliasRegistry().registerAliases("io.microsphere.mybatis.test.entity");
+        return configuration;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.builder;
+
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.ChildMapper;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import io.microsphere.mybatis.test.mapper.UserMapper;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static io.microsphere.mybatis.test.AbstractMapperTest.assertChildMapper;
+import static io.microsphere.mybatis.test.AbstractMapperTest.assertFatherMapper;
+import static io.microsphere.mybatis.test.AbstractMapperTest.assertUserMapper;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link ParallelMapperXMLParser} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ParallelMapperXMLParser
+ * @since 1.0.0
+ */
+class ParallelMapperXMLParserTest extends AbstractMyBatisTest {
+
+    @Test
+    void testParse() throws Throwable {
+        Configuration configuration = newConfiguration();
+        URL[] mapperURLs = getMapperURLs();
+        List<ParallelMapperXMLParser.Timing> timings = new ParallelMapperXMLParser().parse(configuration, mapperURLs);
+        assertEquals(mapperURLs.length, timings.size());
+        for (int i = 0; i < mapperURLs.length; i++) {
+            ParallelMapperXMLParser.Timing timing = timings.get(i);
+            assertEquals(mapperURLs[i].toString(), timing.getResource());
+            assertTrue(timing.getParsingTime() >= 0);
+            assertTrue(timing.getBuildingTime() > 0);
+            assertNotNull(timing.toString());
+        }
+        assertMappers(configuration);
+    }
+
+    @Test
+    void testParseWithExecutorService() throws Throwable {
+        ExecutorService executorService = newFixedThreadPool(2);
+        try {
+            ParallelMapperXMLParser parser = new ParallelMapperXMLParser(executorService);
+            Configuration configuration = newConfiguration();
+            parser.parse(configuration, getMapperURLs());
+            // The loaded resources are skipped
+            parser.parse(configuration, getMapperURLs());
+            assertMappers(configuration);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    void testParseOnNotFoundResource() throws Throwable {
+        ParallelMapperXMLParser parser = new ParallelMapperXMLParser();
+        URL notFoundURL = new URL("file:/not-found.xml");
+        assertThrows(BuilderException.class, () -> parser.parse(newConfiguration(), notFoundURL));
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(null, getMapperURLs()));
+        assertThrows(IllegalArgumentException.class, () -> new ParallelMapperXMLParser(null));
+    }
+
+    @Test
+    void testMapperModelCache() throws Throwable {
+        MapperModelCache mapperModelCache = new MapperModelCache(new ParallelMapperXMLParser());
+        Configuration configuration = newConfiguration();
+        mapperModelCache.load(configuration, getMapperURLs());
+        mapperModelCache.load(newConfiguration(), getMapperURLs());
+        assertEquals(1, mapperModelCache.size());
+        assertMappers(configuration);
+    }
+
+    private void assertMappers(Configuration configuration) {
+        try (SqlSession sqlSession = new DefaultSqlSessionFactory(configuration).openSession()) {
+            assertUserMapper(sqlSession.getMapper(UserMapper.class));
+            assertChildMapper(sqlSession.getMapper(ChildMapper.class));
+            assertFatherMapper(sqlSession.getMapper(FatherMapper.class));
+        }
+    }
+
+    private URL[] getMapperURLs() throws Throwable {
+        // ChildMapper references FatherMapper, which is loaded later
+        return new URL[]{
+                Resources.getResourceURL("META-INF/mybatis/ChildMapper.xml"),
+                Resources.getResourceURL("META-INF/mybatis/UserMapper.xml"),
+                Resources.getResourceURL("META-INF/mybatis/FatherMapper.xml")
+        };
+    }
+
+    private Configuration newConfiguration() {
+        Configuration configuration = new Configuration(getEnvironment());
+        configuration.getTypeAliasRegistry().registerAliases("io.microsphere.mybatis.test.entity");
+        return configuration;
+    }
+}
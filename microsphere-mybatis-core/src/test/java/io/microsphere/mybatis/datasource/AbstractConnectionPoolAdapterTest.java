@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+
+import static io.microsphere.util.ArrayUtils.ofArray;
+import static io.microsphere.util.ClassLoaderUtils.getDefaultClassLoader;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link AbstractConnectionPoolAdapter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see AbstractConnectionPoolAdapter
+ * @since 1.0.0
+ */
+class AbstractConnectionPoolAdapterTest {
+
+    @Test
+    void testSupports() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        assertTrue(new TestConnectionPoolAdapter(JdbcDataSource.class.getName()).supports(dataSource));
+        assertFalse(new TestConnectionPoolAdapter("com.acme.NotFoundDataSource").supports(dataSource));
+        assertFalse(new TestConnectionPoolAdapter(TestPool.class.getName()).supports(dataSource));
+    }
+
+    @Test
+    void testGetStats() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setLoginTimeout(3);
+        ConnectionPoolStats stats = new TestConnectionPoolAdapter(JdbcDataSource.class.getName()).getStats(dataSource);
+        assertEquals(3, stats.getActive());
+        assertEquals(-1, stats.getIdle());
+        assertEquals(0, stats.getWaiting());
+        assertEquals(-1, stats.getMaxSize());
+        assertNotNull(stats.toString());
+
+        assertNull(new TestConnectionPoolAdapter(TestPool.class.getName()).getStats(dataSource));
+    }
+
+    @Test
+    void testUnwrap() throws SQLException {
+        TestPool pool = new TestPool();
+        DataSource dataSource = (DataSource) Proxy.newProxyInstance(getDefaultClassLoader(), ofArray(DataSource.class), (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "isWrapperFor":
+                    return args[0] == TestPool.class;
+                case "unwrap":
+                    return pool;
+                default:
+                    return null;
+            }
+        });
+        TestConnectionPoolAdapter adapter = new TestConnectionPoolAdapter(TestPool.class.getName());
+        assertSame(pool, adapter.unwrap(dataSource));
+        assertEquals(5, adapter.getStats(dataSource).getActive());
+        assertEquals(TestPool.class.getName(), adapter.getPoolClassName());
+        assertNotNull(adapter.toString());
+    }
+
+    @Test
+    void testInvoke() {
+        assertThrows(SQLException.class, () -> AbstractConnectionPoolAdapter.invoke(new TestPool(), "notFound"));
+    }
+
+    public static class TestPool {
+
+        public int getLoginTimeout() {
+            return 5;
+        }
+    }
+
+    static class TestConnectionPoolAdapter extends AbstractConnectionPoolAdapter {
+
+        TestConnectionPoolAdapter(String poolClassName) {
+            super(poolClassName);
+        }
+
+        @Override
+        protected ConnectionPoolStats getStats(Object pool) throws SQLException {
+            return new ConnectionPoolStats(invoke(pool, "getLoginTimeout"), invoke(pool, "toString"), 0, -1);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static io.microsphere.mybatis.datasource.DruidConnectionPoolAdapter.DRUID_DATA_SOURCE_CLASS_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * {@link DruidConnectionPoolAdapter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see DruidConnectionPoolAdapter
+ * @since 1.0.0
+ */
+class DruidConnectionPoolAdapterTest {
+
+    private final DruidConnectionPoolAdapter adapter = new DruidConnectionPoolAdapter();
+
+    @Test
+    void testPoolClassName() {
+        assertEquals(DRUID_DATA_SOURCE_CLASS_NAME, adapter.getPoolClassName());
+    }
+
+    @Test
+    void testUnsupportedDataSource() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        assertFalse(adapter.supports(dataSource));
+        assertNull(adapter.getStats(dataSource));
+    }
+}
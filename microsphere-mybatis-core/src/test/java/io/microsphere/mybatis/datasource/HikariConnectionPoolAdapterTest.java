@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static io.microsphere.mybatis.datasource.HikariConnectionPoolAdapter.HIKARI_DATA_SOURCE_CLASS_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * {@link HikariConnectionPoolAdapter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see HikariConnectionPoolAdapter
+ * @since 1.0.0
+ */
+class HikariConnectionPoolAdapterTest {
+
+    private final HikariConnectionPoolAdapter adapter = new HikariConnectionPoolAdapter();
+
+    @Test
+    void testPoolClassName() {
+        assertEquals(HIKARI_DATA_SOURCE_CLASS_NAME, adapter.getPoolClassName());
+    }
+
+    @Test
+    void testUnsupportedDataSource() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        assertFalse(adapter.supports(dataSource));
+        assertNull(adapter.getStats(dataSource));
+    }
+}
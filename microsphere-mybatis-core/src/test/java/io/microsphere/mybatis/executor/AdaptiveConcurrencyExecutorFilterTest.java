@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.executor.AdaptiveConcurrencyExecutorFilter.Limiter;
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+
+import static io.microsphere.mybatis.executor.AdaptiveConcurrencyExecutorFilter.DEFAULT_BACKOFF_RATIO;
+import static io.microsphere.mybatis.executor.AdaptiveConcurrencyExecutorFilter.DEFAULT_INITIAL_LIMIT;
+import static io.microsphere.mybatis.executor.AdaptiveConcurrencyExecutorFilter.DEFAULT_LONG_WINDOW;
+import static io.microsphere.mybatis.executor.AdaptiveConcurrencyExecutorFilter.DEFAULT_MAX_LIMIT;
+import static io.microsphere.mybatis.executor.AdaptiveConcurrencyExecutorFilter.DEFAULT_MIN_LIMIT;
+import static io.microsphere.mybatis.executor.AdaptiveConcurrencyExecutorFilter.DEFAULT_SMOOTHING;
+import static io.microsphere.mybatis.executor.AdaptiveConcurrencyExecutorFilter.DEFAULT_TOLERANCE;
+import static io.microsphere.mybatis.executor.BulkheadExecutorFilterTest.findStatementRejectedException;
+import static io.microsphere.util.ArrayUtils.of;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link AdaptiveConcurrencyExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see AdaptiveConcurrencyExecutorFilter
+ * @since 1.0.0
+ */
+class AdaptiveConcurrencyExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    private AdaptiveConcurrencyExecutorFilter filter;
+
+    @Test
+    void testDefaults() {
+        AdaptiveConcurrencyExecutorFilter filter = new AdaptiveConcurrencyExecutorFilter();
+        assertEquals(DEFAULT_INITIAL_LIMIT, filter.getInitialLimit());
+        assertEquals(DEFAULT_MIN_LIMIT, filter.getMinLimit());
+        assertEquals(DEFAULT_MAX_LIMIT, filter.getMaxLimit());
+        assertEquals(DEFAULT_TOLERANCE, filter.getTolerance());
+        assertEquals(DEFAULT_BACKOFF_RATIO, filter.getBackoffRatio());
+        assertEquals(DEFAULT_SMOOTHING, filter.getSmoothing());
+        assertEquals(DEFAULT_LONG_WINDOW, filter.getLongWindow());
+        assertTrue(filter.getLimiters().isEmpty());
+
+        assertThrows(IllegalArgumentException.class, () -> filter.setInitialLimit(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setMinLimit(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setMaxLimit(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setTolerance(0.9));
+        assertThrows(IllegalArgumentException.class, () -> filter.setBackoffRatio(1));
+        assertThrows(IllegalArgumentException.class, () -> filter.setSmoothing(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setLongWindow(0));
+    }
+
+    @Test
+    void testExecute() throws Throwable {
+        DataSource dataSource = getDataSource();
+        assertNull(filter.getLimiter(dataSource));
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            assertNotNull(fatherMapper.selectById(1));
+            assertNotNull(fatherMapper.selectById(2));
+        });
+        Limiter limiter = filter.getLimiter(dataSource);
+        assertNotNull(limiter);
+        assertSame(dataSource, limiter.getDataSource());
+        assertSame(limiter, filter.getLimiters().get(dataSource));
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getRejectedCount());
+        assertTrue(limiter.getShortRtt() > 0);
+        assertTrue(limiter.getLongRtt() > 0);
+        // The executions in flight are too few to grow the limit
+        assertEquals(DEFAULT_INITIAL_LIMIT, limiter.getLimit());
+    }
+
+    @Test
+    void testReject() throws Throwable {
+        filter.setInitialLimit(1);
+        Limiter limiter = filter.getOrCreateLimiter(getDataSource());
+        assertEquals(1, limiter.acquire(MS_ID_FATHER_BY_ID));
+        try {
+            doInMapper(FatherMapper.class, fatherMapper -> {
+                StatementRejectedException e = findStatementRejectedException(assertThrows(Throwable.class, () -> fatherMapper.selectById(1)));
+                assertEquals(MS_ID_FATHER_BY_ID, e.getStatementId());
+            });
+            assertEquals(1, limiter.getInFlight());
+            assertEquals(1, limiter.getRejectedCount());
+        } finally {
+            limiter.release();
+        }
+        doInMapper(FatherMapper.class, fatherMapper -> assertNotNull(fatherMapper.selectById(1)));
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testOnSample() {
+        Limiter limiter = filter.getOrCreateLimiter(getDataSource());
+        int limit = limiter.getLimit();
+
+        // The stable latencies under load grow the limit
+        for (int i = 0; i < 10; i++) {
+            limiter.onSample(1000, limiter.getLimit(), false);
+        }
+        assertTrue(limiter.getLimit() > limit);
+        assertEquals(1000, limiter.getLongRtt());
+
+        // The latency spike decreases the limit
+        limit = limiter.getLimit();
+        limiter.onSample(1000_000, limit, false);
+        assertTrue(limiter.getLimit() < limit);
+        assertEquals(1000_000, limiter.getShortRtt());
+
+        // The timeout decreases the limit by the backoff ratio
+        limit = limiter.getLimit();
+        limiter.onSample(1000, limit, true);
+        assertTrue(limiter.getLimit() < limit);
+
+        // The executions in flight are too few to change the limit
+        limit = limiter.getLimit();
+        limiter.onSample(1000_000, 1, false);
+        assertEquals(limit, limiter.getLimit());
+    }
+
+    @Test
+    void testLimitBounds() {
+        filter.setInitialLimit(2).setMinLimit(2).setMaxLimit(3);
+        Limiter limiter = filter.getOrCreateLimiter(getDataSource());
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(1000, 3, false);
+        }
+        assertEquals(3, limiter.getLimit());
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(1000, 3, true);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        this.filter = new AdaptiveConcurrencyExecutorFilter();
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(filter)));
+    }
+}
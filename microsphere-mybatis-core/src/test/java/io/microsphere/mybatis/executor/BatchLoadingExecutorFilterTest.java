@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.entity.Child;
+import io.microsphere.mybatis.test.mapper.ChildMapper;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.microsphere.util.ArrayUtils.of;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link BatchLoadingExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see BatchLoadingExecutorFilter
+ * @since 1.0.0
+ */
+class BatchLoadingExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    private static final String MS_ID_FATHERS_BY_IDS = "io.microsphere.mybatis.test.mapper.FatherMapper.selectByIds";
+
+    private BatchLoadingExecutorFilter filter;
+
+    @BeforeEach
+    void initMoreData() throws Throwable {
+        try (Connection connection = getDataSource().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO father (id, name) VALUES (2, 'Tom Smith')");
+            statement.execute("INSERT INTO child (id, name, father_id) VALUES (3, 'Tom Smith jr', 2)");
+            statement.execute("INSERT INTO child (id, name, father_id) VALUES (4, 'Nobody jr', 3)");
+        }
+    }
+
+    @Test
+    void testBatchLoading() throws Throwable {
+        doInMapper(ChildMapper.class, childMapper -> {
+            List<Child> children = childMapper.selectAll();
+            assertEquals(4, children.size());
+
+            assertEquals("John Smith", children.get(0).getFather().getName());
+            assertEquals("John Smith", children.get(1).getFather().getName());
+            assertEquals("Tom Smith", children.get(2).getFather().getName());
+            assertNull(children.get(3).getFather());
+        });
+        assertEquals(1, filter.getBatchCount());
+        assertEquals(4, filter.getBatchedLoadCount());
+    }
+
+    @Test
+    void testBatchLoadingWithMaxBatchSize() throws Throwable {
+        filter.setMaxBatchSize(1);
+        doInMapper(ChildMapper.class, childMapper -> {
+            List<Child> children = childMapper.selectAll();
+            assertEquals("John Smith", children.get(0).getFather().getName());
+            assertEquals("Tom Smith", children.get(2).getFather().getName());
+        });
+        assertEquals(3, filter.getBatchCount());
+        assertEquals(1, filter.getMaxBatchSize());
+    }
+
+    @Test
+    void testSingleKeyLoading() throws Throwable {
+        try (Connection connection = getDataSource().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM child WHERE father_id <> 1");
+        }
+        doInMapper(ChildMapper.class, childMapper -> {
+            List<Child> children = childMapper.selectAll();
+            assertEquals("John Smith", children.get(0).getFather().getName());
+            assertEquals("John Smith", children.get(1).getFather().getName());
+        });
+        // The single key is loaded normally
+        assertEquals(0, filter.getBatchCount());
+    }
+
+    @Test
+    void testNormalizeKey() {
+        BatchLoadingExecutorFilter.LoadingContext context = new BatchLoadingExecutorFilter.LoadingContext();
+        List<Object> results = new ArrayList<>();
+        context.putLoaded(MS_ID_FATHER_BY_ID, 1L, results);
+        assertSame(results, context.getLoaded(MS_ID_FATHER_BY_ID, 1));
+        assertSame(results, context.getLoaded(MS_ID_FATHER_BY_ID, (short) 1));
+        assertSame(results, context.getLoaded(MS_ID_FATHER_BY_ID, BigInteger.ONE));
+        assertSame(results, context.getLoaded(MS_ID_FATHER_BY_ID, new BigDecimal("1.00")));
+        assertNull(context.getLoaded(MS_ID_FATHER_BY_ID, "1"));
+        assertNull(context.getLoaded(MS_ID_FATHER_BY_ID, null));
+        assertEquals(new BigDecimal("1.5"), BatchLoadingExecutorFilter.normalizeKey(new BigDecimal("1.50")));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> filter.register(null, MS_ID_FATHERS_BY_IDS, "id"));
+        assertThrows(IllegalArgumentException.class, () -> filter.register(MS_ID_FATHER_BY_ID, "", "id"));
+        assertThrows(IllegalArgumentException.class, () -> filter.register(MS_ID_FATHER_BY_ID, MS_ID_FATHERS_BY_IDS, " "));
+        assertThrows(IllegalArgumentException.class, () -> filter.setMaxBatchSize(0));
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        configuration.setLazyLoadingEnabled(true);
+        this.filter = new BatchLoadingExecutorFilter()
+                .register(MS_ID_FATHER_BY_ID, MS_ID_FATHERS_BY_IDS, "id");
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(filter)));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.executor.BoundedReuseExecutor.Statistics;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Statement;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.ibatis.executor.Executor.NO_RESULT_HANDLER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link BoundedReuseExecutor} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see BoundedReuseExecutor
+ * @since 1.0.0
+ */
+class BoundedReuseExecutorTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    private static final String MS_ID_USER_BY_ID = "io.microsphere.mybatis.test.mapper.UserMapper.getUserById";
+
+    private static final String MS_ID_SAVE_USER = "io.microsphere.mybatis.test.mapper.UserMapper.saveUser";
+
+    private Statistics statistics;
+
+    private BoundedReuseExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        this.statistics = new Statistics();
+        this.executor = newExecutor(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.executor.close(false);
+    }
+
+    @Test
+    void testReuse() throws Throwable {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        assertEquals(1, executor.query(ms, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER).size());
+        executor.query(ms, 2, RowBounds.DEFAULT, NO_RESULT_HANDLER);
+        assertEquals(1, statistics.getMissCount());
+        assertEquals(1, statistics.getHitCount());
+        assertEquals(0.5, statistics.getHitRate());
+        assertEquals(1, executor.getCachedSqls().size());
+    }
+
+    @Test
+    void testReuseInDeadline() throws Throwable {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        executor.query(ms, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER);
+        Statement statement;
+        try (Deadline deadline = Deadline.open(5, SECONDS);
+             StatementTracker tracker = StatementTracker.open()) {
+            executor.query(ms, 2, RowBounds.DEFAULT, NO_RESULT_HANDLER);
+            assertEquals(1, statistics.getHitCount());
+            // The reused statement is tracked and its query timeout is reduced by the deadline
+            assertEquals(1, tracker.getStatements().size());
+            statement = tracker.getStatements().get(0);
+            int queryTimeout = statement.getQueryTimeout();
+            assertTrue(queryTimeout > 0 && queryTimeout <= 5);
+        }
+        // The query timeout is reset out of the deadline
+        executor.query(ms, 3, RowBounds.DEFAULT, NO_RESULT_HANDLER);
+        assertEquals(2, statistics.getHitCount());
+        assertEquals(0, statement.getQueryTimeout());
+    }
+
+    @Test
+    void testEvict() throws Throwable {
+        MappedStatement fatherMs = getMappedStatement(MS_ID_FATHER_BY_ID);
+        MappedStatement userMs = getMappedStatement(MS_ID_USER_BY_ID);
+        executor.query(fatherMs, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER);
+        executor.query(userMs, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER);
+        assertEquals(1, statistics.getEvictionCount());
+        assertEquals(1, executor.getCachedSqls().size());
+
+        // The evicted statement is prepared again
+        executor.query(fatherMs, 2, RowBounds.DEFAULT, NO_RESULT_HANDLER);
+        assertEquals(3, statistics.getMissCount());
+        assertEquals(0, statistics.getHitCount());
+        assertEquals(2, statistics.getEvictionCount());
+    }
+
+    @Test
+    void testUpdate() throws Throwable {
+        MappedStatement ms = getMappedStatement(MS_ID_SAVE_USER);
+        assertEquals(1, executor.update(ms, createUser()));
+        assertEquals(1, executor.getCachedSqls().size());
+        // The cached statements are closed on commit
+        executor.commit(true);
+        assertTrue(executor.getCachedSqls().isEmpty());
+    }
+
+    @Test
+    void testQueryCursor() throws Throwable {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        try (Cursor<Object> cursor = executor.queryCursor(ms, 1, RowBounds.DEFAULT)) {
+            assertNotNull(cursor.iterator().next());
+        }
+        // The statements of cursors are not cached
+        assertTrue(executor.getCachedSqls().isEmpty());
+        assertEquals(0, statistics.getMissCount());
+    }
+
+    @Test
+    void testGetters() {
+        assertEquals(1, executor.getCacheSize());
+        assertSame(statistics, executor.getStatistics());
+        assertEquals(0, statistics.getHitRate());
+        assertNotNull(statistics.toString());
+        Executor defaultExecutor = new BoundedReuseExecutor(getConfiguration(), newTransaction());
+        assertEquals(BoundedReuseExecutor.DEFAULT_CACHE_SIZE, ((BoundedReuseExecutor) defaultExecutor).getCacheSize());
+        defaultExecutor.close(false);
+    }
+
+    @Test
+    void testConstructorOnInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedReuseExecutor(getConfiguration(), newTransaction(), 0));
+        assertThrows(IllegalArgumentException.class, () -> new BoundedReuseExecutor(getConfiguration(), newTransaction(), 1, null));
+    }
+
+    private BoundedReuseExecutor newExecutor(int cacheSize) {
+        return new BoundedReuseExecutor(getConfiguration(), newTransaction(), cacheSize, statistics);
+    }
+
+    private JdbcTransaction newTransaction() {
+        return new JdbcTransaction(getDataSource(), null, false);
+    }
+}
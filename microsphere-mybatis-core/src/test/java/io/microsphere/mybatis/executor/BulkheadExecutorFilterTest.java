@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.executor.BulkheadExecutorFilter.Bulkhead;
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.ChildMapper;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static io.microsphere.util.ArrayUtils.of;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link BulkheadExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see BulkheadExecutorFilter
+ * @since 1.0.0
+ */
+class BulkheadExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String NAMESPACE = FatherMapper.class.getName();
+
+    private static final String MS_ID_FATHER_BY_ID = NAMESPACE + ".selectById";
+
+    private static final String CHILD_NAMESPACE = ChildMapper.class.getName();
+
+    private static final String MS_ID_CHILD_ALL = CHILD_NAMESPACE + ".selectAll";
+
+    private BulkheadExecutorFilter filter;
+
+    @Test
+    void testAddBulkhead() {
+        assertThrows(IllegalArgumentException.class, () -> filter.addBulkhead("", 1));
+        assertThrows(IllegalArgumentException.class, () -> filter.addBulkhead(NAMESPACE, 0));
+        assertThrows(IllegalArgumentException.class, () -> filter.addBulkhead(NAMESPACE, 1, -1, 0));
+        assertThrows(IllegalArgumentException.class, () -> filter.addBulkhead(NAMESPACE, 1, 0, -1));
+
+        filter.addBulkhead(NAMESPACE, 2, 3, 100);
+        Bulkhead bulkhead = filter.getBulkhead(NAMESPACE);
+        assertEquals(NAMESPACE, bulkhead.getKey());
+        assertEquals(2, bulkhead.getMaxConcurrency());
+        assertEquals(3, bulkhead.getMaxQueued());
+        assertEquals(100, bulkhead.getMaxWait());
+        assertEquals(0, bulkhead.getInFlight());
+        assertEquals(0, bulkhead.getQueued());
+        assertEquals(0, bulkhead.getRejectedCount());
+        assertSame(bulkhead, filter.getBulkheads().get(NAMESPACE));
+        assertNull(filter.getBulkhead(MS_ID_FATHER_BY_ID));
+    }
+
+    @Test
+    void testResolveBulkhead() {
+        assertNull(filter.resolveBulkhead(getMappedStatement(MS_ID_FATHER_BY_ID)));
+        filter.addBulkhead(NAMESPACE, 1);
+        Bulkhead namespaceBulkhead = filter.getBulkhead(NAMESPACE);
+        assertSame(namespaceBulkhead, filter.resolveBulkhead(getMappedStatement(MS_ID_FATHER_BY_ID)));
+        filter.addBulkhead(MS_ID_FATHER_BY_ID, 1);
+        assertSame(filter.getBulkhead(MS_ID_FATHER_BY_ID), filter.resolveBulkhead(getMappedStatement(MS_ID_FATHER_BY_ID)));
+        assertSame(namespaceBulkhead, filter.resolveBulkhead(getMappedStatement(NAMESPACE + ".selectByIds")));
+    }
+
+    @Test
+    void testExecute() throws Throwable {
+        filter.addBulkhead(NAMESPACE, 1);
+        Bulkhead bulkhead = filter.getBulkhead(NAMESPACE);
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            assertNotNull(fatherMapper.selectById(1));
+            assertNotNull(fatherMapper.selectById(2));
+        });
+        assertEquals(0, bulkhead.getInFlight());
+        assertEquals(0, bulkhead.getRejectedCount());
+    }
+
+    @Test
+    void testCursor() throws Throwable {
+        filter.addBulkhead(CHILD_NAMESPACE, 1);
+        Bulkhead bulkhead = filter.getBulkhead(CHILD_NAMESPACE);
+        doInSqlSession(sqlSession -> {
+            Cursor<Object> cursor = sqlSession.selectCursor(MS_ID_CHILD_ALL);
+            // The permit is held until the cursor is closed
+            assertEquals(1, bulkhead.getInFlight());
+            int count = 0;
+            for (Object child : cursor) {
+                count++;
+            }
+            assertEquals(2, count);
+            assertEquals(1, bulkhead.getInFlight());
+            cursor.close();
+            assertEquals(0, bulkhead.getInFlight());
+            cursor.close();
+            assertEquals(0, bulkhead.getInFlight());
+
+            // The cursor is closed along with the session
+            sqlSession.selectCursor(MS_ID_CHILD_ALL);
+            assertEquals(1, bulkhead.getInFlight());
+        });
+        assertEquals(0, bulkhead.getInFlight());
+    }
+
+    @Test
+    void testReject() throws Throwable {
+        filter.addBulkhead(NAMESPACE, 1);
+        Bulkhead bulkhead = filter.getBulkhead(NAMESPACE);
+        bulkhead.acquire(MS_ID_FATHER_BY_ID);
+        try {
+            assertEquals(1, bulkhead.getInFlight());
+            doInMapper(FatherMapper.class, fatherMapper -> {
+                StatementRejectedException e = findStatementRejectedException(assertThrows(Throwable.class, () -> fatherMapper.selectById(1)));
+                assertEquals(MS_ID_FATHER_BY_ID, e.getStatementId());
+            });
+            assertEquals(1, bulkhead.getRejectedCount());
+        } finally {
+            bulkhead.release();
+        }
+        assertEquals(0, bulkhead.getInFlight());
+    }
+
+    @Test
+    void testWaitTimeout() throws Throwable {
+        filter.addBulkhead(NAMESPACE, 1, 1, 10);
+        Bulkhead bulkhead = filter.getBulkhead(NAMESPACE);
+        bulkhead.acquire(MS_ID_FATHER_BY_ID);
+        try {
+            assertThrows(StatementRejectedException.class, () -> bulkhead.acquire(MS_ID_FATHER_BY_ID));
+            assertEquals(0, bulkhead.getQueued());
+            assertEquals(1, bulkhead.getRejectedCount());
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    @Test
+    void testWait() throws Throwable {
+        filter.addBulkhead(NAMESPACE, 1, 1, 5000);
+        Bulkhead bulkhead = filter.getBulkhead(NAMESPACE);
+        bulkhead.acquire(MS_ID_FATHER_BY_ID);
+        CountDownLatch queued = new CountDownLatch(1);
+        Thread releaser = new Thread(() -> {
+            try {
+                while (bulkhead.getQueued() < 1) {
+                    Thread.sleep(1);
+                }
+                queued.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                bulkhead.release();
+            }
+        });
+        releaser.start();
+        doInMapper(FatherMapper.class, fatherMapper -> assertNotNull(fatherMapper.selectById(1)));
+        releaser.join();
+        assertEquals(0, queued.getCount());
+        assertEquals(0, bulkhead.getInFlight());
+        assertEquals(0, bulkhead.getQueued());
+        assertEquals(0, bulkhead.getRejectedCount());
+    }
+
+    @Test
+    void testQueueFull() throws Throwable {
+        filter.addBulkhead(NAMESPACE, 1, 1, 5000);
+        Bulkhead bulkhead = filter.getBulkhead(NAMESPACE);
+        bulkhead.acquire(MS_ID_FATHER_BY_ID);
+        Thread waiter = new Thread(() -> {
+            try {
+                bulkhead.acquire(MS_ID_FATHER_BY_ID);
+                bulkhead.release();
+            } catch (StatementRejectedException e) {
+                throw new AssertionError(e);
+            }
+        });
+        waiter.start();
+        try {
+            while (bulkhead.getQueued() < 1) {
+                Thread.sleep(1);
+            }
+            StatementRejectedException e = assertThrows(StatementRejectedException.class, () -> bulkhead.acquire(MS_ID_FATHER_BY_ID));
+            assertTrue(e.getMessage().contains("queue is full"));
+            assertEquals(1, bulkhead.getQueued());
+        } finally {
+            bulkhead.release();
+        }
+        waiter.join();
+        assertEquals(0, bulkhead.getInFlight());
+        assertEquals(0, bulkhead.getQueued());
+    }
+
+    static StatementRejectedException findStatementRejectedException(Throwable failure) {
+        Throwable cause = failure;
+        while (cause != null) {
+            if (cause instanceof StatementRejectedException) {
+                return (StatementRejectedException) cause;
+            }
+            cause = cause.getCause();
+        }
+        throw new AssertionError("No StatementRejectedException was found", failure);
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        this.filter = new BulkheadExecutorFilter();
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(filter)));
+    }
+}
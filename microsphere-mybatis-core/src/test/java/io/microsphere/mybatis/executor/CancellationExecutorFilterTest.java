@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.plugin.StatementTrackingInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.ChildMapper;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.microsphere.util.ArrayUtils.of;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.concurrent.locks.LockSupport.parkNanos;
+import static org.apache.ibatis.executor.Executor.NO_RESULT_HANDLER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link CancellationExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see CancellationExecutorFilter
+ * @since 1.0.0
+ */
+class CancellationExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    private static final String MS_ID_CHILD_ALL = ChildMapper.class.getName() + ".selectAll";
+
+    private CancellationExecutorFilter filter;
+
+    private SlowExecutorFilter slowFilter;
+
+    @Test
+    void testExecute() throws Throwable {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        try (Cancellation cancellation = Cancellation.open()) {
+            doInExecutor(executor -> {
+                assertEquals(1, executor.query(ms, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER).size());
+            });
+            assertFalse(cancellation.isCancelled());
+        }
+        assertEquals(1, filter.getLatencyWindow(MS_ID_FATHER_BY_ID).getCount());
+        assertEquals(0, filter.getInFlight());
+        assertEquals(0, filter.getCancelledCount());
+        assertEquals(0, filter.getRejectedCount());
+    }
+
+    @Test
+    void testCancelOnInterruption() throws Throwable {
+        // The median latency of the statement
+        filter.getLatencyWindow(MS_ID_FATHER_BY_ID).record(SECONDS.toNanos(10));
+        slowFilter.slow = true;
+        AtomicReference<SQLException> failure = new AtomicReference<>();
+        Thread thread = new Thread(() -> query(failure));
+        thread.start();
+        awaitInFlight();
+        thread.interrupt();
+        thread.join(SECONDS.toMillis(5));
+
+        StatementCancelledException e = assertInstanceOf(StatementCancelledException.class, failure.get());
+        assertEquals(MS_ID_FATHER_BY_ID, e.getStatementId());
+        assertEquals(StatementCancelledException.SQL_STATE, e.getSQLState());
+        assertEquals(1, filter.getCancelledCount());
+        assertEquals(0, filter.getInFlight());
+        assertTrue(filter.getSavedTime(SECONDS) > 0);
+    }
+
+    @Test
+    void testCancelOnFuture() throws Throwable {
+        slowFilter.slow = true;
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        AtomicReference<SQLException> failure = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try (Cancellation cancellation = Cancellation.open(future)) {
+                query(failure);
+            }
+        });
+        thread.start();
+        awaitInFlight();
+        future.cancel(true);
+        thread.join(SECONDS.toMillis(5));
+
+        assertInstanceOf(StatementCancelledException.class, failure.get());
+        assertEquals(1, filter.getCancelledCount());
+        // No latency was recorded
+        assertEquals(0, filter.getSavedTime(MILLISECONDS));
+    }
+
+    @Test
+    void testCancelCursorOnInterruption() throws Throwable {
+        CountDownLatch iterating = new CountDownLatch(1);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Thread thread = new Thread(() -> {
+            try {
+                doInSqlSession(sqlSession -> {
+                    try (Cursor<Object> cursor = sqlSession.selectCursor(MS_ID_CHILD_ALL)) {
+                        // The tracker is unbound from the thread, but the statement is tracked until the cursor is closed
+                        assertNull(StatementTracker.current());
+                        Iterator<Object> iterator = cursor.iterator();
+                        assertNotNull(iterator.next());
+                        iterating.countDown();
+                        StatementTracker tracker = slowFilter.cursorTracker;
+                        long deadline = nanoTime() + SECONDS.toNanos(5);
+                        while (!tracker.isCancelled() && nanoTime() < deadline) {
+                            parkNanos(MILLISECONDS.toNanos(1));
+                        }
+                        cancelled.set(tracker.isCancelled());
+                        Thread.interrupted();
+                    }
+                });
+            } catch (Throwable e) {
+                logger.warn("Failed to iterate the cursor", e);
+            }
+        });
+        thread.start();
+        iterating.await();
+        // The execution is in flight during the iteration
+        assertEquals(1, filter.getInFlight());
+        thread.interrupt();
+        thread.join(SECONDS.toMillis(5));
+
+        assertTrue(cancelled.get());
+        assertTrue(slowFilter.cursorTracker.isClosed());
+        assertEquals(1, filter.getCancelledCount());
+        assertEquals(0, filter.getInFlight());
+    }
+
+    @Test
+    void testRejectOnCancelled() throws Throwable {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        try (Cancellation cancellation = Cancellation.open()) {
+            cancellation.cancel();
+            doInExecutor(executor -> {
+                assertThrows(StatementCancelledException.class, () -> executor.query(ms, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER));
+            });
+        }
+        assertEquals(1, filter.getRejectedCount());
+        assertEquals(0, filter.getCancelledCount());
+    }
+
+    @Test
+    void testRejectOnInterrupted() throws Throwable {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        try {
+            doInExecutor(executor -> {
+                Thread.currentThread().interrupt();
+                assertThrows(StatementCancelledException.class, () -> executor.query(ms, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER));
+                assertTrue(Thread.interrupted());
+            });
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(1, filter.getRejectedCount());
+    }
+
+    @Test
+    void testConstructorOnInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new CancellationExecutorFilter(null));
+        assertThrows(IllegalArgumentException.class, () -> new CancellationExecutorFilter(0));
+        assertEquals(10, filter.getPollInterval());
+    }
+
+    private void query(AtomicReference<SQLException> failure) {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        try {
+            doInExecutor(executor -> {
+                try {
+                    executor.query(ms, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER);
+                } catch (SQLException e) {
+                    failure.set(e);
+                }
+            });
+        } catch (Throwable e) {
+            logger.warn("Failed to query", e);
+        }
+    }
+
+    private void awaitInFlight() {
+        long deadline = nanoTime() + SECONDS.toNanos(5);
+        while (filter.getInFlight() == 0 && nanoTime() < deadline) {
+            parkNanos(MILLISECONDS.toNanos(1));
+        }
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        this.filter = new CancellationExecutorFilter(10);
+        this.slowFilter = new SlowExecutorFilter();
+        configuration.addInterceptor(new StatementTrackingInterceptor());
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(filter, slowFilter)));
+    }
+
+    @AfterEach
+    void closeFilter() {
+        this.filter.close();
+    }
+
+    /**
+     * The {@link ExecutorFilter} slows down the queries until they are cancelled, which is not responsive to the
+     * interruptions like the blocking JDBC calls
+     */
+    static class SlowExecutorFilter implements ExecutorFilter {
+
+        private volatile boolean slow;
+
+        private volatile StatementTracker cursorTracker;
+
+        @Override
+        public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                                 CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+            await();
+            return chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        }
+
+        @Override
+        public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                                 ExecutorFilterChain chain) throws SQLException {
+            await();
+            return chain.query(ms, parameter, rowBounds, resultHandler);
+        }
+
+        @Override
+        public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                         ExecutorFilterChain chain) throws SQLException {
+            this.cursorTracker = StatementTracker.current();
+            return chain.queryCursor(ms, parameter, rowBounds);
+        }
+
+        private void await() throws SQLException {
+            StatementTracker tracker = StatementTracker.current();
+            if (!slow || tracker == null) {
+                return;
+            }
+            slow = false;
+            long deadline = nanoTime() + SECONDS.toNanos(2);
+            while (nanoTime() < deadline) {
+                if (tracker.isCancelled()) {
+                    throw new SQLException("The statement was cancelled");
+                }
+                parkNanos(MILLISECONDS.toNanos(10));
+            }
+        }
+    }
+}
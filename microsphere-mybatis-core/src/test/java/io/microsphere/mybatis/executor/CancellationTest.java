@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link Cancellation} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see Cancellation
+ * @since 1.0.0
+ */
+class CancellationTest {
+
+    @Test
+    void testOpenAndClose() {
+        assertNull(Cancellation.current());
+        try (Cancellation outer = Cancellation.open()) {
+            assertSame(outer, Cancellation.current());
+            try (Cancellation inner = Cancellation.open()) {
+                assertSame(inner, Cancellation.current());
+                outer.cancel();
+                // The inner cancellation is cancelled if the outer one is
+                assertTrue(inner.isCancelled());
+            }
+            assertSame(outer, Cancellation.current());
+            outer.close();
+            assertTrue(outer.isClosed());
+            assertNotNull(outer.toString());
+        }
+        assertNull(Cancellation.current());
+    }
+
+    @Test
+    void testCancel() {
+        AtomicInteger counter = new AtomicInteger();
+        Runnable listener = counter::incrementAndGet;
+        try (Cancellation cancellation = Cancellation.open()) {
+            cancellation.addListener(() -> {
+                throw new IllegalStateException("For testing");
+            });
+            cancellation.addListener(listener);
+            assertFalse(cancellation.isCancelled());
+            cancellation.cancel();
+            assertTrue(cancellation.isCancelled());
+            // The listeners are notified once
+            cancellation.cancel();
+            assertEquals(1, counter.get());
+        }
+    }
+
+    @Test
+    void testRemoveListener() {
+        AtomicInteger counter = new AtomicInteger();
+        Runnable listener = counter::incrementAndGet;
+        try (Cancellation cancellation = Cancellation.open()) {
+            cancellation.addListener(listener);
+            cancellation.removeListener(listener);
+            cancellation.cancel();
+            assertEquals(0, counter.get());
+        }
+    }
+
+    @Test
+    void testOpenWithFuture() {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        try (Cancellation cancellation = Cancellation.open(future)) {
+            assertFalse(cancellation.isCancelled());
+            future.cancel(true);
+            assertTrue(cancellation.isCancelled());
+        }
+
+        CompletableFuture<Object> completedFuture = new CompletableFuture<>();
+        try (Cancellation cancellation = Cancellation.open(completedFuture)) {
+            completedFuture.complete("OK");
+            assertFalse(cancellation.isCancelled());
+        }
+    }
+
+    @Test
+    void testOpenOnNullFuture() {
+        assertThrows(IllegalArgumentException.class, () -> Cancellation.open(null));
+        assertNull(Cancellation.current());
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.executor.CircuitBreakerExecutorFilter.CircuitBreaker;
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.session.SharedConfigurationSqlSessionFactory;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.entity.Father;
+import io.microsphere.mybatis.test.entity.User;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import io.microsphere.mybatis.test.mapper.UserMapper;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+
+import static io.microsphere.mybatis.executor.BulkheadExecutorFilterTest.findStatementRejectedException;
+import static io.microsphere.mybatis.executor.CircuitBreakerExecutorFilter.DEFAULT_FAILURE_RATE_THRESHOLD;
+import static io.microsphere.mybatis.executor.CircuitBreakerExecutorFilter.DEFAULT_HALF_OPEN_PROBES;
+import static io.microsphere.mybatis.executor.CircuitBreakerExecutorFilter.DEFAULT_MINIMUM_CALLS;
+import static io.microsphere.mybatis.executor.CircuitBreakerExecutorFilter.DEFAULT_OPEN_DURATION;
+import static io.microsphere.mybatis.executor.CircuitBreakerExecutorFilter.DEFAULT_SLOW_CALL_DURATION;
+import static io.microsphere.mybatis.executor.CircuitBreakerExecutorFilter.DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+import static io.microsphere.mybatis.executor.CircuitBreakerExecutorFilter.DEFAULT_WINDOW_SIZE;
+import static io.microsphere.mybatis.executor.CircuitBreakerExecutorFilter.State.CLOSED;
+import static io.microsphere.mybatis.executor.CircuitBreakerExecutorFilter.State.OPEN;
+import static io.microsphere.util.ArrayUtils.of;
+import static io.microsphere.util.ArrayUtils.ofArray;
+import static io.microsphere.util.ClassLoaderUtils.getDefaultClassLoader;
+import static java.lang.reflect.Proxy.newProxyInstance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link CircuitBreakerExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see CircuitBreakerExecutorFilter
+ * @since 1.0.0
+ */
+class CircuitBreakerExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    private static final String MS_ID_USER_BY_ID = "io.microsphere.mybatis.test.mapper.UserMapper.getUserById";
+
+    private static final String MS_ID_USER_BY_NAME = "io.microsphere.mybatis.test.mapper.UserMapper.getUserByName";
+
+    private static final String MS_ID_ERROR_USER_BY_NAME = "io.microsphere.mybatis.test.mapper.UserMapper.getErrorUserByName";
+
+    private CircuitBreakerExecutorFilter filter;
+
+    private FailingExecutorFilter failingFilter;
+
+    @Test
+    void testDefaults() {
+        CircuitBreakerExecutorFilter filter = new CircuitBreakerExecutorFilter();
+        assertEquals(DEFAULT_WINDOW_SIZE, filter.getWindowSize());
+        assertEquals(DEFAULT_MINIMUM_CALLS, filter.getMinimumCalls());
+        assertEquals(DEFAULT_FAILURE_RATE_THRESHOLD, filter.getFailureRateThreshold());
+        assertEquals(DEFAULT_SLOW_CALL_RATE_THRESHOLD, filter.getSlowCallRateThreshold());
+        assertEquals(DEFAULT_SLOW_CALL_DURATION, filter.getSlowCallDuration());
+        assertEquals(DEFAULT_OPEN_DURATION, filter.getOpenDuration());
+        assertEquals(DEFAULT_HALF_OPEN_PROBES, filter.getHalfOpenProbes());
+        assertTrue(filter.getIgnoredSQLStateClasses().contains("23"));
+
+        assertThrows(IllegalArgumentException.class, () -> filter.setWindowSize(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setMinimumCalls(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setFailureRateThreshold(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setSlowCallRateThreshold(1.1));
+        assertThrows(IllegalArgumentException.class, () -> filter.setSlowCallDuration(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setOpenDuration(-1));
+        assertThrows(IllegalArgumentException.class, () -> filter.setHalfOpenProbes(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.addFallbackStatement("", MS_ID_USER_BY_ID));
+        assertThrows(IllegalArgumentException.class, () -> filter.addFallbackCache(MS_ID_USER_BY_ID, 0));
+    }
+
+    @Test
+    void testIsFailure() {
+        assertTrue(filter.isFailure(new SQLException("down", "08001")));
+        assertTrue(filter.isFailure(new SQLException("unknown")));
+        assertTrue(filter.isFailure(new RuntimeException(new SQLException("down", "08S01"))));
+        assertFalse(filter.isFailure(new SQLException("duplicate", "23505")));
+        assertFalse(filter.isFailure(new RuntimeException(new SQLException("duplicate", "23505"))));
+        assertFalse(filter.isFailure(new StatementRejectedException("rejected", MS_ID_FATHER_BY_ID)));
+        filter.setIgnoredSQLStateClasses("08");
+        assertFalse(filter.isFailure(new SQLException("down", "08001")));
+        assertTrue(filter.isFailure(new SQLException("duplicate", "23505")));
+    }
+
+    @Test
+    void testOpen() throws Throwable {
+        filter.setMinimumCalls(2).setWindowSize(10).setFailureRateThreshold(0.6);
+        assertNull(filter.getCircuitBreaker(getDataSource(), MS_ID_FATHER_BY_ID));
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            assertNotNull(fatherMapper.selectById(1));
+            failingFilter.fail(MS_ID_FATHER_BY_ID, new SQLException("down", "08001"));
+            assertThrows(Throwable.class, () -> fatherMapper.selectById(1));
+            CircuitBreaker breaker = filter.getCircuitBreaker(getDataSource(), MS_ID_FATHER_BY_ID);
+            assertEquals(CLOSED, breaker.getState());
+            assertEquals(2, breaker.getCalls());
+            assertEquals(0.5, breaker.getFailureRate());
+
+            assertThrows(Throwable.class, () -> fatherMapper.selectById(1));
+            assertEquals(OPEN, breaker.getState());
+
+            failingFilter.recover();
+            StatementRejectedException e = findStatementRejectedException(assertThrows(Throwable.class, () -> fatherMapper.selectById(1)));
+            assertEquals(MS_ID_FATHER_BY_ID, e.getStatementId());
+            assertEquals(1, breaker.getRejectedCount());
+            assertEquals(MS_ID_FATHER_BY_ID, breaker.getStatementId());
+            assertEquals(getDataSource(), breaker.getDataSource());
+        });
+    }
+
+    @Test
+    void testIgnoredFailures() throws Throwable {
+        filter.setMinimumCalls(1);
+        doInMapper(UserMapper.class, userMapper -> {
+            // The table is absent : the syntax error or access rule violation
+            assertThrows(Throwable.class, () -> userMapper.getErrorUserByName("Mercy"));
+            assertThrows(Throwable.class, () -> userMapper.getErrorUserByName("Mercy"));
+            CircuitBreaker breaker = filter.getCircuitBreaker(getDataSource(), MS_ID_ERROR_USER_BY_NAME);
+            assertEquals(CLOSED, breaker.getState());
+            assertEquals(0, breaker.getCalls());
+
+            failingFilter.fail(MS_ID_USER_BY_NAME, new SQLException("duplicate", "23505"));
+            assertThrows(Throwable.class, () -> userMapper.getUserByName("Mercy"));
+            assertEquals(CLOSED, filter.getCircuitBreaker(getDataSource(), MS_ID_USER_BY_NAME).getState());
+        });
+    }
+
+    @Test
+    void testHalfOpen() throws Throwable {
+        filter.setMinimumCalls(1).setOpenDuration(0).setHalfOpenProbes(1);
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            failingFilter.fail(MS_ID_FATHER_BY_ID, new SQLException("down", "08001"));
+            assertThrows(Throwable.class, () -> fatherMapper.selectById(1));
+            CircuitBreaker breaker = filter.getCircuitBreaker(getDataSource(), MS_ID_FATHER_BY_ID);
+            assertEquals(OPEN, breaker.getState());
+
+            // The failed probe opens the circuit again
+            assertThrows(Throwable.class, () -> fatherMapper.selectById(1));
+            assertEquals(OPEN, breaker.getState());
+
+            // The succeeded probe closes the circuit
+            failingFilter.recover();
+            assertNotNull(fatherMapper.selectById(1));
+            assertEquals(CLOSED, breaker.getState());
+            assertEquals(0, breaker.getCalls());
+            assertEquals(0, breaker.getRejectedCount());
+        });
+    }
+
+    @Test
+    void testFallbackStatement() throws Throwable {
+        filter.setMinimumCalls(1).addFallbackStatement(MS_ID_FATHER_BY_ID, MS_ID_USER_BY_ID);
+        User user = createUser();
+        doInSqlSession(sqlSession -> {
+            sqlSession.getMapper(UserMapper.class).saveUser(user);
+            failingFilter.fail(MS_ID_FATHER_BY_ID, new SQLException("down", "08001"));
+            assertThrows(Throwable.class, () -> sqlSession.selectOne(MS_ID_FATHER_BY_ID, user.getId()));
+            Object result = sqlSession.selectOne(MS_ID_FATHER_BY_ID, user.getId());
+            assertInstanceOf(User.class, result);
+            assertEquals(user.getId(), ((User) result).getId());
+            assertEquals(1, filter.getCircuitBreaker(getDataSource(), MS_ID_FATHER_BY_ID).getRejectedCount());
+        });
+    }
+
+    @Test
+    void testFallbackCache() throws Throwable {
+        filter.setMinimumCalls(1).addFallbackCache(MS_ID_FATHER_BY_ID, 10);
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            Father father = fatherMapper.selectById(1);
+            assertNotNull(father);
+            failingFilter.fail(MS_ID_FATHER_BY_ID, new SQLException("down", "08001"));
+            assertThrows(Throwable.class, () -> fatherMapper.selectById(1));
+            assertEquals(OPEN, filter.getCircuitBreaker(getDataSource(), MS_ID_FATHER_BY_ID).getState());
+            // The last successful result
+            assertSame(father, fatherMapper.selectById(1));
+            // No successful result
+            assertNotNull(findStatementRejectedException(assertThrows(Throwable.class, () -> fatherMapper.selectById(2))));
+        });
+    }
+
+    @Test
+    void testFallbackCacheCopy() throws Throwable {
+        filter.setMinimumCalls(1).addFallbackCache(MS_ID_FATHER_BY_ID, 10);
+        doInSqlSession(sqlSession -> {
+            List<Father> fathers = sqlSession.selectList(MS_ID_FATHER_BY_ID, 1);
+            assertEquals(1, fathers.size());
+            fathers.clear();
+            failingFilter.fail(MS_ID_FATHER_BY_ID, new SQLException("down", "08001"));
+            assertThrows(Throwable.class, () -> sqlSession.selectList(MS_ID_FATHER_BY_ID, 1));
+            List<Father> cachedFathers = sqlSession.selectList(MS_ID_FATHER_BY_ID, 1);
+            assertEquals(1, cachedFathers.size());
+            assertThrows(UnsupportedOperationException.class, cachedFathers::clear);
+        });
+    }
+
+    @Test
+    void testOtherDataSource() throws Throwable {
+        DataSource dataSource = (DataSource) newProxyInstance(getDefaultClassLoader(), ofArray(DataSource.class),
+                (proxy, method, args) -> switch (method.getName()) {
+                    // The breakers are keyed by the identities of DataSources
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> method.invoke(getDataSource(), args);
+                });
+        SqlSessionFactory sqlSessionFactory = new SharedConfigurationSqlSessionFactory(getConfiguration(),
+                new Environment("other", new JdbcTransactionFactory(), dataSource));
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            assertNotNull(sqlSession.getMapper(FatherMapper.class).selectById(1));
+        }
+        assertNotNull(filter.getCircuitBreaker(dataSource, MS_ID_FATHER_BY_ID));
+        assertNull(filter.getCircuitBreaker(getDataSource(), MS_ID_FATHER_BY_ID));
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        this.filter = new CircuitBreakerExecutorFilter();
+        this.failingFilter = new FailingExecutorFilter();
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(filter, failingFilter)));
+    }
+
+    /**
+     * {@link ExecutorFilter} throws the {@link SQLException} when the specified statement is executed
+     */
+    static class FailingExecutorFilter implements ExecutorFilter {
+
+        private volatile String statementId;
+
+        private volatile SQLException failure;
+
+        void fail(String statementId, SQLException failure) {
+            this.statementId = statementId;
+            this.failure = failure;
+        }
+
+        void recover() {
+            this.statementId = null;
+            this.failure = null;
+        }
+
+        @Override
+        public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+            check(ms);
+            return chain.update(ms, parameter);
+        }
+
+        @Override
+        public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                                 CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+            check(ms);
+            return chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        }
+
+        @Override
+        public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                                 ExecutorFilterChain chain) throws SQLException {
+            check(ms);
+            return chain.query(ms, parameter, rowBounds, resultHandler);
+        }
+
+        private void check(MappedStatement ms) throws SQLException {
+            SQLException failure = this.failure;
+            if (failure != null && ms.getId().equals(this.statementId)) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.plugin.StatementTrackingInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.ChildMapper;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+
+import static io.microsphere.util.ArrayUtils.of;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.ibatis.executor.Executor.NO_RESULT_HANDLER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link DeadlineExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see DeadlineExecutorFilter
+ * @since 1.0.0
+ */
+class DeadlineExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    private static final String MS_ID_CHILD_ALL = ChildMapper.class.getName() + ".selectAll";
+
+    private DeadlineExecutorFilter filter;
+
+    private SlowExecutorFilter slowFilter;
+
+    @Test
+    void testWithoutDeadline() throws Throwable {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        doInExecutor(executor -> {
+            assertEquals(1, executor.query(ms, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER).size());
+        });
+        assertEquals(0, filter.getExpiredCount());
+        assertEquals(0, filter.getTimedOutCount());
+    }
+
+    @Test
+    void testInDeadline() throws Throwable {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        try (Deadline deadline = Deadline.open(5, SECONDS)) {
+            doInExecutor(executor -> {
+                assertEquals(1, executor.query(ms, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER).size());
+            });
+            assertFalse(deadline.isExpired());
+        }
+        assertEquals(0, filter.getExpiredCount());
+        assertEquals(0, filter.getTimedOutCount());
+    }
+
+    @Test
+    void testExpired() throws Throwable {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        try (Deadline deadline = Deadline.open(0, MILLISECONDS)) {
+            doInExecutor(executor -> {
+                assertThrows(SQLTimeoutException.class, () -> executor.query(ms, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER));
+            });
+        }
+        assertEquals(1, filter.getExpiredCount());
+        assertEquals(0, filter.getTimedOutCount());
+    }
+
+    @Test
+    void testTimedOut() throws Throwable {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        slowFilter.slow = true;
+        try (Deadline deadline = Deadline.open(50, MILLISECONDS)) {
+            doInExecutor(executor -> {
+                SQLTimeoutException e = assertThrows(SQLTimeoutException.class,
+                        () -> executor.query(ms, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER));
+                assertEquals(SQLException.class, e.getCause().getClass());
+            });
+        }
+        assertEquals(0, filter.getExpiredCount());
+        assertEquals(1, filter.getTimedOutCount());
+    }
+
+    @Test
+    void testCursor() throws Throwable {
+        try (Deadline deadline = Deadline.open(100, MILLISECONDS)) {
+            doInSqlSession(sqlSession -> {
+                Cursor<Object> cursor = sqlSession.selectCursor(MS_ID_CHILD_ALL);
+                // The tracker is unbound from the thread, but the statement is tracked until the cursor is closed
+                assertNull(StatementTracker.current());
+                StatementTracker tracker = slowFilter.cursorTracker;
+                assertFalse(tracker.isClosed());
+                assertEquals(1, tracker.getStatements().size());
+                for (int i = 0; i < 100 && !tracker.isCancelled(); i++) {
+                    MILLISECONDS.sleep(10);
+                }
+                assertTrue(tracker.isCancelled());
+                cursor.close();
+                assertTrue(tracker.isClosed());
+            });
+        }
+    }
+
+    @Test
+    void testConstructorOnNullScheduler() {
+        assertThrows(IllegalArgumentException.class, () -> new DeadlineExecutorFilter(null));
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        this.filter = new DeadlineExecutorFilter();
+        this.slowFilter = new SlowExecutorFilter();
+        configuration.addInterceptor(new StatementTrackingInterceptor());
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(filter, slowFilter)));
+    }
+
+    @AfterEach
+    void closeFilter() {
+        this.filter.close();
+    }
+
+    /**
+     * The {@link ExecutorFilter} slows down the queries until they are cancelled
+     */
+    static class SlowExecutorFilter implements ExecutorFilter {
+
+        private volatile boolean slow;
+
+        private volatile StatementTracker cursorTracker;
+
+        @Override
+        public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                                 CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+            await();
+            return chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        }
+
+        @Override
+        public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                                 ExecutorFilterChain chain) throws SQLException {
+            await();
+            return chain.query(ms, parameter, rowBounds, resultHandler);
+        }
+
+        @Override
+        public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds,
+                                         ExecutorFilterChain chain) throws SQLException {
+            this.cursorTracker = StatementTracker.current();
+            return chain.queryCursor(ms, parameter, rowBounds);
+        }
+
+        private void await() throws SQLException {
+            StatementTracker tracker = StatementTracker.current();
+            if (!slow || tracker == null) {
+                return;
+            }
+            slow = false;
+            for (int i = 0; i < 100; i++) {
+                if (tracker.isCancelled()) {
+                    throw new SQLException("The statement was cancelled");
+                }
+                try {
+                    MILLISECONDS.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
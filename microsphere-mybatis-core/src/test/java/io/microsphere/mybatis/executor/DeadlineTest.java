@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.microsphere.util.ArrayUtils.ofArray;
+import static io.microsphere.util.ClassLoaderUtils.getDefaultClassLoader;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link Deadline} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see Deadline
+ * @since 1.0.0
+ */
+class DeadlineTest {
+
+    @Test
+    void testOpenAndClose() {
+        assertNull(Deadline.current());
+        try (Deadline outer = Deadline.open(1, SECONDS)) {
+            assertSame(outer, Deadline.current());
+            assertFalse(outer.isExpired());
+            assertTrue(outer.getRemaining(MILLISECONDS) <= 1000);
+            try (Deadline inner = Deadline.open(1, SECONDS)) {
+                assertSame(inner, Deadline.current());
+                // The inner deadline never exceeds the outer one
+                assertTrue(inner.getRemaining(MILLISECONDS) <= outer.getRemaining(MILLISECONDS));
+            }
+            try (Deadline inner = Deadline.open(10, MILLISECONDS)) {
+                assertTrue(inner.getRemaining(MILLISECONDS) <= 10);
+            }
+            assertSame(outer, Deadline.current());
+            outer.close();
+            assertTrue(outer.isClosed());
+            assertNotNull(outer.toString());
+        }
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    void testOpenOnInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> Deadline.open(-1, SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> Deadline.open(1, null));
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    void testApply() throws Exception {
+        AtomicInteger queryTimeout = new AtomicInteger();
+        Statement statement = mockStatement(queryTimeout);
+        try (Deadline deadline = Deadline.open(2500, MILLISECONDS)) {
+            deadline.apply(statement);
+            // rounded up
+            assertEquals(3, queryTimeout.get());
+
+            queryTimeout.set(1);
+            deadline.apply(statement);
+            // The shorter query timeout is kept
+            assertEquals(1, queryTimeout.get());
+
+            queryTimeout.set(10);
+            deadline.apply(statement);
+            assertEquals(3, queryTimeout.get());
+        }
+    }
+
+    @Test
+    void testApplyOnExpired() throws Exception {
+        AtomicInteger queryTimeout = new AtomicInteger();
+        try (Deadline deadline = Deadline.open(0, MILLISECONDS)) {
+            assertTrue(deadline.isExpired());
+            assertThrows(SQLTimeoutException.class, () -> deadline.apply(mockStatement(queryTimeout)));
+            assertEquals(0, queryTimeout.get());
+        }
+    }
+
+    static Statement mockStatement(AtomicInteger queryTimeout) {
+        return (Statement) Proxy.newProxyInstance(getDefaultClassLoader(), ofArray(Statement.class), (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getQueryTimeout":
+                    return queryTimeout.get();
+                case "setQueryTimeout":
+                    queryTimeout.set((Integer) args[0]);
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        });
+    }
+}
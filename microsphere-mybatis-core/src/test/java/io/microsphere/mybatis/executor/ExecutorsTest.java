@@ -19,15 +19,29 @@ package io.microsphere.mybatis.executor;
 
 import org.apache.ibatis.executor.CachingExecutor;
 import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.transaction.managed.ManagedTransaction;
 import org.junit.jupiter.api.Test;
 
+import javax.sql.DataSource;
 import java.lang.reflect.InvocationHandler;
+import java.sql.Connection;
+import java.sql.SQLException;
 
+import static io.microsphere.mybatis.executor.Executors.getDataSource;
 import static io.microsphere.mybatis.executor.Executors.getDelegate;
+import static io.microsphere.mybatis.executor.Executors.isAutoCommit;
+import static io.microsphere.mybatis.executor.Executors.newSimpleExecutor;
 import static io.microsphere.util.ArrayUtils.ofArray;
 import static io.microsphere.util.ClassLoaderUtils.getDefaultClassLoader;
 import static java.lang.reflect.Proxy.newProxyInstance;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * {@link Executors} Test
@@ -45,6 +59,48 @@ class ExecutorsTest {
         assertSame(delegate, getDelegate(cachingExecutor));
     }
 
+    @Test
+    void testNewSimpleExecutor() {
+        DataSource dataSource = (DataSource) newProxyInstance(getDefaultClassLoader(), ofArray(DataSource.class),
+                (proxy, method, args) -> null);
+        Executor executor = newSimpleExecutor(new Configuration(), dataSource);
+        assertInstanceOf(SimpleExecutor.class, executor);
+        assertInstanceOf(JdbcTransaction.class, executor.getTransaction());
+        executor.close(false);
+        assertTrue(executor.isClosed());
+    }
+
+    @Test
+    void testGetDataSource() {
+        DataSource dataSource = (DataSource) newProxyInstance(getDefaultClassLoader(), ofArray(DataSource.class),
+                (proxy, method, args) -> null);
+        Executor executor = newSimpleExecutor(new Configuration(), dataSource);
+        assertSame(dataSource, getDataSource(executor));
+        executor.close(false);
+        assertNull(getDataSource(executor));
+    }
+
+    @Test
+    void testIsAutoCommit() throws Throwable {
+        // The connection must not be opened
+        DataSource dataSource = (DataSource) newProxyInstance(getDefaultClassLoader(), ofArray(DataSource.class),
+                (proxy, method, args) -> {
+                    throw new SQLException("No connection");
+                });
+        Configuration configuration = new Configuration();
+        Executor executor = new SimpleExecutor(configuration, new JdbcTransaction(dataSource, null, true));
+        assertTrue(isAutoCommit(executor));
+        executor = new SimpleExecutor(configuration, new JdbcTransaction(dataSource, null, false));
+        assertFalse(isAutoCommit(executor));
+        // The mode of the opened connection
+        Connection connection = (Connection) newProxyInstance(getDefaultClassLoader(), ofArray(Connection.class),
+                (proxy, method, args) -> "getAutoCommit".equals(method.getName()) ? false : null);
+        executor = new SimpleExecutor(configuration, new JdbcTransaction(connection));
+        assertFalse(isAutoCommit(executor));
+        executor = new SimpleExecutor(configuration, new ManagedTransaction(dataSource, null, false));
+        assertTrue(isAutoCommit(executor));
+    }
+
     public static Executor mockExecutor() {
         return mockExecutor((proxy, method, args) -> null);
     }
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.plugin.StatementTrackingInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+
+import static io.microsphere.mybatis.util.MyBatisUtils.buildSqlSessionFactory;
+import static io.microsphere.util.ArrayUtils.of;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link HedgingExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see HedgingExecutorFilter
+ * @since 1.0.0
+ */
+class HedgingExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    private HedgingExecutorFilter filter;
+
+    private SlowExecutorFilter slowFilter;
+
+    @Test
+    void testHedge() throws Throwable {
+        filter.setMinSamples(3).setMaxHedgeRatio(1.0);
+        try (SqlSession sqlSession = openAutoCommitSession()) {
+            FatherMapper fatherMapper = sqlSession.getMapper(FatherMapper.class);
+            warmUp(fatherMapper);
+            assertTrue(filter.getHedgeDelay(MS_ID_FATHER_BY_ID) >= 0);
+
+            slowFilter.slow = true;
+            assertEquals("John Smith", fatherMapper.selectById(1).getName());
+            assertEquals(1, filter.getHedgeCount());
+            assertEquals(1, filter.getHedgeWinCount());
+            assertEquals(0, filter.getThrottledCount());
+        }
+    }
+
+    @Test
+    void testThrottle() throws Throwable {
+        filter.setMinSamples(3).setMaxHedgeRatio(0.01);
+        try (SqlSession sqlSession = openAutoCommitSession()) {
+            FatherMapper fatherMapper = sqlSession.getMapper(FatherMapper.class);
+            warmUp(fatherMapper);
+
+            slowFilter.slow = true;
+            assertEquals("John Smith", fatherMapper.selectById(1).getName());
+            assertEquals(0, filter.getHedgeCount());
+            assertEquals(1, filter.getThrottledCount());
+        }
+    }
+
+    @Test
+    void testNotHedgeable() throws Throwable {
+        filter.addStatementIds(MS_ID_FATHER_BY_ID);
+        // The connection is not auto-commit
+        doInMapper(FatherMapper.class, this::warmUp);
+        assertEquals(-1, filter.getHedgeDelay(MS_ID_FATHER_BY_ID));
+        assertEquals(0, filter.getHedgeCount());
+    }
+
+    @Test
+    void testNoEnoughSamples() throws Throwable {
+        try (SqlSession sqlSession = openAutoCommitSession()) {
+            FatherMapper fatherMapper = sqlSession.getMapper(FatherMapper.class);
+            warmUp(fatherMapper);
+            assertEquals(-1, filter.getHedgeDelay(MS_ID_FATHER_BY_ID));
+        }
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new HedgingExecutorFilter(emptyList(), null));
+        assertThrows(IllegalArgumentException.class, () -> filter.setPercentile(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setMinSamples(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setMaxHedgeRatio(2));
+        assertThrows(IllegalArgumentException.class, () -> filter.setMaxHedgeBurst(0));
+        assertEquals(HedgingExecutorFilter.DEFAULT_PERCENTILE, filter.getPercentile());
+        assertEquals(HedgingExecutorFilter.DEFAULT_MIN_SAMPLES, filter.getMinSamples());
+        assertEquals(HedgingExecutorFilter.DEFAULT_MAX_HEDGE_RATIO, filter.getMaxHedgeRatio());
+        assertEquals(HedgingExecutorFilter.DEFAULT_MAX_HEDGE_BURST, filter.getMaxHedgeBurst());
+    }
+
+    private void warmUp(FatherMapper fatherMapper) {
+        for (int i = 0; i < 3; i++) {
+            fatherMapper.selectById(1);
+        }
+    }
+
+    private SqlSession openAutoCommitSession() {
+        return buildSqlSessionFactory(getConfiguration()).openSession(true);
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        DataSource replica = configuration.getEnvironment().getDataSource();
+        this.filter = new HedgingExecutorFilter(replica);
+        this.slowFilter = new SlowExecutorFilter();
+        configuration.addInterceptor(new StatementTrackingInterceptor());
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(filter, slowFilter)));
+    }
+
+    @AfterEach
+    void closeFilter() {
+        this.filter.close();
+    }
+
+    /**
+     * The {@link ExecutorFilter} slows down the primary queries until they are cancelled
+     */
+    static class SlowExecutorFilter implements ExecutorFilter {
+
+        private volatile boolean slow;
+
+        @Override
+        public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                                 CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+            await();
+            return chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        }
+
+        @Override
+        public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                                 ExecutorFilterChain chain) throws SQLException {
+            await();
+            return chain.query(ms, parameter, rowBounds, resultHandler);
+        }
+
+        private void await() throws SQLException {
+            StatementTracker tracker = StatementTracker.current();
+            if (!slow || tracker == null) {
+                return;
+            }
+            slow = false;
+            for (int i = 0; i < 20; i++) {
+                if (tracker.isCancelled()) {
+                    throw new SQLException("The statement was cancelled");
+                }
+                try {
+                    MILLISECONDS.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
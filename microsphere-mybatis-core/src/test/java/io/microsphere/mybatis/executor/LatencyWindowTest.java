@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link LatencyWindow} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see LatencyWindow
+ * @since 1.0.0
+ */
+class LatencyWindowTest {
+
+    @Test
+    void testPercentile() {
+        LatencyWindow window = new LatencyWindow(100);
+        assertEquals(-1, window.percentile(0.95));
+        for (int i = 1; i <= 100; i++) {
+            window.record(i);
+        }
+        assertEquals(100, window.getCount());
+        assertEquals(95, window.percentile(0.95));
+        assertEquals(50, window.percentile(0.5));
+        assertEquals(100, window.percentile(1));
+    }
+
+    @Test
+    void testSliding() {
+        LatencyWindow window = new LatencyWindow(2);
+        window.record(100);
+        window.record(1);
+        window.record(2);
+        assertEquals(2, window.getCount());
+        assertEquals(2, window.getSize());
+        assertEquals(2, window.percentile(1));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyWindow(0));
+        assertThrows(IllegalArgumentException.class, () -> new LatencyWindow().percentile(0));
+        assertThrows(IllegalArgumentException.class, () -> new LatencyWindow().percentile(1.1));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.datasource.ConnectionPoolAdapter;
+import io.microsphere.mybatis.datasource.ConnectionPoolStats;
+import io.microsphere.mybatis.datasource.DruidConnectionPoolAdapter;
+import io.microsphere.mybatis.datasource.HikariConnectionPoolAdapter;
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static io.microsphere.lang.Prioritized.NORMAL_PRIORITY;
+import static io.microsphere.mybatis.executor.BulkheadExecutorFilterTest.findStatementRejectedException;
+import static io.microsphere.mybatis.executor.LoadSheddingExecutorFilter.DEFAULT_SAMPLE_INTERVAL;
+import static io.microsphere.mybatis.executor.LoadSheddingExecutorFilter.DEFAULT_SHEDDING_PRIORITY;
+import static io.microsphere.mybatis.executor.LoadSheddingExecutorFilter.DEFAULT_WAITING_THRESHOLD;
+import static io.microsphere.util.ArrayUtils.of;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link LoadSheddingExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see LoadSheddingExecutorFilter
+ * @since 1.0.0
+ */
+class LoadSheddingExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String NAMESPACE = FatherMapper.class.getName();
+
+    private static final String MS_ID_FATHER_BY_ID = NAMESPACE + ".selectById";
+
+    private LoadSheddingExecutorFilter filter;
+
+    private TestConnectionPoolAdapter adapter;
+
+    @Test
+    void testDefaults() {
+        LoadSheddingExecutorFilter filter = new LoadSheddingExecutorFilter();
+        List<ConnectionPoolAdapter> adapters = filter.getAdapters();
+        assertEquals(2, adapters.size());
+        assertTrue(adapters.stream().anyMatch(HikariConnectionPoolAdapter.class::isInstance));
+        assertTrue(adapters.stream().anyMatch(DruidConnectionPoolAdapter.class::isInstance));
+        assertEquals(DEFAULT_SAMPLE_INTERVAL, filter.getSampleInterval());
+        assertEquals(DEFAULT_WAITING_THRESHOLD, filter.getWaitingThreshold(DEFAULT_SHEDDING_PRIORITY));
+        assertEquals(DEFAULT_WAITING_THRESHOLD, filter.getWaitingThreshold(Integer.MAX_VALUE));
+        assertEquals(-1, filter.getWaitingThreshold(NORMAL_PRIORITY));
+
+        assertThrows(IllegalArgumentException.class, () -> new LoadSheddingExecutorFilter(null));
+        assertThrows(IllegalArgumentException.class, () -> filter.setPriority("", 1));
+        assertThrows(IllegalArgumentException.class, () -> filter.setWaitingThreshold(1, -1));
+        assertThrows(IllegalArgumentException.class, () -> filter.setSampleInterval(-1));
+    }
+
+    @Test
+    void testWaitingThreshold() {
+        filter.setWaitingThreshold(NORMAL_PRIORITY, 20).setWaitingThreshold(100, 5);
+        assertEquals(-1, filter.getWaitingThreshold(-1));
+        assertEquals(20, filter.getWaitingThreshold(NORMAL_PRIORITY));
+        assertEquals(0, filter.getWaitingThreshold(50));
+        assertEquals(5, filter.getWaitingThreshold(100));
+        filter.removeWaitingThreshold(100);
+        assertEquals(0, filter.getWaitingThreshold(100));
+    }
+
+    @Test
+    void testResolvePriority() {
+        assertEquals(NORMAL_PRIORITY, filter.resolvePriority(getMappedStatement(MS_ID_FATHER_BY_ID)));
+        filter.setPriority(NAMESPACE, 10);
+        assertEquals(10, filter.resolvePriority(getMappedStatement(MS_ID_FATHER_BY_ID)));
+        filter.setPriority(MS_ID_FATHER_BY_ID, -10);
+        assertEquals(-10, filter.resolvePriority(getMappedStatement(MS_ID_FATHER_BY_ID)));
+        assertNotNull(filter.getPriorityResolver());
+    }
+
+    @Test
+    void testShed() throws Throwable {
+        filter.setPriority(NAMESPACE, 10);
+        adapter.waiting = 1;
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            StatementRejectedException e = findStatementRejectedException(assertThrows(Throwable.class, () -> fatherMapper.selectById(1)));
+            assertEquals(MS_ID_FATHER_BY_ID, e.getStatementId());
+        });
+        assertEquals(1, filter.getShedCount());
+        assertEquals(1, filter.getStats(getDataSource()).getWaiting());
+
+        adapter.waiting = 0;
+        doInMapper(FatherMapper.class, fatherMapper -> assertNotNull(fatherMapper.selectById(1)));
+        assertEquals(1, filter.getShedCount());
+    }
+
+    @Test
+    void testNotShed() throws Throwable {
+        adapter.waiting = 10;
+        // The normal priority is never shed by default
+        doInMapper(FatherMapper.class, fatherMapper -> assertNotNull(fatherMapper.selectById(1)));
+        assertEquals(0, filter.getShedCount());
+        assertNull(filter.getStats(getDataSource()));
+
+        adapter.supported = false;
+        LoadSheddingExecutorFilter another = new LoadSheddingExecutorFilter(singletonList(adapter));
+        assertNull(another.createSampler(getDataSource()).sample(0));
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        this.adapter = new TestConnectionPoolAdapter();
+        this.filter = new LoadSheddingExecutorFilter(singletonList(adapter)).setSampleInterval(0);
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(filter)));
+    }
+
+    static class TestConnectionPoolAdapter implements ConnectionPoolAdapter {
+
+        private volatile boolean supported = true;
+
+        private volatile int waiting;
+
+        @Override
+        public boolean supports(DataSource dataSource) {
+            return supported;
+        }
+
+        @Override
+        public ConnectionPoolStats getStats(DataSource dataSource) {
+            return new ConnectionPoolStats(1, 0, waiting, 1);
+        }
+    }
+}
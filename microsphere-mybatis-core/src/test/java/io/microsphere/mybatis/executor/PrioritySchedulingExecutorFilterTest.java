@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.executor.PrioritySchedulingExecutorFilter.WaitStatistics;
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static io.microsphere.lang.Prioritized.NORMAL_PRIORITY;
+import static io.microsphere.mybatis.executor.PrioritySchedulingExecutorFilter.DEFAULT_AGING_INTERVAL;
+import static io.microsphere.mybatis.executor.PrioritySchedulingExecutorFilter.DEFAULT_MAX_WAIT;
+import static io.microsphere.util.ArrayUtils.of;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link PrioritySchedulingExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see PrioritySchedulingExecutorFilter
+ * @since 1.0.0
+ */
+class PrioritySchedulingExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String NAMESPACE = FatherMapper.class.getName();
+
+    private static final String MS_ID_FATHER_BY_ID = NAMESPACE + ".selectById";
+
+    private static final String MS_ID_FATHER_BY_IDS = NAMESPACE + ".selectByIds";
+
+    private static final int LOW_PRIORITY = 100;
+
+    private static final int HIGH_PRIORITY = -10;
+
+    private PrioritySchedulingExecutorFilter filter;
+
+    @Test
+    void testDefaults() {
+        assertThrows(IllegalArgumentException.class, () -> new PrioritySchedulingExecutorFilter(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setAgingInterval(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setMaxWait(-1));
+        assertThrows(IllegalArgumentException.class, () -> filter.setPriority("", 1));
+        assertEquals(1, filter.getMaxConcurrency());
+        assertEquals(DEFAULT_AGING_INTERVAL, filter.getAgingInterval());
+        assertEquals(DEFAULT_MAX_WAIT, filter.getMaxWait());
+        assertNotNull(filter.getPriorityResolver());
+        assertTrue(filter.getWaitStatistics().isEmpty());
+    }
+
+    @Test
+    void testExecute() throws Throwable {
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            assertNotNull(fatherMapper.selectById(1));
+            assertEquals(1, fatherMapper.selectByIds(asList(1)).size());
+        });
+        assertEquals(0, filter.getInFlight());
+        assertEquals(0, filter.getQueued());
+        WaitStatistics statistics = filter.getWaitStatistics(LOW_PRIORITY);
+        assertEquals(LOW_PRIORITY, statistics.getPriority());
+        assertEquals(1, statistics.getCount());
+        assertEquals(0, statistics.getQueuedCount());
+        assertEquals(0, statistics.getTotalWait());
+        assertEquals(0, statistics.getMaxWait());
+        assertEquals(0, statistics.getPercentile(0.99));
+        assertNotNull(statistics.toString());
+        assertEquals(1, filter.getWaitStatistics(HIGH_PRIORITY).getCount());
+        assertNull(filter.getWaitStatistics(NORMAL_PRIORITY));
+        assertEquals(2, filter.getWaitStatistics().size());
+    }
+
+    @Test
+    void testPriorityOrder() throws Throwable {
+        List<String> order = schedule(0);
+        assertEquals(asList(MS_ID_FATHER_BY_IDS, MS_ID_FATHER_BY_ID), order);
+        assertEquals(1, filter.getWaitStatistics(LOW_PRIORITY).getQueuedCount());
+        assertEquals(1, filter.getWaitStatistics(HIGH_PRIORITY).getQueuedCount());
+        assertTrue(filter.getWaitStatistics(LOW_PRIORITY).getMaxWait() > 0);
+    }
+
+    @Test
+    void testAging() throws Throwable {
+        filter.setAgingInterval(1);
+        // The low priority one waited longer than 100 ms is promoted above the high priority one
+        List<String> order = schedule(150);
+        assertEquals(asList(MS_ID_FATHER_BY_ID, MS_ID_FATHER_BY_IDS), order);
+    }
+
+    @Test
+    void testTimeout() throws Throwable {
+        filter.setMaxWait(10);
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        filter.acquire(ms);
+        try {
+            StatementRejectedException e = assertThrows(StatementRejectedException.class, () -> filter.acquire(ms));
+            assertEquals(MS_ID_FATHER_BY_ID, e.getStatementId());
+            assertEquals(1, filter.getRejectedCount());
+            assertEquals(0, filter.getQueued());
+            assertEquals(1, filter.getInFlight());
+        } finally {
+            filter.release();
+        }
+        assertEquals(0, filter.getInFlight());
+    }
+
+    @Test
+    void testDeadline() throws Throwable {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        filter.acquire(ms);
+        try (Deadline deadline = Deadline.open(10, MILLISECONDS)) {
+            assertThrows(StatementRejectedException.class, () -> filter.acquire(ms));
+        } finally {
+            filter.release();
+        }
+        assertEquals(1, filter.getRejectedCount());
+    }
+
+    @Test
+    void testRank() {
+        assertEquals(10, filter.rank(NORMAL_PRIORITY, 10));
+        assertEquals(MILLISECONDS.toNanos(DEFAULT_AGING_INTERVAL) + 10, filter.rank(1, 10));
+        filter.setAgingInterval(Long.MAX_VALUE);
+        assertEquals(1L << 60, filter.rank(1, 0));
+        assertEquals(-(1L << 60), filter.rank(-1, 0));
+    }
+
+    /**
+     * Schedule the low priority statement and then the high priority one while the only slot is held
+     *
+     * @param interval the interval in milliseconds between the two statements being queued
+     * @return the dispatched order of the statement ids
+     */
+    private List<String> schedule(long interval) throws Throwable {
+        MappedStatement low = getMappedStatement(MS_ID_FATHER_BY_ID);
+        MappedStatement high = getMappedStatement(MS_ID_FATHER_BY_IDS);
+        List<String> order = new CopyOnWriteArrayList<>();
+        filter.acquire(low);
+        Thread lowThread = newThread(low, order);
+        Thread highThread = newThread(high, order);
+        try {
+            lowThread.start();
+            awaitQueued(1);
+            MILLISECONDS.sleep(interval);
+            highThread.start();
+            awaitQueued(2);
+        } finally {
+            filter.release();
+        }
+        lowThread.join();
+        highThread.join();
+        assertEquals(0, filter.getInFlight());
+        return order;
+    }
+
+    private Thread newThread(MappedStatement ms, List<String> order) {
+        return new Thread(() -> {
+            try {
+                filter.acquire(ms);
+                order.add(ms.getId());
+                filter.release();
+            } catch (StatementRejectedException e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+
+    private void awaitQueued(int queued) throws InterruptedException {
+        while (filter.getQueued() < queued) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        this.filter = new PrioritySchedulingExecutorFilter(1)
+                .setPriority(MS_ID_FATHER_BY_ID, LOW_PRIORITY)
+                .setPriority(MS_ID_FATHER_BY_IDS, HIGH_PRIORITY);
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(filter)));
+    }
+}
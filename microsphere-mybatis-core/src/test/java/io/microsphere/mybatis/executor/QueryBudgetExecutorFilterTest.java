@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.Test;
+
+import static io.microsphere.mybatis.executor.QueryScope.UNLIMITED;
+import static io.microsphere.util.ArrayUtils.of;
+import static org.apache.ibatis.executor.Executor.NO_RESULT_HANDLER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link QueryBudgetExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see QueryBudgetExecutorFilter
+ * @since 1.0.0
+ */
+class QueryBudgetExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    private QueryBudgetExecutorFilter filter;
+
+    @Test
+    void testDefaults() {
+        QueryBudgetExecutorFilter filter = new QueryBudgetExecutorFilter();
+        assertEquals(QueryBudgetExecutorFilter.DEFAULT_N_PLUS_ONE_THRESHOLD, filter.getNPlusOneThreshold());
+        assertEquals(UNLIMITED, filter.getMaxQueriesPerSession());
+        assertFalse(filter.isFailOnNPlusOne());
+        assertThrows(IllegalArgumentException.class, () -> filter.setNPlusOneThreshold(0));
+    }
+
+    @Test
+    void testQueryScope() throws Throwable {
+        try (QueryScope outer = QueryScope.open("outer")) {
+            try (QueryScope inner = QueryScope.open("inner")) {
+                assertSame(inner, QueryScope.current());
+                assertSame(outer, inner.getParent());
+                doInMapper(FatherMapper.class, fatherMapper -> {
+                    fatherMapper.selectById(1);
+                    fatherMapper.selectById(1);
+                });
+                assertEquals(2, inner.getQueryCount());
+                QueryScope.StatementStatistics statistics = inner.getStatementStatistics(MS_ID_FATHER_BY_ID);
+                assertNotNull(statistics);
+                assertEquals(2, statistics.getExecutions());
+                assertEquals(1, statistics.getDistinctParameters());
+            }
+            assertSame(outer, QueryScope.current());
+            assertEquals(2, outer.getQueryCount());
+            assertFalse(outer.isBudgetExceeded());
+        }
+        assertNull(QueryScope.current());
+    }
+
+    @Test
+    void testDistinctParameters() throws Throwable {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        try (QueryScope scope = QueryScope.open("distinct")) {
+            doInExecutor(executor -> {
+                executor.query(ms, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER);
+                BoundSql boundSql = ms.getBoundSql(1);
+                executor.query(ms, 1, RowBounds.DEFAULT, NO_RESULT_HANDLER,
+                        executor.createCacheKey(ms, 1, RowBounds.DEFAULT, boundSql), boundSql);
+                executor.query(ms, 2, RowBounds.DEFAULT, NO_RESULT_HANDLER);
+            });
+            QueryScope.StatementStatistics statistics = scope.getStatementStatistics(MS_ID_FATHER_BY_ID);
+            assertNotNull(statistics);
+            assertEquals(3, statistics.getExecutions());
+            assertEquals(2, statistics.getDistinctParameters());
+        }
+    }
+
+    @Test
+    void testScopeBudget() throws Throwable {
+        try (QueryScope scope = QueryScope.open("budget", 1)) {
+            doInMapper(FatherMapper.class, fatherMapper -> {
+                fatherMapper.selectById(1);
+                Throwable failure = assertThrows(Throwable.class, () -> fatherMapper.selectById(1));
+                assertSame(scope, findQueryBudgetExceededException(failure).getScope());
+            });
+            assertTrue(scope.isBudgetExceeded());
+        }
+    }
+
+    @Test
+    void testSessionBudget() throws Throwable {
+        filter.setMaxQueriesPerSession(2);
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            fatherMapper.selectById(1);
+            fatherMapper.selectById(2);
+            Throwable failure = assertThrows(Throwable.class, () -> fatherMapper.selectById(3));
+            assertEquals(3, findQueryBudgetExceededException(failure).getScope().getQueryCount());
+        });
+        // The budget of the new session is renewed
+        doInMapper(FatherMapper.class, fatherMapper -> fatherMapper.selectById(1));
+    }
+
+    @Test
+    void testFailOnNPlusOne() throws Throwable {
+        filter.setNPlusOneThreshold(2).setFailOnNPlusOne(true);
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            fatherMapper.selectById(1);
+            fatherMapper.selectById(2);
+            fatherMapper.selectById(2);
+            assertNotNull(findQueryBudgetExceededException(assertThrows(Throwable.class, () -> fatherMapper.selectById(3))));
+        });
+    }
+
+    @Test
+    void testReportNPlusOne() throws Throwable {
+        filter.setNPlusOneThreshold(1);
+        try (QueryScope scope = QueryScope.open("report")) {
+            doInMapper(FatherMapper.class, fatherMapper -> {
+                fatherMapper.selectById(1);
+                fatherMapper.selectById(2);
+                fatherMapper.selectById(3);
+            });
+            assertEquals(1, scope.getNPlusOneStatements(1).size());
+            assertEquals(0, scope.getNPlusOneStatements(3).size());
+        }
+    }
+
+    static QueryBudgetExceededException findQueryBudgetExceededException(Throwable failure) {
+        Throwable cause = failure;
+        while (cause != null) {
+            if (cause instanceof QueryBudgetExceededException) {
+                return (QueryBudgetExceededException) cause;
+            }
+            cause = cause.getCause();
+        }
+        throw new AssertionError("No QueryBudgetExceededException was found", failure);
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        this.filter = new QueryBudgetExecutorFilter();
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(filter)));
+    }
+}
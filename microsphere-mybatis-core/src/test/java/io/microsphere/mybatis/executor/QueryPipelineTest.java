@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.entity.Father;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.microsphere.collection.ListUtils.ofList;
+import static io.microsphere.util.ArrayUtils.ofArray;
+import static java.lang.System.nanoTime;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.concurrent.locks.LockSupport.parkNanos;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link QueryPipeline} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see QueryPipeline
+ * @since 1.0.0
+ */
+class QueryPipelineTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    private static final String MS_ID_FATHER_BY_IDS = "io.microsphere.mybatis.test.mapper.FatherMapper.selectByIds";
+
+    private static final String MS_ID_CHILD_ALL = "io.microsphere.mybatis.test.mapper.ChildMapper.selectAll";
+
+    private static final String MS_ID_USER_BY_ID = "io.microsphere.mybatis.test.mapper.UserMapper.getUserById";
+
+    private static final String MS_ID_ERROR_USER_BY_NAME = "io.microsphere.mybatis.test.mapper.UserMapper.getErrorUserByName";
+
+    private static final String MS_ID_SAVE_USER = "io.microsphere.mybatis.test.mapper.UserMapper.saveUser";
+
+    private final ExecutorService executorService = newFixedThreadPool(4);
+
+    private final AtomicInteger queryCount = new AtomicInteger();
+
+    private final Set<Thread> queryThreads = ConcurrentHashMap.newKeySet();
+
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+
+    private volatile String slowStatementId;
+
+    @Override
+    protected void customize(Configuration configuration) {
+        ExecutorFilter countingFilter = new ExecutorFilter() {
+            @Override
+            public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                                     CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+                queryCount.incrementAndGet();
+                queryThreads.add(currentThread());
+                await(ms);
+                return chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+            }
+
+            @Override
+            public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                                     ExecutorFilterChain chain) throws SQLException {
+                queryCount.incrementAndGet();
+                queryThreads.add(currentThread());
+                await(ms);
+                return chain.query(ms, parameter, rowBounds, resultHandler);
+            }
+        };
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(ofArray(countingFilter)));
+    }
+
+    /**
+     * Slow down the statement until it's cancelled
+     */
+    private void await(MappedStatement ms) throws SQLException {
+        StatementTracker tracker = StatementTracker.current();
+        if (!ms.getId().equals(slowStatementId) || tracker == null) {
+            return;
+        }
+        long deadline = nanoTime() + SECONDS.toNanos(5);
+        while (nanoTime() < deadline) {
+            if (tracker.isCancelled()) {
+                cancelled.countDown();
+                throw new SQLException("The statement was cancelled");
+            }
+            parkNanos(MILLISECONDS.toNanos(10));
+        }
+    }
+
+    @AfterEach
+    void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    void testExecuteSequentially() throws SQLException {
+        QueryPipeline pipeline = new QueryPipeline(getConfiguration());
+        List<List<Object>> results = addQueries(pipeline).execute();
+        assertResults(results);
+        assertEquals(1, queryThreads.size());
+        assertTrue(queryThreads.contains(currentThread()));
+    }
+
+    @Test
+    void testExecuteConcurrently() throws SQLException {
+        QueryPipeline pipeline = new QueryPipeline(getConfiguration(), executorService);
+        List<List<Object>> results = addQueries(pipeline).execute();
+        assertResults(results);
+        assertTrue(!queryThreads.contains(currentThread()));
+    }
+
+    @Test
+    void testExecuteOnFailure() {
+        QueryPipeline pipeline = new QueryPipeline(getConfiguration(), executorService)
+                .add(MS_ID_FATHER_BY_ID, 1)
+                .add(MS_ID_ERROR_USER_BY_NAME, "testing");
+        assertThrows(SQLException.class, pipeline::execute);
+
+        QueryPipeline sequentialPipeline = new QueryPipeline(getConfiguration())
+                .add(MS_ID_ERROR_USER_BY_NAME, "testing");
+        assertThrows(SQLException.class, sequentialPipeline::execute);
+    }
+
+    @Test
+    void testCancelOnFailure() throws Throwable {
+        slowStatementId = MS_ID_CHILD_ALL;
+        QueryPipeline pipeline = new QueryPipeline(getConfiguration(), executorService)
+                .add(MS_ID_CHILD_ALL, null)
+                .add(MS_ID_ERROR_USER_BY_NAME, "testing");
+        SQLException e = assertThrows(SQLException.class, pipeline::execute);
+        // The failure of the statement rather than the cancellation
+        assertFalse(e.getMessage().contains("cancelled"));
+        assertTrue(cancelled.await(5, SECONDS));
+    }
+
+    @Test
+    void testExecuteEmpty() throws SQLException {
+        assertTrue(new QueryPipeline(getConfiguration(), executorService).execute().isEmpty());
+    }
+
+    @Test
+    void testInvalidUsages() throws SQLException {
+        assertThrows(IllegalArgumentException.class, () -> new QueryPipeline(null));
+
+        QueryPipeline pipeline = new QueryPipeline(getConfiguration());
+        assertThrows(IllegalArgumentException.class, () -> pipeline.add(MS_ID_SAVE_USER, createUser()));
+        assertThrows(IllegalArgumentException.class, () -> pipeline.add(MS_ID_FATHER_BY_ID, 1, null));
+
+        pipeline.add(MS_ID_FATHER_BY_ID, 1).execute();
+        assertThrows(IllegalArgumentException.class, pipeline::execute);
+        assertThrows(IllegalArgumentException.class, () -> pipeline.add(MS_ID_FATHER_BY_ID, 1));
+    }
+
+    private QueryPipeline addQueries(QueryPipeline pipeline) {
+        pipeline.add(MS_ID_FATHER_BY_ID, 1)
+                .add(MS_ID_FATHER_BY_IDS, ofList(1, 2))
+                .add(MS_ID_CHILD_ALL, null)
+                .add(MS_ID_USER_BY_ID, -1);
+        assertEquals(4, pipeline.size());
+        return pipeline;
+    }
+
+    private void assertResults(List<List<Object>> results) {
+        assertEquals(4, results.size());
+        assertEquals(1, results.get(0).size());
+        assertEquals(1, ((Father) results.get(0).get(0)).getId());
+        assertEquals(1, results.get(1).size());
+        assertEquals(2, results.get(2).size());
+        assertTrue(results.get(3).isEmpty());
+        assertTrue(queryCount.get() >= 4);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.entity.Child;
+import io.microsphere.mybatis.test.mapper.ChildMapper;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+import static io.microsphere.mybatis.executor.QueryScopeAssertions.assertMaxExecutions;
+import static io.microsphere.mybatis.executor.QueryScopeAssertions.assertMaxQueries;
+import static io.microsphere.mybatis.executor.QueryScopeAssertions.assertNoNPlusOne;
+import static io.microsphere.mybatis.executor.QueryScopeAssertions.assertQueryCount;
+import static io.microsphere.util.ArrayUtils.of;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link QueryScopeAssertions} Test on the {@link Child} and {@link io.microsphere.mybatis.test.entity.Father} fixtures
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see QueryScopeAssertions
+ * @since 1.0.0
+ */
+class QueryScopeAssertionsTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    @BeforeEach
+    void initMoreData() throws Throwable {
+        try (Connection connection = getDataSource().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO father (id, name) VALUES (2, 'Tom Smith')");
+            statement.execute("INSERT INTO child (id, name, father_id) VALUES (3, 'Tom Smith jr', 2)");
+        }
+    }
+
+    @Test
+    void testAssertions() throws Throwable {
+        doInMapper(ChildMapper.class, childMapper -> {
+            QueryScope scope = assertMaxQueries(4, () -> childMapper.selectAll().forEach(Child::getFather));
+            assertQueryCount(scope, 4);
+            assertMaxExecutions(scope, MS_ID_FATHER_BY_ID, 3);
+            assertNoNPlusOne(scope, 2);
+
+            assertThrows(AssertionError.class, () -> assertQueryCount(scope, 1));
+            assertThrows(AssertionError.class, () -> assertMaxQueries(scope, 3));
+            assertThrows(AssertionError.class, () -> assertMaxExecutions(scope, MS_ID_FATHER_BY_ID, 2));
+            assertThrows(AssertionError.class, () -> assertNoNPlusOne(scope, 1));
+        });
+    }
+
+    @Test
+    void testAssertNoNPlusOne() throws Throwable {
+        assertNoNPlusOne(2, this::loadChildren);
+        assertThrows(AssertionError.class, () -> assertNoNPlusOne(1, this::loadChildren));
+        assertThrows(AssertionError.class, () -> assertMaxQueries(1, this::loadChildren));
+    }
+
+    private void loadChildren() throws Throwable {
+        doInMapper(ChildMapper.class, childMapper -> childMapper.selectAll().forEach(Child::getFather));
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        configuration.setLazyLoadingEnabled(true);
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(new QueryBudgetExecutorFilter())));
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.executor.RateLimitingExecutorFilter.Mode;
+import io.microsphere.mybatis.executor.RateLimitingExecutorFilter.TokenBucket;
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static io.microsphere.mybatis.executor.BulkheadExecutorFilterTest.findStatementRejectedException;
+import static io.microsphere.mybatis.executor.RateLimitingExecutorFilter.DEFAULT_MAX_WAIT;
+import static io.microsphere.mybatis.executor.RateLimitingExecutorFilter.DEFAULT_MODE;
+import static io.microsphere.mybatis.executor.RateLimitingExecutorFilter.EVICTION_THRESHOLD;
+import static io.microsphere.mybatis.executor.RateLimitingExecutorFilter.MAX_WAIT_PROPERTY_NAME;
+import static io.microsphere.mybatis.executor.RateLimitingExecutorFilter.MODE_PROPERTY_NAME;
+import static io.microsphere.mybatis.executor.RateLimitingExecutorFilter.RATES_PROPERTY_NAME_PREFIX;
+import static io.microsphere.mybatis.executor.RateLimitingExecutorFilter.TENANT_PROPERTY_PROPERTY_NAME;
+import static io.microsphere.util.ArrayUtils.of;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link RateLimitingExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RateLimitingExecutorFilter
+ * @since 1.0.0
+ */
+class RateLimitingExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String NAMESPACE = FatherMapper.class.getName();
+
+    private static final String MS_ID_FATHER_BY_ID = NAMESPACE + ".selectById";
+
+    private RateLimitingExecutorFilter filter;
+
+    @Test
+    void testSetRate() {
+        assertThrows(IllegalArgumentException.class, () -> filter.setRate("", 1));
+        assertThrows(IllegalArgumentException.class, () -> filter.setRate(NAMESPACE, 0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setRate(NAMESPACE, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setMode(null));
+        assertThrows(IllegalArgumentException.class, () -> filter.setMaxWait(-1));
+        assertEquals(DEFAULT_MODE, filter.getMode());
+        assertEquals(DEFAULT_MAX_WAIT, filter.getMaxWait());
+        assertNull(filter.getTenantProperty());
+
+        filter.setRate(NAMESPACE, 10.0);
+        assertEquals(10.0, filter.getRates().get(NAMESPACE));
+        filter.removeRate(NAMESPACE);
+        assertTrue(filter.getRates().isEmpty());
+    }
+
+    @Test
+    void testNotLimited() throws Throwable {
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            for (int i = 0; i < 5; i++) {
+                assertNotNull(fatherMapper.selectById(1));
+            }
+        });
+        assertNull(filter.getBucket(NAMESPACE, null));
+        assertEquals(0, filter.getRejectedCount());
+    }
+
+    @Test
+    void testReject() throws Throwable {
+        filter.setRate(NAMESPACE, 1, 2);
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            assertNotNull(fatherMapper.selectById(1));
+            assertNotNull(fatherMapper.selectById(1));
+            StatementRejectedException e = findStatementRejectedException(assertThrows(Throwable.class, () -> fatherMapper.selectById(1)));
+            assertEquals(MS_ID_FATHER_BY_ID, e.getStatementId());
+        });
+        TokenBucket bucket = filter.getBucket(NAMESPACE, null);
+        assertEquals(0, bucket.getAvailablePermits());
+        assertEquals(2, bucket.getBurst());
+        assertEquals(1, filter.getRejectedCount());
+        assertEquals(0, filter.getDelayedCount());
+    }
+
+    @Test
+    void testBlock() throws Throwable {
+        filter.setMode(Mode.BLOCK).setMaxWait(1000).setRate(MS_ID_FATHER_BY_ID, 20, 1);
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            long start = System.nanoTime();
+            assertNotNull(fatherMapper.selectById(1));
+            assertNotNull(fatherMapper.selectById(1));
+            assertTrue(System.nanoTime() - start >= 40_000_000L);
+        });
+        assertEquals(1, filter.getDelayedCount());
+        assertEquals(0, filter.getRejectedCount());
+        assertNotNull(filter.getBucket(MS_ID_FATHER_BY_ID, null));
+    }
+
+    @Test
+    void testTenant() {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        Map<String, Object> parameter = new HashMap<>();
+        parameter.put("tenantId", "t1");
+        assertNull(filter.resolveTenant(ms, parameter));
+
+        filter.setTenantProperty("tenantId");
+        assertEquals("t1", filter.resolveTenant(ms, parameter));
+        assertNull(filter.resolveTenant(ms, 1));
+        assertNull(filter.resolveTenant(ms, null));
+        assertNull(filter.resolveTenant(ms, new HashMap<>()));
+
+        double[] rate = {1, 1};
+        TokenBucket t1 = filter.resolveBucket(NAMESPACE, "t1", rate);
+        TokenBucket t2 = filter.resolveBucket(NAMESPACE, "t2", rate);
+        assertNotSame(t1, t2);
+        assertSame(t1, filter.getBucket(NAMESPACE, "t1"));
+        assertTrue(t1.reserve(0) >= 0);
+        // The bucket of t1 is exhausted, but t2 is not
+        assertTrue(t1.reserve(0) < 0);
+        assertTrue(t2.reserve(0) >= 0);
+        assertSame(t1, filter.resolveBucket(NAMESPACE, "t1", new double[]{1, 1}));
+        // The rate was changed
+        assertNotSame(t1, filter.resolveBucket(NAMESPACE, "t1", new double[]{2, 1}));
+    }
+
+    @Test
+    void testEvictIdleBuckets() {
+        double[] rate = {1, 1};
+        TokenBucket t1 = filter.resolveBucket(NAMESPACE, "t1", rate);
+        filter.resolveBucket(NAMESPACE, "t2", rate);
+        assertTrue(t1.reserve(0) >= 0);
+        // The bucket of t2 is full
+        assertEquals(1, filter.evictIdleBuckets());
+        assertSame(t1, filter.getBucket(NAMESPACE, "t1"));
+        assertNull(filter.getBucket(NAMESPACE, "t2"));
+
+        // The idle buckets are evicted once the threshold is reached
+        for (int i = 0; i < EVICTION_THRESHOLD * 2; i++) {
+            filter.resolveBucket(NAMESPACE, "tenant-" + i, rate);
+        }
+        assertTrue(filter.getBucketCount() < EVICTION_THRESHOLD);
+        assertSame(t1, filter.getBucket(NAMESPACE, "t1"));
+    }
+
+    @Test
+    void testConfigure() {
+        Properties properties = new Properties();
+        properties.setProperty(MODE_PROPERTY_NAME, "block");
+        properties.setProperty(MAX_WAIT_PROPERTY_NAME, "200");
+        properties.setProperty(TENANT_PROPERTY_PROPERTY_NAME, "tenantId");
+        properties.setProperty(RATES_PROPERTY_NAME_PREFIX + NAMESPACE, "5, 10");
+        properties.setProperty(RATES_PROPERTY_NAME_PREFIX + MS_ID_FATHER_BY_ID, "2");
+        filter.configure(properties);
+        assertEquals(Mode.BLOCK, filter.getMode());
+        assertEquals(200, filter.getMaxWait());
+        assertEquals("tenantId", filter.getTenantProperty());
+        assertEquals(5.0, filter.getRates().get(NAMESPACE));
+        assertEquals(2.0, filter.getRates().get(MS_ID_FATHER_BY_ID));
+
+        filter.resolveBucket(NAMESPACE, "t1", new double[]{5, 10});
+        properties.remove(RATES_PROPERTY_NAME_PREFIX + NAMESPACE);
+        properties.remove(MODE_PROPERTY_NAME);
+        filter.configure(properties);
+        assertEquals(DEFAULT_MODE, filter.getMode());
+        assertNull(filter.getRates().get(NAMESPACE));
+        // The bucket of removed rate was removed
+        assertNull(filter.getBucket(NAMESPACE, "t1"));
+
+        properties.setProperty(RATES_PROPERTY_NAME_PREFIX + NAMESPACE, "0");
+        assertThrows(IllegalArgumentException.class, () -> filter.configure(properties));
+        assertThrows(IllegalArgumentException.class, () -> filter.configure(null));
+    }
+
+    @Test
+    void testConfigureOverProgrammatic() {
+        filter.setMode(Mode.BLOCK).setMaxWait(300).setTenantProperty("tenantId").setRate(NAMESPACE, 5);
+        Properties properties = new Properties();
+        properties.setProperty(RATES_PROPERTY_NAME_PREFIX + MS_ID_FATHER_BY_ID, "2");
+        filter.configure(properties);
+        // The programmatic options and rates are kept
+        assertEquals(Mode.BLOCK, filter.getMode());
+        assertEquals(300, filter.getMaxWait());
+        assertEquals("tenantId", filter.getTenantProperty());
+        assertEquals(5.0, filter.getRates().get(NAMESPACE));
+        assertEquals(2.0, filter.getRates().get(MS_ID_FATHER_BY_ID));
+
+        // The configured ones take precedence
+        properties.setProperty(MODE_PROPERTY_NAME, "reject");
+        properties.setProperty(RATES_PROPERTY_NAME_PREFIX + NAMESPACE, "10");
+        filter.configure(properties);
+        assertEquals(Mode.REJECT, filter.getMode());
+        assertEquals(10.0, filter.getRates().get(NAMESPACE));
+
+        // The programmatic ones are restored once the configured ones are removed
+        properties.remove(RATES_PROPERTY_NAME_PREFIX + NAMESPACE);
+        properties.remove(MODE_PROPERTY_NAME);
+        filter.configure(properties);
+        assertEquals(Mode.BLOCK, filter.getMode());
+        assertEquals(5.0, filter.getRates().get(NAMESPACE));
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        this.filter = new RateLimitingExecutorFilter();
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(filter)));
+    }
+}
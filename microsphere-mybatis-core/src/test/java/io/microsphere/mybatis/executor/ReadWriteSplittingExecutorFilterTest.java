@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.lang.function.ThrowableConsumer;
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import io.microsphere.mybatis.test.mapper.UserMapper;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.microsphere.mybatis.util.MyBatisUtils.buildSqlSessionFactory;
+import static io.microsphere.util.ArrayUtils.of;
+import static io.microsphere.util.ArrayUtils.ofArray;
+import static io.microsphere.util.ClassLoaderUtils.getDefaultClassLoader;
+import static java.lang.reflect.Proxy.newProxyInstance;
+import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link ReadWriteSplittingExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ReadWriteSplittingExecutorFilter
+ * @since 1.0.0
+ */
+class ReadWriteSplittingExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    private final AtomicInteger primaryConnections = new AtomicInteger();
+
+    private final AtomicInteger replica1Connections = new AtomicInteger();
+
+    private final AtomicInteger replica2Connections = new AtomicInteger();
+
+    private DataSource replica1;
+
+    private DataSource replica2;
+
+    private ReadWriteSplittingExecutorFilter filter;
+
+    @Override
+    protected void customize(Configuration configuration) {
+        Environment environment = configuration.getEnvironment();
+        DataSource dataSource = environment.getDataSource();
+        configuration.setEnvironment(new Environment(environment.getId(), environment.getTransactionFactory(),
+                newCountingDataSource(dataSource, primaryConnections)));
+        this.replica1 = newCountingDataSource(dataSource, replica1Connections);
+        this.replica2 = newCountingDataSource(dataSource, replica2Connections);
+        this.filter = new ReadWriteSplittingExecutorFilter(replica1, replica2);
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(filter)));
+    }
+
+    @AfterEach
+    void closeFilter() {
+        filter.close();
+    }
+
+    @Test
+    void testReadFromReplicas() throws Throwable {
+        // Reset the connections of the initial script
+        primaryConnections.set(0);
+        doInAutoCommitMapper(fatherMapper -> {
+            assertEquals("John Smith", fatherMapper.selectById(1).getName());
+            assertEquals("John Smith", fatherMapper.selectById(1).getName());
+        });
+        assertEquals(2, filter.getReplicaReadCount());
+        assertEquals(0, filter.getPrimaryReadCount());
+        // No in-flight query, selected in turn
+        assertEquals(1, replica1Connections.get());
+        assertEquals(1, replica2Connections.get());
+        // The auto-commit mode is determined without checking out the primary connection
+        assertEquals(0, primaryConnections.get());
+    }
+
+    @Test
+    void testReadInTransaction() throws Throwable {
+        // The session is not auto-commit
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            assertEquals("John Smith", fatherMapper.selectById(1).getName());
+        });
+        assertEquals(0, filter.getReplicaReadCount());
+        assertEquals(1, filter.getPrimaryReadCount());
+        assertEquals(0, replica1Connections.get() + replica2Connections.get());
+    }
+
+    @Test
+    void testStickyPrimaryAfterWrite() throws Throwable {
+        try (SqlSession sqlSession = openAutoCommitSession()) {
+            sqlSession.getMapper(UserMapper.class).saveUser(createUser());
+            assertEquals("John Smith", sqlSession.getMapper(FatherMapper.class).selectById(1).getName());
+        }
+        assertEquals(0, filter.getReplicaReadCount());
+        assertEquals(1, filter.getPrimaryReadCount());
+
+        // The new session
+        doInAutoCommitMapper(fatherMapper -> fatherMapper.selectById(1));
+        assertEquals(1, filter.getReplicaReadCount());
+    }
+
+    @Test
+    void testPrimaryStatementIds() throws Throwable {
+        filter.addPrimaryStatementIds(MS_ID_FATHER_BY_ID);
+        doInAutoCommitMapper(fatherMapper -> fatherMapper.selectById(1));
+        assertEquals(0, filter.getReplicaReadCount());
+        assertEquals(1, filter.getPrimaryReadCount());
+    }
+
+    @Test
+    void testReplicaLag() throws Throwable {
+        // No ReplicaLagProbe
+        filter.checkReplicas();
+        assertEquals(2, filter.getAvailableReplicaCount());
+
+        filter.setReplicaLagProbe(replica -> replica == replica1 ? 5000 : 0, 1000);
+        filter.checkReplicas();
+        assertEquals(1, filter.getAvailableReplicaCount());
+        doInAutoCommitMapper(fatherMapper -> {
+            fatherMapper.selectById(1);
+            fatherMapper.selectById(1);
+        });
+        assertEquals(0, replica1Connections.get());
+        assertEquals(2, replica2Connections.get());
+
+        filter.setReplicaLagProbe(replica -> {
+            throw new SQLException("Replication stopped");
+        }, 1000);
+        filter.checkReplicas();
+        assertEquals(0, filter.getAvailableReplicaCount());
+        doInAutoCommitMapper(fatherMapper -> fatherMapper.selectById(1));
+        assertEquals(1, filter.getPrimaryReadCount());
+
+        filter.setReplicaLagProbe(replica -> 0, 1000);
+        filter.checkReplicas();
+        assertEquals(2, filter.getAvailableReplicaCount());
+    }
+
+    @Test
+    void testStartReplicaLagCheck() {
+        assertThrows(IllegalArgumentException.class, () -> filter.startReplicaLagCheck(1000));
+        filter.setReplicaLagProbe(replica -> 0, 1000).startReplicaLagCheck(1000);
+        assertThrows(IllegalArgumentException.class, () -> filter.startReplicaLagCheck(1000));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ReadWriteSplittingExecutorFilter(emptyList()));
+        assertThrows(IllegalArgumentException.class, () -> filter.setReplicaLagProbe(null, 0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setReplicaLagProbe(replica -> 0, -1));
+        assertThrows(IllegalArgumentException.class, () -> filter.startReplicaLagCheck(0));
+    }
+
+    private void doInAutoCommitMapper(ThrowableConsumer<FatherMapper> consumer) throws Throwable {
+        try (SqlSession sqlSession = openAutoCommitSession()) {
+            consumer.accept(sqlSession.getMapper(FatherMapper.class));
+        }
+    }
+
+    private SqlSession openAutoCommitSession() {
+        return buildSqlSessionFactory(getConfiguration()).openSession(true);
+    }
+
+    static DataSource newCountingDataSource(DataSource dataSource, AtomicInteger connections) {
+        return (DataSource) newProxyInstance(getDefaultClassLoader(), ofArray(DataSource.class), (proxy, method, args) -> {
+            if ("getConnection".equals(method.getName())) {
+                connections.incrementAndGet();
+            }
+            return method.invoke(dataSource, args);
+        });
+    }
+}
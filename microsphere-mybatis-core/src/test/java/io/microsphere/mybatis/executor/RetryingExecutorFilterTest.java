@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.executor.RetryingExecutorFilter.RetryBudget;
+import io.microsphere.mybatis.executor.UnitOfWorkRollbackException.ExecutedStatement;
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.session.SharedConfigurationSqlSessionFactory;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.entity.User;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import io.microsphere.mybatis.test.mapper.UserMapper;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.microsphere.mybatis.executor.RetryingExecutorFilter.DEFAULT_INITIAL_BACKOFF;
+import static io.microsphere.mybatis.executor.RetryingExecutorFilter.DEFAULT_MAX_ATTEMPTS;
+import static io.microsphere.mybatis.executor.RetryingExecutorFilter.DEFAULT_MAX_BACKOFF;
+import static io.microsphere.mybatis.executor.RetryingExecutorFilter.DEFAULT_MAX_RECORDED_STATEMENTS;
+import static io.microsphere.mybatis.executor.RetryingExecutorFilter.FailureType.CONNECTION;
+import static io.microsphere.mybatis.executor.RetryingExecutorFilter.FailureType.TRANSACTION_ROLLBACK;
+import static io.microsphere.util.ArrayUtils.of;
+import static io.microsphere.util.ArrayUtils.ofArray;
+import static io.microsphere.util.ClassLoaderUtils.getDefaultClassLoader;
+import static java.lang.reflect.Proxy.newProxyInstance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link RetryingExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RetryingExecutorFilter
+ * @since 1.0.0
+ */
+class RetryingExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    private static final String MS_ID_SAVE_USER = "io.microsphere.mybatis.test.mapper.UserMapper.saveUser";
+
+    private RetryingExecutorFilter filter;
+
+    private FlakyExecutorFilter flakyFilter;
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Test
+    void testDefaults() {
+        RetryingExecutorFilter filter = new RetryingExecutorFilter();
+        assertEquals(DEFAULT_MAX_ATTEMPTS, filter.getMaxAttempts());
+        assertEquals(DEFAULT_INITIAL_BACKOFF, filter.getInitialBackoff());
+        assertEquals(DEFAULT_MAX_BACKOFF, filter.getMaxBackoff());
+        assertEquals(DEFAULT_MAX_RECORDED_STATEMENTS, filter.getMaxRecordedStatements());
+        assertEquals(0, filter.getRetryCount());
+        assertEquals(0, filter.getRecoveredCount());
+        assertEquals(0, filter.getExhaustedCount());
+        assertEquals(0, filter.getBudgetExhaustedCount());
+
+        assertThrows(IllegalArgumentException.class, () -> filter.setMaxAttempts(0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setBackoff(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> filter.setBackoff(2, 1));
+        assertThrows(IllegalArgumentException.class, () -> filter.setRetryBudget(-0.1, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> filter.setRetryBudget(0.1, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> filter.setMaxRecordedStatements(-1));
+    }
+
+    @Test
+    void testClassify() {
+        assertEquals(TRANSACTION_ROLLBACK, filter.classify(new SQLException("deadlock", "40001")));
+        assertEquals(TRANSACTION_ROLLBACK, filter.classify(new RuntimeException(new SQLException("deadlock", "40P01"))));
+        assertEquals(CONNECTION, filter.classify(new SQLException("reset", "08S01")));
+        assertNull(filter.classify(new SQLException("duplicate", "23505")));
+        assertNull(filter.classify(new SQLException("unknown")));
+        assertNull(filter.classify(new StatementRejectedException("rejected", MS_ID_FATHER_BY_ID)));
+    }
+
+    @Test
+    void testFork() throws Throwable {
+        doInExecutor(executor -> {
+            ExecutorFilterChain chain = new ExecutorFilterChain(executor, null, new LoggingExecutorFilter());
+            ExecutorFilterChain forked = chain.fork();
+            assertNotSame(chain, forked);
+            assertSame(executor, forked.getExecutor());
+            assertEquals(chain.getPosition(), forked.getPosition());
+            assertEquals(chain.getSize(), forked.getSize());
+            assertThrows(IllegalArgumentException.class, () -> chain.fork(null));
+        });
+    }
+
+    @Test
+    void testRetryOnDeadlock() throws Throwable {
+        filter.setBackoff(0, 0);
+        flakyFilter.fail(MS_ID_FATHER_BY_ID, new SQLException("deadlock", "40001"), 2);
+        try (SqlSession sqlSession = this.sqlSessionFactory.openSession(true)) {
+            assertNotNull(sqlSession.getMapper(FatherMapper.class).selectById(1));
+        }
+        assertEquals(3, flakyFilter.invocations.get());
+        assertEquals(2, filter.getRetryCount());
+        assertEquals(1, filter.getRecoveredCount());
+    }
+
+    @Test
+    void testRetryOnConnectionFailure() throws Throwable {
+        filter.setBackoff(0, 0);
+        flakyFilter.fail(MS_ID_FATHER_BY_ID, new SQLException("reset", "08S01"), 1);
+        try (SqlSession sqlSession = this.sqlSessionFactory.openSession(true)) {
+            assertNotNull(sqlSession.getMapper(FatherMapper.class).selectById(1));
+        }
+        assertEquals(2, flakyFilter.invocations.get());
+        assertEquals(1, filter.getRecoveredCount());
+    }
+
+    @Test
+    void testRetryOnBrokenConnection() throws Throwable {
+        filter.setBackoff(0, 0);
+        flakyFilter.fail(MS_ID_FATHER_BY_ID, new SQLException("reset", "08S01"), 1);
+        flakyFilter.breakConnection = true;
+        try (SqlSession sqlSession = this.sqlSessionFactory.openSession(true)) {
+            assertNotNull(sqlSession.getMapper(FatherMapper.class).selectById(1));
+        }
+        assertEquals(2, flakyFilter.invocations.get());
+        assertEquals(1, filter.getRecoveredCount());
+    }
+
+    @Test
+    void testNoRetryOnOtherDataSource() throws Throwable {
+        filter.setBackoff(0, 0);
+        flakyFilter.fail(MS_ID_FATHER_BY_ID, new SQLException("reset", "08S01"), 1);
+        DataSource dataSource = (DataSource) newProxyInstance(getDefaultClassLoader(), ofArray(DataSource.class),
+                (proxy, method, args) -> method.invoke(getDataSource(), args));
+        SqlSessionFactory sqlSessionFactory = new SharedConfigurationSqlSessionFactory(getConfiguration(),
+                new Environment("other", new JdbcTransactionFactory(), dataSource));
+        try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+            FatherMapper fatherMapper = sqlSession.getMapper(FatherMapper.class);
+            assertThrows(Throwable.class, () -> fatherMapper.selectById(1));
+        }
+        assertEquals(1, flakyFilter.invocations.get());
+        assertEquals(0, filter.getRetryCount());
+    }
+
+    @Test
+    void testExhausted() throws Throwable {
+        filter.setBackoff(0, 1).setMaxAttempts(2);
+        flakyFilter.fail(MS_ID_FATHER_BY_ID, new SQLException("deadlock", "40001"), 5);
+        try (SqlSession sqlSession = this.sqlSessionFactory.openSession(true)) {
+            FatherMapper fatherMapper = sqlSession.getMapper(FatherMapper.class);
+            assertThrows(Throwable.class, () -> fatherMapper.selectById(1));
+        }
+        assertEquals(2, flakyFilter.invocations.get());
+        assertEquals(1, filter.getExhaustedCount());
+        assertEquals(0, filter.getRecoveredCount());
+    }
+
+    @Test
+    void testRetryBudget() throws Throwable {
+        filter.setBackoff(0, 0).setRetryBudget(0, 0, 60_000);
+        flakyFilter.fail(MS_ID_FATHER_BY_ID, new SQLException("deadlock", "40001"), 1);
+        try (SqlSession sqlSession = this.sqlSessionFactory.openSession(true)) {
+            FatherMapper fatherMapper = sqlSession.getMapper(FatherMapper.class);
+            assertThrows(Throwable.class, () -> fatherMapper.selectById(1));
+        }
+        assertEquals(1, filter.getBudgetExhaustedCount());
+
+        RetryBudget retryBudget = new RetryBudget(0.5, 1, 60_000);
+        assertTrue(retryBudget.tryRetry());
+        assertFalse(retryBudget.tryRetry());
+        retryBudget.onRequest();
+        retryBudget.onRequest();
+        assertTrue(retryBudget.tryRetry());
+        assertFalse(retryBudget.tryRetry());
+    }
+
+    @Test
+    void testIdempotentUpdate() throws Throwable {
+        filter.setBackoff(0, 0);
+        flakyFilter.fail(MS_ID_SAVE_USER, new SQLException("deadlock", "40001"), 1);
+        try (SqlSession sqlSession = this.sqlSessionFactory.openSession(true)) {
+            UserMapper userMapper = sqlSession.getMapper(UserMapper.class);
+            assertThrows(Throwable.class, () -> userMapper.saveUser(createUser()));
+
+            filter.addIdempotentStatementIds(MS_ID_SAVE_USER);
+            flakyFilter.fail(MS_ID_SAVE_USER, new SQLException("deadlock", "40001"), 1);
+            User user = createUser();
+            userMapper.saveUser(user);
+            assertNotNull(userMapper.getUserById(user.getId()));
+        }
+        assertEquals(1, filter.getRecoveredCount());
+    }
+
+    @Test
+    void testUnitOfWorkRollback() throws Throwable {
+        doInSqlSession(sqlSession -> {
+            User user = createUser();
+            assertNotNull(sqlSession.getMapper(FatherMapper.class).selectById(1));
+            flakyFilter.fail(MS_ID_SAVE_USER, new SQLException("deadlock", "40001"), 1);
+            Throwable failure = assertThrows(Throwable.class, () -> sqlSession.getMapper(UserMapper.class).saveUser(user));
+            UnitOfWorkRollbackException e = findUnitOfWorkRollbackException(failure);
+            assertEquals("40001", e.getSQLState());
+            assertFalse(e.isTruncated());
+            List<ExecutedStatement> statements = e.getStatements();
+            assertEquals(2, statements.size());
+            assertEquals(MS_ID_FATHER_BY_ID, statements.get(0).getStatementId());
+            assertEquals(1, statements.get(0).getParameter());
+            assertEquals(MS_ID_SAVE_USER, statements.get(1).getStatementId());
+            assertSame(user, statements.get(1).getParameter());
+        });
+        assertEquals(0, filter.getRetryCount());
+    }
+
+    @Test
+    void testNoUnitOfWorkInAutoCommit() throws Throwable {
+        try (SqlSession sqlSession = this.sqlSessionFactory.openSession(true)) {
+            sqlSession.getMapper(UserMapper.class).saveUser(createUser());
+            assertNotNull(sqlSession.getMapper(FatherMapper.class).selectById(1));
+            assertEquals(0, filter.getUnitOfWorkCount());
+        }
+        doInSqlSession(sqlSession -> {
+            assertNotNull(sqlSession.getMapper(FatherMapper.class).selectById(1));
+            assertEquals(1, filter.getUnitOfWorkCount());
+        });
+        assertEquals(0, filter.getUnitOfWorkCount());
+    }
+
+    @Test
+    void testCommitRollback() throws Throwable {
+        filter.setMaxRecordedStatements(1);
+        doInSqlSession(sqlSession -> {
+            UserMapper userMapper = sqlSession.getMapper(UserMapper.class);
+            userMapper.saveUser(createUser());
+            userMapper.saveUser(createUser());
+            flakyFilter.commitFailure = new SQLException("serialization failure", "40001");
+            UnitOfWorkRollbackException e = findUnitOfWorkRollbackException(assertThrows(Throwable.class, sqlSession::commit));
+            assertTrue(e.isTruncated());
+            assertEquals(1, e.getStatements().size());
+            assertEquals(MS_ID_SAVE_USER, e.getStatements().get(0).getStatementId());
+
+            // The unit of work was cleared
+            flakyFilter.commitFailure = null;
+            userMapper.saveUser(createUser());
+            flakyFilter.commitFailure = new SQLException("serialization failure", "40001");
+            e = findUnitOfWorkRollbackException(assertThrows(Throwable.class, sqlSession::commit));
+            assertFalse(e.isTruncated());
+            flakyFilter.commitFailure = null;
+        });
+    }
+
+    static UnitOfWorkRollbackException findUnitOfWorkRollbackException(Throwable failure) {
+        Throwable cause = failure;
+        while (cause != null) {
+            if (cause instanceof UnitOfWorkRollbackException) {
+                return (UnitOfWorkRollbackException) cause;
+            }
+            cause = cause.getCause();
+        }
+        throw new AssertionError("No UnitOfWorkRollbackException was found", failure);
+    }
+
+    @Override
+    protected void customize(SqlSessionFactory sqlSessionFactory) {
+        this.sqlSessionFactory = sqlSessionFactory;
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        this.filter = new RetryingExecutorFilter();
+        this.flakyFilter = new FlakyExecutorFilter();
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(of(filter, flakyFilter)));
+    }
+
+    /**
+     * {@link ExecutorFilter} throws the {@link SQLException} the specified times when the statement is executed
+     */
+    static class FlakyExecutorFilter implements ExecutorFilter {
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        private volatile String statementId;
+
+        private volatile SQLException failure;
+
+        private volatile SQLException commitFailure;
+
+        private volatile boolean breakConnection;
+
+        void fail(String statementId, SQLException failure, int times) {
+            this.statementId = statementId;
+            this.failure = failure;
+            this.failures.set(times);
+            this.invocations.set(0);
+        }
+
+        @Override
+        public int update(MappedStatement ms, Object parameter, ExecutorFilterChain chain) throws SQLException {
+            check(ms, chain);
+            return chain.update(ms, parameter);
+        }
+
+        @Override
+        public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                                 CacheKey cacheKey, BoundSql boundSql, ExecutorFilterChain chain) throws SQLException {
+            check(ms, chain);
+            return chain.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+        }
+
+        @Override
+        public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+                                 ExecutorFilterChain chain) throws SQLException {
+            check(ms, chain);
+            return chain.query(ms, parameter, rowBounds, resultHandler);
+        }
+
+        @Override
+        public void commit(boolean required, ExecutorFilterChain chain) throws SQLException {
+            SQLException commitFailure = this.commitFailure;
+            if (commitFailure != null) {
+                throw commitFailure;
+            }
+            chain.commit(required);
+        }
+
+        private void check(MappedStatement ms, ExecutorFilterChain chain) throws SQLException {
+            if (ms.getId().equals(this.statementId)) {
+                this.invocations.incrementAndGet();
+                if (this.failures.getAndDecrement() > 0) {
+                    if (this.breakConnection) {
+                        chain.getExecutor().getTransaction().getConnection().close();
+                    }
+                    throw this.failure;
+                }
+            }
+        }
+    }
+}
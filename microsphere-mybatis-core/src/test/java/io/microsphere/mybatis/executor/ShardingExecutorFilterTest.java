@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.entity.Child;
+import io.microsphere.mybatis.test.entity.User;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import io.microsphere.mybatis.test.mapper.UserMapper;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.microsphere.collection.ListUtils.ofList;
+import static io.microsphere.mybatis.executor.ReadWriteSplittingExecutorFilterTest.newCountingDataSource;
+import static io.microsphere.util.ArrayUtils.ofArray;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link ShardingExecutorFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ShardingExecutorFilter
+ * @since 1.0.0
+ */
+class ShardingExecutorFilterTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    private static final String MS_ID_CHILD_ALL = "io.microsphere.mybatis.test.mapper.ChildMapper.selectAll";
+
+    private static final String MS_ID_SAVE_USER = "io.microsphere.mybatis.test.mapper.UserMapper.saveUser";
+
+    private static final String MS_ID_USER_BY_ID = "io.microsphere.mybatis.test.mapper.UserMapper.getUserById";
+
+    private static final String MS_ID_USER_BY_NAME = "io.microsphere.mybatis.test.mapper.UserMapper.getUserByName";
+
+    private final AtomicInteger shard0Connections = new AtomicInteger();
+
+    private final AtomicInteger shard1Connections = new AtomicInteger();
+
+    private final ExecutorService executorService = newFixedThreadPool(2);
+
+    private ShardingExecutorFilter filter;
+
+    @Override
+    protected void customize(Configuration configuration) {
+        DataSource dataSource = configuration.getEnvironment().getDataSource();
+        // Both shards are backed by the same database, the scattered query gets the duplicated rows
+        List<DataSource> shards = ofList(newCountingDataSource(dataSource, shard0Connections),
+                newCountingDataSource(dataSource, shard1Connections));
+        this.filter = new ShardingExecutorFilter(shards, executorService)
+                .addShardKey(MS_ID_FATHER_BY_ID, "id")
+                .addShardKey(MS_ID_CHILD_ALL, "id")
+                .setShardKeys(Map.of(MS_ID_SAVE_USER, "id", MS_ID_USER_BY_ID, "id"))
+                .setOrdering(MS_ID_CHILD_ALL, Comparator.comparing(Child::getId));
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(ofArray(filter)));
+    }
+
+    @AfterEach
+    void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    void testRoute() throws Throwable {
+        doInMapper(FatherMapper.class, fatherMapper -> {
+            // 1 % 2 = 1
+            assertEquals("John Smith", fatherMapper.selectById(1).getName());
+            // 2 % 2 = 0
+            assertNull(fatherMapper.selectById(2));
+        });
+        assertEquals(2, filter.getRoutedCount());
+        assertEquals(0, filter.getScatteredCount());
+        assertEquals(1, shard0Connections.get());
+        assertEquals(1, shard1Connections.get());
+    }
+
+    @Test
+    void testRouteUpdate() throws Throwable {
+        User user = new User(3, "User - 3");
+        doInSqlSession(sqlSession -> {
+            UserMapper userMapper = sqlSession.getMapper(UserMapper.class);
+            userMapper.saveUser(user);
+            // Read its own write on the shard
+            assertEquals(user.getName(), userMapper.getUserById(3).getName());
+            sqlSession.commit();
+        });
+        assertEquals(2, filter.getRoutedCount());
+        assertEquals(0, shard0Connections.get());
+        assertEquals(1, shard1Connections.get());
+    }
+
+    @Test
+    void testScatterGather() throws Throwable {
+        doInSqlSession(sqlSession -> {
+            List<Child> children = sqlSession.selectList(MS_ID_CHILD_ALL);
+            assertEquals(4, children.size());
+            assertEquals(ofList(1, 1, 2, 2), ids(children));
+
+            children = sqlSession.selectList(MS_ID_CHILD_ALL, null, new RowBounds(1, 2));
+            assertEquals(ofList(1, 2), ids(children));
+
+            children = sqlSession.selectList(MS_ID_CHILD_ALL, null, new RowBounds(3, RowBounds.NO_ROW_LIMIT));
+            assertEquals(ofList(2), ids(children));
+
+            List<Child> handled = new ArrayList<>();
+            sqlSession.select(MS_ID_CHILD_ALL, context -> handled.add((Child) context.getResultObject()));
+            assertEquals(4, handled.size());
+        });
+        assertEquals(4, filter.getScatteredCount());
+        assertEquals(1, shard0Connections.get());
+        assertEquals(1, shard1Connections.get());
+    }
+
+    @Test
+    void testBoundedScatterWithoutOrdering() throws Throwable {
+        // The null parameter has no shard key, thus the query is scattered
+        filter.addShardKey(MS_ID_USER_BY_NAME, "id");
+        assertThrows(PersistenceException.class, () -> doInSqlSession(sqlSession ->
+                sqlSession.selectList(MS_ID_USER_BY_NAME, null, new RowBounds(0, 1))));
+        assertThrows(PersistenceException.class, () -> doInSqlSession(sqlSession ->
+                sqlSession.selectList(MS_ID_USER_BY_NAME, null, new RowBounds(1, RowBounds.NO_ROW_LIMIT))));
+        assertEquals(0, filter.getScatteredCount());
+
+        // The unbounded scatter query is allowed without the ordering
+        doInSqlSession(sqlSession -> sqlSession.selectList(MS_ID_USER_BY_NAME));
+        assertEquals(1, filter.getScatteredCount());
+    }
+
+    @Test
+    void testCursorWithoutShardKey() {
+        assertThrows(PersistenceException.class, () -> doInSqlSession(sqlSession -> sqlSession.selectCursor(MS_ID_CHILD_ALL)));
+    }
+
+    @Test
+    void testGetShard() {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        assertEquals(1, filter.getShard(ms, 1));
+        assertEquals(1, filter.getShard(ms, new User(3, "")));
+        assertEquals(-1, filter.getShard(ms, null));
+        assertEquals(-1, filter.getShard(ms, Map.of("name", "test")));
+        assertEquals(-1, filter.getShard(getMappedStatement(MS_ID_USER_BY_NAME), 1));
+
+        filter.setShardingAlgorithm((shardKey, shardCount) -> shardCount);
+        assertThrows(IllegalArgumentException.class, () -> filter.getShard(ms, 1));
+    }
+
+    @Test
+    void testMerge() {
+        assertEquals(ofList(1, 3, 2, 4), ShardingExecutorFilter.merge(ofList(ofList(1, 3), emptyList(), ofList(2, 4)), null));
+        assertEquals(ofList(1, 2, 3, 4), ShardingExecutorFilter.merge(ofList(ofList(1, 3), ofList(2, 4)),
+                (a, b) -> ((Integer) a).compareTo((Integer) b)));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardingExecutorFilter(emptyList(), null));
+        assertThrows(IllegalArgumentException.class, () -> filter.addShardKey("", "id"));
+        assertThrows(IllegalArgumentException.class, () -> filter.addShardKey(MS_ID_FATHER_BY_ID, " "));
+        assertThrows(IllegalArgumentException.class, () -> filter.setShardKeys(null));
+        assertThrows(IllegalArgumentException.class, () -> filter.setOrdering(MS_ID_FATHER_BY_ID, null));
+        assertThrows(IllegalArgumentException.class, () -> filter.setShardingAlgorithm(null));
+    }
+
+    private static List<Integer> ids(List<Child> children) {
+        List<Integer> ids = new ArrayList<>(children.size());
+        for (Child child : children) {
+            ids.add(child.getId());
+        }
+        return ids;
+    }
+}
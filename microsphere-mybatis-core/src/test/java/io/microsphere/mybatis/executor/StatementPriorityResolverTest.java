@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static io.microsphere.lang.Prioritized.NORMAL_PRIORITY;
+import static io.microsphere.mybatis.executor.StatementPriorityResolver.getNamespace;
+import static io.microsphere.mybatis.executor.StatementPriorityResolver.resolveAnnotatedPriority;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link StatementPriorityResolver} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see StatementPriorityResolver
+ * @since 1.0.0
+ */
+class StatementPriorityResolverTest extends AbstractMyBatisTest {
+
+    private static final String NAMESPACE = FatherMapper.class.getName();
+
+    private static final String MS_ID_FATHER_BY_ID = NAMESPACE + ".selectById";
+
+    @Test
+    void testResolve() {
+        StatementPriorityResolver resolver = new StatementPriorityResolver();
+        assertThrows(IllegalArgumentException.class, () -> resolver.setPriority("", 1));
+        assertEquals(NORMAL_PRIORITY, resolver.resolve(getMappedStatement(MS_ID_FATHER_BY_ID)));
+        resolver.setPriority(NAMESPACE, 10);
+        assertEquals(10, resolver.resolve(getMappedStatement(MS_ID_FATHER_BY_ID)));
+        assertEquals(10, resolver.resolve(getMappedStatement(NAMESPACE + ".selectByIds")));
+        resolver.setPriority(MS_ID_FATHER_BY_ID, -10);
+        assertEquals(-10, resolver.resolve(getMappedStatement(MS_ID_FATHER_BY_ID)));
+    }
+
+    @Test
+    void testResolveAnnotatedPriority() {
+        String namespace = ReportMapper.class.getName();
+        assertEquals(100, resolveAnnotatedPriority(namespace + ".selectReports"));
+        assertEquals(NORMAL_PRIORITY, resolveAnnotatedPriority(namespace + ".selectReport"));
+        assertEquals(100, resolveAnnotatedPriority(namespace + ".selectReport!selectKey"));
+        assertEquals(NORMAL_PRIORITY, resolveAnnotatedPriority(MS_ID_FATHER_BY_ID));
+        assertEquals(NORMAL_PRIORITY, resolveAnnotatedPriority("com.acme.NotFoundMapper.select"));
+        assertEquals(NORMAL_PRIORITY, resolveAnnotatedPriority("select"));
+    }
+
+    @Test
+    void testGetNamespace() {
+        assertEquals(NAMESPACE, getNamespace(MS_ID_FATHER_BY_ID));
+        assertNull(getNamespace("select"));
+    }
+
+    @StatementPriority(100)
+    interface ReportMapper {
+
+        List<Object> selectReports();
+
+        @StatementPriority(NORMAL_PRIORITY)
+        Object selectReport(long id);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.microsphere.util.ArrayUtils.ofArray;
+import static io.microsphere.util.ClassLoaderUtils.getDefaultClassLoader;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link StatementTracker} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see StatementTracker
+ * @since 1.0.0
+ */
+class StatementTrackerTest {
+
+    @Test
+    void testOpenAndClose() {
+        assertNull(StatementTracker.current());
+        try (StatementTracker outer = StatementTracker.open()) {
+            assertSame(outer, StatementTracker.current());
+            assertSame(Thread.currentThread(), outer.getThread());
+            try (StatementTracker inner = StatementTracker.open()) {
+                assertSame(inner, StatementTracker.current());
+            }
+            assertSame(outer, StatementTracker.current());
+        }
+        assertNull(StatementTracker.current());
+    }
+
+    @Test
+    void testUnbind() {
+        AtomicInteger cancelled = new AtomicInteger();
+        try (StatementTracker outer = StatementTracker.open()) {
+            StatementTracker inner = StatementTracker.open();
+            inner.unbind();
+            assertSame(outer, StatementTracker.current());
+            assertFalse(inner.isClosed());
+            inner.track(mockStatement(cancelled, false));
+            assertEquals(1, inner.getStatements().size());
+            inner.close();
+            assertSame(outer, StatementTracker.current());
+        }
+        assertNull(StatementTracker.current());
+    }
+
+    @Test
+    void testCancel() {
+        AtomicInteger cancelled = new AtomicInteger();
+        try (StatementTracker tracker = StatementTracker.open()) {
+            tracker.track(mockStatement(cancelled, false));
+            tracker.track(mockStatement(cancelled, true));
+            assertEquals(2, tracker.getStatements().size());
+            assertFalse(tracker.isCancelled());
+
+            assertTrue(tracker.cancel());
+            assertTrue(tracker.isCancelled());
+            assertEquals(1, cancelled.get());
+
+            // The statement tracked after cancelled will be cancelled immediately
+            tracker.track(mockStatement(cancelled, false));
+            assertEquals(2, cancelled.get());
+
+            tracker.close();
+            assertTrue(tracker.isClosed());
+            assertTrue(tracker.getStatements().isEmpty());
+            tracker.track(mockStatement(cancelled, false));
+            assertTrue(tracker.getStatements().isEmpty());
+        }
+    }
+
+    static Statement mockStatement(AtomicInteger cancelled, boolean closed) {
+        return (Statement) Proxy.newProxyInstance(getDefaultClassLoader(), ofArray(Statement.class), (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "isClosed":
+                    return closed;
+                case "cancel":
+                    cancelled.incrementAndGet();
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.executor;
+
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static io.microsphere.mybatis.executor.VirtualThreadPinningInterceptor.isVirtual;
+import static io.microsphere.mybatis.executor.VirtualThreadPinningInterceptor.isVirtualThreadSupported;
+import static java.lang.Thread.currentThread;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link VirtualThreadPinningInterceptor} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see VirtualThreadPinningInterceptor
+ * @since 1.0.0
+ */
+class VirtualThreadPinningInterceptorTest extends AbstractMyBatisTest {
+
+    private static final String MS_ID_FATHER_BY_ID = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById";
+
+    private VirtualThreadPinningInterceptor interceptor;
+
+    @Override
+    protected void customize(Configuration configuration) {
+        // Tracks the platform threads as well
+        this.interceptor = new VirtualThreadPinningInterceptor(Duration.ofMillis(1)) {
+            @Override
+            boolean isTracked(Thread thread) {
+                return true;
+            }
+        };
+        configuration.addInterceptor(new InterceptingExecutorInterceptor(new ExecutorFilter[0], interceptor));
+    }
+
+    @AfterEach
+    void closeInterceptor() throws Exception {
+        interceptor.close();
+    }
+
+    @Test
+    void testConstructorOnNullThreshold() {
+        assertThrows(IllegalArgumentException.class, () -> new VirtualThreadPinningInterceptor(null));
+    }
+
+    @Test
+    void testIsVirtual() throws Exception {
+        assertFalse(isVirtual(currentThread()));
+        try (VirtualThreadPinningInterceptor detector = new VirtualThreadPinningInterceptor()) {
+            assertFalse(detector.isTracked(currentThread()));
+            assertEquals(isVirtualThreadSupported(), detector.isRecording());
+        }
+    }
+
+    @Test
+    void testRecordPinnedDuringExecution() {
+        MappedStatement ms = getMappedStatement(MS_ID_FATHER_BY_ID);
+        long threadId = currentThread().getId();
+
+        interceptor.begin(ms);
+        // nested execution
+        interceptor.begin(ms);
+        Instant pinnedTime = Instant.now();
+        interceptor.recordPinned(threadId, pinnedTime, Duration.ofMillis(30));
+        interceptor.end();
+        interceptor.end();
+
+        // The late event after the execution
+        interceptor.recordPinned(threadId, pinnedTime, Duration.ofMillis(50));
+
+        VirtualThreadPinningInterceptor.PinnedStatistics statistics = interceptor.getPinnedStatistics(MS_ID_FATHER_BY_ID);
+        assertNotNull(statistics);
+        assertEquals(MS_ID_FATHER_BY_ID, statistics.getStatementId());
+        assertEquals(2, statistics.getCount());
+        assertEquals(Duration.ofMillis(80), statistics.getTotalDuration());
+        assertEquals(Duration.ofMillis(50), statistics.getMaxDuration());
+        assertNotNull(statistics.toString());
+        assertEquals(1, interceptor.getPinnedStatistics().size());
+        assertEquals(0, interceptor.getUnattributedCount());
+    }
+
+    @Test
+    void testRecordPinnedWithoutExecution() {
+        long threadId = currentThread().getId();
+        interceptor.recordPinned(threadId, Instant.now(), Duration.ofMillis(30));
+        // other thread
+        interceptor.recordPinned(threadId + 1, Instant.now(), Duration.ofMillis(30));
+        assertEquals(2, interceptor.getUnattributedCount());
+        assertTrue(interceptor.getPinnedStatistics().isEmpty());
+        assertNull(interceptor.getPinnedStatistics(MS_ID_FATHER_BY_ID));
+    }
+
+    @Test
+    void testQuery() throws Throwable {
+        Instant before = Instant.now();
+        doInMapper(FatherMapper.class, fatherMapper -> assertNotNull(fatherMapper.selectById(1)));
+        // The pinning before the execution
+        interceptor.recordPinned(currentThread().getId(), before.minusSeconds(1), Duration.ofMillis(30));
+        assertEquals(1, interceptor.getUnattributedCount());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.plugin;
+
+import io.microsphere.mybatis.executor.Deadline;
+import io.microsphere.mybatis.executor.StatementTracker;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLTimeoutException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link StatementTrackingInterceptor} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see StatementTrackingInterceptor
+ * @since 1.0.0
+ */
+class StatementTrackingInterceptorTest extends AbstractMyBatisTest {
+
+    @Test
+    void testTrack() throws Throwable {
+        // No tracker
+        doInMapper(FatherMapper.class, fatherMapper -> fatherMapper.selectById(1));
+
+        try (StatementTracker tracker = StatementTracker.open()) {
+            doInMapper(FatherMapper.class, fatherMapper -> fatherMapper.selectById(1));
+            assertEquals(1, tracker.getStatements().size());
+            // The statement was closed
+            assertFalse(tracker.cancel());
+        }
+    }
+
+    @Test
+    void testDeadline() throws Throwable {
+        try (Deadline deadline = Deadline.open(5, SECONDS);
+             StatementTracker tracker = StatementTracker.open()) {
+            doInMapper(FatherMapper.class, fatherMapper -> assertNotNull(fatherMapper.selectById(1)));
+            assertEquals(1, tracker.getStatements().size());
+        }
+
+        try (Deadline deadline = Deadline.open(0, MILLISECONDS);
+             StatementTracker tracker = StatementTracker.open()) {
+            doInMapper(FatherMapper.class, fatherMapper -> {
+                PersistenceException e = assertThrows(PersistenceException.class, () -> fatherMapper.selectById(1));
+                assertInstanceOf(SQLTimeoutException.class, e.getCause());
+            });
+            // The statement was closed without tracking
+            assertTrue(tracker.getStatements().isEmpty());
+        }
+    }
+
+    @Override
+    protected void customize(Configuration configuration) {
+        configuration.addInterceptor(new StatementTrackingInterceptor());
+    }
+}
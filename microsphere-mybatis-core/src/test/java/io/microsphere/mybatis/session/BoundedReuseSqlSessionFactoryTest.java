@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.session;
+
+import io.microsphere.mybatis.executor.BoundedReuseExecutor.Statistics;
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.microsphere.mybatis.session.SharedConfigurationSqlSessionFactoryTest.newCountingDataSource;
+import static org.apache.ibatis.session.ExecutorType.BATCH;
+import static org.apache.ibatis.session.ExecutorType.REUSE;
+import static org.apache.ibatis.session.ExecutorType.SIMPLE;
+import static org.apache.ibatis.session.TransactionIsolationLevel.READ_COMMITTED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link BoundedReuseSqlSessionFactory} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see BoundedReuseSqlSessionFactory
+ * @since 1.0.0
+ */
+class BoundedReuseSqlSessionFactoryTest extends AbstractMyBatisTest {
+
+    private SqlSessionFactory delegate;
+
+    private BoundedReuseSqlSessionFactory sqlSessionFactory;
+
+    @BeforeEach
+    void setUp() {
+        this.delegate = new DefaultSqlSessionFactory(getConfiguration());
+        this.sqlSessionFactory = new BoundedReuseSqlSessionFactory(delegate, 8);
+    }
+
+    @Test
+    void testConstructorOnInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedReuseSqlSessionFactory(null, 8));
+        assertThrows(IllegalArgumentException.class, () -> new BoundedReuseSqlSessionFactory(delegate, 0));
+    }
+
+    @Test
+    void testGetters() {
+        assertSame(delegate, sqlSessionFactory.getDelegate());
+        assertSame(getConfiguration(), sqlSessionFactory.getConfiguration());
+        assertEquals(8, sqlSessionFactory.getStatementCacheSize());
+        assertNotNull(sqlSessionFactory.getStatistics());
+    }
+
+    @Test
+    void testReuseInSession() {
+        try (SqlSession session = sqlSessionFactory.openSession()) {
+            FatherMapper fatherMapper = session.getMapper(FatherMapper.class);
+            assertEquals("John Smith", fatherMapper.selectById(1).getName());
+            fatherMapper.selectById(2);
+            fatherMapper.selectById(3);
+        }
+        Statistics statistics = sqlSessionFactory.getStatistics();
+        assertEquals(1, statistics.getMissCount());
+        assertEquals(2, statistics.getHitCount());
+        assertEquals(0, statistics.getEvictionCount());
+    }
+
+    @Test
+    void testOpenSession() throws Throwable {
+        assertQuery(sqlSessionFactory.openSession(true));
+        assertQuery(sqlSessionFactory.openSession(READ_COMMITTED));
+        assertQuery(sqlSessionFactory.openSession(REUSE));
+        assertQuery(sqlSessionFactory.openSession(SIMPLE, true));
+        assertQuery(sqlSessionFactory.openSession(REUSE, READ_COMMITTED));
+        assertEquals(5, sqlSessionFactory.getStatistics().getMissCount());
+
+        // The BATCH sessions are opened by the delegate
+        assertQuery(sqlSessionFactory.openSession(BATCH));
+        assertQuery(sqlSessionFactory.openSession(BATCH, true));
+        assertEquals(5, sqlSessionFactory.getStatistics().getMissCount());
+    }
+
+    @Test
+    void testOpenBatchSessionInAutoCommit() throws Throwable {
+        try (SqlSession session = sqlSessionFactory.openSession(BATCH, true)) {
+            assertTrue(session.getConnection().getAutoCommit());
+        }
+        try (SqlSession session = sqlSessionFactory.openSession(BATCH, false)) {
+            assertFalse(session.getConnection().getAutoCommit());
+        }
+    }
+
+    @Test
+    void testOpenSessionOnSharedConfiguration() {
+        AtomicInteger connections = new AtomicInteger();
+        DataSource dataSource = newCountingDataSource(getDataSource(), connections);
+        SqlSessionFactory sharedSqlSessionFactory = new SharedConfigurationSqlSessionFactory(delegate, "other", dataSource);
+        BoundedReuseSqlSessionFactory boundedReuseSqlSessionFactory = new BoundedReuseSqlSessionFactory(sharedSqlSessionFactory, 8);
+        // The sessions are opened on the DataSource of SharedConfigurationSqlSessionFactory
+        assertQuery(boundedReuseSqlSessionFactory.openSession());
+        assertQuery(boundedReuseSqlSessionFactory.openSession(REUSE, READ_COMMITTED));
+        assertQuery(boundedReuseSqlSessionFactory.openSession(BATCH, true));
+        assertEquals(3, connections.get());
+        assertEquals(2, boundedReuseSqlSessionFactory.getStatistics().getMissCount());
+    }
+
+    @Test
+    void testOpenSessionOnConnection() throws Throwable {
+        try (Connection connection = getDataSource().getConnection()) {
+            assertQuery(sqlSessionFactory.openSession(connection));
+            assertQuery(sqlSessionFactory.openSession(BATCH, connection));
+            assertFalse(connection.isClosed());
+        }
+        assertEquals(1, sqlSessionFactory.getStatistics().getMissCount());
+    }
+
+    void assertQuery(SqlSession sqlSession) {
+        try (SqlSession session = sqlSession) {
+            assertNotNull(session.getMapper(FatherMapper.class).selectById(1));
+        }
+    }
+}
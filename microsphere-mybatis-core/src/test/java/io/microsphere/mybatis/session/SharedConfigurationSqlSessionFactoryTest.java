@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.session;
+
+import io.microsphere.mybatis.test.AbstractMyBatisTest;
+import io.microsphere.mybatis.test.entity.User;
+import io.microsphere.mybatis.test.mapper.FatherMapper;
+import io.microsphere.mybatis.test.mapper.UserMapper;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.microsphere.util.ArrayUtils.ofArray;
+import static io.microsphere.util.ClassLoaderUtils.getDefaultClassLoader;
+import static java.lang.reflect.Proxy.newProxyInstance;
+import static org.apache.ibatis.session.ExecutorType.BATCH;
+import static org.apache.ibatis.session.ExecutorType.REUSE;
+import static org.apache.ibatis.session.TransactionIsolationLevel.READ_COMMITTED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link SharedConfigurationSqlSessionFactory} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see SharedConfigurationSqlSessionFactory
+ * @since 1.0.0
+ */
+class SharedConfigurationSqlSessionFactoryTest extends AbstractMyBatisTest {
+
+    private AtomicInteger connections;
+
+    private SharedConfigurationSqlSessionFactory sqlSessionFactory;
+
+    @BeforeEach
+    void setUp() {
+        Configuration configuration = getConfiguration();
+        this.connections = new AtomicInteger();
+        DataSource dataSource = newCountingDataSource(getDataSource(), connections);
+        this.sqlSessionFactory = new SharedConfigurationSqlSessionFactory(new DefaultSqlSessionFactory(configuration),
+                "tenant", dataSource);
+    }
+
+    @Test
+    void testConstructorOnNullArguments() {
+        Environment environment = new Environment("test", new JdbcTransactionFactory(), getDataSource());
+        assertThrows(IllegalArgumentException.class, () -> new SharedConfigurationSqlSessionFactory(null, environment));
+        assertThrows(IllegalArgumentException.class, () -> new SharedConfigurationSqlSessionFactory(getConfiguration(), null));
+    }
+
+    @Test
+    void testGetters() {
+        Configuration configuration = getConfiguration();
+        assertSame(configuration, sqlSessionFactory.getConfiguration());
+        Environment environment = sqlSessionFactory.getEnvironment();
+        assertEquals("tenant", environment.getId());
+        assertSame(configuration.getEnvironment().getTransactionFactory(), environment.getTransactionFactory());
+    }
+
+    @Test
+    void testOpenSession() throws Throwable {
+        assertQuery(sqlSessionFactory.openSession());
+        assertQuery(sqlSessionFactory.openSession(true));
+        assertQuery(sqlSessionFactory.openSession(READ_COMMITTED));
+        assertQuery(sqlSessionFactory.openSession(REUSE));
+        assertQuery(sqlSessionFactory.openSession(BATCH, true));
+        assertQuery(sqlSessionFactory.openSession(REUSE, READ_COMMITTED));
+        assertEquals(6, connections.get());
+    }
+
+    @Test
+    void testOpenSessionOnConnection() throws Throwable {
+        try (Connection connection = getDataSource().getConnection()) {
+            assertQuery(sqlSessionFactory.openSession(connection));
+            assertQuery(sqlSessionFactory.openSession(REUSE, connection));
+            assertFalse(connection.isClosed());
+        }
+        assertEquals(0, connections.get());
+    }
+
+    @Test
+    void testSharedMappedStatements() {
+        SqlSessionFactory other = new SharedConfigurationSqlSessionFactory(getConfiguration(),
+                new Environment("other", new JdbcTransactionFactory(), getDataSource()));
+        assertSame(sqlSessionFactory.getConfiguration().getMappedStatement("io.microsphere.mybatis.test.mapper.FatherMapper.selectById"),
+                other.getConfiguration().getMappedStatement("io.microsphere.mybatis.test.mapper.FatherMapper.selectById"));
+    }
+
+    @Test
+    void testBypassSecondLevelCaches() throws Throwable {
+        User user = createUser();
+        doInSqlSession(sqlSession -> {
+            UserMapper userMapper = sqlSession.getMapper(UserMapper.class);
+            userMapper.saveUser(user);
+            sqlSession.commit();
+            // Cache the user of the shared Environment
+            assertNotNull(userMapper.getUserByName(user.getName()));
+            sqlSession.commit();
+        });
+        try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+            assertNotNull(sqlSession.getMapper(UserMapper.class).getUserByName(user.getName()));
+        }
+        assertEquals(1, connections.get());
+    }
+
+    @Test
+    void testLazyLoadingNotSupported() {
+        Configuration configuration = new Configuration(getConfiguration().getEnvironment());
+        configuration.setLazyLoadingEnabled(true);
+        Environment environment = new Environment("test", new JdbcTransactionFactory(), getDataSource());
+        assertThrows(IllegalArgumentException.class, () -> new SharedConfigurationSqlSessionFactory(configuration, environment));
+        assertFalse(SharedConfigurationSqlSessionFactory.isLazyLoading(getConfiguration()));
+    }
+
+    void assertQuery(SqlSession sqlSession) {
+        try (SqlSession session = sqlSession) {
+            assertNotNull(session.getMapper(FatherMapper.class).selectById(1));
+        }
+    }
+
+    static DataSource newCountingDataSource(DataSource dataSource, AtomicInteger connections) {
+        return (DataSource) newProxyInstance(getDefaultClassLoader(), ofArray(DataSource.class), (proxy, method, args) -> {
+            if ("getConnection".equals(method.getName())) {
+                connections.incrementAndGet();
+            }
+            return method.invoke(dataSource, args);
+        });
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.maven.plugin;
+
+import io.microsphere.mybatis.builder.ConfigurationSnapshot;
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.List;
+
+import static io.microsphere.mybatis.builder.ConfigurationSnapshot.DEFAULT_SNAPSHOT_RESOURCE;
+import static org.apache.maven.plugins.annotations.ResolutionScope.RUNTIME;
+
+/**
+ * The Maven {@link Mojo} to create the {@link ConfigurationSnapshot} of MyBatis configuration and its mapper XML
+ * resources at build time, which is written into the output directory, thus it will be packaged and loaded by
+ * {@link ConfigurationSnapshot#loadConfiguration} at runtime.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   <plugin>
+ *       <groupId>io.github.microsphere-projects</groupId>
+ *       <artifactId>microsphere-mybatis-maven-plugin</artifactId>
+ *       <executions>
+ *           <execution>
+ *               <goals>
+ *                   <goal>snapshot</goal>
+ *               </goals>
+ *               <configuration>
+ *                   <configResource>META-INF/mybatis/config.xml</configResource>
+ *               </configuration>
+ *           </execution>
+ *       </executions>
+ *   </plugin>
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ConfigurationSnapshot
+ * @since 1.0.0
+ */
+@Mojo(name = "snapshot", defaultPhase = LifecyclePhase.PROCESS_CLASSES, requiresDependencyResolution = RUNTIME, threadSafe = true)
+public class ConfigurationSnapshotMojo extends AbstractMojo {
+
+    /**
+     * The resource of MyBatis configuration in the class path
+     */
+    @Parameter(property = "mybatis.configResource", defaultValue = "mybatis-config.xml", required = true)
+    String configResource;
+
+    /**
+     * The resource of snapshot in the output directory
+     */
+    @Parameter(property = "mybatis.snapshotResource", defaultValue = DEFAULT_SNAPSHOT_RESOURCE, required = true)
+    String snapshotResource;
+
+    /**
+     * The output directory of classes
+     */
+    @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+    File outputDirectory;
+
+    /**
+     * The runtime class path elements of project
+     */
+    @Parameter(defaultValue = "${project.runtimeClasspathElements}", readonly = true, required = true)
+    List<String> classpathElements;
+
+    /**
+     * Skip the snapshot or not
+     */
+    @Parameter(property = "mybatis.snapshot.skip", defaultValue = "false")
+    boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("The snapshot of MyBatis configuration is skipped");
+            return;
+        }
+        File snapshotFile = new File(outputDirectory, snapshotResource);
+        try (URLClassLoader classLoader = newClassLoader()) {
+            ConfigurationSnapshot snapshot = ConfigurationSnapshot.create(configResource, classLoader);
+            Files.createDirectories(snapshotFile.getParentFile().toPath());
+            try (OutputStream outputStream = Files.newOutputStream(snapshotFile.toPath())) {
+                snapshot.writeTo(outputStream);
+            }
+            getLog().info("The snapshot of MyBatis configuration was written into " + snapshotFile + " : "
+                    + snapshot.getResources());
+        } catch (IOException | BuilderException e) {
+            throw new MojoExecutionException("The snapshot of MyBatis configuration['" + configResource + "'] can't be created", e);
+        }
+    }
+
+    private URLClassLoader newClassLoader() throws IOException {
+        int size = classpathElements.size();
+        URL[] urls = new URL[size + 1];
+        urls[0] = outputDirectory.toURI().toURL();
+        for (int i = 0; i < size; i++) {
+            urls[i + 1] = new File(classpathElements.get(i)).toURI().toURL();
+        }
+        return new URLClassLoader(urls, getClass().getClassLoader());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.maven.plugin;
+
+import io.microsphere.mybatis.builder.ConfigurationSnapshot;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import static io.microsphere.mybatis.builder.ConfigurationSnapshot.DEFAULT_SNAPSHOT_RESOURCE;
+import static io.microsphere.mybatis.test.MyBatisTestUtils.DEFAULT_CONFIG_RESOURCE_NAME;
+import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link ConfigurationSnapshotMojo} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ConfigurationSnapshotMojo
+ * @since 1.0.0
+ */
+class ConfigurationSnapshotMojoTest {
+
+    @TempDir
+    File outputDirectory;
+
+    private ConfigurationSnapshotMojo mojo;
+
+    @BeforeEach
+    void setUp() {
+        this.mojo = new ConfigurationSnapshotMojo();
+        this.mojo.configResource = DEFAULT_CONFIG_RESOURCE_NAME;
+        this.mojo.snapshotResource = DEFAULT_SNAPSHOT_RESOURCE;
+        this.mojo.outputDirectory = outputDirectory;
+        this.mojo.classpathElements = emptyList();
+    }
+
+    @Test
+    void testExecute() throws Throwable {
+        mojo.execute();
+        File snapshotFile = new File(outputDirectory, DEFAULT_SNAPSHOT_RESOURCE);
+        assertTrue(snapshotFile.exists());
+        try (InputStream inputStream = Files.newInputStream(snapshotFile.toPath())) {
+            ConfigurationSnapshot snapshot = ConfigurationSnapshot.readFrom(inputStream);
+            assertEquals(DEFAULT_CONFIG_RESOURCE_NAME, snapshot.getConfigResource());
+            assertEquals(4, snapshot.getResources().size());
+        }
+    }
+
+    @Test
+    void testExecuteOnSkip() throws Throwable {
+        mojo.skip = true;
+        mojo.execute();
+        assertFalse(new File(outputDirectory, DEFAULT_SNAPSHOT_RESOURCE).exists());
+    }
+
+    @Test
+    void testExecuteOnNotFoundConfigResource() {
+        mojo.configResource = "not-found.xml";
+        assertThrows(MojoExecutionException.class, mojo::execute);
+    }
+}
@@ -18,6 +18,10 @@
 package io.microsphere.mybatis.spring.annotation;
 
 import io.microsphere.constants.SymbolConstants;
+import io.microsphere.mybatis.executor.BoundedReuseExecutor;
+import io.microsphere.mybatis.executor.VirtualThreadPinningInterceptor;
+import io.microsphere.mybatis.session.BoundedReuseSqlSessionFactory;
+import io.microsphere.mybatis.session.SharedConfigurationSqlSessionFactory;
 import io.microsphere.util.StringUtils;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.io.VFS;
@@ -161,6 +165,18 @@ public @interface EnableMyBatis {
      */
     ExecutorType executorType() default SIMPLE;
 
+    /**
+     * The size of the prepared statement cache per session of the {@link SqlSessionTemplate SqlSessionTemplates}.
+     * If positive, the sessions of {@link ExecutorType#SIMPLE} or {@link ExecutorType#REUSE} are opened by
+     * {@link BoundedReuseSqlSessionFactory}, which reuse the prepared statements on {@link BoundedReuseExecutor}
+     * bounded by the least recently used eviction.
+     *
+     * @return <code>0</code> as default, indicates the statement cache is disabled
+     * @see BoundedReuseSqlSessionFactory
+     * @see BoundedReuseExecutor
+     */
+    int statementCacheSize() default 0;
+
     /**
      * The {@link VFS} class.
      *
@@ -197,6 +213,20 @@ public @interface EnableMyBatis {
      */
     boolean configurationPropertiesImportPropertySources() default false;
 
+    /**
+     * The prefixes of the property names imported from Spring {@link PropertySources} if
+     * {@link #configurationPropertiesImportPropertySources()} is <code>true</code>. If the prefixes are specified, the
+     * imported properties are resolved on demand from the Spring {@link org.springframework.core.env.Environment
+     * Environment}, only the properties matching the prefixes are resolvable, and they are materialized once when
+     * enumerated, e.g. for the {@code <properties>} element of MyBatis config file or {@code <include>} element of
+     * Mapper file. If no prefix is specified, all properties are copied.
+     *
+     * @return empty array as default. (the placeholders in each elements' value will be resolved)
+     * @see #configurationPropertiesImportPropertySources()
+     * @see io.microsphere.mybatis.spring.core.env.EnvironmentProperties
+     */
+    String[] configurationPropertiesPropertySourcesPrefixes() default {};
+
     /**
      * The Spring Bean name of {@link ObjectWrapperFactory}
      *
@@ -270,4 +300,27 @@ public @interface EnableMyBatis {
      * @since MyBatis Spring 2.0.2
      */
     String[] scriptingLanguageDrivers() default WILDCARD;
-}
\ No newline at end of file
+
+    /**
+     * Indicates whether the virtual-thread friendly mode is enabled or not. If enabled, the
+     * {@link VirtualThreadPinningInterceptor} bean is registered to report the intervals that the virtual threads were
+     * pinned to their carrier threads per statement, which are mostly caused by the monitors inside the JDBC drivers
+     * or connection pools, since MyBatis itself does not hold any monitor during the executions.
+     *
+     * @return <code>false</code> as default
+     * @see VirtualThreadPinningInterceptor
+     */
+    boolean virtualThreads() default false;
+
+    /**
+     * The bean names of the additional {@link DataSource DataSources}, each of them registers a
+     * {@link SharedConfigurationSqlSessionFactory} named "{dataSource}SqlSessionFactory" and a
+     * {@link SqlSessionTemplate} named "{dataSource}SqlSessionTemplate", which share the {@link Configuration} of the
+     * primary "sqlSessionFactory", thus the mapper files are parsed only once. If present, the primary
+     * "sqlSessionFactory" and "sqlSessionTemplate" will be marked as the primary beans.
+     *
+     * @return empty array as default. (the placeholders in each elements' value will be resolved)
+     * @see SharedConfigurationSqlSessionFactory
+     */
+    String[] additionalDataSources() default {};
+}
@@ -17,10 +17,15 @@
 
 package io.microsphere.mybatis.spring.annotation;
 
+import io.microsphere.mybatis.builder.MapperModelCache;
+import io.microsphere.mybatis.builder.ParallelMapperXMLParser;
 import io.microsphere.mybatis.executor.ExecutorFilter;
 import io.microsphere.mybatis.executor.ExecutorInterceptor;
 import io.microsphere.mybatis.executor.InterceptingExecutor;
+import io.microsphere.mybatis.executor.ShardingExecutorFilter;
+import io.microsphere.mybatis.executor.StatementTracker;
 import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.plugin.StatementTrackingInterceptor;
 import io.microsphere.spring.beans.BeanSource;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.plugin.Plugin;
@@ -93,4 +98,65 @@ public @interface EnableMyBatisExtension {
      * it indicates to search in Spring Bean Factory,  "META-INF/spring.factories" files and "META-INF/services" files.
      */
     BeanSource[] sources() default {BEAN_FACTORY, SPRING_FACTORIES, JAVA_SERVICE_PROVIDER};
-}
\ No newline at end of file
+
+    /**
+     * Indicate whether the JDBC {@link java.sql.Statement Statements} should be tracked by the
+     * {@link StatementTrackingInterceptor}, which allows the {@link ExecutorFilter ExecutorFilters} to cancel the
+     * running statements via {@link StatementTracker}, e.g. the hedged reads, deadlines and cancellations. It's
+     * disabled by default, because every prepared statement passes through one more plugin.
+     *
+     * @return <code>false</code> as default
+     * @see StatementTracker
+     * @see StatementTrackingInterceptor
+     */
+    boolean trackStatements() default false;
+
+    /**
+     * The Spring Bean names of the shard {@link javax.sql.DataSource DataSources} in order. If present, the
+     * {@link ShardingExecutorFilter} bean will be registered when {@link #interceptExecutor()} is <code>true</code>.
+     *
+     * @return empty array as default, indicates no sharding. (the placeholders in each elements' value will be resolved)
+     * @see ShardingExecutorFilter
+     */
+    String[] shardDataSources() default {};
+
+    /**
+     * The shard keys of the sharded statements in the format : "{statement id} = {property of parameter}",
+     * e.g. "com.acme.UserMapper.getUserById = id"
+     *
+     * @return empty array as default. (the placeholders in each elements' value will be resolved)
+     * @see ShardingExecutorFilter#addShardKey(String, String)
+     */
+    String[] shardKeys() default {};
+
+    /**
+     * The Spring Bean name of {@link java.util.concurrent.ExecutorService} to scatter-gather the queries without the
+     * shard key in parallel.
+     *
+     * @return the empty string as default, indicates the queries are scatter-gathered sequentially.
+     * (the placeholders in the value will be resolved)
+     * @see ShardingExecutorFilter#ShardingExecutorFilter(java.util.List, java.util.concurrent.ExecutorService)
+     */
+    String shardingExecutorService() default "";
+
+    /**
+     * Indicates whether the mapper XML resources of {@link org.mybatis.spring.SqlSessionFactoryBean#setMapperLocations
+     * mapperLocations} are parsed once and the parsed model is shared among the
+     * {@link org.apache.ibatis.session.SqlSessionFactory SqlSessionFactories} loading the same resources. If enabled,
+     * the {@link MapperModelCache} bean will be registered.
+     *
+     * @return <code>false</code> as default
+     * @see MapperModelCache
+     */
+    boolean shareMapperModel() default false;
+
+    /**
+     * Indicates whether the mapper XML resources of {@link org.mybatis.spring.SqlSessionFactoryBean#setMapperLocations
+     * mapperLocations} are parsed in parallel and built in the order of resources. If enabled, the
+     * {@link ParallelMapperXMLParser} bean will be registered, which reports the timing per resource.
+     *
+     * @return <code>false</code> as default
+     * @see ParallelMapperXMLParser
+     */
+    boolean parallelMapperParsing() default false;
+}
@@ -17,6 +17,13 @@
 
 package io.microsphere.mybatis.spring.annotation;
 
+import io.microsphere.mybatis.executor.ExecutorFilter;
+import io.microsphere.mybatis.executor.VirtualThreadPinningInterceptor;
+import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.session.BoundedReuseSqlSessionFactory;
+import io.microsphere.mybatis.session.SharedConfigurationSqlSessionFactory;
+import io.microsphere.mybatis.spring.context.MyBatisStartupTimeline;
+import io.microsphere.mybatis.spring.core.env.EnvironmentProperties;
 import io.microsphere.spring.context.annotation.BeanCapableImportCandidate;
 import io.microsphere.spring.core.annotation.ResolvablePlaceholderAnnotationAttributes;
 import org.apache.ibatis.cache.Cache;
@@ -28,13 +35,16 @@ import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.transaction.TransactionFactory;
 import org.apache.ibatis.type.TypeHandler;
 import org.mybatis.spring.SqlSessionFactoryBean;
 import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.PropertyValue;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanNameGenerator;
+import org.springframework.beans.factory.support.ManagedList;
 import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
 import org.springframework.core.annotation.AnnotationAttributes;
 import org.springframework.core.env.ConfigurableEnvironment;
@@ -50,9 +60,12 @@ import java.util.Properties;
 import static io.microsphere.mybatis.spring.annotation.MyBatisConfigurationBeanDefintionRegistrar.CONFIGURATION_BEAN_NAME;
 import static io.microsphere.spring.core.env.PropertySourcesUtils.getPropertyNames;
 import static io.microsphere.text.FormatUtils.format;
+import static io.microsphere.util.ArrayUtils.arrayToString;
+import static io.microsphere.util.ArrayUtils.isEmpty;
 import static io.microsphere.util.Assert.assertTrue;
 import static io.microsphere.util.StringUtils.isBlank;
 import static org.springframework.beans.factory.support.BeanDefinitionBuilder.genericBeanDefinition;
+import static org.springframework.context.ConfigurableApplicationContext.ENVIRONMENT_BEAN_NAME;
 
 /**
  * {@link ImportBeanDefinitionRegistrar} class for {@link EnableMyBatis}
@@ -68,6 +81,13 @@ import static org.springframework.beans.factory.support.BeanDefinitionBuilder.ge
  *       // SqlSessionFactory  bean name: "sqlSessionFactory"
  *       // SqlSessionTemplate bean name: "sqlSessionTemplate"
  *   }
+ *
+ *   @EnableMyBatis(additionalDataSources = {"tenant1DataSource", "tenant2DataSource"})
+ *   @Configuration
+ *   public class MultiTenantConfig {
+ *       // SqlSessionFactory  bean names: "tenant1DataSourceSqlSessionFactory", "tenant2DataSourceSqlSessionFactory"
+ *       // SqlSessionTemplate bean names: "tenant1DataSourceSqlSessionTemplate", "tenant2DataSourceSqlSessionTemplate"
+ *   }
  * }</pre>
  *
  * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
@@ -90,16 +110,38 @@ public class MyBatisBeanDefinitionRegistrar extends MyBatisImportBeanDefinitionR
      */
     public static final String SQL_SESSION_TEMPLATE_BEAN_NAME = "sqlSessionTemplate";
 
+    /**
+     * The Spring Bean name of {@link VirtualThreadPinningInterceptor}
+     */
+    public static final String VIRTUAL_THREAD_PINNING_INTERCEPTOR_BEAN_NAME = "virtualThreadPinningInterceptor";
+
+    /**
+     * The Spring Bean name of {@link SqlSessionFactoryBeanStartupPostProcessor}
+     */
+    static final String SQL_SESSION_FACTORY_BEAN_STARTUP_POST_PROCESSOR_BEAN_NAME = "sqlSessionFactoryBeanStartupPostProcessor";
+
     @Override
     protected void registerBeanDefinitions(AnnotationMetadata metadata, BeanDefinitionRegistry registry,
                                            BeanNameGenerator importBeanNameGenerator,
                                            ResolvablePlaceholderAnnotationAttributes<EnableMyBatis> annotationAttributes) {
+        recordRegistration(metadata, () -> doRegisterBeanDefinitions(annotationAttributes, registry));
+    }
 
+    private void doRegisterBeanDefinitions(AnnotationAttributes annotationAttributes, BeanDefinitionRegistry registry) {
         // Register the BeanDefinition of SqlSessionFactoryBean if absent
         registerSqlSessionFactoryBeanIfAbsent(annotationAttributes, registry);
 
         // Register the BeanDefinition of SqlSessionTemplate if absent
         registerSqlSessionTemplateIfAbsent(annotationAttributes, registry);
+
+        // Register the BeanDefinition of VirtualThreadPinningInterceptor if required
+        registerVirtualThreadPinningInterceptorIfRequired(annotationAttributes, registry);
+
+        // Register the BeanDefinitions of SqlSessionFactory and SqlSessionTemplate for the additional DataSources
+        registerAdditionalDataSourcesSqlSessionFactories(annotationAttributes, registry);
+
+        // Register the BeanDefinition of SqlSessionFactoryBeanStartupPostProcessor if absent
+        registerSqlSessionFactoryBeanStartupPostProcessorIfAbsent(registry);
     }
 
     /**
@@ -122,6 +164,50 @@ public class MyBatisBeanDefinitionRegistrar extends MyBatisImportBeanDefinitionR
         registerBeanDefinitionIfAbsent(attributes, registry, SQL_SESSION_TEMPLATE_BEAN_NAME, this::buildSqlSessionTemplateBeanDefinition);
     }
 
+    /**
+     * Register the {@link BeanDefinition} of {@link VirtualThreadPinningInterceptor} if
+     * {@link EnableMyBatis#virtualThreads()} is {@code true}
+     *
+     * @param attributes {@link AnnotationAttributes}
+     * @param registry   {@link BeanDefinitionRegistry}
+     */
+    void registerVirtualThreadPinningInterceptorIfRequired(AnnotationAttributes attributes, BeanDefinitionRegistry registry) {
+        if (isVirtualThreads(attributes)) {
+            registerBeanDefinitionIfAbsent(attributes, registry, VIRTUAL_THREAD_PINNING_INTERCEPTOR_BEAN_NAME,
+                    a -> genericBeanDefinition(VirtualThreadPinningInterceptor.class).getBeanDefinition());
+        }
+    }
+
+    /**
+     * Register the {@link BeanDefinition BeanDefinitions} of {@link SharedConfigurationSqlSessionFactory} and
+     * {@link SqlSessionTemplate} for each of {@link EnableMyBatis#additionalDataSources()}, and mark the primary
+     * {@link SqlSessionFactory} and {@link SqlSessionTemplate} as the primary beans.
+     *
+     * @param attributes {@link AnnotationAttributes}
+     * @param registry   {@link BeanDefinitionRegistry}
+     */
+    void registerAdditionalDataSourcesSqlSessionFactories(AnnotationAttributes attributes, BeanDefinitionRegistry registry) {
+        String[] dataSourceBeanNames = attributes.getStringArray("additionalDataSources");
+        if (dataSourceBeanNames.length == 0) {
+            return;
+        }
+
+        registry.getBeanDefinition(SQL_SESSION_FACTORY_BEAN_NAME).setPrimary(true);
+        registry.getBeanDefinition(SQL_SESSION_TEMPLATE_BEAN_NAME).setPrimary(true);
+
+        for (String dataSourceBeanName : dataSourceBeanNames) {
+            String sqlSessionFactoryBeanName = dataSourceBeanName + "SqlSessionFactory";
+            registerBeanDefinitionIfAbsent(attributes, registry, sqlSessionFactoryBeanName,
+                    a -> genericBeanDefinition(SharedConfigurationSqlSessionFactory.class)
+                            .addConstructorArgReference(SQL_SESSION_FACTORY_BEAN_NAME)
+                            .addConstructorArgValue(dataSourceBeanName)
+                            .addConstructorArgReference(dataSourceBeanName)
+                            .getBeanDefinition());
+            registerBeanDefinitionIfAbsent(attributes, registry, dataSourceBeanName + "SqlSessionTemplate",
+                    a -> buildSqlSessionTemplateBeanDefinition(a, sqlSessionFactoryBeanName));
+        }
+    }
+
     /**
      * Build the {@link BeanDefinition} for the {@link SqlSessionFactoryBean}.
      *
@@ -151,8 +237,7 @@ public class MyBatisBeanDefinitionRegistrar extends MyBatisImportBeanDefinitionR
         // Set the attribute "defaultScriptingLanguageDriver"
         setPropertyValue(builder, attributes, "defaultScriptingLanguageDriver", LanguageDriver.class);
         // Set the attribute "configurationProperties"
-        Properties configurationProperties = resolveConfigurationProperties(attributes);
-        setPropertyValue(builder, "configurationProperties", configurationProperties);
+        setConfigurationProperties(builder, attributes);
 
         // References the ObjectWrapperFactory Bean
         setBeanReferencePropertyValue(builder, attributes, "objectWrapperFactory", ObjectWrapperFactory.class);
@@ -166,14 +251,40 @@ public class MyBatisBeanDefinitionRegistrar extends MyBatisImportBeanDefinitionR
         setBeanReferencePropertyValues(builder, attributes, "typeHandlers", TypeHandler.class);
         // References the LanguageDriver Beans
         setBeanReferencePropertyValues(builder, attributes, "scriptingLanguageDrivers", LanguageDriver.class);
+        // Set the attribute "virtualThreads"
+        setVirtualThreads(builder, attributes);
 
         return builder.getBeanDefinition();
     }
 
     BeanDefinition buildSqlSessionTemplateBeanDefinition(AnnotationAttributes attributes) {
+        return buildSqlSessionTemplateBeanDefinition(attributes, SQL_SESSION_FACTORY_BEAN_NAME);
+    }
+
+    /**
+     * Build the {@link BeanDefinition} for the {@link SqlSessionTemplate} on the specified {@link SqlSessionFactory}
+     * bean, which is wrapped by {@link BoundedReuseSqlSessionFactory} if {@link EnableMyBatis#statementCacheSize()}
+     * is positive.
+     *
+     * @param attributes                the resolved {@link AnnotationAttributes} from {@link EnableMyBatis}
+     * @param sqlSessionFactoryBeanName the bean name of {@link SqlSessionFactory}
+     * @return the constructed {@link BeanDefinition}
+     */
+    BeanDefinition buildSqlSessionTemplateBeanDefinition(AnnotationAttributes attributes, String sqlSessionFactoryBeanName) {
         BeanDefinitionBuilder builder = genericBeanDefinition(SqlSessionTemplate.class);
         ExecutorType executorType = attributes.getEnum("executorType");
-        builder.addConstructorArgReference(SQL_SESSION_FACTORY_BEAN_NAME);
+        int statementCacheSize = attributes.getNumber("statementCacheSize");
+        if (statementCacheSize > 0) {
+            logger.trace("The SqlSessionTemplate on the SqlSessionFactory['{}'] will cache {} statements per session",
+                    sqlSessionFactoryBeanName, statementCacheSize);
+            // The inner bean definition instead of the instance keeps the bean definition available for Spring AOT
+            builder.addConstructorArgValue(genericBeanDefinition(BoundedReuseSqlSessionFactory.class)
+                    .addConstructorArgReference(sqlSessionFactoryBeanName)
+                    .addConstructorArgValue(statementCacheSize)
+                    .getBeanDefinition());
+        } else {
+            builder.addConstructorArgReference(sqlSessionFactoryBeanName);
+        }
         builder.addConstructorArgValue(executorType);
         return builder.getBeanDefinition();
     }
@@ -200,6 +311,52 @@ public class MyBatisBeanDefinitionRegistrar extends MyBatisImportBeanDefinitionR
         }
     }
 
+    /**
+     * Register the {@link SqlSessionFactoryBeanStartupPostProcessor} recording the builds of
+     * {@link SqlSessionFactoryBean} into {@link MyBatisStartupTimeline} if absent.
+     *
+     * @param registry the {@link BeanDefinitionRegistry}
+     */
+    void registerSqlSessionFactoryBeanStartupPostProcessorIfAbsent(BeanDefinitionRegistry registry) {
+        String beanName = SQL_SESSION_FACTORY_BEAN_STARTUP_POST_PROCESSOR_BEAN_NAME;
+        if (!registry.containsBeanDefinition(beanName)) {
+            registry.registerBeanDefinition(beanName, genericBeanDefinition(SqlSessionFactoryBeanStartupPostProcessor.class)
+                    .getBeanDefinition());
+        }
+    }
+
+    /**
+     * Add the {@link VirtualThreadPinningInterceptor} into the {@link Interceptor plugins} of the
+     * {@link SqlSessionFactoryBean} builder if {@link EnableMyBatis#virtualThreads()} is {@code true}. The
+     * {@link TransactionFactory} is kept, since mybatis-spring requires the {@link SqlSessionFactory} inside a Spring
+     * transaction to use its own {@link TransactionFactory}.
+     *
+     * @param builder    the {@link BeanDefinitionBuilder} for {@link SqlSessionFactoryBean}
+     * @param attributes the resolved annotation attributes
+     */
+    void setVirtualThreads(BeanDefinitionBuilder builder, AnnotationAttributes attributes) {
+        if (!isVirtualThreads(attributes)) {
+            return;
+        }
+        logger.trace("The SqlSessionFactoryBean will be configured for the virtual threads");
+
+        ManagedList<Object> plugins = new ManagedList<>();
+        PropertyValue pluginsPropertyValue = builder.getRawBeanDefinition().getPropertyValues().getPropertyValue("plugins");
+        if (pluginsPropertyValue != null) {
+            plugins.add(pluginsPropertyValue.getValue());
+        }
+        // The inner bean definition instead of the instance keeps the bean definition available for Spring AOT
+        plugins.add(genericBeanDefinition(InterceptingExecutorInterceptor.class)
+                .addConstructorArgValue(new ExecutorFilter[0])
+                .addConstructorArgReference(VIRTUAL_THREAD_PINNING_INTERCEPTOR_BEAN_NAME)
+                .getBeanDefinition());
+        setPropertyValue(builder, "plugins", plugins);
+    }
+
+    boolean isVirtualThreads(AnnotationAttributes attributes) {
+        return attributes.getBoolean("virtualThreads");
+    }
+
     /**
      * Validate the {@code configLocation} attribute when {@link EnableMyBatis#checkConfigLocation()} is
      * {@code true}.  Throws {@link IllegalArgumentException} if the resource does not exist.
@@ -218,30 +375,44 @@ public class MyBatisBeanDefinitionRegistrar extends MyBatisImportBeanDefinitionR
     }
 
     /**
-     * Resolve the MyBatis configuration {@link Properties} from the annotation attributes, optionally
-     * merging them with the Spring {@link PropertySources} when
-     * {@link EnableMyBatis#configurationPropertiesImportPropertySources()} is {@code true}.
+     * Set the MyBatis configuration {@link Properties} from the annotation attributes, which import the Spring
+     * {@link PropertySources} when {@link EnableMyBatis#configurationPropertiesImportPropertySources()} is
+     * {@code true} : the properties are backed by the Spring {@link ConfigurableEnvironment Environment} as a view if
+     * {@link EnableMyBatis#configurationPropertiesPropertySourcesPrefixes() the prefixes} are specified, or they are
+     * copied, because MyBatis enumerates the variables, e.g. {@code <properties>} element of config file.
      *
+     * @param builder    the {@link BeanDefinitionBuilder} for {@link SqlSessionFactoryBean}
      * @param attributes the resolved annotation attributes
-     * @return the merged {@link Properties}; never {@code null}
+     * @see EnvironmentProperties
      */
-    Properties resolveConfigurationProperties(AnnotationAttributes attributes) {
-        String[] configurationProperties = attributes.getStringArray("configurationProperties");
-        Properties properties = new Properties();
+    void setConfigurationProperties(BeanDefinitionBuilder builder, AnnotationAttributes attributes) {
+        Properties configurationProperties = stringArrayToProperties(attributes.getStringArray("configurationProperties"));
         boolean importingPropertySources = attributes.getBoolean("configurationPropertiesImportPropertySources");
-        if (importingPropertySources) {
-            ConfigurableEnvironment environment = getEnvironment();
+        String[] prefixes = attributes.getStringArray("configurationPropertiesPropertySourcesPrefixes");
+        if (importingPropertySources && isEmpty(prefixes)) {
             logger.trace("The MyBatis configuration properties will import the Spring PropertySources.");
-            for (PropertySource propertySource : environment.getPropertySources()) {
+            Properties properties = new Properties();
+            for (PropertySource propertySource : getEnvironment().getPropertySources()) {
                 String[] propertyNames = getPropertyNames(propertySource);
                 for (String propertyName : propertyNames) {
                     Object propertyValue = propertySource.getProperty(propertyName);
                     properties.putIfAbsent(propertyName, propertyValue);
                 }
             }
+            properties.putAll(configurationProperties);
+            setPropertyValue(builder, "configurationProperties", properties);
+        } else if (importingPropertySources) {
+            logger.trace("The MyBatis configuration properties will import the Spring PropertySources with the prefixes : {}",
+                    arrayToString(prefixes));
+            BeanDefinition environmentProperties = genericBeanDefinition(EnvironmentProperties.class)
+                    .addConstructorArgReference(ENVIRONMENT_BEAN_NAME)
+                    .addConstructorArgValue(prefixes)
+                    .addConstructorArgValue(configurationProperties)
+                    .getBeanDefinition();
+            setPropertyValue(builder, "configurationProperties", environmentProperties);
+        } else {
+            setPropertyValue(builder, "configurationProperties", configurationProperties);
         }
-        properties.putAll(stringArrayToProperties(configurationProperties));
-        return properties;
     }
 
 }
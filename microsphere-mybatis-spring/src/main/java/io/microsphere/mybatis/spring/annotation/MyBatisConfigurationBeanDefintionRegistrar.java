@@ -32,7 +32,6 @@ import org.springframework.core.type.AnnotationMetadata;
 import java.util.Map.Entry;
 
 import static io.microsphere.collection.Sets.ofSet;
-import static io.microsphere.reflect.ConstructorUtils.newInstance;
 import static io.microsphere.spring.core.annotation.ResolvablePlaceholderAnnotationAttributes.of;
 import static io.microsphere.util.ClassLoaderUtils.resolveClass;
 import static org.springframework.beans.factory.support.BeanDefinitionBuilder.genericBeanDefinition;
@@ -74,7 +73,7 @@ class MyBatisConfigurationBeanDefintionRegistrar extends MyBatisImportBeanDefini
     protected void registerBeanDefinitions(AnnotationMetadata metadata, BeanDefinitionRegistry registry,
                                            BeanNameGenerator importBeanNameGenerator,
                                            ResolvablePlaceholderAnnotationAttributes<MyBatisConfiguration> annotationAttributes) {
-        registerConfigurationIfAbsent(annotationAttributes, registry);
+        recordRegistration(metadata, () -> registerConfigurationIfAbsent(annotationAttributes, registry));
     }
 
     @Override
@@ -96,7 +95,7 @@ class MyBatisConfigurationBeanDefintionRegistrar extends MyBatisImportBeanDefini
         BeanDefinitionBuilder builder = genericBeanDefinition(Configuration.class);
         // Those property values need to convert
         // lazyLoadTriggerMethods String[] -> Set
-        // proxyFactory Class -> Object
+        // proxyFactory Class -> Object (the inner bean definition keeps the bean definition available for Spring AOT)
         // variables String[] -> Properties
         for (Entry<String, Object> entry : attributes.entrySet()) {
             String attributeName = entry.getKey();
@@ -106,7 +105,7 @@ class MyBatisConfigurationBeanDefintionRegistrar extends MyBatisImportBeanDefini
                 attributeValue = ofSet(methods);
             } else if ("proxyFactory".equals(attributeName)) {
                 Class<?> proxyFactoryClass = (Class<?>) attributeValue;
-                attributeValue = newInstance(true, proxyFactoryClass);
+                attributeValue = genericBeanDefinition(proxyFactoryClass).getBeanDefinition();
             } else if ("variables".equals(attributeName)) {
                 String[] variables = (String[]) attributeValue;
                 attributeValue = stringArrayToProperties(variables);
@@ -18,20 +18,27 @@
 package io.microsphere.mybatis.spring.annotation;
 
 import io.microsphere.logging.Logger;
+import io.microsphere.mybatis.builder.MapperModelCache;
+import io.microsphere.mybatis.builder.ParallelMapperXMLParser;
 import io.microsphere.mybatis.executor.ExecutorFilter;
 import io.microsphere.mybatis.executor.ExecutorInterceptor;
 import io.microsphere.mybatis.executor.InterceptingExecutor;
+import io.microsphere.mybatis.executor.ShardingExecutorFilter;
 import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.plugin.StatementTrackingInterceptor;
 import io.microsphere.spring.beans.BeanSource;
 import io.microsphere.spring.core.annotation.ResolvablePlaceholderAnnotationAttributes;
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanNameGenerator;
+import org.springframework.beans.factory.support.ManagedList;
 import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
 import org.springframework.core.annotation.AnnotationAttributes;
 import org.springframework.core.type.AnnotationMetadata;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static io.microsphere.logging.LoggerFactory.getLogger;
@@ -39,6 +46,7 @@ import static io.microsphere.spring.beans.BeanSource.registerBeans;
 import static io.microsphere.spring.beans.factory.support.BeanRegistrar.registerBeanDefinition;
 import static io.microsphere.util.ArrayUtils.forEach;
 import static io.microsphere.util.ArrayUtils.length;
+import static io.microsphere.util.StringUtils.isBlank;
 import static org.springframework.beans.factory.support.BeanDefinitionBuilder.genericBeanDefinition;
 
 /**
@@ -50,6 +58,7 @@ import static org.springframework.beans.factory.support.BeanDefinitionBuilder.ge
  * @see ExecutorInterceptor
  * @see InterceptingExecutor
  * @see InterceptingExecutorInterceptor
+ * @see StatementTrackingInterceptor
  * @since 1.0.0
  */
 public class MyBatisExtensionBeanDefinitionRegistrar extends MyBatisImportBeanDefinitionRegistrar<EnableMyBatisExtension> {
@@ -61,6 +70,26 @@ public class MyBatisExtensionBeanDefinitionRegistrar extends MyBatisImportBeanDe
      */
     public static final String INTERCEPTING_EXECUTOR_INTERCEPTOR_BEAN_NAME = "interceptingExecutorInterceptor";
 
+    /**
+     * The Spring Bean name of {@link StatementTrackingInterceptor}
+     */
+    public static final String STATEMENT_TRACKING_INTERCEPTOR_BEAN_NAME = "statementTrackingInterceptor";
+
+    /**
+     * The Spring Bean name of {@link ShardingExecutorFilter}
+     */
+    public static final String SHARDING_EXECUTOR_FILTER_BEAN_NAME = "shardingExecutorFilter";
+
+    /**
+     * The Spring Bean name of {@link MapperModelCache}
+     */
+    public static final String MAPPER_MODEL_CACHE_BEAN_NAME = "mapperModelCache";
+
+    /**
+     * The Spring Bean name of {@link ParallelMapperXMLParser}
+     */
+    public static final String PARALLEL_MAPPER_XML_PARSER_BEAN_NAME = "parallelMapperXMLParser";
+
     /**
      * Registers the relevant {@link BeanDefinition}s for the intercepting executor components
      * if the {@link EnableMyBatisExtension#interceptExecutor()} attribute is enabled.
@@ -68,6 +97,13 @@ public class MyBatisExtensionBeanDefinitionRegistrar extends MyBatisImportBeanDe
      * This includes registering {@link ExecutorFilter}s and {@link ExecutorInterceptor}s
      * from the specified sources, and conditionally registering the
      * {@link InterceptingExecutorInterceptor} if any filters or interceptors are present.
+     * <p>
+     * The {@link StatementTrackingInterceptor} will be registered if the
+     * {@link EnableMyBatisExtension#trackStatements()} attribute is enabled.
+     * <p>
+     * The {@link MapperModelCache} will be registered if the {@link EnableMyBatisExtension#shareMapperModel()}
+     * attribute is enabled, and the {@link ParallelMapperXMLParser} will be registered if the
+     * {@link EnableMyBatisExtension#parallelMapperParsing()} attribute is enabled.
      *
      * @param metadata                the {@link AnnotationMetadata} of the importing class
      * @param registry                the {@link BeanDefinitionRegistry} to register bean definitions into
@@ -78,12 +114,67 @@ public class MyBatisExtensionBeanDefinitionRegistrar extends MyBatisImportBeanDe
     protected void registerBeanDefinitions(AnnotationMetadata metadata, BeanDefinitionRegistry registry,
                                            BeanNameGenerator importBeanNameGenerator,
                                            ResolvablePlaceholderAnnotationAttributes<EnableMyBatisExtension> attributes) {
+        recordRegistration(metadata, () -> doRegisterBeanDefinitions(attributes, registry));
+    }
+
+    private void doRegisterBeanDefinitions(AnnotationAttributes attributes, BeanDefinitionRegistry registry) {
+        boolean registered = false;
         if (attributes.getBoolean("interceptExecutor")) {
             BeanSource[] sources = (BeanSource[]) attributes.get("sources");
+            registerShardingExecutorFilterIfRequired(attributes, registry);
             registerExecutorFilters(sources);
             registerExecutorInterceptors(sources);
-            registerInterceptingExecutorInterceptorIfRequired(registry);
+            registered = registerInterceptingExecutorInterceptorIfRequired(registry);
+        }
+        if (attributes.getBoolean("trackStatements")) {
+            registerStatementTrackingInterceptor(registry);
+            registered = true;
+        }
+        boolean parallelMapperParsing = attributes.getBoolean("parallelMapperParsing");
+        if (parallelMapperParsing) {
+            registerParallelMapperXMLParser(registry);
+            registered = true;
+        }
+        if (attributes.getBoolean("shareMapperModel")) {
+            registerMapperModelCache(registry, parallelMapperParsing);
+            registered = true;
+        }
+        if (registered) {
+            registerBeanDefinition(registry, SqlSessionFactoryBeanPostProcessor.class);
+        }
+    }
+
+    /**
+     * Register the {@link BeanDefinition} of {@link ShardingExecutorFilter} if the
+     * {@link EnableMyBatisExtension#shardDataSources()} attribute is present.
+     *
+     * @param attributes {@link AnnotationAttributes}
+     * @param registry   {@link BeanDefinitionRegistry}
+     * @see ShardingExecutorFilter
+     */
+    private void registerShardingExecutorFilterIfRequired(AnnotationAttributes attributes, BeanDefinitionRegistry registry) {
+        String[] shardDataSources = attributes.getStringArray("shardDataSources");
+        if (length(shardDataSources) == 0) {
+            return;
+        }
+        ManagedList<RuntimeBeanReference> shards = new ManagedList<>(shardDataSources.length);
+        forEach(shardDataSources, beanName -> shards.add(new RuntimeBeanReference(beanName)));
+
+        String shardingExecutorService = attributes.getString("shardingExecutorService");
+        BeanDefinitionBuilder builder = genericBeanDefinition(ShardingExecutorFilter.class)
+                .addConstructorArgValue(shards);
+        if (isBlank(shardingExecutorService)) {
+            builder.addConstructorArgValue(null);
+        } else {
+            builder.addConstructorArgReference(shardingExecutorService);
         }
+
+        Map<String, String> shardKeys = new LinkedHashMap<>();
+        stringArrayToProperties(attributes.getStringArray("shardKeys"))
+                .forEach((statementId, keyProperty) -> shardKeys.put((String) statementId, (String) keyProperty));
+        setPropertyValue(builder, "shardKeys", shardKeys);
+
+        registerBeanDefinition(registry, SHARDING_EXECUTOR_FILTER_BEAN_NAME, builder.getBeanDefinition());
     }
 
     /**
@@ -124,11 +215,12 @@ public class MyBatisExtensionBeanDefinitionRegistrar extends MyBatisImportBeanDe
      * {@link ExecutorInterceptor} bean is present.
      *
      * @param registry {@link BeanDefinitionRegistry}
+     * @return <code>true</code> if registered
      * @see ExecutorFilter
      * @see ExecutorInterceptor
      * @see InterceptingExecutorInterceptor
      */
-    private void registerInterceptingExecutorInterceptorIfRequired(BeanDefinitionRegistry registry) {
+    private boolean registerInterceptingExecutorInterceptorIfRequired(BeanDefinitionRegistry registry) {
         String[] executorFilterBeanNames = getBeanNamesByType(ExecutorFilter.class);
         String[] executorInterceptorBeanNames = getBeanNamesByType(ExecutorInterceptor.class);
         int executorFilterBeanCount = length(executorFilterBeanNames);
@@ -137,7 +229,7 @@ public class MyBatisExtensionBeanDefinitionRegistrar extends MyBatisImportBeanDe
                 executorFilterBeanCount, executorInterceptorBeanCount);
         if (executorFilterBeanCount == 0 && executorInterceptorBeanCount == 0) {
             logger.trace("No bean of ExecutorFilter or ExecutorInterceptor was found.");
-            return;
+            return false;
         }
         BeanDefinitionBuilder builder = genericBeanDefinition(InterceptingExecutorInterceptor.class);
         forEach(executorFilterBeanNames, builder::addDependsOn);
@@ -145,6 +237,43 @@ public class MyBatisExtensionBeanDefinitionRegistrar extends MyBatisImportBeanDe
 
         BeanDefinition beanDefinition = builder.getBeanDefinition();
         registerBeanDefinition(registry, INTERCEPTING_EXECUTOR_INTERCEPTOR_BEAN_NAME, beanDefinition);
-        registerBeanDefinition(registry, SqlSessionFactoryBeanPostProcessor.class);
+        return true;
+    }
+
+    /**
+     * Register the {@link BeanDefinition} of {@link StatementTrackingInterceptor}
+     *
+     * @param registry {@link BeanDefinitionRegistry}
+     * @see StatementTrackingInterceptor
+     */
+    private void registerStatementTrackingInterceptor(BeanDefinitionRegistry registry) {
+        BeanDefinition beanDefinition = genericBeanDefinition(StatementTrackingInterceptor.class).getBeanDefinition();
+        registerBeanDefinition(registry, STATEMENT_TRACKING_INTERCEPTOR_BEAN_NAME, beanDefinition);
+    }
+
+    /**
+     * Register the {@link BeanDefinition} of {@link MapperModelCache}
+     *
+     * @param registry              {@link BeanDefinitionRegistry}
+     * @param parallelMapperParsing whether the {@link ParallelMapperXMLParser} is used or not
+     * @see MapperModelCache
+     */
+    private void registerMapperModelCache(BeanDefinitionRegistry registry, boolean parallelMapperParsing) {
+        BeanDefinitionBuilder builder = genericBeanDefinition(MapperModelCache.class);
+        if (parallelMapperParsing) {
+            builder.addConstructorArgReference(PARALLEL_MAPPER_XML_PARSER_BEAN_NAME);
+        }
+        registerBeanDefinition(registry, MAPPER_MODEL_CACHE_BEAN_NAME, builder.getBeanDefinition());
+    }
+
+    /**
+     * Register the {@link BeanDefinition} of {@link ParallelMapperXMLParser}
+     *
+     * @param registry {@link BeanDefinitionRegistry}
+     * @see ParallelMapperXMLParser
+     */
+    private void registerParallelMapperXMLParser(BeanDefinitionRegistry registry) {
+        BeanDefinition beanDefinition = genericBeanDefinition(ParallelMapperXMLParser.class).getBeanDefinition();
+        registerBeanDefinition(registry, PARALLEL_MAPPER_XML_PARSER_BEAN_NAME, beanDefinition);
     }
 }
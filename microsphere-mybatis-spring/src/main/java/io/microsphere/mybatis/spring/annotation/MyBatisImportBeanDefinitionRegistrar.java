@@ -17,6 +17,8 @@
 
 package io.microsphere.mybatis.spring.annotation;
 
+import io.microsphere.mybatis.spring.context.MyBatisStartupTimeline;
+import io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.Phase;
 import io.microsphere.spring.context.annotation.AnnotatedBeanCapableImportBeanDefinitionRegistrar;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
@@ -25,6 +27,7 @@ import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
 import org.springframework.core.annotation.AnnotationAttributes;
+import org.springframework.core.type.AnnotationMetadata;
 
 import java.lang.annotation.Annotation;
 import java.util.Objects;
@@ -36,6 +39,8 @@ import java.util.stream.Stream;
 import static io.microsphere.constants.SeparatorConstants.LINE_SEPARATOR;
 import static io.microsphere.constants.SymbolConstants.EQUAL;
 import static io.microsphere.constants.SymbolConstants.WILDCARD;
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.REGISTRAR_PHASE;
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.getOrRegister;
 import static io.microsphere.spring.beans.BeanUtils.getBeanNames;
 import static io.microsphere.spring.beans.factory.support.BeanRegistrar.registerBeanDefinition;
 import static io.microsphere.text.FormatUtils.format;
@@ -57,6 +62,25 @@ import static org.springframework.core.ResolvableType.forType;
 abstract class MyBatisImportBeanDefinitionRegistrar<A extends Annotation> extends AnnotatedBeanCapableImportBeanDefinitionRegistrar<A>
         implements ImportBeanDefinitionRegistrar {
 
+    /**
+     * Record the registration of the current registrar as the {@link MyBatisStartupTimeline#REGISTRAR_PHASE phase} of
+     * {@link MyBatisStartupTimeline}.
+     *
+     * @param metadata     the {@link AnnotationMetadata} of the importing class
+     * @param registration the registration
+     */
+    protected void recordRegistration(AnnotationMetadata metadata, Runnable registration) {
+        MyBatisStartupTimeline timeline = getOrRegister(getBeanFactory());
+        Phase phase = timeline.start(REGISTRAR_PHASE)
+                .tag("registrar", getClass().getSimpleName())
+                .tag("config-class", metadata.getClassName());
+        try {
+            registration.run();
+        } finally {
+            phase.end();
+        }
+    }
+
     protected void registerBeanDefinitionIfAbsent(AnnotationAttributes attributes, BeanDefinitionRegistry registry,
                                                   String beanName,
                                                   Function<AnnotationAttributes, BeanDefinition> beanDefinitionFunction) {
@@ -17,21 +17,44 @@
 
 package io.microsphere.mybatis.spring.annotation;
 
+import io.microsphere.annotation.Nullable;
+import io.microsphere.mybatis.builder.MapperModelCache;
+import io.microsphere.mybatis.builder.ParallelMapperXMLParser;
 import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.plugin.StatementTrackingInterceptor;
+import io.microsphere.mybatis.spring.context.MyBatisStartupTimeline;
+import io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.Phase;
 import io.microsphere.spring.beans.factory.config.GenericBeanPostProcessorAdapter;
 import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.SqlSessionFactoryBean;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.io.Resource;
 
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.MAPPER_LOAD_PHASE;
 import static io.microsphere.reflect.FieldUtils.getFieldValue;
 import static io.microsphere.util.ArrayUtils.contains;
+import static io.microsphere.util.ArrayUtils.length;
 
 /**
  * The {@link BeanPostProcessor} for {@link SqlSessionFactoryBean} to setup {@link InterceptingExecutorInterceptor}
+ * and {@link StatementTrackingInterceptor}, and to load the mapper locations via
+ * {@link MapperModelCache} or {@link ParallelMapperXMLParser} if present, whose loading is recorded as the
+ * {@link MyBatisStartupTimeline#MAPPER_LOAD_PHASE phase} of {@link MyBatisStartupTimeline}.
  *
  * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
  * @see InterceptingExecutorInterceptor
+ * @see StatementTrackingInterceptor
+ * @see MapperModelCache
+ * @see ParallelMapperXMLParser
  * @see SqlSessionFactoryBean
  * @see SqlSessionFactoryBean#afterPropertiesSet()
  * @see BeanPostProcessor
@@ -39,18 +62,107 @@ import static io.microsphere.util.ArrayUtils.contains;
  */
 class SqlSessionFactoryBeanPostProcessor extends GenericBeanPostProcessorAdapter<SqlSessionFactoryBean> {
 
+    @Nullable
     private final InterceptingExecutorInterceptor interceptingExecutorInterceptor;
 
-    public SqlSessionFactoryBeanPostProcessor(InterceptingExecutorInterceptor interceptingExecutorInterceptor) {
+    private final ObjectProvider<StatementTrackingInterceptor> statementTrackingInterceptorProvider;
+
+    private final ObjectProvider<MapperModelCache> mapperModelCacheProvider;
+
+    private final ObjectProvider<ParallelMapperXMLParser> parallelMapperXMLParserProvider;
+
+    private final ObjectProvider<MyBatisStartupTimeline> timelineProvider;
+
+    /**
+     * The mapper locations of {@link SqlSessionFactoryBean} beans to be loaded via {@link MapperModelCache} or
+     * {@link ParallelMapperXMLParser}
+     */
+    private final Map<String, Resource[]> mapperLocationsMap = new ConcurrentHashMap<>();
+
+    public SqlSessionFactoryBeanPostProcessor(@Nullable InterceptingExecutorInterceptor interceptingExecutorInterceptor,
+                                              ObjectProvider<StatementTrackingInterceptor> statementTrackingInterceptorProvider,
+                                              ObjectProvider<MapperModelCache> mapperModelCacheProvider,
+                                              ObjectProvider<ParallelMapperXMLParser> parallelMapperXMLParserProvider,
+                                              ObjectProvider<MyBatisStartupTimeline> timelineProvider) {
         this.interceptingExecutorInterceptor = interceptingExecutorInterceptor;
+        this.statementTrackingInterceptorProvider = statementTrackingInterceptorProvider;
+        this.mapperModelCacheProvider = mapperModelCacheProvider;
+        this.parallelMapperXMLParserProvider = parallelMapperXMLParserProvider;
+        this.timelineProvider = timelineProvider;
     }
 
     @Override
     protected void processBeforeInitialization(SqlSessionFactoryBean bean, String beanName) throws BeansException {
+        addPlugin(bean, this.interceptingExecutorInterceptor);
+        addPlugin(bean, this.statementTrackingInterceptorProvider.getIfAvailable());
+        deferMapperLocations(bean, beanName);
+    }
+
+    @Override
+    protected void processAfterInitialization(SqlSessionFactoryBean bean, String beanName) throws BeansException {
+        loadMapperLocations(bean, beanName);
+    }
+
+    /**
+     * Take over the mapper locations from {@link SqlSessionFactoryBean}, which will be loaded by
+     * {@link MapperModelCache} or {@link ParallelMapperXMLParser} after initialization.
+     *
+     * @param bean     {@link SqlSessionFactoryBean}
+     * @param beanName the bean name
+     */
+    private void deferMapperLocations(SqlSessionFactoryBean bean, String beanName) {
+        if (this.mapperModelCacheProvider.getIfAvailable() == null
+                && this.parallelMapperXMLParserProvider.getIfAvailable() == null) {
+            return;
+        }
+        Resource[] mapperLocations = getFieldValue(true, bean, "mapperLocations");
+        if (length(mapperLocations) == 0) {
+            return;
+        }
+        this.mapperLocationsMap.put(beanName, mapperLocations);
+        bean.setMapperLocations((Resource[]) null);
+    }
+
+    private void loadMapperLocations(SqlSessionFactoryBean bean, String beanName) {
+        Resource[] mapperLocations = this.mapperLocationsMap.remove(beanName);
+        if (mapperLocations == null) {
+            return;
+        }
+        MapperModelCache mapperModelCache = this.mapperModelCacheProvider.getIfAvailable();
+        MyBatisStartupTimeline timeline = this.timelineProvider.getIfAvailable();
+        Phase loadPhase = timeline == null ? null : timeline.start(MAPPER_LOAD_PHASE)
+                .tag("bean", beanName)
+                .tag("mapper-locations", mapperLocations.length)
+                .tag("loader", (mapperModelCache == null ? ParallelMapperXMLParser.class : MapperModelCache.class).getSimpleName());
+        try {
+            SqlSessionFactory sqlSessionFactory = bean.getObject();
+            URL[] mapperURLs = new URL[mapperLocations.length];
+            for (int i = 0; i < mapperLocations.length; i++) {
+                mapperURLs[i] = mapperLocations[i].getURL();
+            }
+            Configuration configuration = sqlSessionFactory.getConfiguration();
+            if (mapperModelCache == null) {
+                this.parallelMapperXMLParserProvider.getObject().parse(configuration, mapperURLs);
+            } else {
+                mapperModelCache.load(configuration, mapperURLs);
+            }
+        } catch (Exception e) {
+            throw new BeanCreationException(beanName, "Failed to load the mapper locations", e);
+        } finally {
+            if (loadPhase != null) {
+                loadPhase.end();
+            }
+        }
+    }
+
+    private void addPlugin(SqlSessionFactoryBean bean, @Nullable Interceptor plugin) {
+        if (plugin == null) {
+            return;
+        }
         Interceptor[] plugins = getFieldValue(true, bean, "plugins");
-        if (contains(plugins, this.interceptingExecutorInterceptor)) {
+        if (contains(plugins, plugin)) {
             return;
         }
-        bean.addPlugins(this.interceptingExecutorInterceptor);
+        bean.addPlugins(plugin);
     }
 }
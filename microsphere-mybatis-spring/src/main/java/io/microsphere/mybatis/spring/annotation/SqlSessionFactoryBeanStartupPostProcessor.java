@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.spring.annotation;
+
+import io.microsphere.mybatis.spring.context.MyBatisStartupTimeline;
+import io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.Phase;
+import io.microsphere.spring.beans.factory.config.GenericBeanPostProcessorAdapter;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.MAPPER_PARSE_PHASE;
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.SQL_SESSION_FACTORY_BUILD_PHASE;
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.SQL_SESSION_FACTORY_CONFIGURE_PHASE;
+import static io.microsphere.reflect.FieldUtils.getFieldValue;
+import static io.microsphere.util.ArrayUtils.length;
+
+/**
+ * The {@link BeanPostProcessor} for {@link SqlSessionFactoryBean} to record its build into
+ * {@link MyBatisStartupTimeline}, which is split into the phases :
+ * <ul>
+ *     <li>{@link MyBatisStartupTimeline#SQL_SESSION_FACTORY_BUILD_PHASE} : the whole initialization</li>
+ *     <li>{@link MyBatisStartupTimeline#SQL_SESSION_FACTORY_CONFIGURE_PHASE} : the type alias package scan, the type
+ *     handler package scan and the MyBatis config file parsing before the mapper files</li>
+ *     <li>{@link MyBatisStartupTimeline#MAPPER_PARSE_PHASE} : the parsing of each mapper location, which is tracked by
+ *     wrapping the mapper locations, the phase ends when the next mapper location is opened</li>
+ * </ul>
+ * The mapper locations deferred to {@link io.microsphere.mybatis.builder.MapperModelCache} or
+ * {@link io.microsphere.mybatis.builder.ParallelMapperXMLParser} are recorded as the
+ * {@link MyBatisStartupTimeline#MAPPER_LOAD_PHASE} by {@link SqlSessionFactoryBeanPostProcessor}.
+ * <p>
+ * If the initialization fails, the phases are ended and tagged as failed when the same bean is initialized again or
+ * this processor is destroyed, e.g. the context fails to refresh.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see MyBatisStartupTimeline
+ * @see SqlSessionFactoryBean#afterPropertiesSet()
+ * @see BeanPostProcessor
+ * @since 1.0.0
+ */
+class SqlSessionFactoryBeanStartupPostProcessor extends GenericBeanPostProcessorAdapter<SqlSessionFactoryBean>
+        implements DisposableBean {
+
+    private final ObjectProvider<MyBatisStartupTimeline> timelineProvider;
+
+    private final Map<String, BuildRecording> buildRecordings = new ConcurrentHashMap<>();
+
+    public SqlSessionFactoryBeanStartupPostProcessor(ObjectProvider<MyBatisStartupTimeline> timelineProvider) {
+        this.timelineProvider = timelineProvider;
+    }
+
+    @Override
+    protected void processBeforeInitialization(SqlSessionFactoryBean bean, String beanName) throws BeansException {
+        MyBatisStartupTimeline timeline = this.timelineProvider.getIfAvailable();
+        if (timeline == null) {
+            return;
+        }
+        Resource[] mapperLocations = getFieldValue(true, bean, "mapperLocations");
+        Phase buildPhase = timeline.start(SQL_SESSION_FACTORY_BUILD_PHASE)
+                .tag("bean", beanName)
+                .tag("config-location", getFieldValue(true, bean, "configLocation"))
+                .tag("mapper-locations", length(mapperLocations));
+        Phase configurePhase = timeline.start(SQL_SESSION_FACTORY_CONFIGURE_PHASE)
+                .tag("bean", beanName)
+                .tag("type-aliases-package", getFieldValue(true, bean, "typeAliasesPackage"))
+                .tag("type-handlers-package", getFieldValue(true, bean, "typeHandlersPackage"));
+        BuildRecording buildRecording = new BuildRecording(timeline, beanName, buildPhase, configurePhase);
+        BuildRecording failedBuildRecording = this.buildRecordings.put(beanName, buildRecording);
+        if (failedBuildRecording != null) {
+            // The previous initialization of the bean failed
+            failedBuildRecording.fail();
+        }
+
+        int length = length(mapperLocations);
+        if (length > 0) {
+            Resource[] recordingMapperLocations = new Resource[length];
+            for (int i = 0; i < length; i++) {
+                Resource mapperLocation = mapperLocations[i];
+                recordingMapperLocations[i] = mapperLocation == null ? null :
+                        new RecordingResource(mapperLocation, buildRecording);
+            }
+            bean.setMapperLocations(recordingMapperLocations);
+        }
+    }
+
+    @Override
+    protected void processAfterInitialization(SqlSessionFactoryBean bean, String beanName) throws BeansException {
+        BuildRecording buildRecording = this.buildRecordings.remove(beanName);
+        if (buildRecording != null) {
+            buildRecording.end();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // The remaining recordings are of the beans failed to be initialized
+        for (BuildRecording buildRecording : this.buildRecordings.values()) {
+            buildRecording.fail();
+        }
+        this.buildRecordings.clear();
+    }
+
+    /**
+     * The recording of the build of {@link SqlSessionFactoryBean}
+     */
+    private static class BuildRecording {
+
+        private final MyBatisStartupTimeline timeline;
+
+        private final String beanName;
+
+        private final Phase buildPhase;
+
+        private Phase currentPhase;
+
+        BuildRecording(MyBatisStartupTimeline timeline, String beanName, Phase buildPhase, Phase configurePhase) {
+            this.timeline = timeline;
+            this.beanName = beanName;
+            this.buildPhase = buildPhase;
+            this.currentPhase = configurePhase;
+        }
+
+        synchronized void startMapperPhase(Resource mapperLocation) {
+            if (this.buildPhase.isEnded()) {
+                return;
+            }
+            this.currentPhase.end();
+            this.currentPhase = this.timeline.start(MAPPER_PARSE_PHASE)
+                    .tag("bean", this.beanName)
+                    .tag("resource", mapperLocation.getDescription());
+        }
+
+        synchronized void end() {
+            this.currentPhase.end();
+            this.buildPhase.end();
+        }
+
+        synchronized void fail() {
+            if (this.buildPhase.isEnded()) {
+                return;
+            }
+            this.currentPhase.tag("failed", true);
+            this.buildPhase.tag("failed", true);
+            end();
+        }
+    }
+
+    /**
+     * The {@link Resource} delegate starting the {@link MyBatisStartupTimeline#MAPPER_PARSE_PHASE mapper phase} when
+     * it's opened
+     */
+    private static class RecordingResource extends AbstractResource {
+
+        private final Resource delegate;
+
+        private final BuildRecording buildRecording;
+
+        RecordingResource(Resource delegate, BuildRecording buildRecording) {
+            this.delegate = delegate;
+            this.buildRecording = buildRecording;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            this.buildRecording.startMapperPhase(this.delegate);
+            return this.delegate.getInputStream();
+        }
+
+        @Override
+        public boolean exists() {
+            return this.delegate.exists();
+        }
+
+        @Override
+        public boolean isReadable() {
+            return this.delegate.isReadable();
+        }
+
+        @Override
+        public boolean isFile() {
+            return this.delegate.isFile();
+        }
+
+        @Override
+        public URL getURL() throws IOException {
+            return this.delegate.getURL();
+        }
+
+        @Override
+        public URI getURI() throws IOException {
+            return this.delegate.getURI();
+        }
+
+        @Override
+        public File getFile() throws IOException {
+            return this.delegate.getFile();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return this.delegate.contentLength();
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            return this.delegate.lastModified();
+        }
+
+        @Override
+        public Resource createRelative(String relativePath) throws IOException {
+            return this.delegate.createRelative(relativePath);
+        }
+
+        @Override
+        public String getFilename() {
+            return this.delegate.getFilename();
+        }
+
+        @Override
+        public String getDescription() {
+            return this.delegate.getDescription();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return this == other || this.delegate.equals(other instanceof RecordingResource resource ? resource.delegate : other);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.delegate.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            // The resource name of the mapper file is used by MyBatis to identify the loaded resources
+            return this.delegate.toString();
+        }
+    }
+}
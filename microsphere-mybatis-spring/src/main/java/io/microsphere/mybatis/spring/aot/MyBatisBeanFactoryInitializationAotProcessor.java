@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.spring.aot;
+
+import io.microsphere.annotation.Nullable;
+import io.microsphere.logging.Logger;
+import io.microsphere.mybatis.executor.ExecutorFilter;
+import io.microsphere.mybatis.executor.ExecutorInterceptor;
+import org.apache.ibatis.plugin.Interceptor;
+import org.mybatis.spring.mapper.MapperFactoryBean;
+import org.springframework.aot.hint.ReflectionHints;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotContribution;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotProcessor;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.ConstructorArgumentValues.ValueHolder;
+import org.springframework.beans.factory.config.TypedStringValue;
+import org.springframework.core.ResolvableType;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.util.ClassLoaderUtils.resolveClass;
+import static org.springframework.aot.hint.MemberCategory.DECLARED_FIELDS;
+import static org.springframework.aot.hint.MemberCategory.INVOKE_DECLARED_CONSTRUCTORS;
+import static org.springframework.aot.hint.MemberCategory.INVOKE_DECLARED_METHODS;
+import static org.springframework.aot.hint.MemberCategory.INVOKE_PUBLIC_METHODS;
+import static org.springframework.beans.factory.FactoryBean.OBJECT_TYPE_ATTRIBUTE;
+import static org.springframework.core.ResolvableType.forMethodParameter;
+import static org.springframework.core.ResolvableType.forMethodReturnType;
+import static org.springframework.util.ClassUtils.getUserClass;
+
+/**
+ * The {@link BeanFactoryInitializationAotProcessor} contributes the runtime hints depending on the MyBatis beans of
+ * the application :
+ * <ul>
+ *     <li>the mapper interfaces of {@link MapperFactoryBean} beans are registered for the JDK proxies and the
+ *     reflection of their public methods, the non-JDK types of their method signatures, e.g. the entities, are
+ *     registered for the reflection of their constructors, methods and fields which are used by
+ *     {@link org.apache.ibatis.reflection.Reflector}</li>
+ *     <li>the {@link ExecutorFilter}, {@link ExecutorInterceptor} and {@link Interceptor} beans are registered for
+ *     the reflection of their constructors and public methods</li>
+ * </ul>
+ * The bean definitions registered by {@link io.microsphere.mybatis.spring.annotation.EnableMyBatis @EnableMyBatis}
+ * and {@link io.microsphere.mybatis.spring.annotation.EnableMyBatisExtension @EnableMyBatisExtension} are
+ * precomputed by the Spring AOT engine itself, because their registrars are processed as a part of the
+ * configuration classes.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ * // META-INF/spring/aot.factories
+ * org.springframework.beans.factory.aot.BeanFactoryInitializationAotProcessor=\
+ * io.microsphere.mybatis.spring.aot.MyBatisBeanFactoryInitializationAotProcessor
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see BeanFactoryInitializationAotProcessor
+ * @see MyBatisRuntimeHints
+ * @since 1.0.0
+ */
+public class MyBatisBeanFactoryInitializationAotProcessor implements BeanFactoryInitializationAotProcessor {
+
+    private static final Logger logger = getLogger(MyBatisBeanFactoryInitializationAotProcessor.class);
+
+    /**
+     * The component types of MyBatis and its extensions which are instantiated or introspected reflectively
+     */
+    static final Class<?>[] COMPONENT_TYPES = {
+            ExecutorFilter.class,
+            ExecutorInterceptor.class,
+            Interceptor.class
+    };
+
+    @Override
+    @Nullable
+    public BeanFactoryInitializationAotContribution processAheadOfTime(ConfigurableListableBeanFactory beanFactory) {
+        ClassLoader classLoader = beanFactory.getBeanClassLoader();
+        Set<Class<?>> mapperInterfaces = new LinkedHashSet<>();
+        Set<Class<?>> componentClasses = new LinkedHashSet<>();
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition beanDefinition = beanFactory.getMergedBeanDefinition(beanName);
+            Class<?> beanClass = resolveType(beanDefinition.getBeanClassName(), classLoader);
+            if (beanClass != null && MapperFactoryBean.class.isAssignableFrom(beanClass)) {
+                Class<?> mapperInterface = resolveMapperInterface(beanDefinition, classLoader);
+                if (mapperInterface != null) {
+                    mapperInterfaces.add(mapperInterface);
+                }
+            } else {
+                Class<?> beanType = beanFactory.getType(beanName, false);
+                if (isComponentClass(beanType)) {
+                    componentClasses.add(getUserClass(beanType));
+                }
+            }
+        }
+
+        if (mapperInterfaces.isEmpty() && componentClasses.isEmpty()) {
+            return null;
+        }
+
+        if (logger.isTraceEnabled()) {
+            logger.trace("The runtime hints will be contributed for the mapper interfaces : {} and the components : {}",
+                    mapperInterfaces, componentClasses);
+        }
+
+        return (generationContext, beanFactoryInitializationCode) -> {
+            RuntimeHints hints = generationContext.getRuntimeHints();
+            mapperInterfaces.forEach(mapperInterface -> registerMapperInterfaceHints(hints, mapperInterface));
+            componentClasses.forEach(componentClass -> registerComponentHints(hints, componentClass));
+        };
+    }
+
+    /**
+     * Register the hints of the specified mapper interface and the non-JDK types of its method signatures.
+     *
+     * @param hints           {@link RuntimeHints}
+     * @param mapperInterface the mapper interface
+     */
+    static void registerMapperInterfaceHints(RuntimeHints hints, Class<?> mapperInterface) {
+        hints.proxies().registerJdkProxy(mapperInterface);
+        ReflectionHints reflectionHints = hints.reflection();
+        reflectionHints.registerType(mapperInterface, INVOKE_PUBLIC_METHODS);
+        for (Class<?> type : resolveSignatureTypes(mapperInterface)) {
+            reflectionHints.registerType(type, INVOKE_DECLARED_CONSTRUCTORS, INVOKE_DECLARED_METHODS, DECLARED_FIELDS);
+        }
+    }
+
+    /**
+     * Register the hints of the specified component class.
+     *
+     * @param hints          {@link RuntimeHints}
+     * @param componentClass the class of {@link #COMPONENT_TYPES component}
+     */
+    static void registerComponentHints(RuntimeHints hints, Class<?> componentClass) {
+        hints.reflection().registerType(componentClass, INVOKE_DECLARED_CONSTRUCTORS, INVOKE_PUBLIC_METHODS);
+    }
+
+    /**
+     * Resolve the mapper interface from the {@link MapperFactoryBean}'s {@link BeanDefinition}, which may be
+     * specified by the attribute {@link org.springframework.beans.factory.FactoryBean#OBJECT_TYPE_ATTRIBUTE}, the
+     * property "mapperInterface" or the first constructor argument.
+     *
+     * @param beanDefinition the {@link BeanDefinition} of {@link MapperFactoryBean}
+     * @param classLoader    {@link ClassLoader}
+     * @return <code>null</code> if the mapper interface can't be resolved
+     */
+    @Nullable
+    static Class<?> resolveMapperInterface(BeanDefinition beanDefinition, ClassLoader classLoader) {
+        List<Object> candidates = new ArrayList<>();
+        candidates.add(beanDefinition.getAttribute(OBJECT_TYPE_ATTRIBUTE));
+        PropertyValue propertyValue = beanDefinition.getPropertyValues().getPropertyValue("mapperInterface");
+        if (propertyValue != null) {
+            candidates.add(propertyValue.getValue());
+        }
+        addValues(beanDefinition.getConstructorArgumentValues().getIndexedArgumentValues().values(), candidates);
+        addValues(beanDefinition.getConstructorArgumentValues().getGenericArgumentValues(), candidates);
+
+        for (Object candidate : candidates) {
+            Class<?> mapperInterface = resolveType(candidate, classLoader);
+            if (mapperInterface != null && mapperInterface.isInterface()) {
+                return mapperInterface;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolve the non-JDK types of the method signatures declared by the specified mapper interface.
+     *
+     * @param mapperInterface the mapper interface
+     * @return non-null
+     */
+    static Set<Class<?>> resolveSignatureTypes(Class<?> mapperInterface) {
+        Set<Class<?>> visitedTypes = new LinkedHashSet<>();
+        Set<Class<?>> signatureTypes = new LinkedHashSet<>();
+        for (Method method : mapperInterface.getMethods()) {
+            if (method.isDefault() || method.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            collectTypes(forMethodReturnType(method, mapperInterface), visitedTypes, signatureTypes);
+            for (int i = 0; i < method.getParameterCount(); i++) {
+                collectTypes(forMethodParameter(method, i, mapperInterface), visitedTypes, signatureTypes);
+            }
+        }
+        return signatureTypes;
+    }
+
+    private static void collectTypes(ResolvableType type, Set<Class<?>> visitedTypes, Set<Class<?>> signatureTypes) {
+        Class<?> rawType = type.resolve();
+        if (rawType == null || !visitedTypes.add(rawType)) {
+            return;
+        }
+        if (rawType.isArray()) {
+            collectTypes(type.getComponentType(), visitedTypes, signatureTypes);
+            return;
+        }
+        if (isSignatureType(rawType)) {
+            signatureTypes.add(rawType);
+        }
+        for (ResolvableType generic : type.getGenerics()) {
+            collectTypes(generic, visitedTypes, signatureTypes);
+        }
+    }
+
+    private static boolean isSignatureType(Class<?> type) {
+        if (type.isPrimitive() || type.isInterface() || type.isAnnotation()) {
+            return false;
+        }
+        String typeName = type.getName();
+        return !typeName.startsWith("java.") && !typeName.startsWith("javax.")
+                && !typeName.startsWith("org.apache.ibatis.");
+    }
+
+    private static boolean isComponentClass(@Nullable Class<?> beanType) {
+        if (beanType == null) {
+            return false;
+        }
+        for (Class<?> componentType : COMPONENT_TYPES) {
+            if (componentType.isAssignableFrom(beanType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addValues(Collection<ValueHolder> valueHolders, List<Object> values) {
+        for (ValueHolder valueHolder : valueHolders) {
+            values.add(valueHolder.getValue());
+        }
+    }
+
+    @Nullable
+    private static Class<?> resolveType(@Nullable Object value, ClassLoader classLoader) {
+        if (value instanceof Class<?> type) {
+            return type;
+        }
+        if (value instanceof TypedStringValue typedStringValue) {
+            value = typedStringValue.getValue();
+        }
+        if (value instanceof String typeName) {
+            return resolveClass(typeName, classLoader);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.spring.aot;
+
+import io.microsphere.mybatis.datasource.ConnectionPoolAdapter;
+import io.microsphere.mybatis.executor.ExecutorFilter;
+import io.microsphere.mybatis.executor.ExecutorInterceptor;
+import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.parsing.XPathParser;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.transaction.managed.ManagedTransaction;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.transaction.SpringManagedTransaction;
+import org.springframework.aot.hint.ReflectionHints;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.util.Map;
+import java.util.Properties;
+
+import static io.microsphere.mybatis.builder.ConfigurationSnapshot.DEFAULT_SNAPSHOT_RESOURCE;
+import static io.microsphere.mybatis.datasource.DruidConnectionPoolAdapter.DRUID_DATA_SOURCE_CLASS_NAME;
+import static io.microsphere.mybatis.datasource.HikariConnectionPoolAdapter.HIKARI_DATA_SOURCE_CLASS_NAME;
+import static java.util.Collections.emptyList;
+import static org.springframework.aot.hint.ExecutableMode.INVOKE;
+import static org.springframework.aot.hint.MemberCategory.DECLARED_FIELDS;
+import static org.springframework.aot.hint.MemberCategory.INVOKE_DECLARED_CONSTRUCTORS;
+import static org.springframework.aot.hint.MemberCategory.INVOKE_PUBLIC_METHODS;
+
+/**
+ * The {@link RuntimeHintsRegistrar} for MyBatis and the microsphere MyBatis extensions, which registers the static
+ * hints required by a GraalVM native image :
+ * <ul>
+ *     <li>the DTD resources resolved by MyBatis XML parsing, the {@link ExecutorFilter} / {@link ExecutorInterceptor}
+ *     SPI resources and the build-time configuration snapshot</li>
+ *     <li>the JDK proxies and public methods of the MyBatis plugin targets</li>
+ *     <li>the fields of {@link SqlSessionFactoryBean} read by
+ *     {@link io.microsphere.mybatis.spring.annotation.EnableMyBatisExtension}</li>
+ *     <li>the types instantiated by MyBatis from their aliases or class names</li>
+ *     <li>the MyBatis internals accessed by {@link io.microsphere.mybatis.executor.Executors} and
+ *     {@link io.microsphere.mybatis.builder.ParallelMapperXMLParser}, and the connection pools inspected by the
+ *     {@link ConnectionPoolAdapter ConnectionPoolAdapters}</li>
+ * </ul>
+ * The hints depending on the application beans, e.g. the mapper interfaces, are contributed by
+ * {@link MyBatisBeanFactoryInitializationAotProcessor}.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ * // META-INF/spring/aot.factories
+ * org.springframework.aot.hint.RuntimeHintsRegistrar=\
+ * io.microsphere.mybatis.spring.aot.MyBatisRuntimeHints
+ *
+ * // or imperatively
+ * RuntimeHints hints = new RuntimeHints();
+ * new MyBatisRuntimeHints().registerHints(hints, classLoader);
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RuntimeHintsRegistrar
+ * @see MyBatisBeanFactoryInitializationAotProcessor
+ * @since 1.0.0
+ */
+public class MyBatisRuntimeHints implements RuntimeHintsRegistrar {
+
+    /**
+     * The resource pattern of the DTDs resolved by {@link org.apache.ibatis.builder.xml.XMLMapperEntityResolver}
+     */
+    public static final String MYBATIS_DTD_RESOURCE_PATTERN = "org/apache/ibatis/builder/xml/*.dtd";
+
+    /**
+     * The types intercepted by the MyBatis plugins, which are proxied by {@link org.apache.ibatis.plugin.Plugin}
+     */
+    static final Class<?>[] PLUGIN_TARGET_TYPES = {
+            Executor.class,
+            StatementHandler.class,
+            ParameterHandler.class,
+            ResultSetHandler.class
+    };
+
+    /**
+     * The SPI types of the microsphere MyBatis extensions
+     */
+    static final Class<?>[] SPI_TYPES = {
+            ExecutorFilter.class,
+            ExecutorInterceptor.class,
+            ConnectionPoolAdapter.class
+    };
+
+    /**
+     * The names of types instantiated reflectively by MyBatis, mostly from the built-in type aliases
+     */
+    static final String[] REFLECTIVE_TYPE_NAMES = {
+            // Logging
+            "org.apache.ibatis.logging.slf4j.Slf4jImpl",
+            "org.apache.ibatis.logging.commons.JakartaCommonsLoggingImpl",
+            "org.apache.ibatis.logging.log4j2.Log4j2Impl",
+            "org.apache.ibatis.logging.jdk14.Jdk14LoggingImpl",
+            "org.apache.ibatis.logging.stdout.StdOutImpl",
+            "org.apache.ibatis.logging.nologging.NoLoggingImpl",
+            // Transaction
+            "org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory",
+            "org.apache.ibatis.transaction.managed.ManagedTransactionFactory",
+            "org.mybatis.spring.transaction.SpringManagedTransactionFactory",
+            // DataSource
+            "org.apache.ibatis.datasource.pooled.PooledDataSourceFactory",
+            "org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory",
+            "org.apache.ibatis.datasource.jndi.JndiDataSourceFactory",
+            // Cache
+            "org.apache.ibatis.cache.impl.PerpetualCache",
+            "org.apache.ibatis.cache.decorators.LruCache",
+            "org.apache.ibatis.cache.decorators.FifoCache",
+            "org.apache.ibatis.cache.decorators.SoftCache",
+            "org.apache.ibatis.cache.decorators.WeakCache",
+            // Scripting
+            "org.apache.ibatis.scripting.xmltags.XMLLanguageDriver",
+            "org.apache.ibatis.scripting.defaults.RawLanguageDriver",
+            // Lazy loading
+            "org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory",
+            "org.apache.ibatis.executor.loader.cglib.CglibProxyFactory",
+            // The collections created by org.apache.ibatis.reflection.factory.DefaultObjectFactory
+            "java.util.ArrayList",
+            "java.util.HashMap",
+            "java.util.HashSet",
+            "java.util.TreeSet"
+    };
+
+    /**
+     * The {@link org.apache.ibatis.transaction.Transaction} types whose fields "dataSource", "connection" and
+     * "autoCommit" are read by {@link io.microsphere.mybatis.executor.Executors}
+     */
+    static final Class<?>[] TRANSACTION_TYPES = {
+            JdbcTransaction.class,
+            ManagedTransaction.class,
+            SpringManagedTransaction.class
+    };
+
+    /**
+     * The class name of Spring "TransactionSynchronizationManager" invoked by
+     * {@link io.microsphere.mybatis.executor.Executors#isAutoCommit(Executor)}
+     */
+    static final String TRANSACTION_SYNCHRONIZATION_MANAGER_CLASS_NAME = "org.springframework.transaction.support.TransactionSynchronizationManager";
+
+    /**
+     * The class name of the Hikari pool returned by "HikariDataSource#getHikariPoolMXBean()"
+     */
+    static final String HIKARI_POOL_CLASS_NAME = "com.zaxxer.hikari.pool.HikariPool";
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        registerResourceHints(hints);
+        registerPluginTargetHints(hints);
+        registerReflectionHints(hints, classLoader);
+    }
+
+    private void registerResourceHints(RuntimeHints hints) {
+        hints.resources().registerPattern(MYBATIS_DTD_RESOURCE_PATTERN);
+        hints.resources().registerPattern(DEFAULT_SNAPSHOT_RESOURCE);
+        for (Class<?> spiType : SPI_TYPES) {
+            hints.resources().registerPattern("META-INF/services/" + spiType.getName());
+        }
+    }
+
+    private void registerPluginTargetHints(RuntimeHints hints) {
+        for (Class<?> targetType : PLUGIN_TARGET_TYPES) {
+            hints.proxies().registerJdkProxy(targetType);
+            hints.reflection().registerType(targetType, INVOKE_PUBLIC_METHODS);
+        }
+    }
+
+    private void registerReflectionHints(RuntimeHints hints, ClassLoader classLoader) {
+        ReflectionHints reflectionHints = hints.reflection();
+        // SqlSessionFactoryBeanPostProcessor reads the fields "plugins" and "mapperLocations"
+        reflectionHints.registerType(SqlSessionFactoryBean.class, DECLARED_FIELDS);
+        for (String typeName : REFLECTIVE_TYPE_NAMES) {
+            reflectionHints.registerTypeIfPresent(classLoader, typeName, INVOKE_DECLARED_CONSTRUCTORS);
+        }
+        registerExecutorHints(reflectionHints);
+        registerBuilderHints(reflectionHints);
+        registerConnectionPoolHints(reflectionHints);
+    }
+
+    private void registerExecutorHints(ReflectionHints reflectionHints) {
+        // Executors#getDelegate reads the field "delegate"
+        reflectionHints.registerType(CachingExecutor.class, DECLARED_FIELDS);
+        for (Class<?> transactionType : TRANSACTION_TYPES) {
+            reflectionHints.registerType(transactionType, DECLARED_FIELDS);
+        }
+        TypeReference synchronizationManager = TypeReference.of(TRANSACTION_SYNCHRONIZATION_MANAGER_CLASS_NAME);
+        reflectionHints.registerType(synchronizationManager, builder -> builder.onReachableType(synchronizationManager)
+                .withMethod("isActualTransactionActive", emptyList(), INVOKE));
+    }
+
+    private void registerBuilderHints(ReflectionHints reflectionHints) {
+        // ParallelMapperXMLParser and ConfigurationSnapshot create the builders from the parsed documents by the
+        // private constructors
+        reflectionHints.registerType(XMLMapperBuilder.class, builder -> builder.withConstructor(
+                TypeReference.listOf(XPathParser.class, Configuration.class, String.class, Map.class), INVOKE));
+        reflectionHints.registerType(XMLConfigBuilder.class, builder -> builder.withConstructor(
+                TypeReference.listOf(Class.class, XPathParser.class, String.class, Properties.class), INVOKE));
+    }
+
+    private void registerConnectionPoolHints(ReflectionHints reflectionHints) {
+        // The ConnectionPoolAdapters load the pool classes and invoke their public getters by names
+        registerPublicMethods(reflectionHints, TypeReference.of(DRUID_DATA_SOURCE_CLASS_NAME), DRUID_DATA_SOURCE_CLASS_NAME);
+        registerPublicMethods(reflectionHints, TypeReference.of(HIKARI_DATA_SOURCE_CLASS_NAME), HIKARI_DATA_SOURCE_CLASS_NAME);
+        registerPublicMethods(reflectionHints, TypeReference.of(HIKARI_DATA_SOURCE_CLASS_NAME), HIKARI_POOL_CLASS_NAME);
+    }
+
+    private void registerPublicMethods(ReflectionHints reflectionHints, TypeReference reachableType, String typeName) {
+        reflectionHints.registerType(TypeReference.of(typeName), builder -> builder.onReachableType(reachableType)
+                .withMembers(INVOKE_PUBLIC_METHODS));
+    }
+}
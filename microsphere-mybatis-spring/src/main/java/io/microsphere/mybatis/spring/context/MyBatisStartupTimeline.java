@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.spring.context;
+
+import io.microsphere.logging.Logger;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.util.Assert.assertNotNull;
+import static java.lang.System.lineSeparator;
+import static java.lang.System.nanoTime;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * The startup timeline of the MyBatis Spring integration, each phase, e.g. the registration of the
+ * {@link org.springframework.context.annotation.ImportBeanDefinitionRegistrar registrars}, the build of
+ * {@link org.mybatis.spring.SqlSessionFactoryBean} or the parsing of a mapper file, is recorded as a Spring
+ * {@link StartupStep} of the {@link ApplicationStartup} named with the prefix {@link #STEP_NAME_PREFIX}, and the
+ * summary of the phases is logged at the end of the context refresh.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   MyBatisStartupTimeline timeline = MyBatisStartupTimeline.getOrRegister(beanFactory);
+ *   MyBatisStartupTimeline.Phase phase = timeline.start("mapper.parse").tag("resource", "UserMapper.xml");
+ *   try {
+ *       // parse the mapper file
+ *   } finally {
+ *       phase.end();
+ *   }
+ *   String summary = timeline.getSummary();
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ApplicationStartup
+ * @see StartupStep
+ * @since 1.0.0
+ */
+public class MyBatisStartupTimeline implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Logger logger = getLogger(MyBatisStartupTimeline.class);
+
+    /**
+     * The bean name of {@link MyBatisStartupTimeline}
+     */
+    public static final String BEAN_NAME = "myBatisStartupTimeline";
+
+    /**
+     * The name prefix of the {@link StartupStep StartupSteps}
+     */
+    public static final String STEP_NAME_PREFIX = "microsphere.mybatis.";
+
+    /**
+     * The phase name of the registrar
+     */
+    public static final String REGISTRAR_PHASE = "registrar";
+
+    /**
+     * The phase name of the build of {@link org.mybatis.spring.SqlSessionFactoryBean}
+     */
+    public static final String SQL_SESSION_FACTORY_BUILD_PHASE = "sql-session-factory.build";
+
+    /**
+     * The phase name of the configuration of {@link org.mybatis.spring.SqlSessionFactoryBean} before parsing the mapper
+     * files, including the type alias package scan, type handler package scan and MyBatis config file parsing
+     */
+    public static final String SQL_SESSION_FACTORY_CONFIGURE_PHASE = "sql-session-factory.configure";
+
+    /**
+     * The phase name of the parsing of a mapper file
+     */
+    public static final String MAPPER_PARSE_PHASE = "mapper.parse";
+
+    /**
+     * The phase name of the loading of the mapper files which are deferred to
+     * {@link io.microsphere.mybatis.builder.MapperModelCache} or
+     * {@link io.microsphere.mybatis.builder.ParallelMapperXMLParser} after the build of
+     * {@link org.mybatis.spring.SqlSessionFactoryBean}
+     */
+    public static final String MAPPER_LOAD_PHASE = "mapper.load";
+
+    /**
+     * The max number of the slowest mapper files in the summary
+     */
+    static final int SLOWEST_MAPPERS_LIMIT = 5;
+
+    private final Supplier<ApplicationStartup> applicationStartupSupplier;
+
+    private final Queue<Phase> phases = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean reported = new AtomicBoolean(false);
+
+    public MyBatisStartupTimeline(ApplicationStartup applicationStartup) {
+        this(() -> applicationStartup);
+    }
+
+    public MyBatisStartupTimeline(Supplier<ApplicationStartup> applicationStartupSupplier) {
+        assertNotNull(applicationStartupSupplier, () -> "The 'applicationStartupSupplier' argument must not be null");
+        this.applicationStartupSupplier = applicationStartupSupplier;
+    }
+
+    /**
+     * Start a phase
+     *
+     * @param name the phase name, e.g. {@link #MAPPER_PARSE_PHASE}
+     * @return the started {@link Phase}
+     */
+    public Phase start(String name) {
+        StartupStep step = applicationStartupSupplier.get().start(STEP_NAME_PREFIX + name);
+        return new Phase(name, step);
+    }
+
+    /**
+     * Get the ended phases in the ending order
+     *
+     * @return non-null read-only {@link List}
+     */
+    public List<Phase> getPhases() {
+        return unmodifiableList(new ArrayList<>(phases));
+    }
+
+    /**
+     * Get the summary of the ended phases, the mapper files are aggregated with the slowest ones.
+     *
+     * @return non-null
+     */
+    public String getSummary() {
+        List<Phase> mapperPhases = new ArrayList<>();
+        StringBuilder summary = new StringBuilder("MyBatis startup timeline :");
+        for (Phase phase : getPhases()) {
+            if (MAPPER_PARSE_PHASE.equals(phase.getName())) {
+                mapperPhases.add(phase);
+            } else {
+                appendPhase(summary, phase, "  ");
+            }
+        }
+        if (!mapperPhases.isEmpty()) {
+            long totalTime = 0;
+            for (Phase phase : mapperPhases) {
+                totalTime += phase.getDuration();
+            }
+            summary.append(lineSeparator())
+                    .append("  ").append(MAPPER_PARSE_PHASE)
+                    .append(" : ").append(mapperPhases.size()).append(" file(s) in ")
+                    .append(NANOSECONDS.toMillis(totalTime)).append(" ms, the slowest :");
+            mapperPhases.sort(Comparator.comparingLong(Phase::getDuration).reversed());
+            int size = Math.min(SLOWEST_MAPPERS_LIMIT, mapperPhases.size());
+            for (int i = 0; i < size; i++) {
+                appendPhase(summary, mapperPhases.get(i), "    ");
+            }
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (!phases.isEmpty() && reported.compareAndSet(false, true) && logger.isInfoEnabled()) {
+            logger.info(getSummary());
+        }
+    }
+
+    /**
+     * Get the {@link MyBatisStartupTimeline} singleton from the {@link ConfigurableListableBeanFactory}, or register
+     * it if absent.
+     *
+     * @param beanFactory {@link ConfigurableListableBeanFactory}
+     * @return non-null
+     */
+    public static MyBatisStartupTimeline getOrRegister(ConfigurableListableBeanFactory beanFactory) {
+        synchronized (beanFactory.getSingletonMutex()) {
+            if (beanFactory.containsSingleton(BEAN_NAME)) {
+                return beanFactory.getBean(BEAN_NAME, MyBatisStartupTimeline.class);
+            }
+            MyBatisStartupTimeline timeline = new MyBatisStartupTimeline(beanFactory::getApplicationStartup);
+            beanFactory.registerSingleton(BEAN_NAME, timeline);
+            return timeline;
+        }
+    }
+
+    private static void appendPhase(StringBuilder summary, Phase phase, String indent) {
+        summary.append(lineSeparator())
+                .append(indent).append(phase.getName())
+                .append(" : ").append(NANOSECONDS.toMillis(phase.getDuration())).append(" ms");
+        if (!phase.getTags().isEmpty()) {
+            summary.append(' ').append(phase.getTags());
+        }
+    }
+
+    /**
+     * The phase of {@link MyBatisStartupTimeline}
+     */
+    public class Phase {
+
+        private final String name;
+
+        private final StartupStep step;
+
+        private final Map<String, String> tags = new LinkedHashMap<>();
+
+        private final long startTime;
+
+        private volatile long duration = -1L;
+
+        Phase(String name, StartupStep step) {
+            this.name = name;
+            this.step = step;
+            this.startTime = nanoTime();
+        }
+
+        /**
+         * Tag the phase, the <code>null</code> value will be ignored
+         *
+         * @param key   the tag key
+         * @param value the tag value
+         * @return this
+         */
+        public Phase tag(String key, Object value) {
+            if (value != null) {
+                String tagValue = String.valueOf(value);
+                this.tags.put(key, tagValue);
+                this.step.tag(key, tagValue);
+            }
+            return this;
+        }
+
+        /**
+         * End the phase, the subsequent invocations will be ignored
+         */
+        public void end() {
+            if (isEnded()) {
+                return;
+            }
+            this.duration = nanoTime() - startTime;
+            this.step.end();
+            phases.add(this);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Map<String, String> getTags() {
+            return unmodifiableMap(tags);
+        }
+
+        /**
+         * Get the duration in nanoseconds
+         *
+         * @return <code>-1</code> if the phase is not ended
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        public boolean isEnded() {
+            return duration > -1L;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.spring.context;
+
+import io.microsphere.logging.Logger;
+import io.microsphere.mybatis.executor.RateLimitingExecutorFilter;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertySource;
+
+import java.util.Properties;
+
+import static io.microsphere.logging.LoggerFactory.getLogger;
+import static io.microsphere.mybatis.executor.RateLimitingExecutorFilter.PROPERTY_NAME_PREFIX;
+import static io.microsphere.spring.core.env.PropertySourcesUtils.getPropertyNames;
+import static io.microsphere.util.Assert.assertNotNull;
+import static io.microsphere.util.Assert.assertTrue;
+
+/**
+ * Configures the {@link RateLimitingExecutorFilter} by the properties of Spring {@link Environment} whose names start
+ * with {@link RateLimitingExecutorFilter#PROPERTY_NAME_PREFIX}, and reconfigures it at runtime once the
+ * {@link Environment} changes, e.g. the Spring Cloud "EnvironmentChangeEvent" is published, thus the rates can be
+ * adjusted without restarting the application. The properties are merged over the options and the rates set on the
+ * {@link RateLimitingExecutorFilter} programmatically, which are kept if the properties are absent.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   @Bean
+ *   public RateLimitingExecutorFilter rateLimitingExecutorFilter() {
+ *       return new RateLimitingExecutorFilter();
+ *   }
+ *
+ *   @Bean
+ *   public RateLimitingEnvironmentConfigurer rateLimitingEnvironmentConfigurer(RateLimitingExecutorFilter filter) {
+ *       return new RateLimitingEnvironmentConfigurer(filter);
+ *   }
+ *
+ *   // application.properties:
+ *   // microsphere.mybatis.rate-limit.mode = block
+ *   // microsphere.mybatis.rate-limit.tenant-property = tenantId
+ *   // microsphere.mybatis.rate-limit.rates.com.acme.mapper.ImportMapper = 50,100
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RateLimitingExecutorFilter
+ * @see Environment
+ * @since 1.0.0
+ */
+public class RateLimitingEnvironmentConfigurer implements EnvironmentAware, InitializingBean,
+        ApplicationListener<ApplicationEvent> {
+
+    private static final Logger logger = getLogger(RateLimitingEnvironmentConfigurer.class);
+
+    /**
+     * The class name of Spring Cloud "EnvironmentChangeEvent"
+     */
+    public static final String ENVIRONMENT_CHANGE_EVENT_CLASS_NAME = "org.springframework.cloud.context.environment.EnvironmentChangeEvent";
+
+    private final RateLimitingExecutorFilter filter;
+
+    private ConfigurableEnvironment environment;
+
+    public RateLimitingEnvironmentConfigurer(RateLimitingExecutorFilter filter) {
+        assertNotNull(filter, () -> "The 'filter' must not be null!");
+        this.filter = filter;
+    }
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        assertTrue(environment instanceof ConfigurableEnvironment,
+                () -> "The 'environment' must be an instance of ConfigurableEnvironment!");
+        this.environment = (ConfigurableEnvironment) environment;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        refresh();
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (isRefreshEvent(event)) {
+            refresh();
+        }
+    }
+
+    /**
+     * Is the {@link ApplicationEvent} triggering the reconfiguration or not
+     *
+     * @param event {@link ApplicationEvent}
+     * @return <code>true</code> if it's {@link ContextRefreshedEvent} or the Spring Cloud "EnvironmentChangeEvent"
+     */
+    protected boolean isRefreshEvent(ApplicationEvent event) {
+        return event instanceof ContextRefreshedEvent
+                || ENVIRONMENT_CHANGE_EVENT_CLASS_NAME.equals(event.getClass().getName());
+    }
+
+    /**
+     * Reconfigure the {@link RateLimitingExecutorFilter} by the current properties of Spring {@link Environment}
+     */
+    public void refresh() {
+        Properties properties = getProperties();
+        this.filter.configure(properties);
+        logger.trace("The RateLimitingExecutorFilter was reconfigured by the properties : {}", properties);
+    }
+
+    /**
+     * Get the properties of Spring {@link Environment} whose names start with
+     * {@link RateLimitingExecutorFilter#PROPERTY_NAME_PREFIX}
+     *
+     * @return non-null
+     */
+    protected Properties getProperties() {
+        Properties properties = new Properties();
+        for (PropertySource<?> propertySource : this.environment.getPropertySources()) {
+            for (String name : getPropertyNames(propertySource)) {
+                if (name.startsWith(PROPERTY_NAME_PREFIX) && !properties.containsKey(name)) {
+                    String value = this.environment.getProperty(name);
+                    if (value != null) {
+                        properties.setProperty(name, value);
+                    }
+                }
+            }
+        }
+        return properties;
+    }
+}
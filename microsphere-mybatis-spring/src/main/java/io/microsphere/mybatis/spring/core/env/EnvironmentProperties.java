@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.spring.core.env;
+
+import io.microsphere.annotation.Nullable;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.PropertySources;
+
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+import static io.microsphere.spring.core.env.PropertySourcesUtils.getPropertyNames;
+import static io.microsphere.util.ArrayUtils.EMPTY_STRING_ARRAY;
+import static io.microsphere.util.ArrayUtils.isEmpty;
+import static io.microsphere.util.Assert.assertNotNull;
+
+/**
+ * The {@link Properties} view backed by the Spring {@link ConfigurableEnvironment Environment}, the properties of
+ * Spring {@link PropertySources} are resolved on demand and cached rather than copied, the local properties added into
+ * this view override the properties of Spring {@link PropertySources}.
+ * <p>
+ * If the prefixes are specified, only the properties whose names start with any of them are resolvable. The
+ * enumerations, e.g. {@link #entrySet()} or {@link #putAll(Map)} to another {@link Properties}, materialize the
+ * resolvable properties once, thus the lookups only cost as the properties are used, while the enumerations, e.g. the
+ * {@code <properties>} element of MyBatis config file, still see all of them. Without the prefixes, the first
+ * enumeration copies all properties of the {@link ConfigurableEnvironment Environment}.
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ *   Properties localProperties = new Properties();
+ *   localProperties.setProperty("mybatis.table-prefix", "t_");
+ *   Properties properties = new EnvironmentProperties(environment, new String[]{"mybatis."}, localProperties);
+ *   // resolved from the Environment on demand
+ *   String url = properties.getProperty("mybatis.jdbc.url");
+ * }</pre>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ConfigurableEnvironment
+ * @see Properties
+ * @since 1.0.0
+ */
+public class EnvironmentProperties extends Properties {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The placeholder of the absent property in the cache
+     */
+    private static final Object ABSENT = new Object();
+
+    private final transient ConfigurableEnvironment environment;
+
+    private final String[] prefixes;
+
+    private final transient ConcurrentMap<String, Object> resolvedValues = new ConcurrentHashMap<>();
+
+    private volatile boolean materialized;
+
+    /**
+     * Construct a {@link EnvironmentProperties} resolving all properties of Spring {@link PropertySources}
+     *
+     * @param environment {@link ConfigurableEnvironment}
+     */
+    public EnvironmentProperties(ConfigurableEnvironment environment) {
+        this(environment, EMPTY_STRING_ARRAY, null);
+    }
+
+    /**
+     * Construct a {@link EnvironmentProperties}
+     *
+     * @param environment     {@link ConfigurableEnvironment}
+     * @param prefixes        the prefixes of the property names, or empty array indicates all properties
+     * @param localProperties the local properties overriding Spring {@link PropertySources}, or <code>null</code>
+     */
+    public EnvironmentProperties(ConfigurableEnvironment environment, String[] prefixes, @Nullable Properties localProperties) {
+        assertNotNull(environment, () -> "The 'environment' argument must not be null");
+        this.environment = environment;
+        this.prefixes = prefixes == null ? EMPTY_STRING_ARRAY : prefixes;
+        if (localProperties != null) {
+            super.putAll(localProperties);
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = super.get(key);
+        if (value == null && key instanceof String name) {
+            value = resolve(name);
+        }
+        return value;
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        Object value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public String getProperty(String key) {
+        Object value = get(key);
+        String stringValue = value instanceof String ? (String) value : null;
+        return stringValue == null && defaults != null ? defaults.getProperty(key) : stringValue;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return super.containsKey(key) || (key instanceof String name && resolve(name) != null);
+    }
+
+    @Override
+    public int size() {
+        materialize();
+        return super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        materialize();
+        return super.isEmpty();
+    }
+
+    @Override
+    public Enumeration<Object> keys() {
+        materialize();
+        return super.keys();
+    }
+
+    @Override
+    public Enumeration<Object> elements() {
+        materialize();
+        return super.elements();
+    }
+
+    @Override
+    public Enumeration<?> propertyNames() {
+        materialize();
+        return super.propertyNames();
+    }
+
+    @Override
+    public Set<String> stringPropertyNames() {
+        materialize();
+        return super.stringPropertyNames();
+    }
+
+    @Override
+    public Set<Object> keySet() {
+        materialize();
+        return super.keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        materialize();
+        return super.values();
+    }
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        materialize();
+        return super.entrySet();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super Object, ? super Object> action) {
+        materialize();
+        super.forEach(action);
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        materialize();
+        return super.contains(value);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        materialize();
+        return super.containsValue(value);
+    }
+
+    /**
+     * Get the prefixes of the property names
+     *
+     * @return non-null
+     */
+    public String[] getPrefixes() {
+        return prefixes.clone();
+    }
+
+    /**
+     * Is the property name resolvable from Spring {@link PropertySources} or not
+     *
+     * @param name the property name
+     * @return <code>true</code> if no prefix is specified or the name starts with any prefix
+     */
+    protected boolean isCandidate(String name) {
+        if (isEmpty(prefixes)) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private Object resolve(String name) {
+        if (!isCandidate(name)) {
+            return null;
+        }
+        Object value = resolvedValues.computeIfAbsent(name, this::doResolve);
+        return value == ABSENT ? null : value;
+    }
+
+    private Object doResolve(String name) {
+        // The first PropertySource wins, as same as the order of Spring Environment
+        for (PropertySource<?> propertySource : environment.getPropertySources()) {
+            Object value = propertySource.getProperty(name);
+            if (value != null) {
+                return value;
+            }
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Materialize the properties matching the prefixes into this view once, all properties are materialized if no
+     * prefix is specified.
+     */
+    private void materialize() {
+        if (materialized) {
+            return;
+        }
+        synchronized (resolvedValues) {
+            if (materialized) {
+                return;
+            }
+            for (PropertySource<?> propertySource : environment.getPropertySources()) {
+                for (String name : getPropertyNames(propertySource)) {
+                    if (isCandidate(name) && !super.containsKey(name)) {
+                        Object value = resolve(name);
+                        if (value != null) {
+                            super.putIfAbsent(name, value);
+                        }
+                    }
+                }
+            }
+            materialized = true;
+        }
+    }
+}
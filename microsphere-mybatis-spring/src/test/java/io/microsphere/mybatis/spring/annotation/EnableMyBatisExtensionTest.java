@@ -17,15 +17,46 @@
 
 package io.microsphere.mybatis.spring.annotation;
 
+import io.microsphere.mybatis.builder.MapperModelCache;
+import io.microsphere.mybatis.builder.ParallelMapperXMLParser;
 import io.microsphere.mybatis.executor.LoggingExecutorFilter;
 import io.microsphere.mybatis.executor.LoggingExecutorInterceptor;
+import io.microsphere.mybatis.executor.ShardingExecutorFilter;
+import io.microsphere.mybatis.plugin.StatementTrackingInterceptor;
+import io.microsphere.mybatis.spring.context.MyBatisStartupTimeline;
+import io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.Phase;
+import io.microsphere.mybatis.test.mapper.ChildMapper;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+
+import javax.sql.DataSource;
+import java.util.List;
 
 import static io.microsphere.spring.beans.BeanSource.BEAN_FACTORY;
 import static io.microsphere.spring.beans.BeanSource.JAVA_SERVICE_PROVIDER;
 import static io.microsphere.spring.beans.BeanSource.SPRING_FACTORIES;
+import static io.microsphere.mybatis.spring.annotation.MyBatisBeanDefinitionRegistrar.SQL_SESSION_FACTORY_BEAN_NAME;
+import static io.microsphere.mybatis.spring.annotation.MyBatisExtensionBeanDefinitionRegistrar.MAPPER_MODEL_CACHE_BEAN_NAME;
+import static io.microsphere.mybatis.spring.annotation.MyBatisExtensionBeanDefinitionRegistrar.PARALLEL_MAPPER_XML_PARSER_BEAN_NAME;
+import static io.microsphere.mybatis.spring.annotation.MyBatisExtensionBeanDefinitionRegistrar.SHARDING_EXECUTOR_FILTER_BEAN_NAME;
+import static io.microsphere.mybatis.spring.annotation.MyBatisExtensionBeanDefinitionRegistrar.STATEMENT_TRACKING_INTERCEPTOR_BEAN_NAME;
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.MAPPER_LOAD_PHASE;
+import static io.microsphere.mybatis.test.AbstractMapperTest.assertChildMapper;
+import static io.microsphere.mybatis.test.MyBatisTestUtils.EMPTY_CONFIG_RESOURCE_NAME;
 import static io.microsphere.spring.test.util.SpringTestUtils.testInSpringContainer;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * {@link EnableMyBatisExtension} Test
@@ -76,10 +107,149 @@ class EnableMyBatisExtensionTest {
         testInSpringContainer(EnableMyBatisTest::assertTest, EnableMyBatisTest.DefaultConfig.class, DisabledConfig.class);
     }
 
+    @Test
+    void testTrackStatements() {
+        testInSpringContainer(context -> {
+            EnableMyBatisTest.assertTest(context);
+            StatementTrackingInterceptor interceptor = context.getBean(STATEMENT_TRACKING_INTERCEPTOR_BEAN_NAME, StatementTrackingInterceptor.class);
+            SqlSessionFactory sqlSessionFactory = context.getBean(SqlSessionFactory.class);
+            assertTrue(sqlSessionFactory.getConfiguration().getInterceptors().contains(interceptor));
+        }, EnableMyBatisTest.DefaultConfig.class, TrackStatementsConfig.class);
+    }
+
+    @Test
+    void testNoTrackStatementsConfig() {
+        testInSpringContainer(context -> {
+            EnableMyBatisTest.assertTest(context);
+            assertFalse(context.containsBean(STATEMENT_TRACKING_INTERCEPTOR_BEAN_NAME));
+        }, EnableMyBatisTest.DefaultConfig.class, DefaultConfig.class);
+    }
+
+    @Test
+    void testShardingConfig() {
+        testInSpringContainer(context -> {
+            EnableMyBatisTest.assertTest(context);
+            ShardingExecutorFilter filter = context.getBean(SHARDING_EXECUTOR_FILTER_BEAN_NAME, ShardingExecutorFilter.class);
+            assertEquals(2, filter.getShardCount());
+            assertTrue(filter.getRoutedCount() > 0);
+        }, EnableMyBatisTest.DefaultConfig.class, ShardingConfig.class);
+    }
+
+    @Test
+    void testNoShardingConfig() {
+        testInSpringContainer(context -> {
+            assertFalse(context.containsBean(SHARDING_EXECUTOR_FILTER_BEAN_NAME));
+        }, EnableMyBatisTest.DefaultConfig.class, DefaultConfig.class);
+    }
+
+    @Test
+    void testShareMapperModelConfig() {
+        testInSpringContainer(context -> {
+            EnableMyBatisTest.assertTest(context);
+            MapperModelCache mapperModelCache = context.getBean(MAPPER_MODEL_CACHE_BEAN_NAME, MapperModelCache.class);
+            assertEquals(1, mapperModelCache.size());
+
+            Configuration configuration = context.getBean(SQL_SESSION_FACTORY_BEAN_NAME, SqlSessionFactory.class).getConfiguration();
+            SqlSessionFactory tenantSqlSessionFactory = context.getBean("tenantSqlSessionFactory", SqlSessionFactory.class);
+            Configuration tenantConfiguration = tenantSqlSessionFactory.getConfiguration();
+            assertNotSame(configuration, tenantConfiguration);
+
+            String statementId = "io.microsphere.mybatis.test.mapper.ChildMapper.selectAll";
+            MappedStatement statement = configuration.getMappedStatement(statementId);
+            MappedStatement tenantStatement = tenantConfiguration.getMappedStatement(statementId);
+            assertSame(tenantConfiguration, tenantStatement.getConfiguration());
+            assertSame(statement.getSqlSource(), tenantStatement.getSqlSource());
+            assertSame(statement.getResultMaps(), tenantStatement.getResultMaps());
+
+            try (SqlSession sqlSession = tenantSqlSessionFactory.openSession()) {
+                assertChildMapper(sqlSession.getMapper(ChildMapper.class));
+            }
+        }, EnableMyBatisTest.MapperConfig.class, ShareMapperModelConfig.class);
+    }
+
+    @Test
+    void testNoShareMapperModelConfig() {
+        testInSpringContainer(context -> {
+            assertFalse(context.containsBean(MAPPER_MODEL_CACHE_BEAN_NAME));
+        }, EnableMyBatisTest.DefaultConfig.class, DefaultConfig.class);
+    }
+
+    @Test
+    void testParallelMapperParsingConfig() {
+        testInSpringContainer(context -> {
+            EnableMyBatisTest.assertTest(context);
+            assertNotNull(context.getBean(PARALLEL_MAPPER_XML_PARSER_BEAN_NAME, ParallelMapperXMLParser.class));
+            assertFalse(context.containsBean(MAPPER_MODEL_CACHE_BEAN_NAME));
+
+            // The deferred mapper locations are recorded
+            MyBatisStartupTimeline timeline = context.getBean(MyBatisStartupTimeline.BEAN_NAME, MyBatisStartupTimeline.class);
+            List<Phase> loadPhases = timeline.getPhases().stream()
+                    .filter(phase -> MAPPER_LOAD_PHASE.equals(phase.getName()))
+                    .toList();
+            assertEquals(1, loadPhases.size());
+            assertEquals("3", loadPhases.get(0).getTags().get("mapper-locations"));
+            assertEquals(ParallelMapperXMLParser.class.getSimpleName(), loadPhases.get(0).getTags().get("loader"));
+        }, EnableMyBatisTest.MapperConfig.class, ParallelMapperParsingConfig.class);
+    }
+
+    @Test
+    void testParallelMapperParsingAndShareMapperModelConfig() {
+        testInSpringContainer(context -> {
+            EnableMyBatisTest.assertTest(context);
+            assertEquals(1, context.getBean(MAPPER_MODEL_CACHE_BEAN_NAME, MapperModelCache.class).size());
+            SqlSessionFactory tenantSqlSessionFactory = context.getBean("tenantSqlSessionFactory", SqlSessionFactory.class);
+            try (SqlSession sqlSession = tenantSqlSessionFactory.openSession()) {
+                assertChildMapper(sqlSession.getMapper(ChildMapper.class));
+            }
+        }, EnableMyBatisTest.MapperConfig.class, ParallelMapperParsingAndShareMapperModelConfig.class);
+    }
+
     @EnableMyBatisExtension
     static class DefaultConfig {
     }
 
+    @EnableMyBatisExtension(parallelMapperParsing = true)
+    static class ParallelMapperParsingConfig {
+    }
+
+    @EnableMyBatisExtension(parallelMapperParsing = true, shareMapperModel = true)
+    static class ParallelMapperParsingAndShareMapperModelConfig {
+
+        @Bean
+        public SqlSessionFactoryBean tenantSqlSessionFactory(DataSource dataSource) {
+            return newTenantSqlSessionFactoryBean(dataSource);
+        }
+    }
+
+    @EnableMyBatisExtension(shareMapperModel = true)
+    static class ShareMapperModelConfig {
+
+        @Bean
+        public SqlSessionFactoryBean tenantSqlSessionFactory(DataSource dataSource) {
+            return newTenantSqlSessionFactoryBean(dataSource);
+        }
+    }
+
+    static SqlSessionFactoryBean newTenantSqlSessionFactoryBean(DataSource dataSource) {
+        SqlSessionFactoryBean sqlSessionFactoryBean = new SqlSessionFactoryBean();
+        sqlSessionFactoryBean.setDataSource(dataSource);
+        sqlSessionFactoryBean.setConfigLocation(new ClassPathResource(EMPTY_CONFIG_RESOURCE_NAME));
+        sqlSessionFactoryBean.setTypeAliasesPackage("io.microsphere.mybatis.test.entity");
+        sqlSessionFactoryBean.setMapperLocations(
+                new ClassPathResource("META-INF/mybatis/UserMapper.xml"),
+                new ClassPathResource("META-INF/mybatis/ChildMapper.xml"),
+                new ClassPathResource("META-INF/mybatis/FatherMapper.xml"));
+        return sqlSessionFactoryBean;
+    }
+
+    @EnableMyBatisExtension(
+            sources = BEAN_FACTORY,
+            shardDataSources = {"dataSource", "dataSource"},
+            shardKeys = "io.microsphere.mybatis.test.mapper.FatherMapper.selectById = id"
+    )
+    static class ShardingConfig {
+    }
+
     @EnableMyBatisExtension(sources = BEAN_FACTORY)
     @Import(value = {
             LoggingExecutorFilter.class,
@@ -113,4 +283,8 @@ class EnableMyBatisExtensionTest {
     @EnableMyBatisExtension(interceptExecutor = false)
     static class DisabledConfig {
     }
+
+    @EnableMyBatisExtension(trackStatements = true)
+    static class TrackStatementsConfig {
+    }
 }
\ No newline at end of file
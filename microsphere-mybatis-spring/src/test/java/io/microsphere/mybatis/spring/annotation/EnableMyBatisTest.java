@@ -18,9 +18,15 @@
 package io.microsphere.mybatis.spring.annotation;
 
 import io.microsphere.mybatis.executor.LoggingExecutorFilter;
+import io.microsphere.mybatis.executor.VirtualThreadPinningInterceptor;
 import io.microsphere.mybatis.plugin.InterceptingExecutorInterceptor;
+import io.microsphere.mybatis.session.BoundedReuseSqlSessionFactory;
+import io.microsphere.mybatis.session.SharedConfigurationSqlSessionFactory;
+import io.microsphere.mybatis.spring.context.MyBatisStartupTimeline;
+import io.microsphere.mybatis.spring.core.env.EnvironmentProperties;
 import io.microsphere.mybatis.spring.test.config.MyBatisDataBaseTestConfiguration;
 import io.microsphere.mybatis.spring.test.config.MyBatisDataSourceTestConfiguration;
+import io.microsphere.mybatis.test.entity.Father;
 import io.microsphere.mybatis.test.mapper.ChildMapper;
 import io.microsphere.mybatis.test.mapper.FatherMapper;
 import io.microsphere.mybatis.test.mapper.UserMapper;
@@ -38,17 +44,27 @@ import org.apache.ibatis.session.SqlSessionFactory;
 import org.junit.jupiter.api.Test;
 import org.mybatis.spring.SqlSessionFactoryBean;
 import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
 import java.io.Serializable;
+import java.util.List;
+import java.util.Properties;
 
 import static io.microsphere.mybatis.spring.annotation.MyBatisBeanDefinitionRegistrar.SQL_SESSION_FACTORY_BEAN_NAME;
 import static io.microsphere.mybatis.spring.annotation.MyBatisBeanDefinitionRegistrar.SQL_SESSION_TEMPLATE_BEAN_NAME;
+import static io.microsphere.mybatis.spring.annotation.MyBatisBeanDefinitionRegistrar.VIRTUAL_THREAD_PINNING_INTERCEPTOR_BEAN_NAME;
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.MAPPER_PARSE_PHASE;
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.REGISTRAR_PHASE;
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.SQL_SESSION_FACTORY_BUILD_PHASE;
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.SQL_SESSION_FACTORY_CONFIGURE_PHASE;
 import static io.microsphere.mybatis.test.AbstractMapperTest.assertChildMapper;
 import static io.microsphere.mybatis.test.AbstractMapperTest.assertFatherMapper;
 import static io.microsphere.mybatis.test.AbstractMapperTest.assertUserMapper;
@@ -58,9 +74,14 @@ import static io.microsphere.mybatis.test.MyBatisTestUtils.EMPTY_CONFIG_RESOURCE
 import static io.microsphere.spring.test.util.SpringTestUtils.testInSpringContainer;
 import static io.microsphere.util.ArrayUtils.ofArray;
 import static org.apache.ibatis.session.ExecutorType.REUSE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.beans.factory.BeanFactory.FACTORY_BEAN_PREFIX;
 
 /**
@@ -101,10 +122,41 @@ class EnableMyBatisTest {
         testInSpringContainer(EnableMyBatisTest::assertTest, MapperConfig2.class);
     }
 
+    @Test
+    void testStartupTimeline() {
+        testInSpringContainer(context -> {
+            MyBatisStartupTimeline timeline = context.getBean(MyBatisStartupTimeline.BEAN_NAME, MyBatisStartupTimeline.class);
+            List<MyBatisStartupTimeline.Phase> phases = timeline.getPhases();
+            assertTrue(phases.stream().anyMatch(phase -> REGISTRAR_PHASE.equals(phase.getName())
+                    && MyBatisBeanDefinitionRegistrar.class.getSimpleName().equals(phase.getTags().get("registrar"))));
+            assertEquals(1, phases.stream().filter(phase -> SQL_SESSION_FACTORY_BUILD_PHASE.equals(phase.getName())).count());
+            assertEquals(1, phases.stream().filter(phase -> SQL_SESSION_FACTORY_CONFIGURE_PHASE.equals(phase.getName())).count());
+            assertEquals(3, phases.stream().filter(phase -> MAPPER_PARSE_PHASE.equals(phase.getName())).count());
+            assertTrue(phases.stream().allMatch(MyBatisStartupTimeline.Phase::isEnded));
+            assertTrue(timeline.getSummary().contains(MAPPER_PARSE_PHASE + " : 3 file(s)"));
+        }, MapperConfig.class);
+    }
+
     @Test
     void testConfigurationPropetiesConfig() {
         testInSpringContainer(EnableMyBatisTest::assertTest, ConfigurationPropetiesConfig.class);
         testInSpringContainer(EnableMyBatisTest::assertTest, ConfigurationPropetiesConfig2.class);
+        testInSpringContainer(context -> {
+            SqlSessionFactory sqlSessionFactory = context.getBean(SQL_SESSION_FACTORY_BEAN_NAME, SqlSessionFactory.class);
+            Properties variables = sqlSessionFactory.getConfiguration().getVariables();
+            // All properties are copied without the prefixes
+            assertFalse(variables instanceof EnvironmentProperties);
+            assertEquals("META-INF/mybatis/UserMapper.xml", variables.getProperty("user-mapper-resource"));
+            assertTrue(variables.stringPropertyNames().contains("user-mapper-resource"));
+        }, ConfigurationPropetiesConfig2.class);
+        testInSpringContainer(context -> {
+            SqlSessionFactory sqlSessionFactory = context.getBean(SQL_SESSION_FACTORY_BEAN_NAME, SqlSessionFactory.class);
+            Properties variables = sqlSessionFactory.getConfiguration().getVariables();
+            assertInstanceOf(EnvironmentProperties.class, variables);
+            assertEquals("org.h2.Driver", variables.getProperty("jdbc.driver"));
+            assertNull(variables.getProperty("user-mapper-resource"));
+            assertTrue(variables.stringPropertyNames().contains("jdbc.url"));
+        }, PrefixedConfigurationPropetiesConfig.class);
         assertThrows(IllegalArgumentException.class, () -> {
             new AnnotationConfigApplicationContext(InvaidConfigurationPropetiesConfig.class);
         });
@@ -135,6 +187,92 @@ class EnableMyBatisTest {
         testInSpringContainer(EnableMyBatisTest::assertTest, PluginsConfig.class);
     }
 
+    @Test
+    void testVirtualThreadsConfig() {
+        testInSpringContainer(context -> {
+            assertTest(context);
+            Configuration configuration = getSqlSessionFactory(context).getConfiguration();
+            assertInstanceOf(SpringManagedTransactionFactory.class, configuration.getEnvironment().getTransactionFactory());
+            List<Interceptor> interceptors = configuration.getInterceptors();
+            assertEquals(2, interceptors.size());
+            assertSame(context.getBean("interceptor"), interceptors.get(0));
+            assertInstanceOf(InterceptingExecutorInterceptor.class, interceptors.get(1));
+            assertNotNull(context.getBean(VIRTUAL_THREAD_PINNING_INTERCEPTOR_BEAN_NAME, VirtualThreadPinningInterceptor.class));
+
+            // The sessions join the Spring transactions
+            SqlSessionTemplate sqlSessionTemplate = getSqlSessionTemplate(context);
+            TransactionTemplate transactionTemplate = new TransactionTemplate(
+                    new DataSourceTransactionManager(context.getBean("dataSource", DataSource.class)));
+            Father father = transactionTemplate.execute(status -> sqlSessionTemplate.getMapper(FatherMapper.class).selectById(1));
+            assertEquals("John Smith", father.getName());
+        }, VirtualThreadsConfig.class);
+    }
+
+    @Test
+    void testNoVirtualThreadsConfig() {
+        testInSpringContainer(context -> {
+            assertFalse(context.containsBean(VIRTUAL_THREAD_PINNING_INTERCEPTOR_BEAN_NAME));
+        }, DefaultConfig.class);
+    }
+
+    @Test
+    void testAdditionalDataSourcesConfig() {
+        testInSpringContainer(context -> {
+            assertTest(context);
+            SqlSessionFactory sqlSessionFactory = getSqlSessionFactory(context);
+            assertSame(sqlSessionFactory, context.getBean(SqlSessionFactory.class));
+            assertSame(getSqlSessionTemplate(context), context.getBean(SqlSessionTemplate.class));
+
+            SharedConfigurationSqlSessionFactory hardCodeSqlSessionFactory = context.getBean("hardCodeDataSourceSqlSessionFactory",
+                    SharedConfigurationSqlSessionFactory.class);
+            assertSame(sqlSessionFactory.getConfiguration(), hardCodeSqlSessionFactory.getConfiguration());
+            assertEquals("hardCodeDataSource", hardCodeSqlSessionFactory.getEnvironment().getId());
+            assertSame(context.getBean("hardCodeDataSource"), hardCodeSqlSessionFactory.getEnvironment().getDataSource());
+
+            SqlSessionTemplate sqlSessionTemplate = context.getBean("dataSourceSqlSessionTemplate", SqlSessionTemplate.class);
+            assertSame(context.getBean("dataSourceSqlSessionFactory"), sqlSessionTemplate.getSqlSessionFactory());
+            assertSame(sqlSessionFactory.getConfiguration(), sqlSessionTemplate.getConfiguration());
+            assertEquals(REUSE, sqlSessionTemplate.getExecutorType());
+            Father father = sqlSessionTemplate.getMapper(FatherMapper.class).selectById(1);
+            assertEquals("John Smith", father.getName());
+        }, AdditionalDataSourcesConfig.class);
+    }
+
+    @Test
+    void testStatementCacheConfig() {
+        testInSpringContainer(context -> {
+            SqlSessionTemplate sqlSessionTemplate = getSqlSessionTemplate(context);
+            assertEquals("John Smith", sqlSessionTemplate.getMapper(FatherMapper.class).selectById(1).getName());
+            BoundedReuseSqlSessionFactory sqlSessionFactory = assertInstanceOf(BoundedReuseSqlSessionFactory.class,
+                    sqlSessionTemplate.getSqlSessionFactory());
+            assertSame(getSqlSessionFactory(context), sqlSessionFactory.getDelegate());
+            assertEquals(16, sqlSessionFactory.getStatementCacheSize());
+            assertTrue(sqlSessionFactory.getStatistics().getMissCount() > 0);
+
+            SqlSessionTemplate dataSourceSqlSessionTemplate = context.getBean("dataSourceSqlSessionTemplate", SqlSessionTemplate.class);
+            BoundedReuseSqlSessionFactory dataSourceSqlSessionFactory = assertInstanceOf(BoundedReuseSqlSessionFactory.class,
+                    dataSourceSqlSessionTemplate.getSqlSessionFactory());
+            assertSame(context.getBean("dataSourceSqlSessionFactory"), dataSourceSqlSessionFactory.getDelegate());
+            Father father = dataSourceSqlSessionTemplate.getMapper(FatherMapper.class).selectById(1);
+            assertEquals("John Smith", father.getName());
+        }, StatementCacheConfig.class);
+    }
+
+    @Test
+    void testNoStatementCacheConfig() {
+        testInSpringContainer(context -> {
+            assertSame(getSqlSessionFactory(context), getSqlSessionTemplate(context).getSqlSessionFactory());
+        }, DefaultConfig.class);
+    }
+
+    @Test
+    void testNoAdditionalDataSourcesConfig() {
+        testInSpringContainer(context -> {
+            assertFalse(context.containsBean("dataSourceSqlSessionFactory"));
+            assertFalse(context.containsBean("dataSourceSqlSessionTemplate"));
+        }, DefaultConfig.class);
+    }
+
     @EnableMyBatis
     @Import(value = {
             MyBatisDataSourceTestConfiguration.class,
@@ -248,6 +386,25 @@ class EnableMyBatisTest {
     static class ConfigurationPropetiesConfig2 {
     }
 
+    @EnableMyBatis(
+            configLocation = EMPTY_CONFIG_RESOURCE_NAME,
+            mapperLocations = {
+                    "${user-mapper-resource}",
+                    "${child-mapper-resource}",
+                    "${father-mapper-resource}"
+            },
+            typeAliasesPackage = "io.microsphere.mybatis.test.entity",
+            configurationPropertiesImportPropertySources = true,
+            configurationPropertiesPropertySourcesPrefixes = "jdbc."
+    )
+    @PropertySource(value = "classpath:META-INF/mybatis/mybatis.properties")
+    @Import(value = {
+            HardCodeDataSourceConfiguration.class,
+            MyBatisDataBaseTestConfiguration.class
+    })
+    static class PrefixedConfigurationPropetiesConfig {
+    }
+
     @EnableMyBatis(
             configLocation = EMPTY_CONFIG_RESOURCE_NAME,
             configurationProperties = {"a"}
@@ -330,6 +487,48 @@ class EnableMyBatisTest {
         }
     }
 
+    @EnableMyBatis(
+            configLocation = DEFAULT_CONFIG_RESOURCE_NAME,
+            plugins = "interceptor",
+            virtualThreads = true
+    )
+    @Import(value = {
+            MyBatisDataSourceTestConfiguration.class,
+            MyBatisDataBaseTestConfiguration.class
+    })
+    static class VirtualThreadsConfig {
+
+        @Bean
+        public Interceptor interceptor() {
+            return new InterceptingExecutorInterceptor(ofArray(new LoggingExecutorFilter()));
+        }
+    }
+
+    @EnableMyBatis(
+            configLocation = DEFAULT_CONFIG_RESOURCE_NAME,
+            executorType = REUSE,
+            additionalDataSources = {"dataSource", "${hard-code-data-source:hardCodeDataSource}"}
+    )
+    @Import(value = {
+            MyBatisDataSourceTestConfiguration.class,
+            HardCodeDataSourceConfiguration.class,
+            MyBatisDataBaseTestConfiguration.class
+    })
+    static class AdditionalDataSourcesConfig {
+    }
+
+    @EnableMyBatis(
+            configLocation = DEFAULT_CONFIG_RESOURCE_NAME,
+            statementCacheSize = 16,
+            additionalDataSources = "dataSource"
+    )
+    @Import(value = {
+            MyBatisDataSourceTestConfiguration.class,
+            MyBatisDataBaseTestConfiguration.class
+    })
+    static class StatementCacheConfig {
+    }
+
     static class HardCodeDataSourceConfiguration {
 
         @Bean(initMethod = "forceCloseAll")
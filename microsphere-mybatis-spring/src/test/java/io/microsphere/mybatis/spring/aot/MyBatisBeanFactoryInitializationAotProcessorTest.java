@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.spring.aot;
+
+import io.microsphere.mybatis.executor.LoggingExecutorFilter;
+import io.microsphere.mybatis.test.entity.User;
+import io.microsphere.mybatis.test.mapper.UserMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.mapper.MapperFactoryBean;
+import org.springframework.aot.generate.ClassNameGenerator;
+import org.springframework.aot.generate.DefaultGenerationContext;
+import org.springframework.aot.generate.InMemoryGeneratedFiles;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotContribution;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.javapoet.ClassName;
+
+import java.util.Set;
+
+import static io.microsphere.mybatis.spring.aot.MyBatisBeanFactoryInitializationAotProcessor.resolveMapperInterface;
+import static io.microsphere.mybatis.spring.aot.MyBatisBeanFactoryInitializationAotProcessor.resolveSignatureTypes;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.aot.hint.MemberCategory.DECLARED_FIELDS;
+import static org.springframework.aot.hint.MemberCategory.INVOKE_DECLARED_CONSTRUCTORS;
+import static org.springframework.aot.hint.MemberCategory.INVOKE_PUBLIC_METHODS;
+import static org.springframework.aot.hint.predicate.RuntimeHintsPredicates.proxies;
+import static org.springframework.aot.hint.predicate.RuntimeHintsPredicates.reflection;
+import static org.springframework.beans.factory.FactoryBean.OBJECT_TYPE_ATTRIBUTE;
+import static org.springframework.beans.factory.support.BeanDefinitionBuilder.genericBeanDefinition;
+
+/**
+ * {@link MyBatisBeanFactoryInitializationAotProcessor} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see MyBatisBeanFactoryInitializationAotProcessor
+ * @since 1.0.0
+ */
+class MyBatisBeanFactoryInitializationAotProcessorTest {
+
+    private MyBatisBeanFactoryInitializationAotProcessor processor;
+
+    private DefaultListableBeanFactory beanFactory;
+
+    @BeforeEach
+    void setUp() {
+        this.processor = new MyBatisBeanFactoryInitializationAotProcessor();
+        this.beanFactory = new DefaultListableBeanFactory();
+    }
+
+    @Test
+    void testProcessAheadOfTime() {
+        beanFactory.registerBeanDefinition("userMapper", genericBeanDefinition(MapperFactoryBean.class)
+                .addConstructorArgValue(UserMapper.class.getName())
+                .getBeanDefinition());
+        beanFactory.registerBeanDefinition("loggingExecutorFilter",
+                genericBeanDefinition(LoggingExecutorFilter.class).getBeanDefinition());
+        beanFactory.registerBeanDefinition("string", genericBeanDefinition(String.class).getBeanDefinition());
+
+        BeanFactoryInitializationAotContribution contribution = processor.processAheadOfTime(beanFactory);
+        assertNotNull(contribution);
+
+        DefaultGenerationContext generationContext = new DefaultGenerationContext(
+                new ClassNameGenerator(ClassName.get(getClass())), new InMemoryGeneratedFiles());
+        contribution.applyTo(generationContext, null);
+        RuntimeHints hints = generationContext.getRuntimeHints();
+
+        assertTrue(proxies().forInterfaces(UserMapper.class).test(hints));
+        assertTrue(reflection().onType(UserMapper.class).withMemberCategory(INVOKE_PUBLIC_METHODS).test(hints));
+        assertTrue(reflection().onType(User.class).withMemberCategories(INVOKE_DECLARED_CONSTRUCTORS, DECLARED_FIELDS).test(hints));
+        assertTrue(reflection().onType(LoggingExecutorFilter.class).withMemberCategory(INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+        assertFalse(reflection().onType(String.class).test(hints));
+    }
+
+    @Test
+    void testProcessAheadOfTimeWithoutMyBatisBeans() {
+        beanFactory.registerBeanDefinition("string", genericBeanDefinition(String.class).getBeanDefinition());
+        assertNull(processor.processAheadOfTime(beanFactory));
+    }
+
+    @Test
+    void testResolveMapperInterface() {
+        ClassLoader classLoader = getClass().getClassLoader();
+
+        BeanDefinition beanDefinition = genericBeanDefinition(MapperFactoryBean.class).getBeanDefinition();
+        assertNull(resolveMapperInterface(beanDefinition, classLoader));
+
+        beanDefinition = genericBeanDefinition(MapperFactoryBean.class)
+                .addConstructorArgValue(UserMapper.class)
+                .getBeanDefinition();
+        assertSame(UserMapper.class, resolveMapperInterface(beanDefinition, classLoader));
+
+        beanDefinition = genericBeanDefinition(MapperFactoryBean.class)
+                .addPropertyValue("mapperInterface", UserMapper.class.getName())
+                .getBeanDefinition();
+        assertSame(UserMapper.class, resolveMapperInterface(beanDefinition, classLoader));
+
+        beanDefinition = genericBeanDefinition(MapperFactoryBean.class).getBeanDefinition();
+        beanDefinition.setAttribute(OBJECT_TYPE_ATTRIBUTE, UserMapper.class.getName());
+        assertSame(UserMapper.class, resolveMapperInterface(beanDefinition, classLoader));
+
+        // Not an interface
+        beanDefinition = genericBeanDefinition(MapperFactoryBean.class)
+                .addConstructorArgValue(User.class)
+                .getBeanDefinition();
+        assertNull(resolveMapperInterface(beanDefinition, classLoader));
+    }
+
+    @Test
+    void testResolveSignatureTypes() {
+        Set<Class<?>> types = resolveSignatureTypes(UserMapper.class);
+        assertEquals(1, types.size());
+        assertTrue(types.contains(User.class));
+    }
+}
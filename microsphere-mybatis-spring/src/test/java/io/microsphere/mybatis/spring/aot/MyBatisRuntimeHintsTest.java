@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.spring.aot;
+
+import io.microsphere.mybatis.datasource.ConnectionPoolAdapter;
+import io.microsphere.mybatis.executor.ExecutorFilter;
+import io.microsphere.mybatis.executor.ExecutorInterceptor;
+import org.apache.ibatis.builder.xml.XMLConfigBuilder;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.logging.slf4j.Slf4jImpl;
+import org.apache.ibatis.parsing.XPathParser;
+import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.apache.ibatis.transaction.managed.ManagedTransaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.transaction.SpringManagedTransaction;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Properties;
+
+import static io.microsphere.mybatis.builder.ConfigurationSnapshot.DEFAULT_SNAPSHOT_RESOURCE;
+import static io.microsphere.mybatis.datasource.DruidConnectionPoolAdapter.DRUID_DATA_SOURCE_CLASS_NAME;
+import static io.microsphere.mybatis.datasource.HikariConnectionPoolAdapter.HIKARI_DATA_SOURCE_CLASS_NAME;
+import static io.microsphere.mybatis.spring.aot.MyBatisRuntimeHints.HIKARI_POOL_CLASS_NAME;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.aot.hint.MemberCategory.DECLARED_FIELDS;
+import static org.springframework.aot.hint.MemberCategory.INVOKE_DECLARED_CONSTRUCTORS;
+import static org.springframework.aot.hint.MemberCategory.INVOKE_PUBLIC_METHODS;
+import static org.springframework.aot.hint.predicate.RuntimeHintsPredicates.proxies;
+import static org.springframework.aot.hint.predicate.RuntimeHintsPredicates.reflection;
+import static org.springframework.aot.hint.predicate.RuntimeHintsPredicates.resource;
+
+/**
+ * {@link MyBatisRuntimeHints} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see MyBatisRuntimeHints
+ * @since 1.0.0
+ */
+class MyBatisRuntimeHintsTest {
+
+    private RuntimeHints hints;
+
+    @BeforeEach
+    void setUp() {
+        this.hints = new RuntimeHints();
+        new MyBatisRuntimeHints().registerHints(this.hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void testResourceHints() {
+        assertTrue(resource().forResource("org/apache/ibatis/builder/xml/mybatis-3-mapper.dtd").test(hints));
+        assertTrue(resource().forResource("org/apache/ibatis/builder/xml/mybatis-3-config.dtd").test(hints));
+        assertTrue(resource().forResource(DEFAULT_SNAPSHOT_RESOURCE).test(hints));
+        assertTrue(resource().forResource("META-INF/services/" + ExecutorFilter.class.getName()).test(hints));
+        assertTrue(resource().forResource("META-INF/services/" + ExecutorInterceptor.class.getName()).test(hints));
+        assertTrue(resource().forResource("META-INF/services/" + ConnectionPoolAdapter.class.getName()).test(hints));
+    }
+
+    @Test
+    void testPluginTargetHints() {
+        for (Class<?> targetType : MyBatisRuntimeHints.PLUGIN_TARGET_TYPES) {
+            assertTrue(proxies().forInterfaces(targetType).test(hints));
+            assertTrue(reflection().onType(targetType).withMemberCategory(INVOKE_PUBLIC_METHODS).test(hints));
+        }
+        assertTrue(proxies().forInterfaces(Executor.class).test(hints));
+        assertTrue(proxies().forInterfaces(StatementHandler.class).test(hints));
+    }
+
+    @Test
+    void testReflectionHints() {
+        assertTrue(reflection().onType(SqlSessionFactoryBean.class).withMemberCategory(DECLARED_FIELDS).test(hints));
+        assertTrue(reflection().onType(Slf4jImpl.class).withMemberCategory(INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+        assertTrue(reflection().onType(JdbcTransactionFactory.class).withMemberCategory(INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+        assertTrue(reflection().onType(SpringManagedTransactionFactory.class).withMemberCategory(INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+        assertTrue(reflection().onType(PerpetualCache.class).withMemberCategory(INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+        assertTrue(reflection().onType(XMLLanguageDriver.class).withMemberCategory(INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+    }
+
+    @Test
+    void testExecutorHints() throws Throwable {
+        assertTrue(reflection().onField(CachingExecutor.class, "delegate").test(hints));
+        for (Class<?> transactionType : new Class<?>[]{JdbcTransaction.class, ManagedTransaction.class, SpringManagedTransaction.class}) {
+            assertTrue(reflection().onField(transactionType, "dataSource").test(hints));
+            assertTrue(reflection().onField(transactionType, "connection").test(hints));
+        }
+        assertTrue(reflection().onField(JdbcTransaction.class, "autoCommit").test(hints));
+        assertTrue(reflection().onMethod(TransactionSynchronizationManager.class.getMethod("isActualTransactionActive"))
+                .invoke().test(hints));
+    }
+
+    @Test
+    void testBuilderHints() throws Throwable {
+        assertTrue(reflection().onConstructor(XMLMapperBuilder.class.getDeclaredConstructor(XPathParser.class,
+                Configuration.class, String.class, Map.class)).invoke().test(hints));
+        assertTrue(reflection().onConstructor(XMLConfigBuilder.class.getDeclaredConstructor(Class.class,
+                XPathParser.class, String.class, Properties.class)).invoke().test(hints));
+    }
+
+    @Test
+    void testConnectionPoolHints() {
+        assertTrue(reflection().onType(TypeReference.of(DRUID_DATA_SOURCE_CLASS_NAME)).withMemberCategory(INVOKE_PUBLIC_METHODS).test(hints));
+        assertTrue(reflection().onType(TypeReference.of(HIKARI_DATA_SOURCE_CLASS_NAME)).withMemberCategory(INVOKE_PUBLIC_METHODS).test(hints));
+        assertTrue(reflection().onType(TypeReference.of(HIKARI_POOL_CLASS_NAME)).withMemberCategory(INVOKE_PUBLIC_METHODS).test(hints));
+    }
+}
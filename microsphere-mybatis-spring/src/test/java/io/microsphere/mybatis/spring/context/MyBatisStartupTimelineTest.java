@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.spring.context;
+
+import io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.Phase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.metrics.ApplicationStartup;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.BEAN_NAME;
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.MAPPER_PARSE_PHASE;
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.REGISTRAR_PHASE;
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.SLOWEST_MAPPERS_LIMIT;
+import static io.microsphere.mybatis.spring.context.MyBatisStartupTimeline.getOrRegister;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.core.metrics.ApplicationStartup.DEFAULT;
+
+/**
+ * {@link MyBatisStartupTimeline} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see MyBatisStartupTimeline
+ * @since 1.0.0
+ */
+class MyBatisStartupTimelineTest {
+
+    private MyBatisStartupTimeline timeline;
+
+    @BeforeEach
+    void setUp() {
+        this.timeline = new MyBatisStartupTimeline(DEFAULT);
+    }
+
+    @Test
+    void testPhase() {
+        Phase phase = timeline.start(REGISTRAR_PHASE).tag("registrar", "test").tag("ignored", null);
+        assertFalse(phase.isEnded());
+        assertEquals(-1L, phase.getDuration());
+        assertTrue(timeline.getPhases().isEmpty());
+
+        phase.end();
+        assertTrue(phase.isEnded());
+        assertTrue(phase.getDuration() >= 0);
+        assertEquals(REGISTRAR_PHASE, phase.getName());
+        assertEquals("test", phase.getTags().get("registrar"));
+        assertFalse(phase.getTags().containsKey("ignored"));
+
+        // ended once
+        phase.end();
+        List<Phase> phases = timeline.getPhases();
+        assertEquals(1, phases.size());
+        assertSame(phase, phases.get(0));
+    }
+
+    @Test
+    void testGetSummary() {
+        timeline.start(REGISTRAR_PHASE).tag("registrar", "test").end();
+        int mappers = SLOWEST_MAPPERS_LIMIT + 2;
+        for (int i = 0; i < mappers; i++) {
+            timeline.start(MAPPER_PARSE_PHASE).tag("resource", "Mapper" + i + ".xml").end();
+        }
+        String summary = timeline.getSummary();
+        assertTrue(summary.contains(REGISTRAR_PHASE + " : "));
+        assertTrue(summary.contains(MAPPER_PARSE_PHASE + " : " + mappers + " file(s)"));
+        int count = summary.split("resource=").length - 1;
+        assertEquals(SLOWEST_MAPPERS_LIMIT, count);
+    }
+
+    @Test
+    void testGetOrRegister() {
+        try (GenericApplicationContext context = new GenericApplicationContext()) {
+            DefaultListableBeanFactory beanFactory = context.getDefaultListableBeanFactory();
+            MyBatisStartupTimeline timeline = getOrRegister(beanFactory);
+            assertSame(timeline, getOrRegister(beanFactory));
+            assertSame(timeline, beanFactory.getBean(BEAN_NAME));
+            timeline.start(REGISTRAR_PHASE).end();
+            context.refresh();
+            assertEquals(1, timeline.getPhases().size());
+        }
+    }
+
+    @Test
+    void testConstructorOnNullSupplier() {
+        assertThrows(IllegalArgumentException.class, () -> new MyBatisStartupTimeline((Supplier<ApplicationStartup>) null));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.spring.context;
+
+import io.microsphere.mybatis.executor.RateLimitingExecutorFilter;
+import io.microsphere.mybatis.executor.RateLimitingExecutorFilter.Mode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.microsphere.mybatis.executor.RateLimitingExecutorFilter.MODE_PROPERTY_NAME;
+import static io.microsphere.mybatis.executor.RateLimitingExecutorFilter.RATES_PROPERTY_NAME_PREFIX;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link RateLimitingEnvironmentConfigurer} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RateLimitingEnvironmentConfigurer
+ * @since 1.0.0
+ */
+class RateLimitingEnvironmentConfigurerTest {
+
+    private static final String RATE_KEY = "io.microsphere.mybatis.test.mapper.UserMapper";
+
+    private RateLimitingExecutorFilter filter;
+
+    private RateLimitingEnvironmentConfigurer configurer;
+
+    private Map<String, Object> source;
+
+    @BeforeEach
+    void setUp() {
+        StandardEnvironment environment = new StandardEnvironment();
+        this.source = new HashMap<>();
+        this.source.put(MODE_PROPERTY_NAME, "block");
+        this.source.put(RATES_PROPERTY_NAME_PREFIX + RATE_KEY, "${rate:10},20");
+        this.source.put("app.name", "test");
+        environment.getPropertySources().addFirst(new MapPropertySource("test", this.source));
+        this.filter = new RateLimitingExecutorFilter();
+        this.configurer = new RateLimitingEnvironmentConfigurer(filter);
+        this.configurer.setEnvironment(environment);
+    }
+
+    @Test
+    void testAfterPropertiesSet() {
+        configurer.afterPropertiesSet();
+        assertEquals(Mode.BLOCK, filter.getMode());
+        assertEquals(10.0, filter.getRates().get(RATE_KEY));
+        assertEquals(2, configurer.getProperties().size());
+    }
+
+    @Test
+    void testOnApplicationEvent() {
+        configurer.afterPropertiesSet();
+        GenericApplicationContext context = new GenericApplicationContext();
+        this.source.put("rate", "5");
+        this.source.remove(MODE_PROPERTY_NAME);
+
+        // Ignored
+        configurer.onApplicationEvent(new ContextClosedEvent(context));
+        assertEquals(10.0, filter.getRates().get(RATE_KEY));
+
+        configurer.onApplicationEvent(new ContextRefreshedEvent(context));
+        assertEquals(5.0, filter.getRates().get(RATE_KEY));
+        assertEquals(Mode.REJECT, filter.getMode());
+
+        this.source.remove(RATES_PROPERTY_NAME_PREFIX + RATE_KEY);
+        configurer.refresh();
+        assertNull(filter.getRates().get(RATE_KEY));
+    }
+
+    @Test
+    void testConstructorOnNullFilter() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimitingEnvironmentConfigurer(null));
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.microsphere.mybatis.spring.core.env;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link EnvironmentProperties} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see EnvironmentProperties
+ * @since 1.0.0
+ */
+class EnvironmentPropertiesTest {
+
+    private StandardEnvironment environment;
+
+    private Map<String, Object> source;
+
+    @BeforeEach
+    void setUp() {
+        this.environment = new StandardEnvironment();
+        this.source = new HashMap<>();
+        this.source.put("mybatis.table-prefix", "t_");
+        this.source.put("mybatis.fetch-size", 100);
+        this.source.put("app.name", "test");
+        MutablePropertySources propertySources = this.environment.getPropertySources();
+        propertySources.addFirst(new MapPropertySource("test", this.source));
+        Map<String, Object> lowPriority = new HashMap<>();
+        lowPriority.put("mybatis.table-prefix", "low_");
+        propertySources.addLast(new MapPropertySource("low-priority", lowPriority));
+    }
+
+    @Test
+    void testResolveOnDemand() {
+        EnvironmentProperties properties = new EnvironmentProperties(environment);
+        assertEquals("t_", properties.getProperty("mybatis.table-prefix"));
+        assertEquals("test", properties.getProperty("app.name"));
+        assertEquals(100, properties.get("mybatis.fetch-size"));
+        assertNull(properties.getProperty("mybatis.fetch-size"));
+        assertTrue(properties.containsKey("app.name"));
+        assertFalse(properties.containsKey("not-found"));
+        assertEquals("default", properties.getProperty("not-found", "default"));
+        assertEquals("default", properties.getOrDefault("not-found", "default"));
+        // All properties are materialized by the enumeration without prefixes
+        assertFalse(properties.isEmpty());
+        assertTrue(properties.stringPropertyNames().contains("app.name"));
+
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        assertEquals("t_", copy.getProperty("mybatis.table-prefix"));
+        assertEquals("test", copy.getProperty("app.name"));
+    }
+
+    @Test
+    void testCache() {
+        EnvironmentProperties properties = new EnvironmentProperties(environment);
+        assertEquals("t_", properties.getProperty("mybatis.table-prefix"));
+        source.put("mybatis.table-prefix", "changed_");
+        assertEquals("t_", properties.getProperty("mybatis.table-prefix"));
+    }
+
+    @Test
+    void testPrefixes() {
+        EnvironmentProperties properties = new EnvironmentProperties(environment, new String[]{"mybatis."}, null);
+        assertArrayEquals(new String[]{"mybatis."}, properties.getPrefixes());
+        assertEquals("t_", properties.getProperty("mybatis.table-prefix"));
+        assertNull(properties.getProperty("app.name"));
+        assertFalse(properties.containsKey("app.name"));
+
+        assertEquals(2, properties.size());
+        assertTrue(properties.stringPropertyNames().contains("mybatis.table-prefix"));
+
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        assertEquals("t_", copy.getProperty("mybatis.table-prefix"));
+        assertEquals(100, copy.get("mybatis.fetch-size"));
+        assertFalse(copy.containsKey("app.name"));
+    }
+
+    @Test
+    void testLocalProperties() {
+        Properties localProperties = new Properties();
+        localProperties.setProperty("mybatis.table-prefix", "local_");
+        localProperties.setProperty("local", "value");
+        EnvironmentProperties properties = new EnvironmentProperties(environment, new String[]{"mybatis."}, localProperties);
+        assertEquals("local_", properties.getProperty("mybatis.table-prefix"));
+        assertEquals("value", properties.getProperty("local"));
+        assertEquals(3, properties.size());
+    }
+
+    @Test
+    void testConstructorOnNullEnvironment() {
+        assertThrows(IllegalArgumentException.class, () -> new EnvironmentProperties(null));
+    }
+}
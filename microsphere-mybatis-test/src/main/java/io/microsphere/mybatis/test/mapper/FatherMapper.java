@@ -17,8 +17,12 @@ package io.microsphere.mybatis.test.mapper;
 
 import io.microsphere.mybatis.test.entity.Father;
 
+import java.util.List;
+
 public interface FatherMapper {
 
     Father selectById(Integer id);
 
+    List<Father> selectByIds(List<Integer> ids);
+
 }